@@ -39,7 +39,9 @@ import org.junit.runners.Suite.SuiteClasses;
 		FileStoreFileBuffersForNonExistingExternalFiles.class,
 		FileStoreFileBuffersForNonExistingWorkspaceFiles.class,
 		TextFileManagerDocCreationTests.class,
-		ResourceTextFileManagerDocCreationTests.class
+		ResourceTextFileManagerDocCreationTests.class,
+		MappedFileTextStoreTest.class,
+		SynchronizableDocumentTest.class
 })
 public class FileBuffersTestSuite {
 	// see @SuiteClasses
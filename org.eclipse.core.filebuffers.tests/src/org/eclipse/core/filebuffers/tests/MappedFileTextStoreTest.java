@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.filebuffers.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.filesystem.IFileInfo;
+import org.eclipse.core.filesystem.IFileStore;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.Platform;
+
+import org.eclipse.core.filebuffers.FileBuffers;
+import org.eclipse.core.filebuffers.ITextFileBuffer;
+import org.eclipse.core.filebuffers.ITextFileBufferManager;
+
+import org.eclipse.jface.text.IDocument;
+
+/**
+ * Tests that the content of large files, which are mapped into memory and decoded lazily if they
+ * are read-only, is loaded correctly.
+ */
+public class MappedFileTextStoreTest {
+
+	/** A text length above the size from which files are mapped. */
+	private static final int LARGE= 17 * 1024 * 1024;
+
+	private File fFile;
+	private IFileStore fFileStore;
+	private boolean fIsConnected;
+
+	@Before
+	public void setUp() throws IOException {
+		// files are not mapped on Windows
+		Assume.assumeFalse(Platform.OS_WIN32.equals(Platform.getOS()));
+		fFile= File.createTempFile("MappedFileTextStoreTest", ".txt");
+		fFileStore= EFS.getLocalFileSystem().fromLocalFile(fFile);
+	}
+
+	@After
+	public void tearDown() throws CoreException {
+		if (fIsConnected)
+			FileBuffers.getTextFileBufferManager().disconnectFileStore(fFileStore, null);
+		if (fFile != null)
+			fFile.delete();
+	}
+
+	private void write(byte[] prefix, String text, Charset charset, boolean isReadOnly) throws Exception {
+		try (FileOutputStream out= new FileOutputStream(fFile)) {
+			if (prefix != null)
+				out.write(prefix);
+			out.write(text.getBytes(charset));
+		}
+		if (isReadOnly) {
+			IFileInfo info= fFileStore.fetchInfo();
+			info.setAttribute(EFS.ATTRIBUTE_READ_ONLY, true);
+			fFileStore.putInfo(info, EFS.SET_ATTRIBUTES, null);
+		}
+	}
+
+	private IDocument connect(Charset charset) throws CoreException {
+		ITextFileBufferManager manager= FileBuffers.getTextFileBufferManager();
+		manager.connectFileStore(fFileStore, null);
+		fIsConnected= true;
+		ITextFileBuffer buffer= manager.getFileStoreTextFileBuffer(fFileStore);
+		if (!charset.name().equals(buffer.getEncoding())) {
+			buffer.setEncoding(charset.name());
+			buffer.revert(null);
+		}
+		return buffer.getDocument();
+	}
+
+	private static String createText(String line, int length) {
+		StringBuilder text= new StringBuilder(length + line.length());
+		while (text.length() < length)
+			text.append(line).append(text.length()).append('\n');
+		return text.toString();
+	}
+
+	private static void checkContent(String expected, IDocument document) throws Exception {
+		assertEquals(expected.length(), document.getLength());
+		assertEquals(expected, document.get());
+		for (int offset= 0; offset < expected.length(); offset+= 99991) {
+			assertEquals(expected.charAt(offset), document.getChar(offset));
+			int length= Math.min(expected.length() - offset, 70000);
+			assertEquals(expected.substring(offset, offset + length), document.get(offset, length));
+		}
+		assertEquals(expected.split("\n", -1).length, document.getNumberOfLines());
+	}
+
+	@Test
+	public void testUTF8() throws Exception {
+		// multi-byte characters and surrogate pairs cross the window boundaries
+		String text= createText("ä€😀 line ", LARGE);
+		write(null, text, StandardCharsets.UTF_8, true);
+		checkContent(text, connect(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testUTF8WithBOM() throws Exception {
+		String text= createText("ä line ", LARGE);
+		write(new byte[] { (byte) 0xef, (byte) 0xbb, (byte) 0xbf }, text, StandardCharsets.UTF_8, true);
+		checkContent(text, connect(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testSingleByte() throws Exception {
+		String text= createText("äöü line ", LARGE);
+		write(null, text, StandardCharsets.ISO_8859_1, true);
+		checkContent(text, connect(StandardCharsets.ISO_8859_1));
+	}
+
+	@Test
+	public void testInvalidUTF8() throws Exception {
+		// the file is loaded into memory instead
+		String text= createText("line ", LARGE);
+		write(new byte[] { 'a', (byte) 0xc0, (byte) 0x80, 'b' }, text, StandardCharsets.UTF_8, true);
+		IDocument document= connect(StandardCharsets.UTF_8);
+		assertEquals('a', document.getChar(0));
+		assertEquals(text, document.get(document.getLength() - text.length(), text.length()));
+	}
+
+	@Test
+	public void testMultiByteCharset() throws Exception {
+		// the file is loaded into memory instead
+		String text= createText("line ", LARGE / 2);
+		write(null, text, StandardCharsets.UTF_16BE, true);
+		checkContent(text, connect(StandardCharsets.UTF_16BE));
+	}
+
+	@Test
+	public void testModification() throws Exception {
+		String text= createText("line ", LARGE);
+		write(null, text, StandardCharsets.UTF_8, true);
+		IDocument document= connect(StandardCharsets.UTF_8);
+		document.replace(10, 5, "x");
+		document.replace(text.length() - 100, 0, "y");
+
+		String expected= text.substring(0, 10) + "x" + text.substring(15, text.length() - 100) + "y" + text.substring(text.length() - 100);
+		checkContent(expected, document);
+		assertEquals(text.length(), fFile.length());
+	}
+
+	@Test
+	public void testWritableFileIsNotMapped() throws Exception {
+		String text= createText("line ", LARGE);
+		write(null, text, StandardCharsets.UTF_8, false);
+		IDocument document= connect(StandardCharsets.UTF_8);
+
+		try (RandomAccessFile file= new RandomAccessFile(fFile, "rw")) {
+			file.setLength(0);
+		}
+		// the document does not read the file after it has been loaded
+		checkContent(text, document);
+	}
+}
@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.filebuffers.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import org.eclipse.core.internal.filebuffers.SynchronizableDocument;
+
+import org.eclipse.jface.text.DocumentRewriteSession;
+import org.eclipse.jface.text.DocumentRewriteSessionType;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension5;
+import org.eclipse.jface.text.IRegion;
+
+/**
+ * Tests that a {@link SynchronizableDocument} with a lock object can be read by several threads
+ * while it is being modified, also during rewrite sessions.
+ */
+public class SynchronizableDocumentTest {
+
+	private static final String LINE= "0123456789\n";
+
+	private static final int LINES= 1000;
+
+	private static String createText(int lines) {
+		StringBuilder text= new StringBuilder(lines * LINE.length());
+		for (int i= 0; i < lines; i++)
+			text.append(LINE);
+		return text.toString();
+	}
+
+	@Test
+	public void testConcurrentReadsAndWrites() throws Throwable {
+		SynchronizableDocument document= new SynchronizableDocument();
+		Object lock= new Object();
+		document.setLockObject(lock);
+		document.set(createText(LINES));
+
+		final Throwable[] failure= new Throwable[1];
+		final boolean[] done= new boolean[1];
+		Thread[] readers= new Thread[4];
+		for (int i= 0; i < readers.length; i++) {
+			readers[i]= new Thread() {
+				@Override
+				public void run() {
+					try {
+						while (!isDone(done))
+							checkReads(document, lock);
+					} catch (Throwable e) {
+						synchronized (failure) {
+							failure[0]= e;
+						}
+					}
+				}
+			};
+			readers[i].start();
+		}
+
+		// the writer keeps the content a sequence of equal lines
+		Random random= new Random(4711);
+		try {
+			for (int i= 0; i < 2000; i++) {
+				int lines= document.getNumberOfLines() - 1;
+				int line= random.nextInt(lines);
+				int count= Math.min(random.nextInt(10), lines - line);
+				String text= createText(1 + random.nextInt(10));
+				if (i % 100 == 0) {
+					DocumentRewriteSession session= document.startRewriteSession(DocumentRewriteSessionType.UNRESTRICTED);
+					for (int j= 0; j < 50; j++)
+						document.replace(j * LINE.length(), 0, LINE);
+					document.replace(0, 50 * LINE.length(), null);
+					document.stopRewriteSession(session);
+				} else if (i % 10 == 0) {
+					document.replace(new int[] { 0, line * LINE.length() }, new int[] { 0, count * LINE.length() }, new String[] { LINE, text });
+				} else {
+					document.replace(line * LINE.length(), count * LINE.length(), text);
+				}
+			}
+		} finally {
+			synchronized (done) {
+				done[0]= true;
+			}
+			for (Thread reader : readers)
+				reader.join();
+		}
+
+		synchronized (failure) {
+			if (failure[0] != null)
+				throw failure[0];
+		}
+		checkReads(document, lock);
+	}
+
+	private static boolean isDone(boolean[] done) {
+		synchronized (done) {
+			return done[0];
+		}
+	}
+
+	private static void checkReads(IDocument document, Object lock) throws Exception {
+		// each read is consistent by itself
+		String text= document.get();
+		assertEquals(0, text.length() % LINE.length());
+		assertEquals(createText(text.length() / LINE.length()), text);
+		assertTrue(document.getNumberOfLines() > 0);
+		assertEquals("0123", document.get(0, 4));
+		assertEquals('0', document.getChar(LINE.length()));
+		assertEquals(LINE.length(), document.getLineOffset(1));
+		assertEquals(LINE.length(), document.getLineLength(0));
+		assertEquals(1, document.getLineOfOffset(LINE.length()));
+
+		// a sequence of reads is consistent while holding the lock
+		synchronized (lock) {
+			int lines= document.getNumberOfLines();
+			assertEquals(document.getLength(), document.getLineOffset(lines - 1));
+			IRegion last= document.getLineInformation(lines - 2);
+			assertEquals(document.getLength() - LINE.length(), last.getOffset());
+			assertEquals(LINE.length() - 1, last.getLength());
+			assertEquals("\n", document.getLineDelimiter(lines - 2));
+			assertEquals(document.get(), ((IDocumentExtension5) document).getSnapshot().get());
+		}
+	}
+}
@@ -57,6 +57,7 @@ import org.eclipse.core.filebuffers.LocationKind;
 
 import org.eclipse.jface.text.DocumentEvent;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
 import org.eclipse.jface.text.IDocumentListener;
 import org.eclipse.jface.text.source.IAnnotationModel;
 
@@ -89,6 +90,10 @@ public class FileStoreTextFileBuffer extends FileStoreFileBuffer implements ITex
 	 * Buffer size.
 	 */
 	private static final int BUFFER_SIZE= 8 * READER_CHUNK_SIZE;
+	/**
+	 * The file size in bytes above which the document content is kept in a piece table.
+	 */
+	private static final long LARGE_FILE_SIZE= 16 * 1024 * 1024;
 	/**
 	 * Constant for representing the error status. This is considered a value object.
 	 */
@@ -398,6 +403,10 @@ public class FileStoreTextFileBuffer extends FileStoreFileBuffer implements ITex
 		byte[] bytes;
 		int bytesLength;
 
+		// the document must not read from the file while the file is written
+		if (fDocument instanceof SynchronizableDocument)
+			((SynchronizableDocument) fDocument).releaseReadOnlyContent();
+
 		try {
 			ByteBuffer byteBuffer= encoder.encode(CharBuffer.wrap(fDocument.get()));
 			bytesLength= byteBuffer.limit();
@@ -519,6 +528,27 @@ public class FileStoreTextFileBuffer extends FileStoreFileBuffer implements ITex
 			if (encoding == null)
 				encoding= fManager.getDefaultEncoding();
 
+			/*
+			 * Large read-only files are mapped into memory and decoded lazily if possible.
+			 * Otherwise, the content of a large file is read chunk by chunk into a piece table,
+			 * so that no buffer of the size of the file has to grow or to be copied.
+			 */
+			SynchronizableDocument largeDocument= null;
+			int capacity= BUFFER_SIZE;
+			long fileSize= file.fetchInfo().getLength();
+			if (fileSize > LARGE_FILE_SIZE) {
+				if (document instanceof SynchronizableDocument) {
+					largeDocument= (SynchronizableDocument) document;
+					MappedFileTextStore mappedStore= MappedFileTextStore.create(file, encoding, hasBOM);
+					if (mappedStore != null) {
+						largeDocument.setReadOnlyContent(mappedStore, IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP);
+						return;
+					}
+				} else {
+					capacity= (int) Math.min(fileSize, Integer.MAX_VALUE - 8);
+				}
+			}
+
 			/*
 			 * XXX:
 			 * This is a workaround for a corresponding bug in Java readers and writer,
@@ -535,7 +565,12 @@ public class FileStoreTextFileBuffer extends FileStoreFileBuffer implements ITex
 			}
 
 			in= new BufferedReader(new InputStreamReader(contentStream, encoding), BUFFER_SIZE);
-			StringBuilder buffer= new StringBuilder(BUFFER_SIZE);
+			if (largeDocument != null) {
+				largeDocument.readContent(in, IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP);
+				return;
+			}
+
+			StringBuilder buffer= new StringBuilder(capacity);
 			char[] readBuffer= new char[READER_CHUNK_SIZE];
 			int n= in.read(readBuffer);
 			while (n > 0) {
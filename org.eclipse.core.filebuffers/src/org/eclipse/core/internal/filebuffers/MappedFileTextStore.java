@@ -0,0 +1,411 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.internal.filebuffers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
+import java.nio.file.StandardOpenOption;
+
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.filesystem.IFileStore;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.Platform;
+
+import org.eclipse.jface.text.ITextStore;
+
+
+/**
+ * Unmodifiable text store backed by a memory-mapped file.
+ * <p>
+ * The content is decoded lazily in windows of about {@link #WINDOW_SIZE} characters, and only a
+ * few decoded windows are cached. For single-byte charsets, character offsets are byte offsets.
+ * For UTF-8, the file is scanned once upon creation to build a sparse index which maps the first
+ * character of every window to its byte offset. Hence the heap held by this store is independent
+ * of the file size except for the index of two integers per window.
+ * </p>
+ * <p>
+ * Trying to {@link #replace} a text range or {@link #set} new content throws an
+ * <code>UnsupportedOperationException</code>; use it as unmodifiable store of a
+ * {@link org.eclipse.jface.text.CopyOnWriteTextStore}.
+ * </p>
+ * <p>
+ * <strong>Note:</strong> the mapping reflects the file's current content, and so do the documents
+ * and snapshots which read this store. Only read-only files are therefore mapped, on the
+ * assumption that they are not written while they are open; writable files are read into memory.
+ * Callers must stop using this store before they write the file. Reading a part of a mapping which
+ * is no longer backed by the file crashes the VM or throws an <code>InternalError</code>, depending
+ * on the platform, so the length of the file is checked before a window is decoded. If the file has been truncated by someone else, reads of windows
+ * that are not cached throw an <code>IllegalStateException</code>. Files are never mapped on
+ * Windows, where a mapped file can neither be truncated nor deleted.
+ * </p>
+ */
+final class MappedFileTextStore implements ITextStore {
+
+	/** The number of characters per decoded window. */
+	private static final int WINDOW_SIZE= 64 * 1024;
+	/** The number of decoded windows that are cached. */
+	private static final int CACHE_SIZE= 8;
+	/** Constant denoting UTF-8 encoding. */
+	private static final String CHARSET_UTF_8= "UTF-8"; //$NON-NLS-1$
+	/** The length of the UTF-8 byte order mark. */
+	private static final int BOM_UTF_8_LENGTH= 3;
+
+	/** The mapped file. */
+	private final File fFile;
+	/** The length of the mapped file. */
+	private final long fFileLength;
+	/** Tells whether the file has been found to be truncated. */
+	private boolean fIsTruncated;
+	/** The mapped content, starting after the byte order mark. */
+	private final ByteBuffer fBytes;
+	/** The decoder for the mapped content. */
+	private final CharsetDecoder fDecoder;
+	/** The number of characters of the content. */
+	private final int fLength;
+	/** The character offset of each window, followed by the content length. */
+	private final int[] fWindowOffsets;
+	/** The byte offset of each window, followed by the byte length of the content. */
+	private final int[] fWindowByteOffsets;
+
+	/** The indices of the cached windows, <code>-1</code> for unused slots. */
+	private final int[] fCachedIndices= new int[CACHE_SIZE];
+	/** The cached decoded windows. */
+	private final char[][] fCachedWindows= new char[CACHE_SIZE][];
+	/** The cache slot that is replaced next. */
+	private int fNextCacheSlot;
+	/** The cache slot of the last accessed window. */
+	private int fLastCacheSlot;
+
+	/**
+	 * Maps the given file if it is a read-only local file and its charset can be decoded lazily.
+	 *
+	 * @param fileStore the file store to map
+	 * @param encoding the encoding of the file
+	 * @param hasBOM <code>true</code> if the file starts with a UTF-8 byte order mark
+	 * @return the mapped text store or <code>null</code> if the file cannot be mapped
+	 */
+	static MappedFileTextStore create(IFileStore fileStore, String encoding, boolean hasBOM) {
+		if (Platform.OS_WIN32.equals(Platform.getOS()))
+			return null;
+
+		if (!fileStore.fetchInfo().getAttribute(EFS.ATTRIBUTE_READ_ONLY))
+			return null;
+
+		Charset charset;
+		try {
+			charset= Charset.forName(encoding);
+		} catch (IllegalCharsetNameException | UnsupportedCharsetException ex) {
+			return null;
+		}
+
+		boolean isUTF8= CHARSET_UTF_8.equals(charset.name());
+		if (!isUTF8 && !isSingleByte(charset))
+			return null;
+
+		try {
+			File file= fileStore.toLocalFile(EFS.NONE, null);
+			if (file == null || file.length() > Integer.MAX_VALUE)
+				return null;
+
+			ByteBuffer bytes;
+			long fileLength;
+			try (FileChannel channel= FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+				fileLength= channel.size();
+				bytes= channel.map(MapMode.READ_ONLY, 0, fileLength);
+			}
+			if (hasBOM && isUTF8) {
+				if (bytes.limit() < BOM_UTF_8_LENGTH)
+					return null;
+				bytes.position(BOM_UTF_8_LENGTH);
+				bytes= bytes.slice();
+			}
+
+			int[][] index= isUTF8 ? indexUTF8(bytes) : indexSingleByte(bytes.limit());
+			if (index == null || file.length() < fileLength)
+				return null;
+
+			return new MappedFileTextStore(file, fileLength, bytes, charset, index[0], index[1]);
+		} catch (CoreException | IOException | InternalError ex) {
+			// an InternalError is thrown if the file got truncated while being indexed
+			return null;
+		}
+	}
+
+	private static boolean isSingleByte(Charset charset) {
+		CharsetDecoder decoder= charset.newDecoder();
+		if (decoder.maxCharsPerByte() != 1f || decoder.averageCharsPerByte() != 1f)
+			return false;
+		return charset.canEncode() && charset.newEncoder().maxBytesPerChar() == 1f;
+	}
+
+	private static int[][] indexSingleByte(int length) {
+		int windows= (length + WINDOW_SIZE - 1) / WINDOW_SIZE;
+		int[] offsets= new int[windows + 1];
+		for (int i= 0; i < windows; i++)
+			offsets[i]= i * WINDOW_SIZE;
+		offsets[windows]= length;
+		return new int[][] { offsets, offsets };
+	}
+
+	/**
+	 * Scans the given UTF-8 content and computes the character and byte offsets of windows which
+	 * start at code point boundaries.
+	 *
+	 * @param bytes the content
+	 * @return the character and byte offsets, or <code>null</code> if the content is not valid
+	 *         UTF-8 or has more characters than a text store can hold
+	 */
+	private static int[][] indexUTF8(ByteBuffer bytes) {
+		int limit= bytes.limit();
+		int capacity= limit / WINDOW_SIZE + 2;
+		int[] offsets= new int[capacity];
+		int[] byteOffsets= new int[capacity];
+		int windows= 0;
+		long chars= 0;
+		long nextWindow= 0;
+		int pos= 0;
+		while (pos < limit) {
+			if (chars >= nextWindow) {
+				if (windows + 1 == offsets.length) {
+					offsets= grow(offsets);
+					byteOffsets= grow(byteOffsets);
+				}
+				offsets[windows]= (int) chars;
+				byteOffsets[windows]= pos;
+				windows++;
+				nextWindow= chars + WINDOW_SIZE;
+			}
+
+			int b= bytes.get(pos) & 0xff;
+			if (b < 0x80) {
+				pos++;
+				chars++;
+				continue;
+			}
+
+			int length;
+			int min= 0x80;
+			int max= 0xbf;
+			if (b >= 0xc2 && b <= 0xdf) {
+				length= 2;
+			} else if (b >= 0xe0 && b <= 0xef) {
+				length= 3;
+				if (b == 0xe0)
+					min= 0xa0; // overlong
+				else if (b == 0xed)
+					max= 0x9f; // surrogates
+			} else if (b >= 0xf0 && b <= 0xf4) {
+				length= 4;
+				if (b == 0xf0)
+					min= 0x90; // overlong
+				else if (b == 0xf4)
+					max= 0x8f; // beyond U+10FFFF
+			} else {
+				return null;
+			}
+
+			if (pos + length > limit)
+				return null;
+			int second= bytes.get(pos + 1) & 0xff;
+			if (second < min || second > max)
+				return null;
+			for (int i= 2; i < length; i++) {
+				if ((bytes.get(pos + i) & 0xc0) != 0x80)
+					return null;
+			}
+
+			pos += length;
+			chars += length == 4 ? 2 : 1;
+			if (chars > Integer.MAX_VALUE)
+				return null;
+		}
+
+		if (windows + 1 > offsets.length) {
+			offsets= grow(offsets);
+			byteOffsets= grow(byteOffsets);
+		}
+		offsets[windows]= (int) chars;
+		byteOffsets[windows]= limit;
+
+		int[] charIndex= new int[windows + 1];
+		int[] byteIndex= new int[windows + 1];
+		System.arraycopy(offsets, 0, charIndex, 0, windows + 1);
+		System.arraycopy(byteOffsets, 0, byteIndex, 0, windows + 1);
+		return new int[][] { charIndex, byteIndex };
+	}
+
+	private static int[] grow(int[] array) {
+		int[] grown= new int[array.length * 2];
+		System.arraycopy(array, 0, grown, 0, array.length);
+		return grown;
+	}
+
+	private MappedFileTextStore(File file, long fileLength, ByteBuffer bytes, Charset charset, int[] windowOffsets, int[] windowByteOffsets) {
+		fFile= file;
+		fFileLength= fileLength;
+		fBytes= bytes;
+		fDecoder= charset.newDecoder();
+		fDecoder.onMalformedInput(CodingErrorAction.REPLACE);
+		fDecoder.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		fWindowOffsets= windowOffsets;
+		fWindowByteOffsets= windowByteOffsets;
+		fLength= windowOffsets[windowOffsets.length - 1];
+		for (int i= 0; i < CACHE_SIZE; i++)
+			fCachedIndices[i]= -1;
+	}
+
+	@Override
+	public synchronized char get(int offset) {
+		if (offset < 0 || offset >= fLength)
+			throw new IndexOutOfBoundsException();
+
+		int index= fCachedIndices[fLastCacheSlot];
+		if (index == -1 || offset < fWindowOffsets[index] || offset >= fWindowOffsets[index + 1])
+			index= findWindow(offset);
+		return getWindow(index)[offset - fWindowOffsets[index]];
+	}
+
+	@Override
+	public synchronized String get(int offset, int length) {
+		if (offset < 0 || length < 0 || offset + length > fLength)
+			throw new IndexOutOfBoundsException();
+
+		char[] chars= new char[length];
+		int copied= 0;
+		int index= length > 0 ? findWindow(offset) : 0;
+		while (copied < length) {
+			int windowStart= fWindowOffsets[index];
+			int windowLength= fWindowOffsets[index + 1] - windowStart;
+			int from= offset + copied - windowStart;
+			int count= Math.min(length - copied, windowLength - from);
+			if (from == 0 && count == windowLength && !isCached(index))
+				decode(index, chars, copied); // don't pollute the cache with bulk reads
+			else
+				System.arraycopy(getWindow(index), from, chars, copied, count);
+			copied += count;
+			index++;
+		}
+		return new String(chars);
+	}
+
+	@Override
+	public int getLength() {
+		return fLength;
+	}
+
+	@Override
+	public void replace(int offset, int length, String text) {
+		// modification not supported
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void set(String text) {
+		// modification not supported
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Returns the index of the window containing the given offset.
+	 *
+	 * @param offset the character offset
+	 * @return the window index
+	 */
+	private int findWindow(int offset) {
+		int left= 0;
+		int right= fWindowOffsets.length - 2;
+		while (left < right) {
+			int mid= (left + right + 1) >>> 1;
+			if (fWindowOffsets[mid] <= offset)
+				left= mid;
+			else
+				right= mid - 1;
+		}
+		return left;
+	}
+
+	private boolean isCached(int index) {
+		for (int i= 0; i < CACHE_SIZE; i++) {
+			if (fCachedIndices[i] == index)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the decoded window with the given index, decoding it if it is not cached.
+	 *
+	 * @param index the window index
+	 * @return the decoded characters of the window
+	 */
+	private char[] getWindow(int index) {
+		for (int i= 0; i < CACHE_SIZE; i++) {
+			if (fCachedIndices[i] == index) {
+				fLastCacheSlot= i;
+				return fCachedWindows[i];
+			}
+		}
+
+		int slot= fNextCacheSlot;
+		fNextCacheSlot= (slot + 1) % CACHE_SIZE;
+		char[] window= fCachedWindows[slot];
+		int windowLength= fWindowOffsets[index + 1] - fWindowOffsets[index];
+		if (window == null || window.length != windowLength)
+			window= new char[windowLength];
+		decode(index, window, 0);
+		fCachedIndices[slot]= index;
+		fCachedWindows[slot]= window;
+		fLastCacheSlot= slot;
+		return window;
+	}
+
+	/**
+	 * Decodes the window with the given index into the given array.
+	 *
+	 * @param index the window index
+	 * @param dest the destination array
+	 * @param destOffset the start index in <code>dest</code>
+	 * @throws IllegalStateException if the file has been truncated
+	 */
+	private void decode(int index, char[] dest, int destOffset) {
+		if (fIsTruncated || fFile.length() < fFileLength) {
+			fIsTruncated= true;
+			throw new IllegalStateException("The mapped file has been truncated: " + fFile); //$NON-NLS-1$
+		}
+
+		ByteBuffer in= fBytes.duplicate();
+		in.limit(fWindowByteOffsets[index + 1]);
+		in.position(fWindowByteOffsets[index]);
+		CharBuffer out= CharBuffer.wrap(dest, destOffset, fWindowOffsets[index + 1] - fWindowOffsets[index]);
+		fDecoder.reset();
+		try {
+			fDecoder.decode(in, out, true);
+			fDecoder.flush(out);
+		} catch (InternalError e) {
+			// the file got truncated after the length check
+			fIsTruncated= true;
+			throw new IllegalStateException("The mapped file has been truncated: " + fFile, e); //$NON-NLS-1$
+		}
+	}
+}
@@ -89,6 +89,10 @@ public class ResourceTextFileBuffer extends ResourceFileBuffer implements ITextF
 	 * Buffer size.
 	 */
 	static final private int BUFFER_SIZE= 8 * READER_CHUNK_SIZE;
+	/**
+	 * The file size in bytes above which the document content is mapped or kept in a piece table.
+	 */
+	static final private long LARGE_FILE_SIZE= 16 * 1024 * 1024;
 	/**
 	 * Qualified name for the encoding key.
 	 */
@@ -333,6 +337,10 @@ public class ResourceTextFileBuffer extends ResourceFileBuffer implements ITextF
 
 		InputStream stream;
 
+		// the document must not read from the file while the file is written
+		if (fDocument instanceof SynchronizableDocument)
+			((SynchronizableDocument) fDocument).releaseReadOnlyContent();
+
 		try {
 			byte[] bytes;
 			ByteBuffer byteBuffer= encoder.encode(CharBuffer.wrap(fDocument.get()));
@@ -508,6 +516,27 @@ public class ResourceTextFileBuffer extends ResourceFileBuffer implements ITextF
 			if (encoding == null)
 				encoding= fManager.getDefaultEncoding();
 
+			/*
+			 * Large read-only files are mapped into memory and decoded lazily if possible.
+			 * Otherwise, the content of a large file is read chunk by chunk into a piece table,
+			 * so that no buffer of the size of the file has to grow or to be copied.
+			 */
+			SynchronizableDocument largeDocument= null;
+			int capacity= BUFFER_SIZE;
+			long fileSize= fFileStore.fetchInfo().getLength();
+			if (fileSize > LARGE_FILE_SIZE) {
+				if (document instanceof SynchronizableDocument) {
+					largeDocument= (SynchronizableDocument) document;
+					MappedFileTextStore mappedStore= MappedFileTextStore.create(fFileStore, encoding, fBOM == IContentDescription.BOM_UTF_8);
+					if (mappedStore != null) {
+						largeDocument.setReadOnlyContent(mappedStore, file.getModificationStamp());
+						return;
+					}
+				} else {
+					capacity= (int) Math.min(fileSize, Integer.MAX_VALUE - 8);
+				}
+			}
+
 			/*
 			 * XXX:
 			 * This is a workaround for a corresponding bug in Java readers and writer,
@@ -524,7 +553,12 @@ public class ResourceTextFileBuffer extends ResourceFileBuffer implements ITextF
 			}
 
 			in= new BufferedReader(new InputStreamReader(contentStream, encoding), BUFFER_SIZE);
-			StringBuilder buffer= new StringBuilder(BUFFER_SIZE);
+			if (largeDocument != null) {
+				largeDocument.readContent(in, file.getModificationStamp());
+				return;
+			}
+
+			StringBuilder buffer= new StringBuilder(capacity);
 			char[] readBuffer= new char[READER_CHUNK_SIZE];
 			int n= in.read(readBuffer);
 			while (n > 0) {
@@ -13,16 +13,23 @@
  *******************************************************************************/
 package org.eclipse.core.internal.filebuffers;
 
+import java.io.IOException;
+import java.io.Reader;
+
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.BadPartitioningException;
 import org.eclipse.jface.text.BadPositionCategoryException;
+import org.eclipse.jface.text.CopyOnWriteTextStore;
 import org.eclipse.jface.text.Document;
 import org.eclipse.jface.text.DocumentRewriteSession;
 import org.eclipse.jface.text.DocumentRewriteSessionType;
+import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.IDocumentExtension4;
 import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.ISynchronizable;
+import org.eclipse.jface.text.ITextStore;
 import org.eclipse.jface.text.ITypedRegion;
+import org.eclipse.jface.text.PieceTableTextStore;
 import org.eclipse.jface.text.Position;
 
 
@@ -31,12 +38,21 @@ import org.eclipse.jface.text.Position;
  * <p>
  * Initially no locking takes place.
  * </p>
+ * <p>
+ * Clients which must not block the thread which modifies the document, e.g. background jobs,
+ * read a {@linkplain #getSnapshot() snapshot} instead, which can be read without the lock object.
+ * </p>
  *
  * @since 3.2
  */
 public class SynchronizableDocument extends Document implements ISynchronizable {
 
+	/** The number of characters read at once by {@link #readContent(Reader, long)}. */
+	private static final int READ_CHUNK_SIZE= 8 * 1024;
+
 	private Object fLockObject;
+	/** Tells whether the content is still provided by an unmodifiable text store. */
+	private boolean fHasReadOnlyContent;
 
 	@Override
 	public synchronized void setLockObject(Object lockObject) {
@@ -48,6 +64,90 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 		return fLockObject;
 	}
 
+	/**
+	 * Sets the content of this document to the content of the given unmodifiable text store. The
+	 * content is read once into a string for the document event, after which the document only
+	 * holds on to the given store until the first modification.
+	 *
+	 * @param textStore the unmodifiable text store providing the content
+	 * @param modificationStamp the new modification stamp or
+	 *            {@link IDocumentExtension4#UNKNOWN_MODIFICATION_STAMP} to use the next one
+	 */
+	void setReadOnlyContent(ITextStore textStore, long modificationStamp) {
+		Object lockObject= getLockObject();
+		if (lockObject == null) {
+			doSetReadOnlyContent(textStore, modificationStamp);
+			return;
+		}
+		synchronized (lockObject) {
+			doSetReadOnlyContent(textStore, modificationStamp);
+		}
+	}
+
+	private void doSetReadOnlyContent(ITextStore textStore, long modificationStamp) {
+		CopyOnWriteTextStore store= new CopyOnWriteTextStore(new PieceTableTextStore());
+		store.setUnmodifiableTextStore(textStore);
+		super.set(store, modificationStamp);
+		fHasReadOnlyContent= true;
+	}
+
+	/**
+	 * Sets the content of this document to the characters read from the given reader. The
+	 * characters are appended chunk by chunk to a new {@link PieceTableTextStore}, which becomes
+	 * this document's text store, so that no buffer of the size of the content has to grow or
+	 * to be copied while the content is read.
+	 *
+	 * @param reader the reader providing the content
+	 * @param modificationStamp the new modification stamp or
+	 *            {@link IDocumentExtension4#UNKNOWN_MODIFICATION_STAMP} to use the next one
+	 * @throws IOException if reading fails
+	 */
+	void readContent(Reader reader, long modificationStamp) throws IOException {
+		PieceTableTextStore store= new PieceTableTextStore();
+		char[] chunk= new char[READ_CHUNK_SIZE];
+		int n= reader.read(chunk);
+		while (n >= 0) {
+			if (n > 0)
+				store.replace(store.getLength(), 0, new String(chunk, 0, n));
+			n= reader.read(chunk);
+		}
+
+		Object lockObject= getLockObject();
+		if (lockObject == null) {
+			super.set(store, modificationStamp);
+			fHasReadOnlyContent= false;
+			return;
+		}
+		synchronized (lockObject) {
+			super.set(store, modificationStamp);
+			fHasReadOnlyContent= false;
+		}
+	}
+
+	/**
+	 * Stops this document from reading the unmodifiable text store passed to
+	 * {@link #setReadOnlyContent(ITextStore, long)} by copying its content into the modifiable
+	 * text store. Must be called before the underlying file gets written.
+	 */
+	void releaseReadOnlyContent() {
+		Object lockObject= getLockObject();
+		if (lockObject == null) {
+			doReleaseReadOnlyContent();
+			return;
+		}
+		synchronized (lockObject) {
+			doReleaseReadOnlyContent();
+		}
+	}
+
+	private void doReleaseReadOnlyContent() {
+		if (fHasReadOnlyContent) {
+			// an empty change forces the copy-on-write store to copy the content
+			getStore().replace(0, 0, null);
+			fHasReadOnlyContent= false;
+		}
+	}
+
 	/**
 	 * {@inheritDoc}
 	 *
@@ -153,6 +253,17 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 		}
 	}
 
+	@Override
+	public IDocument getSnapshot() {
+		Object lockObject= getLockObject();
+		if (lockObject == null) {
+			return super.getSnapshot();
+		}
+		synchronized (lockObject) {
+			return super.getSnapshot();
+		}
+	}
+
 	@Override
 	public void replace(int offset, int length, String text) throws BadLocationException {
 		Object lockObject= getLockObject();
@@ -177,6 +288,18 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 		}
 	}
 
+	@Override
+	public void replace(int[] offsets, int[] lengths, String[] texts) throws BadLocationException {
+		Object lockObject= getLockObject();
+		if (lockObject == null) {
+			super.replace(offsets, lengths, texts);
+			return;
+		}
+		synchronized (lockObject) {
+			super.replace(offsets, lengths, texts);
+		}
+	}
+
 	@Override
 	public void set(String text) {
 		Object lockObject= getLockObject();
@@ -324,6 +447,17 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 		}
 	}
 
+	@Override
+	public int getNumberOfLines() {
+		Object lockObject= getLockObject();
+		if (lockObject == null) {
+			return super.getNumberOfLines();
+		}
+		synchronized (lockObject) {
+			return super.getNumberOfLines();
+		}
+	}
+
 	@Override
 	public int getLineOfOffset(int pos) throws BadLocationException {
 		Object lockObject= getLockObject();
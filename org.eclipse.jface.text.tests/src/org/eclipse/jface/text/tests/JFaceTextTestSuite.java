@@ -17,13 +17,20 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
+import org.eclipse.jface.text.tests.presentation.PresentationReconcilerTest;
 import org.eclipse.jface.text.tests.reconciler.AbstractReconcilerTest;
+import org.eclipse.jface.text.tests.rules.DefaultDamagerRepairerTest;
 import org.eclipse.jface.text.tests.rules.DefaultPartitionerTest;
 import org.eclipse.jface.text.tests.rules.DefaultPartitionerZeroLengthTest;
+import org.eclipse.jface.text.tests.rules.FastPartitionerIncrementalTest;
 import org.eclipse.jface.text.tests.rules.FastPartitionerTest;
+import org.eclipse.jface.text.tests.rules.RuleBasedScannerTest;
 import org.eclipse.jface.text.tests.rules.ScannerColumnTest;
 import org.eclipse.jface.text.tests.rules.WordRuleTest;
+import org.eclipse.jface.text.tests.source.AnnotationPainterTest;
+import org.eclipse.jface.text.tests.source.AnnotationRulerColumnTest;
 import org.eclipse.jface.text.tests.source.LineNumberRulerColumnTest;
+import org.eclipse.jface.text.tests.source.OverviewRulerTest;
 import org.eclipse.jface.text.tests.templates.persistence.TemplatePersistenceDataTest;
 
 
@@ -35,6 +42,9 @@ import org.eclipse.jface.text.tests.templates.persistence.TemplatePersistenceDat
 @RunWith(Suite.class)
 @SuiteClasses({
 		LineNumberRulerColumnTest.class,
+		AnnotationPainterTest.class,
+		OverviewRulerTest.class,
+		AnnotationRulerColumnTest.class,
 		HTML2TextReaderTest.class,
 		TextHoverPopupTest.class,
 		TextPresentationTest.class,
@@ -45,10 +55,14 @@ import org.eclipse.jface.text.tests.templates.persistence.TemplatePersistenceDat
 		DefaultPairMatcherTest2.class,
 
 		AbstractReconcilerTest.class,
+		PresentationReconcilerTest.class,
 
 		DefaultPartitionerTest.class,
 		DefaultPartitionerZeroLengthTest.class,
 		FastPartitionerTest.class,
+		FastPartitionerIncrementalTest.class,
+		RuleBasedScannerTest.class,
+		DefaultDamagerRepairerTest.class,
 		ScannerColumnTest.class,
 		WordRuleTest.class,
 
@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.text.tests.presentation;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.StyleRange;
+import org.eclipse.swt.custom.StyledText;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Shell;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.TextAttribute;
+import org.eclipse.jface.text.TextViewer;
+import org.eclipse.jface.text.presentation.PresentationReconciler;
+import org.eclipse.jface.text.rules.DefaultDamagerRepairer;
+import org.eclipse.jface.text.rules.IRule;
+import org.eclipse.jface.text.rules.NumberRule;
+import org.eclipse.jface.text.rules.RuleBasedScanner;
+import org.eclipse.jface.text.rules.Token;
+
+/**
+ * Tests that the incremental repair of a large damage results in the same presentation as
+ * repairing it at once.
+ */
+public class PresentationReconcilerTest {
+
+	private Shell fShell;
+
+	@Before
+	public void setUp() {
+		fShell= new Shell();
+	}
+
+	@After
+	public void tearDown() {
+		fShell.dispose();
+	}
+
+	@Test
+	public void testIncrementalRepair() throws Exception {
+		IDocument document= new Document(createText());
+		TextViewer expected= createViewer(new Document(document.get()), false);
+		TextViewer actual= createViewer(document, true);
+
+		// the viewport is repaired at once, the end of the document later
+		StyledText widget= actual.getTextWidget();
+		assertEquals(SWT.BOLD, getFontStyle(widget, widget.getOffsetAtLine(widget.getTopIndex()) + 5));
+		assertEquals(SWT.NORMAL, getFontStyle(widget, widget.getCharCount() - 3));
+
+		runEventLoop();
+		assertSameStyles(expected.getTextWidget(), widget);
+	}
+
+	@Test
+	public void testChangesDuringIncrementalRepair() throws Exception {
+		IDocument expectedDocument= new Document(createText());
+		IDocument document= new Document(expectedDocument.get());
+		TextViewer expected= createViewer(expectedDocument, false);
+		TextViewer actual= createViewer(document, true);
+
+		int[] offsets= { document.getLength() - 10, document.getLength() / 2, 100 };
+		for (int offset : offsets) {
+			expectedDocument.replace(offset, 5, "12 x 34\n");
+			document.replace(offset, 5, "12 x 34\n");
+			// leave some of the damage pending
+			fShell.getDisplay().readAndDispatch();
+		}
+
+		runEventLoop();
+		assertSameStyles(expected.getTextWidget(), actual.getTextWidget());
+	}
+
+	private TextViewer createViewer(IDocument document, boolean incremental) {
+		TextViewer viewer= new TextViewer(fShell, SWT.NONE);
+		viewer.getTextWidget().setSize(400, 300);
+		viewer.setDocument(document);
+
+		RuleBasedScanner scanner= new RuleBasedScanner();
+		scanner.setRules(new IRule[] { new NumberRule(new Token(new TextAttribute(null, null, SWT.BOLD))) });
+		DefaultDamagerRepairer damagerRepairer= new DefaultDamagerRepairer(scanner);
+		PresentationReconciler reconciler= new PresentationReconciler();
+		reconciler.setDamager(damagerRepairer, IDocument.DEFAULT_CONTENT_TYPE);
+		reconciler.setRepairer(damagerRepairer, IDocument.DEFAULT_CONTENT_TYPE);
+		reconciler.setIncrementalRepair(incremental);
+		reconciler.install(viewer);
+		return viewer;
+	}
+
+	private void runEventLoop() {
+		Display display= fShell.getDisplay();
+		long end= System.currentTimeMillis() + 10000;
+		while (display.readAndDispatch() && System.currentTimeMillis() < end) {
+			// repair the pending damage
+		}
+	}
+
+	private static void assertSameStyles(StyledText expected, StyledText actual) {
+		assertEquals(expected.getCharCount(), actual.getCharCount());
+		for (int offset= 0; offset < expected.getCharCount(); offset++)
+			assertEquals("offset " + offset, getFontStyle(expected, offset), getFontStyle(actual, offset));
+	}
+
+	private static int getFontStyle(StyledText widget, int offset) {
+		StyleRange range= widget.getStyleRangeAtOffset(offset);
+		return range == null ? SWT.NORMAL : range.fontStyle;
+	}
+
+	private static String createText() {
+		StringBuilder text= new StringBuilder();
+		for (int i= 0; text.length() < 200000; i++)
+			text.append("line ").append(i).append(" with the number ").append(i * 7).append('\n');
+		return text.toString();
+	}
+}
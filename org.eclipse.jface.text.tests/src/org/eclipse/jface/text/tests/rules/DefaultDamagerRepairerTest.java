@@ -0,0 +1,185 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.text.tests.rules;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.StyleRange;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.Region;
+import org.eclipse.jface.text.TextAttribute;
+import org.eclipse.jface.text.TextPresentation;
+import org.eclipse.jface.text.TypedRegion;
+import org.eclipse.jface.text.rules.DefaultDamagerRepairer;
+import org.eclipse.jface.text.rules.EndOfLineRule;
+import org.eclipse.jface.text.rules.IRule;
+import org.eclipse.jface.text.rules.IWhitespaceDetector;
+import org.eclipse.jface.text.rules.IWordDetector;
+import org.eclipse.jface.text.rules.MultiLineRule;
+import org.eclipse.jface.text.rules.NumberRule;
+import org.eclipse.jface.text.rules.RuleBasedScanner;
+import org.eclipse.jface.text.rules.SingleLineRule;
+import org.eclipse.jface.text.rules.Token;
+import org.eclipse.jface.text.rules.WhitespaceRule;
+import org.eclipse.jface.text.rules.WordRule;
+
+/**
+ * Tests that the presentation created with the line cache is the same as without it.
+ */
+public class DefaultDamagerRepairerTest {
+
+	private static final String[] WORDS= { "if", "while", "return", "foo", "x1", " ", "  ", "\t", "\n", "\r\n", "0", "42", "\"", "\"abc\"", "//", "/", "(", ")", ";" };
+
+	/** Counts how often the scanner is set to a range */
+	private static class CountingScanner extends RuleBasedScanner {
+		int fRanges;
+
+		@Override
+		public void setRange(IDocument document, int offset, int length) {
+			fRanges++;
+			super.setRange(document, offset, length);
+		}
+
+		void addFirstRule(IRule rule) {
+			IRule[] rules= new IRule[fRules.length + 1];
+			rules[0]= rule;
+			System.arraycopy(fRules, 0, rules, 1, fRules.length);
+			setRules(rules);
+		}
+	}
+
+	@Test
+	public void testSamePresentation() throws Exception {
+		Random random= new Random(4711);
+		IDocument document= new Document(createText(random, 2000));
+		DefaultDamagerRepairer expected= createDamagerRepairer(new CountingScanner());
+		DefaultDamagerRepairer actual= createDamagerRepairer(new CountingScanner());
+		actual.setLineCacheSize(100);
+		expected.setDocument(document);
+		actual.setDocument(document);
+
+		for (int i= 0; i < 200; i++) {
+			int length= document.getLength();
+			int offset= random.nextInt(length + 1);
+			int replaced= Math.min(random.nextInt(10), length - offset);
+			document.replace(offset, replaced, createText(random, random.nextInt(20)));
+
+			length= document.getLength();
+			checkSamePresentation(expected, actual, 0, length);
+			offset= random.nextInt(length + 1);
+			checkSamePresentation(expected, actual, offset, random.nextInt(length - offset + 1));
+		}
+	}
+
+	@Test
+	public void testCachedLinesAreNotScanned() throws Exception {
+		IDocument document= new Document("if (x1)\n\treturn 42;\n// done\n");
+		CountingScanner scanner= new CountingScanner();
+		DefaultDamagerRepairer damagerRepairer= createDamagerRepairer(scanner);
+		damagerRepairer.setLineCacheSize(10);
+		damagerRepairer.setDocument(document);
+
+		createPresentation(damagerRepairer, 0, document.getLength());
+		assertEquals(3, scanner.fRanges);
+		createPresentation(damagerRepairer, 0, document.getLength());
+		assertEquals(3, scanner.fRanges);
+
+		document.replace(9, 6, "while");
+		createPresentation(damagerRepairer, 0, document.getLength());
+		assertEquals(4, scanner.fRanges);
+	}
+
+	@Test
+	public void testMultiLineRulesAreNotCached() throws Exception {
+		IDocument document= new Document("x1 /* if\nwhile */ 42\n/* 42 */\n");
+		CountingScanner expectedScanner= new CountingScanner();
+		CountingScanner actualScanner= new CountingScanner();
+		DefaultDamagerRepairer expected= createDamagerRepairer(expectedScanner);
+		DefaultDamagerRepairer actual= createDamagerRepairer(actualScanner);
+		IRule commentRule= new MultiLineRule("/*", "*/", new Token(new TextAttribute(null, null, SWT.ITALIC | TextAttribute.UNDERLINE)));
+		expectedScanner.addFirstRule(commentRule);
+		actualScanner.addFirstRule(commentRule);
+		actual.setLineCacheSize(10);
+		expected.setDocument(document);
+		actual.setDocument(document);
+
+		checkSamePresentation(expected, actual, 0, document.getLength());
+		assertEquals(1, actualScanner.fRanges);
+		document.replace(3, 2, "");
+		checkSamePresentation(expected, actual, 0, document.getLength());
+	}
+
+	private static void checkSamePresentation(DefaultDamagerRepairer expected, DefaultDamagerRepairer actual, int offset, int length) {
+		assertEquals(createPresentation(expected, offset, length), createPresentation(actual, offset, length));
+	}
+
+	private static List<String> createPresentation(DefaultDamagerRepairer damagerRepairer, int offset, int length) {
+		TextPresentation presentation= new TextPresentation(new Region(offset, length), 100);
+		damagerRepairer.createPresentation(presentation, new TypedRegion(offset, length, IDocument.DEFAULT_CONTENT_TYPE));
+		List<String> ranges= new ArrayList<>();
+		for (Iterator<StyleRange> e= presentation.getAllStyleRangeIterator(); e.hasNext();) {
+			StyleRange range= e.next();
+			ranges.add(range.start + ":" + range.length + ":" + range.fontStyle + ":" + range.underline);
+		}
+		return ranges;
+	}
+
+	private static DefaultDamagerRepairer createDamagerRepairer(RuleBasedScanner scanner) {
+		WordRule wordRule= new WordRule(new IWordDetector() {
+			@Override
+			public boolean isWordStart(char c) {
+				return Character.isJavaIdentifierStart(c);
+			}
+
+			@Override
+			public boolean isWordPart(char c) {
+				return Character.isJavaIdentifierPart(c);
+			}
+		});
+		Token keyword= new Token(new TextAttribute(null, null, SWT.BOLD));
+		wordRule.addWord("if", keyword);
+		wordRule.addWord("while", keyword);
+		wordRule.addWord("return", keyword);
+		scanner.setRules(new IRule[] {
+				new EndOfLineRule("//", new Token(new TextAttribute(null, null, TextAttribute.UNDERLINE))),
+				new SingleLineRule("\"", "\"", new Token(new TextAttribute(null, null, SWT.ITALIC))),
+				new WhitespaceRule(new IWhitespaceDetector() {
+					@Override
+					public boolean isWhitespace(char c) {
+						return Character.isWhitespace(c);
+					}
+				}),
+				new NumberRule(new Token(new TextAttribute(null, null, SWT.BOLD | SWT.ITALIC))),
+				wordRule,
+		});
+		return new DefaultDamagerRepairer(scanner);
+	}
+
+	private static String createText(Random random, int words) {
+		StringBuilder text= new StringBuilder();
+		for (int i= 0; i < words; i++)
+			text.append(WORDS[random.nextInt(WORDS.length)]);
+		return text.toString();
+	}
+}
@@ -0,0 +1,383 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.text.tests.rules;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.DocumentRewriteSession;
+import org.eclipse.jface.text.DocumentRewriteSessionType;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
+import org.eclipse.jface.text.ISynchronizable;
+import org.eclipse.jface.text.ITypedRegion;
+import org.eclipse.jface.text.Position;
+import org.eclipse.jface.text.TypedPosition;
+import org.eclipse.jface.text.rules.EndOfLineRule;
+import org.eclipse.jface.text.rules.FastPartitioner;
+import org.eclipse.jface.text.rules.IPartitionTokenScanner;
+import org.eclipse.jface.text.rules.IPredicateRule;
+import org.eclipse.jface.text.rules.IToken;
+import org.eclipse.jface.text.rules.MultiLineRule;
+import org.eclipse.jface.text.rules.RuleBasedPartitionScanner;
+import org.eclipse.jface.text.rules.SingleLineRule;
+import org.eclipse.jface.text.rules.Token;
+
+/**
+ * Tests that the lazily and incrementally computed partitioning of a large document is the same
+ * as the partitioning computed from scratch.
+ */
+public class FastPartitionerIncrementalTest {
+
+	private static final String COMMENT= "comment";
+	private static final String STRING= "string";
+	private static final String LINE_COMMENT= "line_comment";
+
+	/**
+	 * A document which is only modified while holding its lock object.
+	 */
+	private static class LockedDocument extends Document implements ISynchronizable {
+
+		private final Object fLockObject= new Object();
+
+		public LockedDocument(String text) {
+			super(text);
+		}
+
+		@Override
+		public void setLockObject(Object lockObject) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Object getLockObject() {
+			return fLockObject;
+		}
+
+		@Override
+		public void replace(int offset, int length, String text) throws BadLocationException {
+			synchronized (fLockObject) {
+				super.replace(offset, length, text);
+			}
+		}
+	}
+
+	private static final String[] TEXTS= { "a", "/*", "*/", "\"", "//", "\n", "\r\n", "x\ny", "/* c */", "" };
+
+	private Random fRandom= new Random(4711);
+
+	/** The number of characters returned by the scanners since the last reset */
+	private int fScannedLength;
+
+	private IDocument fDocument;
+	private FastPartitioner fPartitioner;
+
+	@Before
+	public void setUp() {
+		fDocument= new Document(createText(200000, true));
+		fPartitioner= createPartitioner();
+		fDocument.setDocumentPartitioner(fPartitioner);
+		fPartitioner.connect(fDocument);
+	}
+
+	@Test
+	public void testPartitionsOnRequest() {
+		assertTrue(fScannedLength < fDocument.getLength() / 2);
+
+		int offset= fDocument.getLength() - 1000;
+		fScannedLength= 0;
+		fPartitioner.computePartitioning(offset, 100);
+		assertTrue(fScannedLength > 0);
+
+		fScannedLength= 0;
+		fPartitioner.getPartition(offset + 50);
+		fPartitioner.computePartitioning(offset - 1000, 1100);
+		assertEquals(0, fScannedLength);
+		checkPartitioning();
+	}
+
+	@Test
+	public void testRandomEdits() throws Exception {
+		for (int i= 0; i < 500; i++) {
+			int length= fDocument.getLength();
+			int offset= fRandom.nextInt(length + 1);
+			int replaced= Math.min(fRandom.nextInt(10), length - offset);
+			fDocument.replace(offset, replaced, TEXTS[fRandom.nextInt(TEXTS.length)]);
+
+			switch (fRandom.nextInt(10)) {
+				case 0:
+					checkPartitioning();
+					break;
+				case 1:
+					// partitions the document up to the end
+					fPartitioner.getPartition(fDocument.getLength());
+					break;
+				default:
+					offset= fRandom.nextInt(fDocument.getLength() + 1);
+					checkPartition(offset);
+					break;
+			}
+		}
+		checkPartitioning();
+	}
+
+	@Test
+	public void testPartitionsWholeDocumentByDefault() throws Exception {
+		fPartitioner.disconnect();
+		fPartitioner= createPartitioner();
+		fPartitioner.setLazyPartitioning(false);
+		fScannedLength= 0;
+		fDocument.setDocumentPartitioner(fPartitioner);
+		fPartitioner.connect(fDocument);
+		assertEquals(fDocument.getLength(), fScannedLength);
+
+		fDocument.replace(fDocument.getLength(), 0, "/* c */");
+		Position[] positions= fDocument.getPositions(fPartitioner.getManagingPositionCategories()[0]);
+		Position last= positions[positions.length - 1];
+		assertEquals(fDocument.getLength(), last.getOffset() + last.getLength());
+		assertEquals(COMMENT, ((TypedPosition) last).getType());
+		checkPartitioning();
+
+		fPartitioner.disconnect();
+		fPartitioner= createPartitioner();
+		fPartitioner.setLazyPartitioning(false);
+		fPartitioner.setBackgroundInitialization(true);
+		fDocument.setDocumentPartitioner(fPartitioner);
+		fPartitioner.connect(fDocument, true);
+		fDocument.replace(100, 0, "/* c */");
+		positions= fDocument.getPositions(fPartitioner.getManagingPositionCategories()[0]);
+		last= positions[positions.length - 1];
+		assertEquals(fDocument.getLength(), last.getOffset() + last.getLength());
+		checkPartitioning();
+	}
+
+	@Test
+	public void testRescanStopsAtCheckpoint() throws Exception {
+		fDocument.set(createText(200000, false));
+		fPartitioner.getPartition(fDocument.getLength());
+
+		fScannedLength= 0;
+		fDocument.replace(100, 0, "x");
+		assertTrue(fScannedLength < 10000);
+		fScannedLength= 0;
+		fDocument.replace(100, 0, "/* c */");
+		assertTrue(fScannedLength < 10000);
+		checkPartition(103);
+		checkPartitioning();
+	}
+
+	@Test
+	public void testChangeBehindPartitionedEnd() throws Exception {
+		int offset= fDocument.getLength() - 100;
+		fScannedLength= 0;
+		fDocument.replace(offset, 0, "/* c */");
+		assertEquals(0, fScannedLength);
+		checkPartition(offset + 3);
+		checkPartitioning();
+	}
+
+	@Test
+	public void testChangeBehindTruncatedPartition() throws Exception {
+		fPartitioner.disconnect();
+		fDocument= new Document(" \"bx\\a\"");
+		fPartitioner= createPartitioner();
+		fDocument.setDocumentPartitioner(fPartitioner);
+		fPartitioner.connect(fDocument);
+
+		fDocument.replace(2, 5, "b");
+		fDocument.replace(3, 0, "b\"");
+
+		ITypedRegion partition= fPartitioner.getPartition(4);
+		assertEquals(STRING, partition.getType());
+		assertEquals(1, partition.getOffset());
+		assertEquals(4, partition.getLength());
+		checkPartitioning();
+	}
+
+	@Test
+	public void testBackgroundInitialization() throws Exception {
+		fPartitioner.disconnect();
+		fPartitioner= createPartitioner();
+		fPartitioner.setBackgroundInitialization(true);
+		fDocument.setDocumentPartitioner(fPartitioner);
+		fPartitioner.connect(fDocument, true);
+
+		checkPartition(100);
+		checkPartition(fDocument.getLength() - 100);
+		checkPartitioning();
+	}
+
+	@Test
+	public void testChangeDuringBackgroundInitialization() throws Exception {
+		for (int i= 0; i < 20; i++) {
+			fPartitioner.disconnect();
+			fPartitioner= createPartitioner();
+			fPartitioner.setBackgroundInitialization(true);
+			fDocument.setDocumentPartitioner(fPartitioner);
+			fPartitioner.connect(fDocument, true);
+
+			if (i % 2 == 0)
+				checkPartition(fRandom.nextInt(fDocument.getLength()));
+			int offset= fRandom.nextInt(fDocument.getLength());
+			fDocument.replace(offset, 0, TEXTS[fRandom.nextInt(TEXTS.length)]);
+			checkPartitioning();
+		}
+	}
+
+	@Test
+	public void testBackgroundInitializationWithLockObject() throws Exception {
+		fPartitioner.disconnect();
+		LockedDocument document= new LockedDocument(fDocument.get());
+		fDocument= document;
+		fPartitioner= createPartitioner();
+		fPartitioner.setBackgroundInitialization(true);
+		synchronized (document.getLockObject()) {
+			fDocument.setDocumentPartitioner(fPartitioner);
+			fPartitioner.connect(fDocument, true);
+			// the job cannot take the snapshot while the lock is held, hence must not be waited for
+			checkPartition(fDocument.getLength() - 100);
+		}
+		checkPartitioning();
+
+		fPartitioner.disconnect();
+		fPartitioner= createPartitioner();
+		fPartitioner.setBackgroundInitialization(true);
+		fDocument.setDocumentPartitioner(fPartitioner);
+		fPartitioner.connect(fDocument, true);
+		checkPartition(fDocument.getLength() - 100);
+		fDocument.replace(100, 0, "/* c */");
+		checkPartitioning();
+	}
+
+	@Test
+	public void testRewriteSessionDuringBackgroundInitialization() throws Exception {
+		fPartitioner.disconnect();
+		fPartitioner= createPartitioner();
+		fPartitioner.setBackgroundInitialization(true);
+		fDocument.setDocumentPartitioner(fPartitioner);
+		fPartitioner.connect(fDocument, true);
+
+		IDocumentExtension4 extension= (IDocumentExtension4) fDocument;
+		DocumentRewriteSession session= extension.startRewriteSession(DocumentRewriteSessionType.SEQUENTIAL);
+		for (int i= 0; i < 20; i++)
+			fDocument.replace(fRandom.nextInt(fDocument.getLength()), 0, TEXTS[fRandom.nextInt(TEXTS.length)]);
+		extension.stopRewriteSession(session);
+		checkPartitioning();
+
+		// the document's queries flush the partitioner's session
+		session= extension.startRewriteSession(DocumentRewriteSessionType.SEQUENTIAL);
+		fDocument.replace(fDocument.getLength() - 100, 0, "/* c */");
+		assertRegionEquals(createReference().getPartition(fDocument.getLength() - 97), fDocument.getPartition(fDocument.getLength() - 97));
+		fDocument.replace(100, 0, "\"");
+		extension.stopRewriteSession(session);
+		checkPartitioning();
+	}
+
+	@Test
+	public void testConnectDuringRewriteSession() throws Exception {
+		fPartitioner.disconnect();
+		IDocumentExtension4 extension= (IDocumentExtension4) fDocument;
+		DocumentRewriteSession session= extension.startRewriteSession(DocumentRewriteSessionType.SEQUENTIAL);
+		fPartitioner= createPartitioner();
+		fPartitioner.setBackgroundInitialization(true);
+		fDocument.setDocumentPartitioner(fPartitioner);
+		fPartitioner.connect(fDocument, true);
+		for (int i= 0; i < 20; i++)
+			fDocument.replace(fRandom.nextInt(fDocument.getLength()), 0, TEXTS[fRandom.nextInt(TEXTS.length)]);
+		extension.stopRewriteSession(session);
+		checkPartitioning();
+	}
+
+	private FastPartitioner createPartitioner() {
+		IPartitionTokenScanner scanner= new RuleBasedPartitionScanner() {
+			{
+				IPredicateRule[] rules= new IPredicateRule[] {
+						new EndOfLineRule("//", new Token(LINE_COMMENT)),
+						new SingleLineRule("\"", "\"", new Token(STRING), '\\'),
+						new MultiLineRule("/*", "*/", new Token(COMMENT), (char) 0, true) };
+				setPredicateRules(rules);
+			}
+
+			@Override
+			public IToken nextToken() {
+				IToken token= super.nextToken();
+				fScannedLength+= getTokenLength();
+				return token;
+			}
+		};
+		FastPartitioner partitioner= new FastPartitioner(scanner, new String[] { IDocument.DEFAULT_CONTENT_TYPE, COMMENT, STRING, LINE_COMMENT });
+		partitioner.setLazyPartitioning(true);
+		return partitioner;
+	}
+
+	private String createText(int length, boolean partitions) {
+		StringBuilder text= new StringBuilder(length + 100);
+		while (text.length() < length) {
+			text.append("line ").append(text.length());
+			if (partitions) {
+				switch (fRandom.nextInt(20)) {
+					case 0:
+						text.append(" /* comment\n comment */");
+						break;
+					case 1:
+						text.append(" \"string\"");
+						break;
+					case 2:
+						text.append(" // comment");
+						break;
+					default:
+						break;
+				}
+			}
+			text.append('\n');
+		}
+		return text.toString();
+	}
+
+	private IDocument createReference() {
+		IDocument document= new Document(fDocument.get());
+		FastPartitioner partitioner= createPartitioner();
+		partitioner.setLazyPartitioning(false);
+		document.setDocumentPartitioner(partitioner);
+		partitioner.connect(document);
+		return document;
+	}
+
+	private void checkPartition(int offset) {
+		IDocument reference= createReference();
+		assertRegionEquals(reference.getDocumentPartitioner().getPartition(offset), fPartitioner.getPartition(offset));
+	}
+
+	private void checkPartitioning() {
+		IDocument reference= createReference();
+		ITypedRegion[] expected= reference.getDocumentPartitioner().computePartitioning(0, reference.getLength());
+		ITypedRegion[] actual= fPartitioner.computePartitioning(0, fDocument.getLength());
+		assertEquals(expected.length, actual.length);
+		for (int i= 0; i < expected.length; i++)
+			assertRegionEquals(expected[i], actual[i]);
+	}
+
+	private static void assertRegionEquals(ITypedRegion expected, ITypedRegion actual) {
+		assertEquals(expected.getOffset(), actual.getOffset());
+		assertEquals(expected.getLength(), actual.getLength());
+		assertEquals(expected.getType(), actual.getType());
+	}
+}
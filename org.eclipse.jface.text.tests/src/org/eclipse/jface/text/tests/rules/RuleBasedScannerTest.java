@@ -0,0 +1,259 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.text.tests.rules;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.rules.BufferedRuleBasedScanner;
+import org.eclipse.jface.text.rules.EndOfLineRule;
+import org.eclipse.jface.text.rules.ICharacterScanner;
+import org.eclipse.jface.text.rules.IRule;
+import org.eclipse.jface.text.rules.IToken;
+import org.eclipse.jface.text.rules.IWhitespaceDetector;
+import org.eclipse.jface.text.rules.IWordDetector;
+import org.eclipse.jface.text.rules.MultiLineRule;
+import org.eclipse.jface.text.rules.NumberRule;
+import org.eclipse.jface.text.rules.PatternRule;
+import org.eclipse.jface.text.rules.RuleBasedScanner;
+import org.eclipse.jface.text.rules.SingleLineRule;
+import org.eclipse.jface.text.rules.Token;
+import org.eclipse.jface.text.rules.WhitespaceRule;
+import org.eclipse.jface.text.rules.WordPatternRule;
+import org.eclipse.jface.text.rules.WordRule;
+
+/**
+ * Tests that the rule based scanner returns the same tokens when it only evaluates the rules
+ * which may match at the next character, and that the buffered scanner returns the same tokens
+ * as the unbuffered one.
+ */
+public class RuleBasedScannerTest {
+
+	private static final String[] WORDS= { "if", "else", "while", "return", "foo", "bar", "x1", " ", "  ", "\t", "\n", "\r\n", "0", "42", "3.14", "\"", "'", "/*", "*/", "//", "#", "#define", "$", "@", "ä", "中", " ", "\\", "%{", "}%", "{", "}", ";", "(", ")" };
+
+	private static final IToken KEYWORD= new Token("keyword");
+	private static final IToken WORD= new Token("word");
+	private static final IToken NUMBER= new Token("number");
+	private static final IToken STRING= new Token("string");
+	private static final IToken CHARACTER= new Token("character");
+	private static final IToken COMMENT= new Token("comment");
+	private static final IToken LINE_COMMENT= new Token("line comment");
+	private static final IToken DIRECTIVE= new Token("directive");
+	private static final IToken VARIABLE= new Token("variable");
+	private static final IToken BLOCK= new Token("block");
+	private static final IToken OTHER= new Token("other");
+
+	/** A rule which is not one of the standard rules */
+	private static class AnnotationRule implements IRule {
+		@Override
+		public IToken evaluate(ICharacterScanner scanner) {
+			int c= scanner.read();
+			if (c == '@' || c == 'ä') {
+				do {
+					c= scanner.read();
+				} while (Character.isLetter((char) c));
+				scanner.unread();
+				return BLOCK;
+			}
+			scanner.unread();
+			return Token.UNDEFINED;
+		}
+	}
+
+	/** Hides the class of a rule from the scanner */
+	private static class DelegatingRule implements IRule {
+		private final IRule fRule;
+
+		DelegatingRule(IRule rule) {
+			fRule= rule;
+		}
+
+		@Override
+		public IToken evaluate(ICharacterScanner scanner) {
+			return fRule.evaluate(scanner);
+		}
+	}
+
+	@Test
+	public void testSameTokens() throws Exception {
+		Random random= new Random(4711);
+		for (int run= 0; run < 50; run++) {
+			StringBuilder text= new StringBuilder();
+			int words= random.nextInt(500);
+			for (int i= 0; i < words; i++)
+				text.append(WORDS[random.nextInt(WORDS.length)]);
+			IDocument document= new Document(text.toString());
+			checkSameTokens(document, 0, document.getLength());
+			int offset= random.nextInt(document.getLength() + 1);
+			checkSameTokens(document, offset, random.nextInt(document.getLength() - offset + 1));
+		}
+	}
+
+	@Test
+	public void testBufferedScanner() throws Exception {
+		Random random= new Random(42);
+		StringBuilder text= new StringBuilder();
+		while (text.length() < 40000)
+			text.append(WORDS[random.nextInt(WORDS.length)]);
+		IDocument document= new Document(text.toString());
+		document.replace(document.getLength() / 3, 0, "/* inserted */");
+		for (int run= 0; run < 50; run++) {
+			int offset= random.nextInt(document.getLength() + 1);
+			int length= random.nextInt(document.getLength() - offset + 1);
+			int bufferSize= 1 + random.nextInt(1000);
+			checkSameTokens(new BufferedRuleBasedScanner(bufferSize), document, offset, length);
+		}
+	}
+
+	@Test
+	public void testRulesReplacedBySubclass() throws Exception {
+		RuleBasedScanner scanner= new RuleBasedScanner() {
+			{
+				fRules= new IRule[] { new NumberRule(NUMBER) };
+			}
+		};
+		IDocument document= new Document("if 1");
+		scanner.setRange(document, 0, document.getLength());
+		assertSame(Token.UNDEFINED.getData(), scanner.nextToken().getData());
+		scanner.setRules(new IRule[] { new SingleLineRule("i", "f", KEYWORD) });
+		scanner.setRange(document, 0, document.getLength());
+		assertSame(KEYWORD, scanner.nextToken());
+	}
+
+	@Test
+	public void testRuleReplacedInArray() throws Exception {
+		class ReplacingScanner extends RuleBasedScanner {
+			void replaceRules() {
+				fRules[0]= new SingleLineRule("1", "1", STRING);
+				fRules[1]= new NumberRule(NUMBER);
+			}
+		}
+		ReplacingScanner scanner= new ReplacingScanner();
+		scanner.setRules(new IRule[] { new NumberRule(NUMBER), new SingleLineRule("i", "f", KEYWORD) });
+		IDocument document= new Document("if 11");
+		scanner.setRange(document, 0, document.getLength());
+		assertSame(KEYWORD, scanner.nextToken());
+
+		scanner.replaceRules();
+		scanner.setRange(document, 0, document.getLength());
+		assertSame(Token.UNDEFINED.getData(), scanner.nextToken().getData());
+		scanner.setRange(document, 3, 2);
+		assertSame(STRING, scanner.nextToken());
+	}
+
+	@Test
+	public void testDetectorWithChangingAnswers() throws Exception {
+		boolean[] letters= new boolean[1];
+		IWordDetector detector= new IWordDetector() {
+			@Override
+			public boolean isWordStart(char c) {
+				return letters[0] ? Character.isLetter(c) : Character.isDigit(c);
+			}
+
+			@Override
+			public boolean isWordPart(char c) {
+				return isWordStart(c);
+			}
+		};
+		RuleBasedScanner scanner= new RuleBasedScanner();
+		scanner.setRules(new IRule[] { new WordRule(detector, WORD) });
+		IDocument document= new Document("a1");
+
+		scanner.setRange(document, 0, document.getLength());
+		assertSame(Token.UNDEFINED.getData(), scanner.nextToken().getData());
+		letters[0]= true;
+		scanner.setRange(document, 0, document.getLength());
+		assertSame(WORD, scanner.nextToken());
+		assertEquals(1, scanner.getTokenLength());
+	}
+
+	private static void checkSameTokens(IDocument document, int offset, int length) {
+		checkSameTokens(new RuleBasedScanner(), document, offset, length);
+	}
+
+	private static void checkSameTokens(RuleBasedScanner actual, IDocument document, int offset, int length) {
+		RuleBasedScanner expected= new RuleBasedScanner();
+		IRule[] rules= createRules();
+		IRule[] delegatingRules= new IRule[rules.length];
+		for (int i= 0; i < rules.length; i++)
+			delegatingRules[i]= new DelegatingRule(rules[i]);
+		expected.setRules(delegatingRules);
+		actual.setRules(rules);
+		expected.setDefaultReturnToken(OTHER);
+		actual.setDefaultReturnToken(OTHER);
+		expected.setRange(document, offset, length);
+		actual.setRange(document, offset, length);
+
+		IToken token;
+		do {
+			token= expected.nextToken();
+			assertSame(token, actual.nextToken());
+			assertEquals(expected.getTokenOffset(), actual.getTokenOffset());
+			assertEquals(expected.getTokenLength(), actual.getTokenLength());
+		} while (!token.isEOF());
+	}
+
+	private static IRule[] createRules() {
+		IWordDetector wordDetector= new IWordDetector() {
+			@Override
+			public boolean isWordStart(char c) {
+				return Character.isJavaIdentifierStart(c);
+			}
+
+			@Override
+			public boolean isWordPart(char c) {
+				return Character.isJavaIdentifierPart(c);
+			}
+		};
+		WordRule wordRule= new WordRule(wordDetector, WORD);
+		wordRule.addWord("if", KEYWORD);
+		wordRule.addWord("else", KEYWORD);
+		wordRule.addWord("while", KEYWORD);
+		wordRule.addWord("return", KEYWORD);
+
+		WordRule columnWordRule= new WordRule(wordDetector, DIRECTIVE);
+		columnWordRule.setColumnConstraint(0);
+
+		PatternRule directiveRule= new EndOfLineRule("#", DIRECTIVE);
+		directiveRule.setColumnConstraint(0);
+
+		NumberRule numberRule= new NumberRule(NUMBER);
+
+		return new IRule[] {
+				new WhitespaceRule(new IWhitespaceDetector() {
+					@Override
+					public boolean isWhitespace(char c) {
+						return Character.isWhitespace(c);
+					}
+				}),
+				new EndOfLineRule("//", LINE_COMMENT),
+				new MultiLineRule("/*", "*/", COMMENT, (char) 0, true),
+				new SingleLineRule("\"", "\"", STRING, '\\'),
+				new SingleLineRule("'", "'", CHARACTER, '\\', true),
+				directiveRule,
+				new PatternRule("%{", "}%", BLOCK, (char) 0, false),
+				new WordPatternRule(wordDetector, "$", null, VARIABLE),
+				new AnnotationRule(),
+				columnWordRule,
+				numberRule,
+				wordRule,
+		};
+	}
+}
@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.text.tests.source;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.StyledText;
+import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Shell;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.Position;
+import org.eclipse.jface.text.source.Annotation;
+import org.eclipse.jface.text.source.AnnotationModel;
+import org.eclipse.jface.text.source.AnnotationPainter;
+import org.eclipse.jface.text.source.AnnotationPainter.IDrawingStrategy;
+import org.eclipse.jface.text.source.IAnnotationAccess;
+import org.eclipse.jface.text.source.SourceViewer;
+
+/**
+ * Tests that the {@link AnnotationPainter} updates its decorations incrementally.
+ */
+public class AnnotationPainterTest {
+
+	private static final String TYPE= "org.eclipse.jface.text.tests.annotation";
+	private static final Object STRATEGY_ID= new Object();
+
+	private static class RecordingStrategy implements IDrawingStrategy {
+
+		final List<Annotation> fCleared= new ArrayList<>();
+		final List<Annotation> fDrawn= new ArrayList<>();
+
+		@Override
+		public void draw(Annotation annotation, GC gc, StyledText textWidget, int offset, int length, Color color) {
+			if (gc == null)
+				fCleared.add(annotation);
+			else
+				fDrawn.add(annotation);
+		}
+	}
+
+	private Shell fShell;
+	private SourceViewer fViewer;
+	private AnnotationModel fModel;
+	private AnnotationPainter fPainter;
+	private RecordingStrategy fStrategy;
+
+	@Before
+	public void setUp() {
+		fShell= new Shell();
+		fShell.setSize(500, 300);
+		fViewer= new SourceViewer(fShell, null, SWT.NONE);
+		fViewer.getTextWidget().setSize(500, 300);
+
+		StringBuilder text= new StringBuilder();
+		for (int i= 0; i < 1000; i++)
+			text.append("line ").append(i).append('\n');
+		Document document= new Document(text.toString());
+		fModel= new AnnotationModel(true);
+		fViewer.setDocument(document, fModel);
+
+		IAnnotationAccess access= new IAnnotationAccess() {
+			@Override
+			public Object getType(Annotation annotation) {
+				return annotation.getType();
+			}
+
+			@Override
+			public boolean isMultiLine(Annotation annotation) {
+				return false;
+			}
+
+			@Override
+			public boolean isTemporary(Annotation annotation) {
+				return true;
+			}
+		};
+		fStrategy= new RecordingStrategy();
+		fPainter= new AnnotationPainter(fViewer, access);
+		fPainter.addDrawingStrategy(STRATEGY_ID, fStrategy);
+		fPainter.addAnnotationType(TYPE, STRATEGY_ID);
+		fPainter.setAnnotationTypeColor(TYPE, fShell.getDisplay().getSystemColor(SWT.COLOR_RED));
+		fViewer.addPainter(fPainter);
+		fShell.open();
+	}
+
+	@After
+	public void tearDown() {
+		fShell.dispose();
+	}
+
+	private void runEventLoop() {
+		Display display= fShell.getDisplay();
+		for (int i= 0; i < 10; i++) {
+			while (display.readAndDispatch()) {
+				// process pending events
+			}
+		}
+	}
+
+	private Annotation addAnnotation(int line) throws Exception {
+		Annotation annotation= new Annotation(TYPE, false, null);
+		fModel.addAnnotation(annotation, new Position(fViewer.getDocument().getLineOffset(line), 4));
+		return annotation;
+	}
+
+	@Test
+	public void testRemovalOnlyClearsRemovedDecoration() throws Exception {
+		List<Annotation> annotations= new ArrayList<>();
+		for (int line= 0; line < 1000; line+= 2)
+			annotations.add(addAnnotation(line));
+		runEventLoop();
+
+		fStrategy.fCleared.clear();
+		Annotation removed= annotations.get(1);
+		fModel.removeAnnotation(removed);
+		runEventLoop();
+
+		assertTrue(fStrategy.fCleared.contains(removed));
+		for (Annotation annotation : fStrategy.fCleared)
+			assertTrue(annotation == removed || Math.abs(annotations.indexOf(annotation) - 1) <= 1);
+	}
+
+	@Test
+	public void testPaintOnlyDrawsVisibleDecorations() throws Exception {
+		List<Annotation> annotations= new ArrayList<>();
+		for (int line= 0; line < 1000; line++)
+			annotations.add(addAnnotation(line));
+		runEventLoop();
+
+		fStrategy.fDrawn.clear();
+		fViewer.getTextWidget().redraw();
+		fViewer.getTextWidget().update();
+		runEventLoop();
+
+		int bottom= fViewer.getBottomIndex();
+		assertFalse(fStrategy.fDrawn.isEmpty());
+		for (Annotation annotation : fStrategy.fDrawn)
+			assertTrue(annotations.indexOf(annotation) <= bottom + 1);
+
+		fModel.removeAllAnnotations();
+		runEventLoop();
+		fStrategy.fDrawn.clear();
+		fViewer.getTextWidget().redraw();
+		fViewer.getTextWidget().update();
+		runEventLoop();
+		assertEquals(0, fStrategy.fDrawn.size());
+	}
+}
@@ -0,0 +1,246 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.text.tests.source;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Rectangle;
+import org.eclipse.swt.layout.FillLayout;
+import org.eclipse.swt.widgets.Canvas;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Shell;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.Position;
+import org.eclipse.jface.text.source.Annotation;
+import org.eclipse.jface.text.source.AnnotationModel;
+import org.eclipse.jface.text.source.AnnotationRulerColumn;
+import org.eclipse.jface.text.source.CompositeRuler;
+import org.eclipse.jface.text.source.IAnnotationAccess;
+import org.eclipse.jface.text.source.IAnnotationAccessExtension;
+import org.eclipse.jface.text.source.IAnnotationModel;
+import org.eclipse.jface.text.source.IAnnotationModelListener;
+import org.eclipse.jface.text.source.SourceViewer;
+
+/**
+ * Tests that the {@link AnnotationRulerColumn} only repaints the lines that have changed.
+ */
+public class AnnotationRulerColumnTest {
+
+	private static final String TYPE= "org.eclipse.jface.text.tests.ruler";
+
+	private static class RecordingAccess implements IAnnotationAccess, IAnnotationAccessExtension {
+
+		final List<Annotation> fPainted= new ArrayList<>();
+
+		@Override
+		public Object getType(Annotation annotation) {
+			return annotation.getType();
+		}
+
+		@Override
+		public boolean isMultiLine(Annotation annotation) {
+			return false;
+		}
+
+		@Override
+		public boolean isTemporary(Annotation annotation) {
+			return true;
+		}
+
+		@Override
+		public String getTypeLabel(Annotation annotation) {
+			return null;
+		}
+
+		@Override
+		public int getLayer(Annotation annotation) {
+			return 0;
+		}
+
+		@Override
+		public void paint(Annotation annotation, GC gc, Canvas canvas, Rectangle bounds) {
+			fPainted.add(annotation);
+		}
+
+		@Override
+		public boolean isPaintable(Annotation annotation) {
+			return true;
+		}
+
+		@Override
+		public boolean isSubtype(Object annotationType, Object potentialSupertype) {
+			return annotationType.equals(potentialSupertype);
+		}
+
+		@Override
+		public Object[] getSupertypes(Object annotationType) {
+			return new Object[0];
+		}
+	}
+
+	/**
+	 * An annotation model which only implements {@link IAnnotationModel}.
+	 */
+	private static class SimpleAnnotationModel implements IAnnotationModel {
+
+		final AnnotationModel fDelegate= new AnnotationModel();
+
+		@Override
+		public void addAnnotationModelListener(IAnnotationModelListener listener) {
+			fDelegate.addAnnotationModelListener(listener);
+		}
+
+		@Override
+		public void removeAnnotationModelListener(IAnnotationModelListener listener) {
+			fDelegate.removeAnnotationModelListener(listener);
+		}
+
+		@Override
+		public void connect(IDocument document) {
+			fDelegate.connect(document);
+		}
+
+		@Override
+		public void disconnect(IDocument document) {
+			fDelegate.disconnect(document);
+		}
+
+		@Override
+		public void addAnnotation(Annotation annotation, Position position) {
+			fDelegate.addAnnotation(annotation, position);
+		}
+
+		@Override
+		public void removeAnnotation(Annotation annotation) {
+			fDelegate.removeAnnotation(annotation);
+		}
+
+		@Override
+		public Iterator<Annotation> getAnnotationIterator() {
+			return fDelegate.getAnnotationIterator();
+		}
+
+		@Override
+		public Position getPosition(Annotation annotation) {
+			return fDelegate.getPosition(annotation);
+		}
+	}
+
+	private Shell fShell;
+	private SourceViewer fViewer;
+	private SimpleAnnotationModel fModel;
+	private AnnotationRulerColumn fColumn;
+	private RecordingAccess fAccess;
+
+	@Before
+	public void setUp() throws Exception {
+		fShell= new Shell();
+		fShell.setLayout(new FillLayout());
+		fShell.setSize(500, 300);
+
+		fModel= new SimpleAnnotationModel();
+		fAccess= new RecordingAccess();
+		fColumn= new AnnotationRulerColumn(fModel, 14, fAccess);
+		fColumn.addAnnotationType(TYPE);
+		CompositeRuler ruler= new CompositeRuler();
+		ruler.addDecorator(0, fColumn);
+		fViewer= new SourceViewer(fShell, ruler, SWT.V_SCROLL);
+
+		StringBuilder text= new StringBuilder();
+		for (int i= 0; i < 1000; i++)
+			text.append("line ").append(i).append('\n');
+		Document document= new Document(text.toString());
+		fViewer.setDocument(document);
+		fModel.connect(document);
+		for (int line= 0; line < 1000; line++)
+			fModel.addAnnotation(new Annotation(TYPE, false, null), new Position(document.getLineOffset(line), 4));
+
+		fShell.open();
+		runEventLoop();
+	}
+
+	@After
+	public void tearDown() {
+		fModel.disconnect(fViewer.getDocument());
+		fShell.dispose();
+	}
+
+	private void runEventLoop() {
+		Display display= fShell.getDisplay();
+		for (int i= 0; i < 10; i++) {
+			while (display.readAndDispatch()) {
+				// process pending events
+			}
+		}
+	}
+
+	private int getLine(Annotation annotation) throws BadLocationException {
+		return fViewer.getDocument().getLineOfOffset(fModel.getPosition(annotation).getOffset());
+	}
+
+	@Test
+	public void testRedrawPaintsVisibleAnnotations() throws Exception {
+		fAccess.fPainted.clear();
+		fColumn.redraw();
+		runEventLoop();
+
+		assertFalse(fAccess.fPainted.isEmpty());
+		int bottom= fViewer.getBottomIndex();
+		for (Annotation annotation : fAccess.fPainted)
+			assertTrue(getLine(annotation) <= bottom + 1);
+	}
+
+	@Test
+	public void testLineInsertionRepaintsFollowingLines() throws Exception {
+		fColumn.redraw();
+		runEventLoop();
+
+		fAccess.fPainted.clear();
+		IDocument document= fViewer.getDocument();
+		document.replace(document.getLineOffset(5), 0, "\n");
+		runEventLoop();
+
+		assertFalse(fAccess.fPainted.isEmpty());
+		for (Annotation annotation : fAccess.fPainted)
+			assertTrue(getLine(annotation) >= 5);
+	}
+
+	@Test
+	public void testTypingWithinLineDoesNotRepaint() throws Exception {
+		fColumn.redraw();
+		runEventLoop();
+
+		fAccess.fPainted.clear();
+		IDocument document= fViewer.getDocument();
+		document.replace(document.getLineOffset(5) + 2, 0, "x");
+		runEventLoop();
+
+		for (Annotation annotation : fAccess.fPainted)
+			assertTrue(getLine(annotation) == 5);
+	}
+}
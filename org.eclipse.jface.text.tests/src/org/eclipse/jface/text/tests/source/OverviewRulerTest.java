@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.text.tests.source;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.RGB;
+import org.eclipse.swt.graphics.Rectangle;
+import org.eclipse.swt.widgets.Canvas;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Shell;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.Position;
+import org.eclipse.jface.text.source.Annotation;
+import org.eclipse.jface.text.source.AnnotationModel;
+import org.eclipse.jface.text.source.IAnnotationAccess;
+import org.eclipse.jface.text.source.IAnnotationAccessExtension;
+import org.eclipse.jface.text.source.ISharedTextColors;
+import org.eclipse.jface.text.source.OverviewRuler;
+import org.eclipse.jface.text.source.SourceViewer;
+
+/**
+ * Tests that the {@link OverviewRuler} keeps its cached annotations up to date.
+ */
+public class OverviewRulerTest {
+
+	private static final String TYPE= "org.eclipse.jface.text.tests.overview";
+
+	private static class AnnotationAccess implements IAnnotationAccess, IAnnotationAccessExtension {
+
+		@Override
+		public Object getType(Annotation annotation) {
+			return annotation.getType();
+		}
+
+		@Override
+		public boolean isMultiLine(Annotation annotation) {
+			return true;
+		}
+
+		@Override
+		public boolean isTemporary(Annotation annotation) {
+			return !annotation.isPersistent();
+		}
+
+		@Override
+		public String getTypeLabel(Annotation annotation) {
+			return "Test";
+		}
+
+		@Override
+		public int getLayer(Annotation annotation) {
+			return 0;
+		}
+
+		@Override
+		public void paint(Annotation annotation, GC gc, Canvas canvas, Rectangle bounds) {
+		}
+
+		@Override
+		public boolean isPaintable(Annotation annotation) {
+			return false;
+		}
+
+		@Override
+		public boolean isSubtype(Object annotationType, Object potentialSupertype) {
+			return annotationType.equals(potentialSupertype);
+		}
+
+		@Override
+		public Object[] getSupertypes(Object annotationType) {
+			return new Object[0];
+		}
+	}
+
+	private Shell fShell;
+	private SourceViewer fViewer;
+	private AnnotationModel fModel;
+	private OverviewRuler fRuler;
+	private List<Color> fColors= new ArrayList<>();
+
+	@Before
+	public void setUp() {
+		fShell= new Shell();
+		fShell.setSize(500, 300);
+
+		ISharedTextColors colors= new ISharedTextColors() {
+			@Override
+			public Color getColor(RGB rgb) {
+				Color color= new Color(fShell.getDisplay(), rgb);
+				fColors.add(color);
+				return color;
+			}
+
+			@Override
+			public void dispose() {
+				for (Color color : fColors)
+					color.dispose();
+			}
+		};
+		fRuler= new OverviewRuler(new AnnotationAccess(), 12, colors);
+		fRuler.addAnnotationType(TYPE);
+		fRuler.addHeaderAnnotationType(TYPE);
+		fRuler.setAnnotationTypeLayer(TYPE, 0);
+		fRuler.setAnnotationTypeColor(TYPE, fShell.getDisplay().getSystemColor(SWT.COLOR_RED));
+
+		fViewer= new SourceViewer(fShell, null, fRuler, true, SWT.V_SCROLL);
+		StringBuilder text= new StringBuilder();
+		for (int i= 0; i < 1000; i++)
+			text.append("line ").append(i).append('\n');
+		fModel= new AnnotationModel();
+		fViewer.setDocument(new Document(text.toString()), fModel);
+		fShell.open();
+		runEventLoop();
+	}
+
+	@After
+	public void tearDown() {
+		fShell.dispose();
+		for (Color color : fColors)
+			color.dispose();
+	}
+
+	private void runEventLoop() {
+		Display display= fShell.getDisplay();
+		for (int i= 0; i < 10; i++) {
+			while (display.readAndDispatch()) {
+				// process pending events
+			}
+		}
+	}
+
+	private void paint() {
+		fRuler.getControl().redraw();
+		fRuler.getControl().update();
+		runEventLoop();
+	}
+
+	private String getHeaderToolTip() {
+		fRuler.getHeaderControl().notifyListeners(SWT.MouseEnter, new Event());
+		return fRuler.getHeaderControl().getToolTipText();
+	}
+
+	private Annotation addAnnotation(int line, int lines) throws Exception {
+		IDocument document= fViewer.getDocument();
+		Annotation annotation= new Annotation(TYPE, false, null);
+		int offset= document.getLineOffset(line);
+		fModel.addAnnotation(annotation, new Position(offset, document.getLineOffset(line + lines) - offset));
+		return annotation;
+	}
+
+	@Test
+	public void testIncrementalUpdates() throws Exception {
+		List<Annotation> annotations= new ArrayList<>();
+		for (int line= 0; line < 900; line+= 3)
+			annotations.add(addAnnotation(line, 1));
+		paint();
+		assertEquals("Test: 300", getHeaderToolTip());
+
+		fModel.removeAnnotation(annotations.get(0));
+		fModel.removeAnnotation(annotations.get(1));
+		addAnnotation(950, 20);
+		paint();
+		assertEquals("Test: 299", getHeaderToolTip());
+
+		fModel.removeAllAnnotations();
+		paint();
+		assertEquals(null, getHeaderToolTip());
+	}
+
+	@Test
+	public void testPaintAfterLineCountChange() throws Exception {
+		addAnnotation(10, 1);
+		addAnnotation(500, 1);
+		paint();
+		assertEquals(4, fRuler.getAnnotationHeight());
+
+		IDocument document= fViewer.getDocument();
+		StringBuilder text= new StringBuilder();
+		for (int i= 0; i < 1000; i++)
+			text.append("new line\n");
+		document.replace(0, 0, text.toString());
+		paint();
+		assertEquals("Test: 2", getHeaderToolTip());
+
+		document.replace(0, document.getLineOffset(1000), "");
+		paint();
+		assertEquals("Test: 2", getHeaderToolTip());
+	}
+}
@@ -14,11 +14,14 @@
 
 package org.eclipse.jface.text.presentation;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import org.eclipse.swt.custom.StyleRange;
+import org.eclipse.swt.custom.StyledText;
 
 import org.eclipse.core.runtime.Assert;
 
@@ -40,6 +43,7 @@ import org.eclipse.jface.text.ITextListener;
 import org.eclipse.jface.text.ITextViewer;
 import org.eclipse.jface.text.ITextViewerExtension5;
 import org.eclipse.jface.text.ITypedRegion;
+import org.eclipse.jface.text.Position;
 import org.eclipse.jface.text.Region;
 import org.eclipse.jface.text.TextEvent;
 import org.eclipse.jface.text.TextPresentation;
@@ -56,6 +60,13 @@ import org.eclipse.jface.text.TypedPosition;
  * document change rather than just the portion overlapping with the viewer's
  * viewport.
  * <p>
+ * In the {@linkplain #setIncrementalRepair(boolean) incremental repair mode},
+ * a large damage is repaired in the viewer's viewport first. The rest of it is
+ * repaired in slices of whole lines, which are run in the UI thread for a few
+ * milliseconds at a time, again starting with the viewport. The damage not yet
+ * repaired follows the changes of the document.
+ * </p>
+ * <p>
  * Usually, clients instantiate this class and configure it before using it.
  * </p>
  */
@@ -63,6 +74,14 @@ public class PresentationReconciler implements IPresentationReconciler, IPresent
 
 	/** Prefix of the name of the position category for tracking damage regions. */
 	protected final static String TRACKED_PARTITION= "__reconciler_tracked_partition"; //$NON-NLS-1$
+	/** Prefix of the name of the position category for the damage not yet repaired. */
+	private final static String PENDING_DAMAGE= "__reconciler_pending_damage"; //$NON-NLS-1$
+	/** The length above which a damage is repaired incrementally. Value = 64K */
+	private final static int INCREMENTAL_REPAIR_THRESHOLD= 64 * 1024;
+	/** The approximate length of a slice of an incrementally repaired damage. Value = 8K */
+	private final static int SLICE_LENGTH= 8 * 1024;
+	/** The time in milliseconds after which no further slice is repaired in one run. Value = 20 */
+	private final static int TIME_SLICE= 20;
 
 
 	/**
@@ -83,6 +102,7 @@ public class PresentationReconciler implements IPresentationReconciler, IPresent
 		@Override
 		public void inputDocumentAboutToBeChanged(IDocument oldDocument, IDocument newDocument) {
 			if (oldDocument != null) {
+				clearPendingDamage(oldDocument);
 				try {
 
 					fViewer.removeTextListener(this);
@@ -91,6 +111,8 @@ public class PresentationReconciler implements IPresentationReconciler, IPresent
 
 					oldDocument.removePositionUpdater(fPositionUpdater);
 					oldDocument.removePositionCategory(fPositionCategory);
+					oldDocument.removePositionUpdater(fPendingUpdater);
+					oldDocument.removePositionCategory(fPendingCategory);
 
 				} catch (BadPositionCategoryException x) {
 					// should not happened for former input documents;
@@ -111,6 +133,8 @@ public class PresentationReconciler implements IPresentationReconciler, IPresent
 
 				newDocument.addPositionCategory(fPositionCategory);
 				newDocument.addPositionUpdater(fPositionUpdater);
+				newDocument.addPositionCategory(fPendingCategory);
+				newDocument.addPositionUpdater(fPendingUpdater);
 
 				newDocument.addDocumentPartitioningListener(this);
 				newDocument.addDocumentListener(this);
@@ -265,6 +289,42 @@ public class PresentationReconciler implements IPresentationReconciler, IPresent
 	 * @since 3.0
 	 */
 	private String fPartitioning;
+	/**
+	 * Tells whether large damages are repaired incrementally.
+	 * @since 3.15
+	 */
+	private boolean fIncrementalRepair= false;
+	/**
+	 * The name of the position category for the damage not yet repaired.
+	 * @since 3.15
+	 */
+	private String fPendingCategory;
+	/**
+	 * The position updater for the damage not yet repaired.
+	 * @since 3.15
+	 */
+	private IPositionUpdater fPendingUpdater;
+	/**
+	 * The disjoint positions of the damage not yet repaired.
+	 * @since 3.15
+	 */
+	private final List<Position> fPendingDamage= new ArrayList<>();
+	/**
+	 * Tells whether the repair of the pending damage has been scheduled.
+	 * @since 3.15
+	 */
+	private boolean fRepairScheduled= false;
+	/**
+	 * Repairs slices of the pending damage.
+	 * @since 3.15
+	 */
+	private final Runnable fRepairRunnable= new Runnable() {
+		@Override
+		public void run() {
+			fRepairScheduled= false;
+			repairPendingDamage();
+		}
+	};
 
 	/**
 	 * Creates a new presentation reconciler. There are no damagers or repairers
@@ -276,6 +336,8 @@ public class PresentationReconciler implements IPresentationReconciler, IPresent
 		fPartitioning= IDocumentExtension3.DEFAULT_PARTITIONING;
 		fPositionCategory= TRACKED_PARTITION + hashCode();
 		fPositionUpdater= new DefaultPositionUpdater(fPositionCategory);
+		fPendingCategory= PENDING_DAMAGE + hashCode();
+		fPendingUpdater= new DefaultPositionUpdater(fPendingCategory);
 	}
 
 	/**
@@ -289,6 +351,23 @@ public class PresentationReconciler implements IPresentationReconciler, IPresent
 		fPartitioning= partitioning;
 	}
 
+	/**
+	 * Sets whether a large damage is repaired incrementally. If set, the part of the
+	 * damage which is visible in the viewer is repaired at once and the rest in
+	 * slices which are repaired in the UI thread for a few milliseconds at a time.
+	 * The default is <code>false</code>.
+	 * <p>
+	 * The presentation repairers must be able to repair ranges of whole lines
+	 * inside a partition.
+	 * </p>
+	 *
+	 * @param incremental <code>true</code> to repair large damages incrementally
+	 * @since 3.15
+	 */
+	public void setIncrementalRepair(boolean incremental) {
+		fIncrementalRepair= incremental;
+	}
+
 	/*
 	 * @see org.eclipse.jface.text.presentation.IPresentationReconcilerExtension#geDocumenttPartitioning()
 	 * @since 3.0
@@ -546,10 +625,249 @@ public class PresentationReconciler implements IPresentationReconciler, IPresent
 	 */
 	private void processDamage(IRegion damage, IDocument document) {
 		if (damage != null && damage.getLength() > 0) {
-			TextPresentation p= createPresentation(damage, document);
-			if (p != null)
-				applyTextRegionCollection(p);
+			if (fIncrementalRepair && damage.getLength() > INCREMENTAL_REPAIR_THRESHOLD && processDamageIncrementally(damage, document))
+				return;
+			repair(damage, document);
+		}
+	}
+
+	/**
+	 * Repairs the given damage at once.
+	 *
+	 * @param damage the damage to be repaired
+	 * @param document the document whose presentation must be repaired
+	 * @since 3.15
+	 */
+	private void repair(IRegion damage, IDocument document) {
+		TextPresentation p= createPresentation(damage, document);
+		if (p != null)
+			applyTextRegionCollection(p);
+	}
+
+	/**
+	 * Repairs the visible part of the given damage and remembers the rest of it as
+	 * pending damage, which is repaired later.
+	 *
+	 * @param damage the damage to be repaired
+	 * @param document the document whose presentation must be repaired
+	 * @return <code>false</code> if the damage could not be split
+	 * @since 3.15
+	 */
+	private boolean processDamageIncrementally(IRegion damage, IDocument document) {
+		StyledText widget= fViewer.getTextWidget();
+		if (widget == null || widget.isDisposed())
+			return false;
+
+		int start= damage.getOffset();
+		int end= start + damage.getLength();
+		try {
+			IRegion viewport= getViewport(document);
+			int visibleStart= Math.max(start, viewport.getOffset());
+			int visibleEnd= Math.min(end, viewport.getOffset() + viewport.getLength());
+			if (visibleStart < visibleEnd) {
+				addPendingDamage(document, start, visibleStart - start);
+				addPendingDamage(document, visibleEnd, end - visibleEnd);
+				repair(new Region(visibleStart, visibleEnd - visibleStart), document);
+			} else {
+				addPendingDamage(document, start, end - start);
+			}
+		} catch (BadLocationException x) {
+			return false;
+		} catch (BadPositionCategoryException x) {
+			return false;
+		}
+
+		scheduleRepair();
+		return true;
+	}
+
+	/**
+	 * Repairs slices of the pending damage, those in the viewport first, until the
+	 * time slice is used up, and schedules the repair of the rest.
+	 *
+	 * @since 3.15
+	 */
+	private void repairPendingDamage() {
+		IDocument document= fViewer == null ? null : fViewer.getDocument();
+		if (document == null)
+			return;
+
+		long end= System.currentTimeMillis() + TIME_SLICE;
+		try {
+			do {
+				IRegion slice= removePendingSlice(document);
+				if (slice == null)
+					return;
+				repair(slice, document);
+			} while (System.currentTimeMillis() < end);
+		} catch (BadLocationException x) {
+			clearPendingDamage(document);
+			return;
+		} catch (BadPositionCategoryException x) {
+			clearPendingDamage(document);
+			return;
+		}
+
+		scheduleRepair();
+	}
+
+	/**
+	 * Schedules the repair of the pending damage in the UI thread unless it is
+	 * already scheduled.
+	 *
+	 * @since 3.15
+	 */
+	private void scheduleRepair() {
+		if (fRepairScheduled || fPendingDamage.isEmpty())
+			return;
+
+		StyledText widget= fViewer.getTextWidget();
+		if (widget == null || widget.isDisposed())
+			return;
+
+		fRepairScheduled= true;
+		widget.getDisplay().asyncExec(fRepairRunnable);
+	}
+
+	/**
+	 * Adds the given range to the pending damage.
+	 *
+	 * @param document the document
+	 * @param offset the offset of the range
+	 * @param length the length of the range
+	 * @throws BadLocationException if the range is invalid in the document
+	 * @throws BadPositionCategoryException if the document does not track the pending damage
+	 * @since 3.15
+	 */
+	private void addPendingDamage(IDocument document, int offset, int length) throws BadLocationException, BadPositionCategoryException {
+		if (length <= 0)
+			return;
+
+		int end= offset + length;
+		for (Iterator<Position> e= fPendingDamage.iterator(); e.hasNext();) {
+			Position position= e.next();
+			if (position.isDeleted() || position.getOffset() <= end && offset <= position.getOffset() + position.getLength()) {
+				if (!position.isDeleted()) {
+					offset= Math.min(offset, position.getOffset());
+					end= Math.max(end, position.getOffset() + position.getLength());
+				}
+				document.removePosition(fPendingCategory, position);
+				e.remove();
+			}
 		}
+
+		Position position= new Position(offset, end - offset);
+		document.addPosition(fPendingCategory, position);
+		fPendingDamage.add(position);
+	}
+
+	/**
+	 * Removes the next slice of whole lines from the pending damage. Damage in the
+	 * viewport comes first.
+	 *
+	 * @param document the document
+	 * @return the slice or <code>null</code> if there is no pending damage
+	 * @throws BadLocationException if the pending damage is invalid in the document
+	 * @throws BadPositionCategoryException if the document does not track the pending damage
+	 * @since 3.15
+	 */
+	private IRegion removePendingSlice(IDocument document) throws BadLocationException, BadPositionCategoryException {
+		IRegion viewport= getViewport(document);
+		int visibleStart= viewport.getOffset();
+		int visibleEnd= visibleStart + viewport.getLength();
+
+		Position next= null;
+		boolean visible= false;
+		for (Iterator<Position> e= fPendingDamage.iterator(); e.hasNext();) {
+			Position position= e.next();
+			if (position.isDeleted() || position.getLength() == 0) {
+				document.removePosition(fPendingCategory, position);
+				e.remove();
+			} else if (!visible) {
+				visible= position.getOffset() < visibleEnd && visibleStart < position.getOffset() + position.getLength();
+				if (visible || next == null)
+					next= position;
+			}
+		}
+		if (next == null)
+			return null;
+
+		int start= next.getOffset();
+		int end= start + next.getLength();
+		int from= visible ? Math.max(start, visibleStart) : start;
+		// start at a line start, but not before the partition, which may have changed since
+		int sliceStart= Math.max(getLineStart(document, from), getPartition(document, from).getOffset());
+		int sliceEnd= Math.min(end, getLineEnd(document, Math.min(from + SLICE_LENGTH, document.getLength())));
+
+		document.removePosition(fPendingCategory, next);
+		fPendingDamage.remove(next);
+		addPendingDamage(document, start, from - start);
+		addPendingDamage(document, sliceEnd, end - sliceEnd);
+		return new Region(sliceStart, sliceEnd - sliceStart);
+	}
+
+	/**
+	 * Forgets the pending damage.
+	 *
+	 * @param document the document which tracks the pending damage
+	 * @since 3.15
+	 */
+	private void clearPendingDamage(IDocument document) {
+		for (Position position : fPendingDamage) {
+			try {
+				document.removePosition(fPendingCategory, position);
+			} catch (BadPositionCategoryException x) {
+				// the category has already been removed
+			}
+		}
+		fPendingDamage.clear();
+	}
+
+	/**
+	 * Returns the whole lines visible in the viewer.
+	 *
+	 * @param document the document
+	 * @return the visible lines, an empty region if they are unknown
+	 * @throws BadLocationException if the viewer does not show the document
+	 * @since 3.15
+	 */
+	private IRegion getViewport(IDocument document) throws BadLocationException {
+		int top= fViewer.getTopIndexStartOffset();
+		int bottom= fViewer.getBottomIndexEndOffset();
+		if (top < 0 || bottom < top)
+			return new Region(0, 0);
+
+		int start= getLineStart(document, top);
+		int end= getLineEnd(document, Math.min(bottom, document.getLength()));
+		return new Region(start, end - start);
+	}
+
+	/**
+	 * Returns the start offset of the line containing the given offset.
+	 *
+	 * @param document the document
+	 * @param offset the offset
+	 * @return the start offset of the line
+	 * @throws BadLocationException if the offset is invalid in the document
+	 * @since 3.15
+	 */
+	private static int getLineStart(IDocument document, int offset) throws BadLocationException {
+		return document.getLineInformationOfOffset(offset).getOffset();
+	}
+
+	/**
+	 * Returns the offset behind the line containing the given offset, including its
+	 * delimiter.
+	 *
+	 * @param document the document
+	 * @param offset the offset
+	 * @return the start offset of the next line or the length of the document
+	 * @throws BadLocationException if the offset is invalid in the document
+	 * @since 3.15
+	 */
+	private static int getLineEnd(IDocument document, int offset) throws BadLocationException {
+		int line= document.getLineOfOffset(offset);
+		return document.getLineOffset(line) + document.getLineLength(line);
 	}
 
 	/**
@@ -16,20 +16,27 @@ package org.eclipse.jface.text.rules;
 
 import org.eclipse.core.runtime.Assert;
 
+import org.eclipse.jface.text.AbstractDocument;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.IDocument;
 
 /**
  * A buffered rule based scanner. The buffer always contains a section
- * of a fixed size of the document to be scanned. Completely adheres to
+ * of the document to be scanned. Completely adheres to
  * the contract of <code>RuleBasedScanner</code>.
+ * <p>
+ * The buffer grows up to the length of the scanned range, but not beyond
+ * 16K characters, and is only filled with characters of
+ * the scanned range. The characters of an {@link AbstractDocument} are copied
+ * into the buffer without creating intermediate strings.
+ * </p>
  */
 public class BufferedRuleBasedScanner extends RuleBasedScanner {
 
 	/** The default buffer size. Value = 500 */
 	private final static int DEFAULT_BUFFER_SIZE= 500;
-	/** The actual size of the buffer. Initially set to <code>DEFAULT_BUFFER_SIZE</code> */
-	private int fBufferSize= DEFAULT_BUFFER_SIZE;
+	/** The size up to which the buffer grows for large ranges. Value = 16K */
+	private final static int MAX_BUFFER_SIZE= 16 * 1024;
 	/** The buffer */
 	private char[] fBuffer= new char[DEFAULT_BUFFER_SIZE];
 	/** The offset of the document at which the buffer starts */
@@ -61,13 +68,13 @@ public class BufferedRuleBasedScanner extends RuleBasedScanner {
 	}
 
 	/**
-	 * Sets the buffer to the given number of characters.
+	 * Sets the buffer to the given number of characters. The buffer grows
+	 * for larger ranges to be scanned.
 	 *
 	 * @param size the buffer size
 	 */
 	protected void setBufferSize(int size) {
 		Assert.isTrue(size > 0);
-		fBufferSize= size;
 		fBuffer= new char[size];
 	}
 
@@ -80,14 +87,21 @@ public class BufferedRuleBasedScanner extends RuleBasedScanner {
 	private void shiftBuffer(int offset) {
 
 		fStart= offset;
-		fEnd= fStart + fBufferSize;
+		fEnd= fStart + fBuffer.length;
 		if (fEnd > fDocumentLength)
 			fEnd= fDocumentLength;
+		// characters behind the range are never read from the buffer
+		if (fEnd > fRangeEnd && fStart < fRangeEnd)
+			fEnd= fRangeEnd;
 
 		try {
 
-			String content= fDocument.get(fStart, fEnd - fStart);
-			content.getChars(0, fEnd - fStart, fBuffer, 0);
+			if (fDocument instanceof AbstractDocument) {
+				((AbstractDocument) fDocument).getChars(fStart, fEnd - fStart, fBuffer, 0);
+			} else {
+				String content= fDocument.get(fStart, fEnd - fStart);
+				content.getChars(0, fEnd - fStart, fBuffer, 0);
+			}
 
 		} catch (BadLocationException x) {
 		}
@@ -98,6 +112,10 @@ public class BufferedRuleBasedScanner extends RuleBasedScanner {
 
 		super.setRange(document, offset, length);
 
+		int size= Math.min(length, MAX_BUFFER_SIZE);
+		if (fBuffer.length < size)
+			fBuffer= new char[size];
+
 		fDocumentLength= document.getLength();
 		shiftBuffer(offset);
 	}
@@ -122,7 +140,7 @@ public class BufferedRuleBasedScanner extends RuleBasedScanner {
 	public void unread() {
 
 		if (fOffset == fStart)
-			shiftBuffer(Math.max(0, fStart - (fBufferSize / 2)));
+			shiftBuffer(Math.max(0, fStart - (fBuffer.length / 2)));
 
 		--fOffset;
 		fColumn= UNDEFINED;
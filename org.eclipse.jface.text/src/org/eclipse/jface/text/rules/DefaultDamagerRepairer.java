@@ -14,6 +14,9 @@
 package org.eclipse.jface.text.rules;
 
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.custom.StyleRange;
 
@@ -37,6 +40,13 @@ import org.eclipse.jface.text.presentation.IPresentationRepairer;
  * the document and to determine its damage and new text presentation.
  * The tokens returned by the scanner are supposed to return text attributes
  * as their data.
+ * <p>
+ * If {@linkplain #setLineCacheSize(int) enabled}, the tokens of whole lines are
+ * cached by the text of the line. The scanner is then run on each line separately,
+ * so a token cannot span several lines, and a line whose text has been scanned
+ * before is not scanned again. The cache is only valid for scanners whose rules
+ * match within a single line.
+ * </p>
  *
  * @see ITokenScanner
  * @since 2.0
@@ -50,6 +60,72 @@ public class DefaultDamagerRepairer implements IPresentationDamager, IPresentati
 	protected ITokenScanner fScanner;
 	/** The default text attribute if non is returned as data by the current token */
 	protected TextAttribute fDefaultTextAttribute;
+	/**
+	 * The tokens of the most recently repaired lines by the text of the line, or
+	 * <code>null</code> if lines are not cached
+	 * @since 3.15
+	 */
+	private Map<String, LineTokens> fLineCache;
+
+	/**
+	 * The tokens of a line.
+	 *
+	 * @since 3.15
+	 */
+	private static final class LineTokens {
+		/** The tokens */
+		final IToken[] fTokens;
+		/** The offsets of the tokens relative to the line start and their lengths */
+		final int[] fRanges;
+
+		LineTokens(IToken[] tokens, int[] ranges) {
+			fTokens= tokens;
+			fRanges= ranges;
+		}
+	}
+
+	/**
+	 * Collects the tokens of a presentation and adds a style range for each sequence
+	 * of tokens with the same text attribute.
+	 *
+	 * @since 3.15
+	 */
+	private final class RangeCollector {
+		/** The presentation */
+		private final TextPresentation fPresentation;
+		/** The start of the current style range */
+		private int fStart;
+		/** The length of the current style range */
+		private int fLength;
+		/** The attribute of the current style range */
+		private TextAttribute fAttribute;
+		/** Tells whether no token has been added yet */
+		private boolean fFirstToken= true;
+
+		RangeCollector(TextPresentation presentation, int start) {
+			fPresentation= presentation;
+			fStart= start;
+			fAttribute= getTokenTextAttribute(Token.UNDEFINED);
+		}
+
+		void add(IToken token, int offset, int length) {
+			TextAttribute attribute= getTokenTextAttribute(token);
+			if (fAttribute != null && fAttribute.equals(attribute)) {
+				fLength += length;
+			} else {
+				if (!fFirstToken)
+					addRange(fPresentation, fStart, fLength, fAttribute);
+				fAttribute= attribute;
+				fStart= offset;
+				fLength= length;
+			}
+			fFirstToken= false;
+		}
+
+		void finish() {
+			addRange(fPresentation, fStart, fLength, fAttribute);
+		}
+	}
 
 	/**
 	 * Creates a damager/repairer that uses the given scanner and returns the given default
@@ -91,6 +167,51 @@ public class DefaultDamagerRepairer implements IPresentationDamager, IPresentati
 	@Override
 	public void setDocument(IDocument document) {
 		fDocument= document;
+		if (fLineCache != null)
+			fLineCache.clear();
+	}
+
+	/**
+	 * Sets the number of lines whose tokens are cached. If the number is greater than
+	 * zero, the scanner is run on each line of a repaired region separately and the
+	 * tokens of whole lines are cached by the text of the line, so that repairing the
+	 * same text again does not scan it. The least recently repaired lines are dropped
+	 * from the cache first.
+	 * <p>
+	 * The cache must only be enabled if the scanner's rules match within a single line,
+	 * e.g. single line and end of line rules, word rules and number rules, so that the
+	 * tokens of a line only depend on the text of the line. The scanner does not keep
+	 * any state from one line to the next, so a rule which spans several lines, like a
+	 * {@link MultiLineRule} or a {@link PatternRule} which does not break on the end of
+	 * a line, is not matched across lines and a line is not re-scanned when a preceding
+	 * line changes. Such constructs have to be partitions of their own. The cache is
+	 * not used if the scanner is a {@link RuleBasedScanner} with such a pattern rule.
+	 * </p>
+	 * <p>
+	 * A cached line is found by its text, so the text of each repaired line is still
+	 * read from the document; only scanning it is saved.
+	 * </p>
+	 * <p>
+	 * The default is <code>0</code>, which does not cache any tokens.
+	 * </p>
+	 *
+	 * @param lines the number of lines to cache, or <code>0</code> to disable the cache
+	 * @since 3.15
+	 */
+	public void setLineCacheSize(final int lines) {
+		Assert.isLegal(lines >= 0);
+		if (lines == 0) {
+			fLineCache= null;
+			return;
+		}
+		fLineCache= new LinkedHashMap<String, LineTokens>(16, 0.75f, true) {
+			private static final long serialVersionUID= 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, LineTokens> eldest) {
+				return size() > lines;
+			}
+		};
 	}
 
 
@@ -167,6 +288,15 @@ public class DefaultDamagerRepairer implements IPresentationDamager, IPresentati
 			return;
 		}
 
+		if (fLineCache != null && scansSingleLines()) {
+			try {
+				createPresentationByLines(presentation, region);
+			} catch (BadLocationException x) {
+				// the region is invalid in the document
+			}
+			return;
+		}
+
 		int lastStart= region.getOffset();
 		int length= 0;
 		boolean firstToken= true;
@@ -198,6 +328,104 @@ public class DefaultDamagerRepairer implements IPresentationDamager, IPresentati
 		addRange(presentation, lastStart, length, lastAttribute);
 	}
 
+	/**
+	 * Creates the presentation of the given region line by line. The tokens of whole
+	 * lines are taken from the line cache if possible.
+	 *
+	 * @param presentation the text presentation to be extended
+	 * @param region the region to be repaired
+	 * @throws BadLocationException if the region is invalid in the document
+	 * @since 3.15
+	 */
+	private void createPresentationByLines(TextPresentation presentation, ITypedRegion region) throws BadLocationException {
+		int offset= region.getOffset();
+		int end= offset + region.getLength();
+		RangeCollector collector= new RangeCollector(presentation, offset);
+		int line= fDocument.getLineOfOffset(offset);
+		while (offset < end) {
+			int lineStart= fDocument.getLineOffset(line);
+			int lineEnd= lineStart + fDocument.getLineLength(line);
+			int rangeEnd= Math.min(lineEnd, end);
+			if (offset == lineStart && rangeEnd == lineEnd) {
+				String text= fDocument.get(lineStart, lineEnd - lineStart);
+				LineTokens tokens= fLineCache.get(text);
+				if (tokens == null) {
+					tokens= scanLine(lineStart, lineEnd - lineStart);
+					fLineCache.put(text, tokens);
+				}
+				int[] ranges= tokens.fRanges;
+				for (int i= 0; i < tokens.fTokens.length; i++)
+					collector.add(tokens.fTokens[i], lineStart + ranges[2 * i], ranges[2 * i + 1]);
+			} else {
+				fScanner.setRange(fDocument, offset, rangeEnd - offset);
+				for (IToken token= fScanner.nextToken(); !token.isEOF(); token= fScanner.nextToken())
+					collector.add(token, fScanner.getTokenOffset(), fScanner.getTokenLength());
+			}
+			offset= rangeEnd;
+			line++;
+		}
+		collector.finish();
+	}
+
+	/**
+	 * Tells whether the scanner matches its tokens within single lines, which is
+	 * assumed unless the scanner is a {@link RuleBasedScanner} with a pattern rule
+	 * that does not break on the end of a line or whose escape character continues
+	 * the line.
+	 *
+	 * @return <code>true</code> if the tokens of a line only depend on the line
+	 * @since 3.15
+	 */
+	private boolean scansSingleLines() {
+		if (fScanner instanceof RuleBasedScanner) {
+			IRule[] rules= ((RuleBasedScanner) fScanner).fRules;
+			if (rules != null) {
+				for (IRule rule : rules) {
+					if (rule instanceof PatternRule) {
+						PatternRule patternRule= (PatternRule) rule;
+						if (!patternRule.fBreaksOnEOL || patternRule.fEscapeContinuesLine)
+							return false;
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Scans the given line.
+	 *
+	 * @param lineStart the start offset of the line
+	 * @param lineLength the length of the line including its delimiter
+	 * @return the tokens of the line
+	 * @since 3.15
+	 */
+	private LineTokens scanLine(int lineStart, int lineLength) {
+		IToken[] tokens= new IToken[8];
+		int[] ranges= new int[16];
+		int count= 0;
+		fScanner.setRange(fDocument, lineStart, lineLength);
+		for (IToken token= fScanner.nextToken(); !token.isEOF(); token= fScanner.nextToken()) {
+			if (count == tokens.length) {
+				IToken[] newTokens= new IToken[2 * count];
+				System.arraycopy(tokens, 0, newTokens, 0, count);
+				tokens= newTokens;
+				int[] newRanges= new int[4 * count];
+				System.arraycopy(ranges, 0, newRanges, 0, 2 * count);
+				ranges= newRanges;
+			}
+			tokens[count]= token;
+			ranges[2 * count]= fScanner.getTokenOffset() - lineStart;
+			ranges[2 * count + 1]= fScanner.getTokenLength();
+			count++;
+		}
+		IToken[] trimmedTokens= new IToken[count];
+		System.arraycopy(tokens, 0, trimmedTokens, 0, count);
+		int[] trimmedRanges= new int[2 * count];
+		System.arraycopy(ranges, 0, trimmedRanges, 0, 2 * count);
+		return new LineTokens(trimmedTokens, trimmedRanges);
+	}
+
 	/**
 	 * Returns a text attribute encoded in the given token. If the token's
 	 * data is not <code>null</code> and a text attribute it is assumed that
@@ -15,10 +15,16 @@ package org.eclipse.jface.text.rules;
 
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.eclipse.core.runtime.Assert;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.core.runtime.jobs.Job;
 
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.BadPositionCategoryException;
@@ -26,11 +32,14 @@ import org.eclipse.jface.text.DefaultPositionUpdater;
 import org.eclipse.jface.text.DocumentEvent;
 import org.eclipse.jface.text.DocumentRewriteSession;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
+import org.eclipse.jface.text.IDocumentExtension5;
 import org.eclipse.jface.text.IDocumentPartitioner;
 import org.eclipse.jface.text.IDocumentPartitionerExtension;
 import org.eclipse.jface.text.IDocumentPartitionerExtension2;
 import org.eclipse.jface.text.IDocumentPartitionerExtension3;
 import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.ISynchronizable;
 import org.eclipse.jface.text.ITypedRegion;
 import org.eclipse.jface.text.Position;
 import org.eclipse.jface.text.Region;
@@ -54,12 +63,267 @@ import org.eclipse.jface.text.TypedRegion;
  * {@link #clearPositionCache()} after modifying the partitioner's positions.
  * The cached positions may be accessed through {@link #getPositions()}.
  * </p>
+ * <p>
+ * If {@link #setLazyPartitioning(boolean) enabled}, the document is partitioned lazily: the
+ * scanner only runs up to the offsets for which partitions are requested, hence
+ * {@link #getPositions()} and the positions of the document's position category returned by
+ * {@link #getManagingPositionCategories()} only contain the partitions in front of the
+ * partitioned end. Clients which read these positions directly must then request the
+ * partitioning of the range they are interested in first, e.g. with
+ * {@link #computePartitioning(int, int)}.
+ * </p>
+ * <p>
+ * While scanning, the partitioner remembers line starts at which a token ends as checkpoints.
+ * The partitions behind a checkpoint only depend on the text behind it, so the rescan after a
+ * document change stops as soon as a token ends at a checkpoint behind the change.
+ * </p>
+ * <p>
+ * If {@link #setBackgroundInitialization(boolean) enabled}, the partitioner computes the
+ * partitioning in a background job when it is connected with delayed initialization.
+ * </p>
  *
  * @see IPartitionTokenScanner
  * @since 3.1
  */
 public class FastPartitioner implements IDocumentPartitioner, IDocumentPartitionerExtension, IDocumentPartitionerExtension2, IDocumentPartitionerExtension3 {
 
+	/**
+	 * Background job which partitions a snapshot of the document. The partitions it has
+	 * found are published in batches, the partitioner's thread adds them to the document.
+	 * <p>
+	 * If the document has a lock object, the job takes the snapshot while holding it. The
+	 * partitioner's thread must not wait for a job which has not started to scan yet, as it
+	 * may hold the lock or the job may not be run at all, it cancels such a job instead.
+	 * </p>
+	 */
+	private class InitializationJob extends Job {
+
+		/** The number of tokens after which the found partitions are published */
+		private static final int BATCH_SIZE= 1024;
+
+		/** The document of which the job takes the snapshot or <code>null</code> if it has been taken before */
+		private final IDocumentExtension5 fSnapshotSource;
+		/** The lock object of the document which is held while the snapshot is taken */
+		private final Object fLockObject;
+		/** The snapshot of the document */
+		private IDocument fSnapshot;
+		/** Has the job been canceled */
+		private volatile boolean fCanceled= false;
+		/** Is the job scanning the snapshot */
+		private boolean fScanning= false;
+		/** The offset behind which the partitioner's thread waits for partitions */
+		private volatile int fRequestedOffset= -1;
+
+		/** The published offsets of the partitions */
+		private int[] fOffsets= new int[0];
+		/** The published lengths of the partitions */
+		private int[] fLengths= new int[0];
+		/** The published content types of the partitions */
+		private String[] fTypes= new String[0];
+		/** The number of published partitions */
+		private int fCount;
+		/** The published checkpoints */
+		private int[] fFoundCheckpoints= new int[0];
+		/** The number of published checkpoints */
+		private int fFoundCheckpointCount;
+		/** The offset up to which the snapshot has been partitioned */
+		private int fEnd;
+		/** Has the job finished */
+		private boolean fDone= false;
+
+		/**
+		 * Creates a new initialization job which partitions the given snapshot.
+		 *
+		 * @param snapshot the snapshot of the document to partition
+		 */
+		public InitializationJob(IDocument snapshot) {
+			this(null, null);
+			fSnapshot= snapshot;
+		}
+
+		/**
+		 * Creates a new initialization job which takes the snapshot of the given document
+		 * while holding the document's lock object.
+		 *
+		 * @param document the document to partition
+		 * @param lockObject the lock object of the document
+		 */
+		public InitializationJob(IDocumentExtension5 document, Object lockObject) {
+			super("FastPartitioner initialization"); //$NON-NLS-1$
+			setSystem(true);
+			setPriority(DECORATE);
+			setRule(fInitializationRule);
+			fSnapshotSource= document;
+			fLockObject= lockObject;
+		}
+
+		/**
+		 * Cancels the job and waits until it has stopped scanning.
+		 */
+		public void stop() {
+			cancel();
+			boolean interrupted= false;
+			synchronized (this) {
+				fCanceled= true;
+				while (fScanning) {
+					try {
+						wait();
+					} catch (InterruptedException x) {
+						interrupted= true;
+					}
+				}
+				fDone= true;
+			}
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+
+		/**
+		 * Waits until the snapshot has been partitioned behind the given offset or the job has
+		 * finished. Cancels the job if it has not started to scan yet.
+		 *
+		 * @param offset the offset
+		 */
+		public void waitFor(int offset) {
+			synchronized (this) {
+				if (fScanning) {
+					try {
+						while (!fDone && fEnd <= offset) {
+							fRequestedOffset= offset;
+							wait();
+						}
+					} catch (InterruptedException x) {
+						Thread.currentThread().interrupt();
+					} finally {
+						fRequestedOffset= -1;
+					}
+					return;
+				}
+				if (fDone)
+					return;
+				fCanceled= true;
+				fDone= true;
+			}
+			cancel();
+		}
+
+		/**
+		 * Takes the snapshot if it has not been taken yet and marks the job as scanning.
+		 *
+		 * @return <code>false</code> if the job has been canceled
+		 */
+		private boolean startScanning() {
+			if (fSnapshotSource == null)
+				return markScanning();
+			synchronized (fLockObject) {
+				// the document is not changed while the lock is held, unless the job has been canceled
+				if (fCanceled)
+					return false;
+				fSnapshot= fSnapshotSource.getSnapshot();
+				return markScanning();
+			}
+		}
+
+		/**
+		 * Marks the job as scanning unless it has been canceled.
+		 *
+		 * @return <code>false</code> if the job has been canceled
+		 */
+		private synchronized boolean markScanning() {
+			if (fCanceled)
+				return false;
+			fScanning= true;
+			return true;
+		}
+
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			if (!startScanning())
+				return Status.CANCEL_STATUS;
+
+			int documentLength= fSnapshot.getLength();
+			int[] offsets= new int[64];
+			int[] lengths= new int[64];
+			String[] types= new String[64];
+			int count= 0;
+			int[] checkpoints= new int[16];
+			int checkpointCount= 0;
+			int end= 0;
+			int tokens= 0;
+
+			try {
+				fScanner.setRange(fSnapshot, 0, documentLength);
+				IToken token= fScanner.nextToken();
+				while (!token.isEOF() && !fCanceled && !monitor.isCanceled()) {
+
+					String contentType= getTokenContentType(token);
+					int tokenOffset= fScanner.getTokenOffset();
+					int tokenEnd= tokenOffset + fScanner.getTokenLength();
+
+					if (isSupportedContentType(contentType)) {
+						if (count == offsets.length) {
+							offsets= Arrays.copyOf(offsets, 2 * count);
+							lengths= Arrays.copyOf(lengths, 2 * count);
+							types= Arrays.copyOf(types, 2 * count);
+						}
+						offsets[count]= tokenOffset;
+						lengths[count]= tokenEnd - tokenOffset;
+						types[count++]= contentType;
+					}
+
+					end= tokenEnd;
+					int lastCheckpoint= checkpointCount > 0 ? checkpoints[checkpointCount - 1] : 0;
+					if (end >= lastCheckpoint + CHECKPOINT_DISTANCE && end < documentLength) {
+						char c= fSnapshot.getChar(end - 1);
+						if (c == '\n' || c == '\r' && fSnapshot.getChar(end) != '\n') {
+							if (checkpointCount == checkpoints.length)
+								checkpoints= Arrays.copyOf(checkpoints, 2 * checkpointCount);
+							checkpoints[checkpointCount++]= end;
+						}
+					}
+
+					int requestedOffset= fRequestedOffset;
+					if (++tokens % BATCH_SIZE == 0 || requestedOffset != -1 && end > requestedOffset)
+						publish(offsets, lengths, types, count, checkpoints, checkpointCount, end, false);
+
+					token= fScanner.nextToken();
+				}
+				if (token.isEOF())
+					end= documentLength;
+			} catch (BadLocationException x) {
+				// cannot happen as offsets come from scanner
+			} finally {
+				publish(offsets, lengths, types, count, checkpoints, checkpointCount, end, true);
+			}
+			return Status.OK_STATUS;
+		}
+
+		/**
+		 * Publishes the partitions found so far.
+		 *
+		 * @param offsets the offsets of the partitions
+		 * @param lengths the lengths of the partitions
+		 * @param types the content types of the partitions
+		 * @param count the number of partitions
+		 * @param checkpoints the checkpoints
+		 * @param checkpointCount the number of checkpoints
+		 * @param end the offset up to which the snapshot has been partitioned
+		 * @param done <code>true</code> if the job has finished scanning
+		 */
+		private synchronized void publish(int[] offsets, int[] lengths, String[] types, int count, int[] checkpoints, int checkpointCount, int end, boolean done) {
+			fOffsets= offsets;
+			fLengths= lengths;
+			fTypes= types;
+			fCount= count;
+			fFoundCheckpoints= checkpoints;
+			fFoundCheckpointCount= checkpointCount;
+			fEnd= end;
+			fDone= done;
+			fScanning= !done;
+			notifyAll();
+		}
+	}
+
 	/**
 	 * The position category this partitioner uses to store the document's partitioning information.
 	 */
@@ -97,6 +361,50 @@ public class FastPartitioner implements IDocumentPartitioner, IDocumentPartition
 	 * someone requests partition information.
 	 */
 	private Position[] fCachedPositions= null;
+	/**
+	 * The offset up to which the document has been partitioned. The text behind it has not
+	 * been scanned yet and all positions end at or before it.
+	 */
+	private int fPartitionedEnd;
+	/**
+	 * The checkpoints in ascending order. A checkpoint is a line start at which the scanner
+	 * has finished a token.
+	 */
+	private int[] fCheckpoints= new int[16];
+	/** The number of checkpoints */
+	private int fCheckpointCount;
+	/** The minimal distance between two checkpoints */
+	private static final int CHECKPOINT_DISTANCE= 4 * 1024;
+	/** The number of characters which are partitioned in advance behind a requested offset */
+	private static final int PARTITIONING_LOOK_AHEAD= 16 * 1024;
+	/** Tells whether the document is only partitioned up to the requested offsets */
+	private boolean fLazyPartitioning= false;
+	/**
+	 * Tells whether the partitioning is computed in the background if the initialization
+	 * may be delayed.
+	 */
+	private boolean fBackgroundInitialization= false;
+	/** The job which computes the initial partitioning or <code>null</code> */
+	private InitializationJob fInitializationJob;
+	/**
+	 * The scheduling rule of the initialization jobs, they must not run at the same time as they
+	 * share the partitioner's scanner.
+	 */
+	private final ISchedulingRule fInitializationRule= new ISchedulingRule() {
+		@Override
+		public boolean contains(ISchedulingRule rule) {
+			return rule == this;
+		}
+
+		@Override
+		public boolean isConflicting(ISchedulingRule rule) {
+			return rule == this;
+		}
+	};
+	/** The number of partitions taken over from the initialization job */
+	private int fInitializationCount;
+	/** The number of checkpoints taken over from the initialization job */
+	private int fInitializationCheckpointCount;
 	/** Debug option for cache consistency checking. */
 	private static final boolean CHECK_CACHE_CONSISTENCY= "true".equalsIgnoreCase(Platform.getDebugOption("org.eclipse.jface.text/debug/FastPartitioner/PositionCache"));  //$NON-NLS-1$//$NON-NLS-2$;
 
@@ -124,6 +432,51 @@ public class FastPartitioner implements IDocumentPartitioner, IDocumentPartition
 		connect(document, false);
 	}
 
+	/**
+	 * Sets whether the partitioning is computed in a background job when the partitioner is
+	 * {@link #connect(IDocument, boolean) connected} with delayed initialization to a document
+	 * which supports {@link IDocumentExtension5#getSnapshot() snapshots}, and again after a
+	 * rewrite session has been flushed. The job partitions a snapshot of the document and uses
+	 * the partitioner's scanner. Until it has finished, queries are answered from the partitions
+	 * it has found so far and wait for it if it has not reached the requested offset yet. The
+	 * first change of the document and the start of a rewrite session cancel the job, the
+	 * document is then partitioned by the partitioner itself. No job is started while the
+	 * document is in a rewrite session.
+	 * <p>
+	 * If the document is {@link ISynchronizable} and has a lock object, the job takes the
+	 * snapshot while holding the lock. Otherwise the snapshot is taken by the thread which
+	 * connects the partitioner, which must be the thread which modifies the document.
+	 * </p>
+	 * <p>
+	 * The default is <code>false</code>. Must be called before the partitioner is connected.
+	 * </p>
+	 *
+	 * @param enabled <code>true</code> to compute the partitioning in the background
+	 * @since 3.15
+	 */
+	public void setBackgroundInitialization(boolean enabled) {
+		fBackgroundInitialization= enabled;
+	}
+
+	/**
+	 * Sets whether the document is partitioned lazily. If enabled, the partitioner only scans
+	 * the document up to the offsets for which partitions are requested, plus a small
+	 * look-ahead, and changes behind the partitioned end need no rescan. Neither
+	 * {@link #initialize()} nor a document change then partition the whole document, so
+	 * {@link #getPositions()} and the positions of the partitioner's position category only
+	 * cover the part of the document which has been partitioned so far.
+	 * <p>
+	 * The default is <code>false</code>, which partitions the whole document. Must be called
+	 * before the partitioner is connected.
+	 * </p>
+	 *
+	 * @param enabled <code>true</code> to partition the document lazily
+	 * @since 3.15
+	 */
+	public void setLazyPartitioning(boolean enabled) {
+		fLazyPartitioning= enabled;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * <p>
@@ -139,8 +492,35 @@ public class FastPartitioner implements IDocumentPartitioner, IDocumentPartition
 		fDocument.addPositionCategory(fPositionCategory);
 
 		fIsInitialized= false;
-		if (!delayInitialization)
+		if (!delayInitialization) {
 			checkInitialization();
+		} else if (fBackgroundInitialization && document instanceof IDocumentExtension5 && !isInRewriteSession(document)) {
+			startInitialization();
+		}
+	}
+
+	/**
+	 * Returns whether the given document is in a rewrite session.
+	 *
+	 * @param document the document
+	 * @return <code>true</code> if the document has an active rewrite session
+	 */
+	private static boolean isInRewriteSession(IDocument document) {
+		return document instanceof IDocumentExtension4 && ((IDocumentExtension4) document).getActiveRewriteSession() != null;
+	}
+
+	/**
+	 * Initializes the partitioner and schedules a job which computes the partitioning of
+	 * a snapshot of the document.
+	 */
+	private void startInitialization() {
+		Object lockObject= fDocument instanceof ISynchronizable ? ((ISynchronizable) fDocument).getLockObject() : null;
+		if (lockObject != null)
+			fInitializationJob= new InitializationJob((IDocumentExtension5) fDocument, lockObject);
+		else
+			fInitializationJob= new InitializationJob(((IDocumentExtension5) fDocument).getSnapshot());
+		checkInitialization();
+		fInitializationJob.schedule();
 	}
 
 	/**
@@ -152,7 +532,9 @@ public class FastPartitioner implements IDocumentPartitioner, IDocumentPartition
 	}
 
 	/**
-	 * Performs the initial partitioning of the partitioner's document.
+	 * Performs the initial partitioning of the partitioner's document. If the document is
+	 * {@link #setLazyPartitioning(boolean) partitioned lazily}, only the beginning of the
+	 * document is partitioned, the rest is partitioned when partitions behind it are requested.
 	 * <p>
 	 * May be extended by subclasses.
 	 * </p>
@@ -160,21 +542,125 @@ public class FastPartitioner implements IDocumentPartitioner, IDocumentPartition
 	protected void initialize() {
 		fIsInitialized= true;
 		clearPositionCache();
-		fScanner.setRange(fDocument, 0, fDocument.getLength());
+		fPartitionedEnd= 0;
+		fCheckpointCount= 0;
+		fInitializationCount= 0;
+		fInitializationCheckpointCount= 0;
+		if (fInitializationJob == null)
+			partitionTo(0);
+	}
 
+	/**
+	 * Adds the partitions which the initialization job has found so far to the document.
+	 * Forgets the job if it has finished.
+	 */
+	private void takeOverInitialization() {
+		InitializationJob job= fInitializationJob;
+		int[] offsets, lengths, checkpoints;
+		String[] types;
+		int count, checkpointCount, end;
+		boolean done;
+		synchronized (job) {
+			offsets= job.fOffsets;
+			lengths= job.fLengths;
+			types= job.fTypes;
+			count= job.fCount;
+			checkpoints= job.fFoundCheckpoints;
+			checkpointCount= job.fFoundCheckpointCount;
+			end= job.fEnd;
+			done= job.fDone;
+		}
+
+		clearPositionCache();
+		try {
+			for (int i= fInitializationCount; i < count; i++)
+				fDocument.addPosition(fPositionCategory, new TypedPosition(offsets[i], lengths[i], types[i]));
+		} catch (BadLocationException x) {
+			// cannot happen as the document has not changed
+		} catch (BadPositionCategoryException x) {
+			// cannot happen if document has been connected before
+		}
+		replaceCheckpoints(fCheckpointCount, fCheckpointCount, Arrays.copyOfRange(checkpoints, fInitializationCheckpointCount, checkpointCount), checkpointCount - fInitializationCheckpointCount, 0);
+		fInitializationCount= count;
+		fInitializationCheckpointCount= checkpointCount;
+		fPartitionedEnd= end;
+		if (done)
+			fInitializationJob= null;
+	}
+
+	/**
+	 * Cancels the initialization job and keeps the partitions it has found.
+	 */
+	private void stopInitialization() {
+		if (fInitializationJob != null) {
+			fInitializationJob.stop();
+			takeOverInitialization();
+		}
+	}
+
+	/**
+	 * Cancels the initialization job and discards the partitions it has found.
+	 */
+	private void cancelInitialization() {
+		if (fInitializationJob != null) {
+			fInitializationJob.stop();
+			fInitializationJob= null;
+		}
+	}
+
+	/**
+	 * Continues partitioning the document behind the partitioned end. If the document is
+	 * partitioned lazily, this stops as soon as the partitioned end is behind the given offset,
+	 * otherwise the rest of the document is partitioned.
+	 *
+	 * @param offset the offset which must be partitioned
+	 */
+	private void partitionTo(int offset) {
+		int documentLength= fDocument.getLength();
+		if (!fIsInitialized || offset < fPartitionedEnd || fPartitionedEnd >= documentLength)
+			return;
+
+		if (fInitializationJob != null) {
+			fInitializationJob.waitFor(offset);
+			takeOverInitialization();
+			// the job may have been canceled before it has reached the offset
+			if (offset < fPartitionedEnd || fPartitionedEnd >= documentLength)
+				return;
+		}
+
+		clearPositionCache();
+		int start= fPartitionedEnd;
+		if (start == 0)
+			fScanner.setRange(fDocument, 0, documentLength);
+		else
+			fScanner.setPartialRange(fDocument, start, documentLength - start, IDocument.DEFAULT_CONTENT_TYPE, start);
+
+		int end= fLazyPartitioning ? offset + PARTITIONING_LOOK_AHEAD : documentLength;
+		int lastCheckpoint= fCheckpointCount > 0 ? fCheckpoints[fCheckpointCount - 1] : 0;
 		try {
 			IToken token= fScanner.nextToken();
 			while (!token.isEOF()) {
 
 				String contentType= getTokenContentType(token);
+				int tokenOffset= fScanner.getTokenOffset();
+				int tokenEnd= tokenOffset + fScanner.getTokenLength();
 
 				if (isSupportedContentType(contentType)) {
-					TypedPosition p= new TypedPosition(fScanner.getTokenOffset(), fScanner.getTokenLength(), contentType);
+					TypedPosition p= new TypedPosition(tokenOffset, tokenEnd - tokenOffset, contentType);
 					fDocument.addPosition(fPositionCategory, p);
 				}
 
+				fPartitionedEnd= tokenEnd;
+				if (tokenEnd >= lastCheckpoint + CHECKPOINT_DISTANCE && isLineStart(tokenEnd)) {
+					replaceCheckpoints(fCheckpointCount, fCheckpointCount, new int[] { tokenEnd }, 1, 0);
+					lastCheckpoint= tokenEnd;
+				}
+				if (tokenEnd > end)
+					return;
+
 				token= fScanner.nextToken();
 			}
+			fPartitionedEnd= documentLength;
 		} catch (BadLocationException x) {
 			// cannot happen as offsets come from scanner
 		} catch (BadPositionCategoryException x) {
@@ -182,6 +668,62 @@ public class FastPartitioner implements IDocumentPartitioner, IDocumentPartition
 		}
 	}
 
+	/**
+	 * Returns whether the given offset is a line start in front of the end of the document.
+	 *
+	 * @param offset the offset, must be greater than zero
+	 * @return <code>true</code> if the given offset is a line start
+	 * @throws BadLocationException if the offset is invalid
+	 */
+	private boolean isLineStart(int offset) throws BadLocationException {
+		if (offset >= fDocument.getLength())
+			return false;
+		char c= fDocument.getChar(offset - 1);
+		return c == '\n' || c == '\r' && fDocument.getChar(offset) != '\n';
+	}
+
+	/**
+	 * Returns the index of the first checkpoint behind the given offset.
+	 *
+	 * @param offset the offset
+	 * @return the index of the first checkpoint which is greater than the offset
+	 */
+	private int findCheckpoint(int offset) {
+		int i= -1, j= fCheckpointCount;
+		while (j - i > 1) {
+			int k= (i + j) >> 1;
+			if (fCheckpoints[k] > offset)
+				j= k;
+			else
+				i= k;
+		}
+		return j;
+	}
+
+	/**
+	 * Replaces the checkpoints with the given indices by the given checkpoints and shifts the
+	 * checkpoints behind them.
+	 *
+	 * @param from the index of the first replaced checkpoint
+	 * @param to the index behind the last replaced checkpoint
+	 * @param checkpoints the new checkpoints
+	 * @param count the number of new checkpoints
+	 * @param delta the amount by which the checkpoints behind the replaced ones are shifted
+	 */
+	private void replaceCheckpoints(int from, int to, int[] checkpoints, int count, int delta) {
+		int tail= fCheckpointCount - to;
+		int newCount= from + count + tail;
+		if (newCount > fCheckpoints.length)
+			fCheckpoints= Arrays.copyOf(fCheckpoints, Math.max(newCount, 2 * fCheckpoints.length));
+		System.arraycopy(fCheckpoints, to, fCheckpoints, from + count, tail);
+		System.arraycopy(checkpoints, 0, fCheckpoints, from, count);
+		if (delta != 0) {
+			for (int i= from + count; i < newCount; i++)
+				fCheckpoints[i] += delta;
+		}
+		fCheckpointCount= newCount;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * <p>
@@ -193,6 +735,8 @@ public class FastPartitioner implements IDocumentPartitioner, IDocumentPartition
 
 		Assert.isTrue(fDocument.containsPositionCategory(fPositionCategory));
 
+		cancelInitialization();
+
 		try {
 			fDocument.removePositionCategory(fPositionCategory);
 		} catch (BadPositionCategoryException x) {
@@ -212,6 +756,11 @@ public class FastPartitioner implements IDocumentPartitioner, IDocumentPartition
 
 			Assert.isTrue(e.getDocument() == fDocument);
 
+			// the initialization job partitions the document before the change
+			stopInitialization();
+			if (!fLazyPartitioning)
+				partitionTo(fPartitionedEnd);
+
 			fPreviousDocumentLength= e.getDocument().getLength();
 			fStartOffset= -1;
 			fEndOffset= -1;
@@ -296,12 +845,19 @@ public class FastPartitioner implements IDocumentPartitioner, IDocumentPartition
 		try {
 			Assert.isTrue(e.getDocument() == fDocument);
 
+			// the text behind the partitioned end has not been scanned yet, but the last partitions
+			// may have been cut short by the end of the document
+			if (e.getOffset() > fPartitionedEnd)
+				return rollBackPartitionedEnd();
+
 			Position[] category= getPositions();
 			IRegion line= fDocument.getLineInformationOfOffset(e.getOffset());
 			int reparseStart= line.getOffset();
 			int partitionStart= -1;
 			String contentType= null;
-			int newLength= e.getText() == null ? 0 : e.getText().length();
+			int newLength= e.getTextLength();
+			int delta= newLength - e.getLength();
+			int partitionedEnd= !fLazyPartitioning || e.getOffset() + e.getLength() < fPartitionedEnd ? fPartitionedEnd + delta : e.getOffset();
 
 			int first= fDocument.computeIndexInCategory(fPositionCategory, reparseStart);
 			if (first > 0)	{
@@ -325,6 +881,14 @@ public class FastPartitioner implements IDocumentPartitioner, IDocumentPartition
 				reparseStart= 0;
 			}
 
+			// the checkpoints in front of the rescanned text remain valid, the checkpoints
+			// behind the change are where the rescan can re-synchronize
+			int keptCheckpoints= findCheckpoint(partitionStart);
+			int nextCheckpoint= findCheckpoint(e.getOffset() + e.getLength());
+			int lastCheckpoint= keptCheckpoints > 0 ? fCheckpoints[keptCheckpoints - 1] : 0;
+			int[] checkpoints= new int[4];
+			int checkpointCount= 0;
+
 			fPositionUpdater.update(e);
 			for (int i= first; i < category.length; i++) {
 				Position p= category[i];
@@ -345,52 +909,89 @@ public class FastPartitioner implements IDocumentPartitioner, IDocumentPartition
 
 				contentType= getTokenContentType(token);
 
-				if (!isSupportedContentType(contentType)) {
-					token= fScanner.nextToken();
-					continue;
-				}
-
 				int start= fScanner.getTokenOffset();
 				int length= fScanner.getTokenLength();
+				int tokenEnd= start + length;
+
+				if (isSupportedContentType(contentType)) {
 
-				behindLastScannedPosition= start + length;
-				int lastScannedPosition= behindLastScannedPosition - 1;
+					behindLastScannedPosition= tokenEnd;
+					int lastScannedPosition= behindLastScannedPosition - 1;
 
-				// remove all affected positions
-				while (first < category.length) {
-					TypedPosition p= (TypedPosition) category[first];
-					if (lastScannedPosition >= p.offset + p.length ||
-							(p.overlapsWith(start, length) &&
-							 	(!fDocument.containsPosition(fPositionCategory, start, length) ||
-							 	 !contentType.equals(p.getType())))) {
+					// remove all affected positions
+					while (first < category.length) {
+						TypedPosition p= (TypedPosition) category[first];
+						if (lastScannedPosition >= p.offset + p.length ||
+								(p.overlapsWith(start, length) &&
+								 	(!fDocument.containsPosition(fPositionCategory, start, length) ||
+								 	 !contentType.equals(p.getType())))) {
 
+							rememberRegion(p.offset, p.length);
+							fDocument.removePosition(fPositionCategory, p);
+							++ first;
+
+						} else
+							break;
+					}
+
+					// if position already exists and we have scanned at least the
+					// area covered by the event, we are done
+					if (fDocument.containsPosition(fPositionCategory, start, length)) {
+						if (lastScannedPosition >= e.getOffset() + newLength) {
+							while (nextCheckpoint < fCheckpointCount && fCheckpoints[nextCheckpoint] + delta < tokenEnd)
+								++ nextCheckpoint;
+							replaceCheckpoints(keptCheckpoints, nextCheckpoint, checkpoints, checkpointCount, delta);
+							fPartitionedEnd= Math.max(partitionedEnd, tokenEnd);
+							return createRegion();
+						}
+						++ first;
+					} else {
+						// insert the new type position
+						try {
+							fDocument.addPosition(fPositionCategory, new TypedPosition(start, length, contentType));
+							rememberRegion(start, length);
+						} catch (BadPositionCategoryException x) {
+						} catch (BadLocationException x) {
+						}
+					}
+				}
+
+				// if the token ends at a checkpoint behind the event, the partitions behind
+				// the checkpoint are the same as before the change
+				while (nextCheckpoint < fCheckpointCount && fCheckpoints[nextCheckpoint] + delta < tokenEnd)
+					++ nextCheckpoint;
+				if (nextCheckpoint < fCheckpointCount && fCheckpoints[nextCheckpoint] + delta == tokenEnd) {
+					while (first < category.length && category[first].offset < tokenEnd) {
+						Position p= category[first++];
 						rememberRegion(p.offset, p.length);
 						fDocument.removePosition(fPositionCategory, p);
-						++ first;
+					}
+					replaceCheckpoints(keptCheckpoints, nextCheckpoint, checkpoints, checkpointCount, delta);
+					fPartitionedEnd= partitionedEnd;
+					return createRegion();
+				}
 
-					} else
-						break;
+				if (tokenEnd >= lastCheckpoint + CHECKPOINT_DISTANCE && isLineStart(tokenEnd)) {
+					if (checkpointCount == checkpoints.length)
+						checkpoints= Arrays.copyOf(checkpoints, 2 * checkpointCount);
+					checkpoints[checkpointCount++]= tokenEnd;
+					lastCheckpoint= tokenEnd;
 				}
 
-				// if position already exists and we have scanned at least the
-				// area covered by the event, we are done
-				if (fDocument.containsPosition(fPositionCategory, start, length)) {
-					if (lastScannedPosition >= e.getOffset() + newLength)
-						return createRegion();
-					++ first;
-				} else {
-					// insert the new type position
-					try {
-						fDocument.addPosition(fPositionCategory, new TypedPosition(start, length, contentType));
-						rememberRegion(start, length);
-					} catch (BadPositionCategoryException x) {
-					} catch (BadLocationException x) {
-					}
+				// the text behind the previously partitioned end is partitioned on request
+				if (tokenEnd >= partitionedEnd) {
+					partitionedEnd= tokenEnd;
+					break;
 				}
 
 				token= fScanner.nextToken();
 			}
 
+			if (token.isEOF())
+				partitionedEnd= fDocument.getLength();
+			replaceCheckpoints(keptCheckpoints, fCheckpointCount, checkpoints, checkpointCount, 0);
+			fPartitionedEnd= partitionedEnd;
+
 			first= fDocument.computeIndexInCategory(fPositionCategory, behindLastScannedPosition);
 
 			clearPositionCache();
@@ -412,6 +1013,46 @@ public class FastPartitioner implements IDocumentPartitioner, IDocumentPartition
 		return createRegion();
 	}
 
+	/**
+	 * Moves the partitioned end back to where a rescan of the last partitioned line would
+	 * start, i.e. to the start of the partition which contains the line start or to the end of
+	 * the last partition in front of it, and removes the partitions behind it. The tokens in
+	 * front of the partitioned end may have been found while the scanner looked ahead to text
+	 * which has changed since, e.g. an unterminated string which is now terminated. The text
+	 * behind the new partitioned end is scanned again on request.
+	 *
+	 * @return the region whose partitions have been removed, or <code>null</code> if nothing has
+	 *         been partitioned
+	 * @throws BadLocationException if the partitioned end is invalid
+	 * @throws BadPositionCategoryException if the partitioner is not connected
+	 */
+	private IRegion rollBackPartitionedEnd() throws BadLocationException, BadPositionCategoryException {
+		int end= fPartitionedEnd;
+		if (end == 0)
+			return null;
+
+		int lineStart= fDocument.getLineOffset(fDocument.getLineOfOffset(end - 1));
+		Position[] category= getPositions();
+		int first= fDocument.computeIndexInCategory(fPositionCategory, lineStart);
+		int start= 0;
+		if (first > 0) {
+			Position partition= category[first - 1];
+			if (partition.includes(lineStart)) {
+				start= partition.getOffset();
+				-- first;
+			} else {
+				start= partition.getOffset() + partition.getLength();
+			}
+		}
+
+		for (int i= first; i < category.length; i++)
+			fDocument.removePosition(fPositionCategory, category[i]);
+		clearPositionCache();
+		replaceCheckpoints(findCheckpoint(start), fCheckpointCount, new int[0], 0, 0);
+		fPartitionedEnd= start;
+		return new Region(start, end - start);
+	}
+
 	/**
 	 * Returns the position in the partitoner's position category which is
 	 * close to the given offset. This is, the position has either an offset which
@@ -425,6 +1066,7 @@ public class FastPartitioner implements IDocumentPartitioner, IDocumentPartition
 	 * @return the closest position in the partitioner's category
 	 */
 	protected TypedPosition findClosestPosition(int offset) {
+		partitionTo(offset);
 
 		try {
 
@@ -478,11 +1120,23 @@ public class FastPartitioner implements IDocumentPartitioner, IDocumentPartition
 	@Override
 	public ITypedRegion getPartition(int offset) {
 		checkInitialization();
+		partitionTo(offset);
 
 		try {
 
 			Position[] category = getPositions();
 
+			// a partition of the default content type extends to the next partition
+			while (fPartitionedEnd < fDocument.getLength()) {
+				if (category.length > 0) {
+					Position last= category[category.length - 1];
+					if (last.offset >= offset || last.includes(offset))
+						break;
+				}
+				partitionTo(fPartitionedEnd);
+				category= getPositions();
+			}
+
 			if (category == null || category.length == 0)
 				return new TypedRegion(0, fDocument.getLength(), IDocument.DEFAULT_CONTENT_TYPE);
 
@@ -618,6 +1272,7 @@ public class FastPartitioner implements IDocumentPartitioner, IDocumentPartition
 	@Override
 	public ITypedRegion[] computePartitioning(int offset, int length, boolean includeZeroLengthPartitions) {
 		checkInitialization();
+		partitionTo(offset + length);
 		List<TypedRegion> list= new ArrayList<>();
 
 		try {
@@ -741,6 +1396,8 @@ public class FastPartitioner implements IDocumentPartitioner, IDocumentPartition
 		if (fActiveRewriteSession != null)
 			throw new IllegalStateException();
 		fActiveRewriteSession= session;
+		// the partitions would not be updated during the session
+		cancelInitialization();
 	}
 
 	/**
@@ -772,6 +1429,8 @@ public class FastPartitioner implements IDocumentPartitioner, IDocumentPartition
 	protected final void flushRewriteSession() {
 		fActiveRewriteSession= null;
 
+		cancelInitialization();
+
 		// remove all position belonging to the partitioner position category
 		try {
 			fDocument.removePositionCategory(fPositionCategory);
@@ -780,6 +1439,9 @@ public class FastPartitioner implements IDocumentPartitioner, IDocumentPartition
 		fDocument.addPositionCategory(fPositionCategory);
 
 		fIsInitialized= false;
+		// the session is over for the partitioner, hence the job is canceled by the next change
+		if (fBackgroundInitialization && fDocument instanceof IDocumentExtension5)
+			startInitialization();
 	}
 
 	/**
@@ -793,7 +1455,9 @@ public class FastPartitioner implements IDocumentPartitioner, IDocumentPartition
 	}
 
 	/**
-	 * Returns the partitioners positions.
+	 * Returns the partitioners positions. If the document is
+	 * {@link #setLazyPartitioning(boolean) partitioned lazily}, only the part of the document
+	 * which has been partitioned so far is covered, see {@link #computePartitioning(int, int)}.
 	 *
 	 * @return the partitioners positions
 	 * @throws BadPositionCategoryException if getting the positions from the
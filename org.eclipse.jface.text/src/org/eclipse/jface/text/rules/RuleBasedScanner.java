@@ -30,6 +30,12 @@ import org.eclipse.jface.text.IDocument;
  * which returns <code>true</code> when calling <code>isOther</code>, unless the end
  * of the file is reached. In this case the token returns <code>true</code> when calling
  * <code>isEOF</code>.
+ * <p>
+ * Rules of the classes {@link PatternRule}, {@link SingleLineRule}, {@link MultiLineRule},
+ * {@link EndOfLineRule}, {@link WordPatternRule} and {@link NumberRule} are only evaluated at the
+ * characters at which they can match, other rules, including subclasses of these rules, are
+ * evaluated at every character.
+ * </p>
  *
  * @see IRule
  */
@@ -53,6 +59,12 @@ public class RuleBasedScanner implements ICharacterScanner, ITokenScanner {
 	protected int fColumn;
 	/** Internal setting for the un-initialized column cache. */
 	protected static final int UNDEFINED= -1;
+	/**
+	 * The dispatcher which evaluates only the rules that may match at the next character, or
+	 * <code>null</code> if there are no rules. It is created by {@link #setRules(IRule[])}, if
+	 * subclasses have assigned other rules since, all rules are evaluated.
+	 */
+	private RuleDispatcher fDispatcher;
 
 	/**
 	 * Creates a new rule based scanner which does not have any rule.
@@ -69,8 +81,11 @@ public class RuleBasedScanner implements ICharacterScanner, ITokenScanner {
 		if (rules != null) {
 			fRules= new IRule[rules.length];
 			System.arraycopy(rules, 0, fRules, 0, rules.length);
-		} else
+			fDispatcher= new RuleDispatcher(fRules);
+		} else {
 			fRules= null;
+			fDispatcher= null;
+		}
 	}
 
 	/**
@@ -160,7 +175,13 @@ public class RuleBasedScanner implements ICharacterScanner, ITokenScanner {
 		fTokenOffset= fOffset;
 		fColumn= UNDEFINED;
 
-		if (fRules != null) {
+		if (fDispatcher != null && fDispatcher.getRules() == fRules) {
+			int c= read();
+			unread();
+			IToken token= fDispatcher.evaluate(this, c);
+			if (!token.isUndefined())
+				return token;
+		} else if (fRules != null) {
 			for (IRule fRule : fRules) {
 				IToken token= (fRule.evaluate(this));
 				if (!token.isUndefined())
@@ -0,0 +1,203 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.text.rules;
+
+
+/**
+ * Dispatches the evaluation of a sequence of rules on the next character to be read. The
+ * rules of the standard classes {@link PatternRule}, {@link SingleLineRule},
+ * {@link MultiLineRule}, {@link EndOfLineRule}, {@link WordPatternRule} and {@link NumberRule}
+ * can only match at certain characters, all other rules are evaluated at every character. For
+ * each character below 256 the indices of the rules which may match at it are computed when the
+ * character is first seen.
+ * <p>
+ * If an element of the rule array has been replaced since the dispatcher has been created, all
+ * rules are evaluated one after the other. A rule which does not match may not have restored the
+ * offset of the scanner. In that case the remaining rules are all evaluated at the new offset,
+ * one after the other.
+ * </p>
+ */
+final class RuleDispatcher {
+
+	/** The start character of rules which may match at any character */
+	private static final int ANY= -2;
+	/** The start character of rules which only match at digits */
+	private static final int DIGIT= -3;
+
+	/** The number of characters for which the candidate rules are remembered */
+	private static final int TABLE_SIZE= 256;
+
+	/** The rules, may be modified by the scanner's subclasses */
+	private final IRule[] fRules;
+	/** The rules at the time the dispatcher has been created */
+	private final IRule[] fDispatchedRules;
+	/**
+	 * The character at which each rule may match, {@link #ANY} or {@link #DIGIT}
+	 */
+	private final int[] fStartCharacters;
+	/**
+	 * The indices of the rules which may match at each character below {@link #TABLE_SIZE},
+	 * followed by the ones for the end of the file, or <code>null</code> if not yet computed
+	 */
+	private final int[][] fCandidates= new int[TABLE_SIZE + 1][];
+
+	/**
+	 * Creates a new dispatcher for the given rules.
+	 *
+	 * @param rules the rules
+	 */
+	RuleDispatcher(IRule[] rules) {
+		fRules= rules;
+		fDispatchedRules= rules.clone();
+		fStartCharacters= new int[rules.length];
+		for (int i= 0; i < rules.length; i++)
+			fStartCharacters[i]= getStartCharacter(rules[i]);
+	}
+
+	/**
+	 * Returns the rules this dispatcher has been created for.
+	 *
+	 * @return the rules
+	 */
+	IRule[] getRules() {
+		return fRules;
+	}
+
+	/**
+	 * Evaluates the rules which may match at the given character in their order until one of
+	 * them returns a defined token. If a rule which does not match leaves the scanner at a
+	 * different offset, all the following rules are evaluated like in a plain sequence of rules.
+	 *
+	 * @param scanner the scanner
+	 * @param c the next character to be read by the scanner, or {@link ICharacterScanner#EOF}
+	 * @return the token of the first rule which matches, or {@link Token#UNDEFINED}
+	 */
+	IToken evaluate(RuleBasedScanner scanner, int c) {
+		if (!isUnchanged())
+			return evaluateAll(scanner, 0);
+
+		int offset= scanner.fOffset;
+		if (c < TABLE_SIZE) {
+			int index= c == ICharacterScanner.EOF ? TABLE_SIZE : c;
+			int[] candidates= fCandidates[index];
+			if (candidates == null)
+				candidates= fCandidates[index]= computeCandidates(c);
+			for (int candidate : candidates) {
+				IToken token= fRules[candidate].evaluate(scanner);
+				if (!token.isUndefined())
+					return token;
+				if (scanner.fOffset != offset)
+					return evaluateAll(scanner, candidate + 1);
+			}
+		} else {
+			for (int i= 0; i < fRules.length; i++) {
+				if (mayMatch(i, c)) {
+					IToken token= fRules[i].evaluate(scanner);
+					if (!token.isUndefined())
+						return token;
+					if (scanner.fOffset != offset)
+						return evaluateAll(scanner, i + 1);
+				}
+			}
+		}
+		return Token.UNDEFINED;
+	}
+
+	/**
+	 * Returns whether the rules are still the ones the dispatcher has been created for.
+	 *
+	 * @return <code>true</code> if no rule has been replaced
+	 */
+	private boolean isUnchanged() {
+		for (int i= 0; i < fRules.length; i++) {
+			if (fRules[i] != fDispatchedRules[i])
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Evaluates all rules starting at the given index in their order until one of them returns a
+	 * defined token.
+	 *
+	 * @param scanner the scanner
+	 * @param start the index of the first rule to evaluate
+	 * @return the token of the first rule which matches, or {@link Token#UNDEFINED}
+	 */
+	private IToken evaluateAll(ICharacterScanner scanner, int start) {
+		for (int i= start; i < fRules.length; i++) {
+			IToken token= fRules[i].evaluate(scanner);
+			if (!token.isUndefined())
+				return token;
+		}
+		return Token.UNDEFINED;
+	}
+
+	/**
+	 * Computes the indices of the rules which may match at the given character.
+	 *
+	 * @param c the character or {@link ICharacterScanner#EOF}
+	 * @return the indices of the rules in ascending order
+	 */
+	private int[] computeCandidates(int c) {
+		int[] candidates= new int[fRules.length];
+		int count= 0;
+		for (int i= 0; i < fRules.length; i++) {
+			if (mayMatch(i, c))
+				candidates[count++]= i;
+		}
+		int[] result= new int[count];
+		System.arraycopy(candidates, 0, result, 0, count);
+		return result;
+	}
+
+	/**
+	 * Returns whether the rule with the given index may match at the given character.
+	 *
+	 * @param index the index of the rule
+	 * @param c the character or {@link ICharacterScanner#EOF}
+	 * @return <code>false</code> if the rule does not match at the character
+	 */
+	private boolean mayMatch(int index, int c) {
+		int start= fStartCharacters[index];
+		switch (start) {
+			case ANY:
+				return true;
+			case DIGIT:
+				return c != ICharacterScanner.EOF && Character.isDigit((char) c);
+			default:
+				return c == start;
+		}
+	}
+
+	/**
+	 * Returns the character at which the given rule may match. Subclasses of the standard
+	 * rules and rules whose decision depends on other code, like detectors, may match
+	 * anywhere.
+	 *
+	 * @param rule the rule
+	 * @return the start character of the rule, {@link #ANY} or {@link #DIGIT}
+	 */
+	private static int getStartCharacter(IRule rule) {
+		Class<?> ruleClass= rule.getClass();
+		if (ruleClass == PatternRule.class || ruleClass == SingleLineRule.class || ruleClass == MultiLineRule.class || ruleClass == EndOfLineRule.class || ruleClass == WordPatternRule.class) {
+			char[] startSequence= ((PatternRule) rule).fStartSequence;
+			if (startSequence != null && startSequence.length > 0)
+				return startSequence[0];
+		}
+		if (ruleClass == NumberRule.class)
+			return DIGIT;
+		return ANY;
+	}
+}
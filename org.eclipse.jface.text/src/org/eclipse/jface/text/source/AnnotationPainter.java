@@ -14,13 +14,13 @@
  *******************************************************************************/
 package org.eclipse.jface.text.source;
 
+import java.util.AbstractMap.SimpleEntry;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -43,6 +43,7 @@ import org.eclipse.core.runtime.Platform;
 
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
 import org.eclipse.jface.text.IPaintPositionManager;
 import org.eclipse.jface.text.IPainter;
 import org.eclipse.jface.text.IRegion;
@@ -339,6 +340,158 @@ public class AnnotationPainter implements IPainter, PaintListener, IAnnotationMo
 		private Object fPaintingStrategy;
 	}
 
+	/**
+	 * The decorations which are drawn by a drawing strategy, grouped by layer and sorted by
+	 * offset within each layer. A paint request only visits the decorations which intersect the
+	 * painted region.
+	 * <p>
+	 * The order of the decorations does not change when their positions are updated to document
+	 * changes, only their offsets and lengths do. The maximal end offsets, which bound the
+	 * search, are therefore recomputed in a single pass after each document change, while the
+	 * decorations are only sorted again when the set of decorations has changed.
+	 * </p>
+	 *
+	 * @since 3.15
+	 */
+	private static class DecorationIndex {
+
+		/** The annotations of each layer, sorted by offset. */
+		private final Annotation[][] fAnnotations;
+		/** The decorations of each layer, in the order of {@link #fAnnotations}. */
+		private final Decoration[][] fDecorations;
+		/** The maximal end offset of the decorations up to and including each index, per layer. */
+		private final int[][] fMaxEnds;
+		/** The modification stamp of the document for which the maximal end offsets are valid. */
+		private long fModificationStamp= IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+
+		/**
+		 * Creates the index of the given decorations.
+		 *
+		 * @param decorations the decorations which are drawn by a drawing strategy
+		 */
+		public DecorationIndex(Map<Annotation, Decoration> decorations) {
+			int layers= 0;
+			for (Decoration decoration : decorations.values())
+				layers= Math.max(layers, decoration.fLayer + 1);
+
+			int[] sizes= new int[layers];
+			for (Decoration decoration : decorations.values())
+				sizes[decoration.fLayer]++;
+
+			fAnnotations= new Annotation[layers][];
+			fDecorations= new Decoration[layers][];
+			fMaxEnds= new int[layers][];
+			for (int layer= 0; layer < layers; layer++) {
+				fAnnotations[layer]= new Annotation[sizes[layer]];
+				fDecorations[layer]= new Decoration[sizes[layer]];
+				fMaxEnds[layer]= new int[sizes[layer]];
+				sizes[layer]= 0;
+			}
+
+			for (Entry<Annotation, Decoration> entry : decorations.entrySet()) {
+				int layer= entry.getValue().fLayer;
+				fAnnotations[layer][sizes[layer]]= entry.getKey();
+				fDecorations[layer][sizes[layer]]= entry.getValue();
+				sizes[layer]++;
+			}
+
+			for (int layer= 0; layer < layers; layer++)
+				sort(layer);
+		}
+
+		/**
+		 * Sorts the decorations of the given layer by offset.
+		 *
+		 * @param layer the layer
+		 */
+		private void sort(int layer) {
+			Annotation[] annotations= fAnnotations[layer];
+			Decoration[] decorations= fDecorations[layer];
+			Integer[] order= new Integer[decorations.length];
+			for (int i= 0; i < order.length; i++)
+				order[i]= Integer.valueOf(i);
+			Arrays.sort(order, (i1, i2) -> Integer.compare(decorations[i1.intValue()].fPosition.offset, decorations[i2.intValue()].fPosition.offset));
+
+			Annotation[] sortedAnnotations= new Annotation[annotations.length];
+			Decoration[] sortedDecorations= new Decoration[decorations.length];
+			for (int i= 0; i < order.length; i++) {
+				sortedAnnotations[i]= annotations[order[i].intValue()];
+				sortedDecorations[i]= decorations[order[i].intValue()];
+			}
+			fAnnotations[layer]= sortedAnnotations;
+			fDecorations[layer]= sortedDecorations;
+		}
+
+		/**
+		 * Makes the index valid for the given modification stamp of the document. Recomputes the
+		 * maximal end offsets if the document has changed since the last call, and sorts a layer
+		 * again in the unlikely case that a position updater has changed the order of its
+		 * decorations.
+		 *
+		 * @param modificationStamp the modification stamp of the document or
+		 *            {@link IDocumentExtension4#UNKNOWN_MODIFICATION_STAMP} if the positions may
+		 *            change without a new stamp
+		 */
+		public void validate(long modificationStamp) {
+			if (modificationStamp != IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP && modificationStamp == fModificationStamp)
+				return;
+
+			for (int layer= 0; layer < fDecorations.length; layer++) {
+				Decoration[] decorations= fDecorations[layer];
+				for (int i= 1; i < decorations.length; i++) {
+					if (decorations[i].fPosition.offset < decorations[i - 1].fPosition.offset) {
+						sort(layer);
+						break;
+					}
+				}
+
+				decorations= fDecorations[layer];
+				int[] maxEnds= fMaxEnds[layer];
+				int maxEnd= Integer.MIN_VALUE;
+				for (int i= 0; i < decorations.length; i++) {
+					Position position= decorations[i].fPosition;
+					maxEnd= Math.max(maxEnd, position.offset + position.length);
+					maxEnds[i]= maxEnd;
+				}
+			}
+			fModificationStamp= modificationStamp;
+		}
+
+		/**
+		 * Adds the decorations which touch or overlap the given region to the given list, layer
+		 * by layer.
+		 *
+		 * @param offset the offset of the region
+		 * @param length the length of the region
+		 * @param result the list to add the annotations and their decorations to
+		 */
+		public void collect(int offset, int length, List<Entry<Annotation, Decoration>> result) {
+			int end= offset + length;
+			for (int layer= 0; layer < fDecorations.length; layer++) {
+				Decoration[] decorations= fDecorations[layer];
+				int[] maxEnds= fMaxEnds[layer];
+
+				// first decoration which ends at or after the region's offset
+				int low= 0, high= decorations.length;
+				while (low < high) {
+					int mid= (low + high) >>> 1;
+					if (maxEnds[mid] < offset)
+						low= mid + 1;
+					else
+						high= mid;
+				}
+
+				for (int i= low; i < decorations.length; i++) {
+					Position position= decorations[i].fPosition;
+					if (position.offset > end)
+						break;
+					if (position.offset + position.length >= offset)
+						result.add(new SimpleEntry<>(fAnnotations[layer][i], decorations[i]));
+				}
+			}
+		}
+	}
+
 
 	/** Indicates whether this painter is active */
 	private boolean fIsActive= false;
@@ -374,6 +527,12 @@ public class AnnotationPainter implements IPainter, PaintListener, IAnnotationMo
 	 * @since 3.0
 	 */
 	private Object fHighlightedDecorationsMapLock= new Object();
+	/**
+	 * The index of the decorations map, or <code>null</code> if it has to be rebuilt. Guarded by
+	 * the lock of the decorations map.
+	 * @since 3.15
+	 */
+	private DecorationIndex fDecorationIndex;
 	/**
 	 * Maps an annotation type to its registered color.
 	 *
@@ -525,6 +684,11 @@ public class AnnotationPainter implements IPainter, PaintListener, IAnnotationMo
 	/**
 	 * Updates the set of decorations based on the current state of
 	 * the painter's annotation model.
+	 * <p>
+	 * A world change rebuilds the decorations from all annotations of the model. Otherwise only
+	 * the added, removed, and changed annotations of the event are visited and the decoration
+	 * maps are updated in place.
+	 * </p>
 	 *
 	 * @param event the annotation model event
 	 */
@@ -539,6 +703,7 @@ public class AnnotationPainter implements IPainter, PaintListener, IAnnotationMo
 			// annotation model is null -> clear all
 			synchronized (fDecorationMapLock) {
 				fDecorationsMap.clear();
+				fDecorationIndex= null;
 			}
 			synchronized (fHighlightedDecorationsMapLock) {
 				fHighlightedDecorationsMap.clear();
@@ -555,160 +720,156 @@ public class AnnotationPainter implements IPainter, PaintListener, IAnnotationMo
 		int drawRangeStart= Integer.MAX_VALUE;
 		int drawRangeEnd= -1;
 
-		Map<Annotation, Decoration> decorationsMap;
-		Map<Annotation, Decoration> highlightedDecorationsMap;
+		boolean isWorldChange= event == null || event.isWorldChange();
+		// whether the set of decorations drawn by a drawing strategy has changed
+		boolean decorationsChanged= isWorldChange;
+
+		// The decorations to be cleared once the maps are up to date
+		List<Entry<Annotation, Decoration>> decorationsToClear= new ArrayList<>();
 
-		// Clone decoration maps
 		synchronized (fDecorationMapLock) {
-			decorationsMap= new HashMap<>(fDecorationsMap);
-		}
-		synchronized (fHighlightedDecorationsMapLock) {
-			highlightedDecorationsMap= new HashMap<>(fHighlightedDecorationsMap);
-		}
+			synchronized (fHighlightedDecorationsMapLock) {
 
-		boolean isWorldChange= false;
+				Map<Annotation, Decoration> decorationsMap= fDecorationsMap;
+				Map<Annotation, Decoration> highlightedDecorationsMap= fHighlightedDecorationsMap;
 
-		Iterator<Annotation> e;
-		if (event == null || event.isWorldChange()) {
-			isWorldChange= true;
+				Iterator<Annotation> e;
+				if (isWorldChange) {
 
-			if (DEBUG && event == null)
-				System.out.println("AP: INTERNAL CHANGE"); //$NON-NLS-1$
+					if (DEBUG && event == null)
+						System.out.println("AP: INTERNAL CHANGE"); //$NON-NLS-1$
 
-			Iterator<Entry<Annotation, Decoration>> iter= decorationsMap.entrySet().iterator();
-			while (iter.hasNext()) {
-				Entry<Annotation, Decoration> entry= iter.next();
-				Annotation annotation= entry.getKey();
-				Decoration decoration= entry.getValue();
-				drawDecoration(decoration, null, annotation, clippingRegion, document);
-			}
+					decorationsToClear.addAll(decorationsMap.entrySet());
+					decorationsMap= new HashMap<>();
+					highlightedDecorationsMap= new HashMap<>();
 
-			decorationsMap.clear();
+					e= fModel.getAnnotationIterator();
 
-			highlightedDecorationsMap.clear();
+				} else {
 
-			e= fModel.getAnnotationIterator();
+					// Remove annotations
+					Annotation[] removedAnnotations= event.getRemovedAnnotations();
+					for (Annotation annotation : removedAnnotations) {
+						Decoration decoration= highlightedDecorationsMap.remove(annotation);
+						if (decoration != null) {
+							Position position= decoration.fPosition;
+							if (position != null) {
+								highlightAnnotationRangeStart= Math.min(highlightAnnotationRangeStart, position.offset);
+								highlightAnnotationRangeEnd= Math.max(highlightAnnotationRangeEnd, position.offset + position.length);
+							}
+						}
+						decoration= decorationsMap.remove(annotation);
+						if (decoration != null) {
+							decorationsChanged= true;
+							decorationsToClear.add(new SimpleEntry<>(annotation, decoration));
+							Position position= decoration.fPosition;
+							if (position != null) {
+								drawRangeStart= Math.min(drawRangeStart, position.offset);
+								drawRangeEnd= Math.max(drawRangeEnd, position.offset + position.length);
+							}
+						}
 
+					}
 
-		} else {
+					// Update existing annotations
+					Annotation[] changedAnnotations= event.getChangedAnnotations();
+					for (Annotation annotation : changedAnnotations) {
+						boolean isHighlighting= false;
+
+						Decoration decoration= highlightedDecorationsMap.get(annotation);
+
+						if (decoration != null) {
+							isHighlighting= true;
+							// The call below updates the decoration - no need to create new decoration
+							decoration= getDecoration(annotation, decoration);
+							if (decoration == null) {
+								Decoration removedDecoration= highlightedDecorationsMap.remove(annotation);
+								if (removedDecoration != null) {
+									highlightAnnotationRangeStart= Math.min(highlightAnnotationRangeStart, removedDecoration.fPosition.offset);
+									highlightAnnotationRangeEnd= Math.max(highlightAnnotationRangeEnd, removedDecoration.fPosition.offset + removedDecoration.fPosition.length);
+								}
+							}
+
+						} else {
+							decoration= getDecoration(annotation, decoration);
+							if (decoration != null && decoration.fPaintingStrategy instanceof ITextStyleStrategy) {
+								highlightedDecorationsMap.put(annotation, decoration);
+								isHighlighting= true;
+							}
+						}
 
-			// Remove annotations
-			Annotation[] removedAnnotations= event.getRemovedAnnotations();
-			for (Annotation annotation : removedAnnotations) {
-				Decoration decoration= highlightedDecorationsMap.remove(annotation);
-				if (decoration != null) {
-					Position position= decoration.fPosition;
-					if (position != null) {
-						highlightAnnotationRangeStart= Math.min(highlightAnnotationRangeStart, position.offset);
-						highlightAnnotationRangeEnd= Math.max(highlightAnnotationRangeEnd, position.offset + position.length);
-					}
-				}
-				decoration= decorationsMap.remove(annotation);
-				if (decoration != null) {
-					drawDecoration(decoration, null, annotation, clippingRegion, document);
-					Position position= decoration.fPosition;
-					if (position != null) {
-						drawRangeStart= Math.min(drawRangeStart, position.offset);
-						drawRangeEnd= Math.max(drawRangeEnd, position.offset + position.length);
-					}
-				}
+						boolean usesDrawingStrategy= !isHighlighting && decoration != null;
 
-			}
+						Position position= null;
+						if (decoration == null)
+							position= fModel.getPosition(annotation);
+						else
+							position= decoration.fPosition;
+
+						if (position != null && !position.isDeleted()) {
+							if (isHighlighting) {
+								highlightAnnotationRangeStart= Math.min(highlightAnnotationRangeStart, position.offset);
+								highlightAnnotationRangeEnd= Math.max(highlightAnnotationRangeEnd, position.offset + position.length);
+							}
+							if (usesDrawingStrategy) {
+								drawRangeStart= Math.min(drawRangeStart, position.offset);
+								drawRangeEnd= Math.max(drawRangeEnd, position.offset + position.length);
+							}
+						} else {
+							Decoration removedDecoration= highlightedDecorationsMap.remove(annotation);
+							if (removedDecoration != null) {
+								highlightAnnotationRangeStart= Math.min(highlightAnnotationRangeStart, removedDecoration.fPosition.offset);
+								highlightAnnotationRangeEnd= Math.max(highlightAnnotationRangeEnd, removedDecoration.fPosition.offset + removedDecoration.fPosition.length);
+							}
+						}
 
-			// Update existing annotations
-			Annotation[] changedAnnotations= event.getChangedAnnotations();
-			for (Annotation annotation : changedAnnotations) {
-				boolean isHighlighting= false;
-
-				Decoration decoration= highlightedDecorationsMap.get(annotation);
-
-				if (decoration != null) {
-					isHighlighting= true;
-					// The call below updates the decoration - no need to create new decoration
-					decoration= getDecoration(annotation, decoration);
-					if (decoration == null) {
-						Decoration removedDecoration= highlightedDecorationsMap.remove(annotation);
-						if (removedDecoration != null) {
-							highlightAnnotationRangeStart= Math.min(highlightAnnotationRangeStart, removedDecoration.fPosition.offset);
-							highlightAnnotationRangeEnd= Math.max(highlightAnnotationRangeEnd, removedDecoration.fPosition.offset + removedDecoration.fPosition.length);
+						if (usesDrawingStrategy) {
+							Decoration oldDecoration= decorationsMap.get(annotation);
+							if (oldDecoration != null) {
+								decorationsChanged= true;
+								decorationsToClear.add(new SimpleEntry<>(annotation, oldDecoration));
+								if (decoration != null)
+									decorationsMap.put(annotation, decoration);
+								else
+									decorationsMap.remove(annotation);
+							}
 						}
 					}
 
-				} else {
-					decoration= getDecoration(annotation, decoration);
-					if (decoration != null && decoration.fPaintingStrategy instanceof ITextStyleStrategy) {
-						highlightedDecorationsMap.put(annotation, decoration);
-						isHighlighting= true;
-					}
+					e= Arrays.asList(event.getAddedAnnotations()).iterator();
 				}
 
-				boolean usesDrawingStrategy= !isHighlighting && decoration != null;
-
-				Position position= null;
-				if (decoration == null)
-					position= fModel.getPosition(annotation);
-				else
-					position= decoration.fPosition;
-
-				if (position != null && !position.isDeleted()) {
-					if (isHighlighting) {
-						highlightAnnotationRangeStart= Math.min(highlightAnnotationRangeStart, position.offset);
-						highlightAnnotationRangeEnd= Math.max(highlightAnnotationRangeEnd, position.offset + position.length);
-					}
-					if (usesDrawingStrategy) {
-						drawRangeStart= Math.min(drawRangeStart, position.offset);
-						drawRangeEnd= Math.max(drawRangeEnd, position.offset + position.length);
-					}
-				} else {
-					Decoration removedDecoration= highlightedDecorationsMap.remove(annotation);
-					if (removedDecoration != null) {
-						highlightAnnotationRangeStart= Math.min(highlightAnnotationRangeStart, removedDecoration.fPosition.offset);
-						highlightAnnotationRangeEnd= Math.max(highlightAnnotationRangeEnd, removedDecoration.fPosition.offset + removedDecoration.fPosition.length);
-					}
-				}
+				// Add new annotations
+				while (e.hasNext()) {
+					Annotation annotation= e.next();
+					Decoration pp= getDecoration(annotation, null);
+					if (pp != null) {
+						if (pp.fPaintingStrategy instanceof IDrawingStrategy) {
+							decorationsMap.put(annotation, pp);
+							decorationsChanged= true;
+							drawRangeStart= Math.min(drawRangeStart, pp.fPosition.offset);
+							drawRangeEnd= Math.max(drawRangeEnd, pp.fPosition.offset + pp.fPosition.length);
+						} else if (pp.fPaintingStrategy instanceof ITextStyleStrategy) {
+							highlightedDecorationsMap.put(annotation, pp);
+							highlightAnnotationRangeStart= Math.min(highlightAnnotationRangeStart, pp.fPosition.offset);
+							highlightAnnotationRangeEnd= Math.max(highlightAnnotationRangeEnd, pp.fPosition.offset + pp.fPosition.length);
+						}
 
-				if (usesDrawingStrategy) {
-					Decoration oldDecoration= decorationsMap.get(annotation);
-					if (oldDecoration != null) {
-						drawDecoration(oldDecoration, null, annotation, clippingRegion, document);
-						if (decoration != null)
-							decorationsMap.put(annotation, decoration);
-						else
-							decorationsMap.remove(annotation);
 					}
 				}
-			}
-
-			e= Arrays.asList(event.getAddedAnnotations()).iterator();
-		}
 
-		// Add new annotations
-		while (e.hasNext()) {
-			Annotation annotation= e.next();
-			Decoration pp= getDecoration(annotation, null);
-			if (pp != null) {
-				if (pp.fPaintingStrategy instanceof IDrawingStrategy) {
-					decorationsMap.put(annotation, pp);
-					drawRangeStart= Math.min(drawRangeStart, pp.fPosition.offset);
-					drawRangeEnd= Math.max(drawRangeEnd, pp.fPosition.offset + pp.fPosition.length);
-				} else if (pp.fPaintingStrategy instanceof ITextStyleStrategy) {
-					highlightedDecorationsMap.put(annotation, pp);
-					highlightAnnotationRangeStart= Math.min(highlightAnnotationRangeStart, pp.fPosition.offset);
-					highlightAnnotationRangeEnd= Math.max(highlightAnnotationRangeEnd, pp.fPosition.offset + pp.fPosition.length);
-				}
+				fDecorationsMap= decorationsMap;
+				if (decorationsChanged)
+					fDecorationIndex= null;
+				updateDrawRanges(drawRangeStart, drawRangeEnd, isWorldChange);
 
+				fHighlightedDecorationsMap= highlightedDecorationsMap;
+				updateHighlightRanges(highlightAnnotationRangeStart, highlightAnnotationRangeEnd, isWorldChange);
 			}
 		}
 
-		synchronized (fDecorationMapLock) {
-			fDecorationsMap= decorationsMap;
-			updateDrawRanges(drawRangeStart, drawRangeEnd, isWorldChange);
-		}
-
-		synchronized (fHighlightedDecorationsMapLock) {
-			fHighlightedDecorationsMap= highlightedDecorationsMap;
-			updateHighlightRanges(highlightAnnotationRangeStart, highlightAnnotationRangeEnd, isWorldChange);
-		}
+		for (Entry<Annotation, Decoration> entry : decorationsToClear)
+			drawDecoration(entry.getValue(), null, entry.getKey(), clippingRegion, document);
 	}
 
 	/**
@@ -1279,6 +1440,7 @@ public class AnnotationPainter implements IPainter, PaintListener, IAnnotationMo
 		fModel= null;
 		synchronized (fDecorationMapLock) {
 			fDecorationsMap= null;
+			fDecorationIndex= null;
 		}
 		synchronized (fHighlightedDecorationsMapLock) {
 			fHighlightedDecorationsMap= null;
@@ -1356,36 +1518,31 @@ public class AnnotationPainter implements IPainter, PaintListener, IAnnotationMo
 
 		final GC gc= event != null ? event.gc : null;
 
-		// Clone decorations
-		Collection<Entry<Annotation, Decoration>> decorations;
+		IDocument document= fSourceViewer.getDocument();
+		long modificationStamp= IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+		if (document instanceof IDocumentExtension4) {
+			IDocumentExtension4 extension= (IDocumentExtension4) document;
+			// the positions may still be updated when the session stops, without a new stamp
+			if (extension.getActiveRewriteSession() == null)
+				modificationStamp= extension.getModificationStamp();
+		}
+
+		// Collect the decorations in the clipping region, layer by layer
+		List<Entry<Annotation, Decoration>> toBeDrawn= new ArrayList<>();
 		synchronized (fDecorationMapLock) {
-			decorations= new ArrayList<>(fDecorationsMap.size());
-			decorations.addAll(fDecorationsMap.entrySet());
+			if (fDecorationsMap == null || fDecorationsMap.isEmpty())
+				return;
+			if (fDecorationIndex == null)
+				fDecorationIndex= new DecorationIndex(fDecorationsMap);
+			fDecorationIndex.validate(modificationStamp);
+			fDecorationIndex.collect(vOffset, vLength, toBeDrawn);
 		}
 
-		/*
-		 * Create a new list of annotations to be drawn, since removing from decorations is more
-		 * expensive. One bucket per drawing layer. Use linked lists as addition is cheap here.
-		 */
-		ArrayList<LinkedList<Entry<Annotation, Decoration>>> toBeDrawn= new ArrayList<>(10);
-		for (Entry<Annotation, Decoration> entry : decorations) {
+		for (Entry<Annotation, Decoration> entry : toBeDrawn) {
 			Annotation a= entry.getKey();
-			Decoration pp = entry.getValue();
 			// prune any annotation that is not drawable or does not need drawing
-			if (!(a.isMarkedDeleted() || skip(a) || !regionsTouchOrOverlap(pp.fPosition.getOffset(), pp.fPosition.getLength(), vOffset, vLength))) {
-				// ensure sized appropriately
-				for (int i= toBeDrawn.size(); i <= pp.fLayer; i++)
-					toBeDrawn.add(new LinkedList<>());
-				toBeDrawn.get(pp.fLayer).add(entry);
-			}
-		}
-		IDocument document= fSourceViewer.getDocument();
-		for (LinkedList<Entry<Annotation, Decoration>> layer : toBeDrawn) {
-			for (Entry<Annotation, Decoration> entry : layer) {
-				Annotation a= entry.getKey();
-				Decoration pp = entry.getValue();
-				drawDecoration(pp, gc, a, clippingRegion, document);
-			}
+			if (!(a.isMarkedDeleted() || skip(a)))
+				drawDecoration(entry.getValue(), gc, a, clippingRegion, document);
 		}
 	}
 
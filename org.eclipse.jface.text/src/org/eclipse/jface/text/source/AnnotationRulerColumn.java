@@ -44,6 +44,7 @@ import org.eclipse.swt.widgets.Display;
 
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
 import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.ITextListener;
 import org.eclipse.jface.text.ITextViewer;
@@ -70,6 +71,7 @@ public class AnnotationRulerColumn implements IVerticalRulerColumn, IVerticalRul
 	class AnnotationsListener implements IAnnotationModelListener {
 		@Override
 		public void modelChanged(IAnnotationModel model) {
+			fModelStamp++;
 			postRedraw();
 		}
 	}
@@ -88,10 +90,13 @@ public class AnnotationRulerColumn implements IVerticalRulerColumn, IVerticalRul
 	private static class Tuple {
 		Annotation annotation;
 		Position position;
+		/** @since 3.15 */
+		int layer;
 
-		Tuple(Annotation annotation, Position position) {
+		Tuple(Annotation annotation, Position position, int layer) {
 			this.annotation= annotation;
 			this.position= position;
+			this.layer= layer;
 		}
 	}
 
@@ -108,6 +113,134 @@ public class AnnotationRulerColumn implements IVerticalRulerColumn, IVerticalRul
 		}
 	}
 
+	/**
+	 * Index of the annotations of a model which does not implement
+	 * <code>IAnnotationModelExtension2</code>. The annotations are kept sorted by the offset of
+	 * their position, so that the annotations of a range of lines can be found without iterating
+	 * over the whole model. The index is rebuilt when the model changes and revalidated when the
+	 * document changes.
+	 *
+	 * @since 3.15
+	 */
+	private static class AnnotationIndex {
+
+		/** The indexed model */
+		private IAnnotationModel fIndexedModel;
+		/** The model stamp at the time the index was built */
+		private int fIndexedModelStamp;
+		/** The document modification stamp at the time the index was validated */
+		private long fIndexedDocumentStamp= IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+		/** The annotations sorted by the offset of their position */
+		private Annotation[] fAnnotations= new Annotation[0];
+		/** The positions of the annotations */
+		private Position[] fPositions= new Position[0];
+		/** The maximal end offset of the positions up to the same index */
+		private int[] fMaxEnds= new int[0];
+
+		/**
+		 * Brings this index up to date.
+		 *
+		 * @param model the annotation model
+		 * @param modelStamp the stamp of the annotation model
+		 * @param document the document of the viewer
+		 */
+		void update(IAnnotationModel model, int modelStamp, IDocument document) {
+			long documentStamp= IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+			if (document instanceof IDocumentExtension4)
+				documentStamp= ((IDocumentExtension4) document).getModificationStamp();
+
+			if (model != fIndexedModel || modelStamp != fIndexedModelStamp || !revalidate(documentStamp))
+				rebuild(model, modelStamp);
+			fIndexedDocumentStamp= documentStamp;
+		}
+
+		/**
+		 * Re-reads the positions of the indexed annotations after a document change.
+		 *
+		 * @param documentStamp the current document modification stamp
+		 * @return <code>false</code> if the index has to be rebuilt
+		 */
+		private boolean revalidate(long documentStamp) {
+			if (documentStamp == fIndexedDocumentStamp && documentStamp != IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP)
+				return true;
+
+			int maxEnd= Integer.MIN_VALUE;
+			for (int i= 0; i < fAnnotations.length; i++) {
+				Position position= fIndexedModel.getPosition(fAnnotations[i]);
+				if (position == null || i > 0 && position.getOffset() < fPositions[i - 1].getOffset())
+					return false;
+				fPositions[i]= position;
+				maxEnd= Math.max(maxEnd, position.getOffset() + position.getLength());
+				fMaxEnds[i]= maxEnd;
+			}
+			return true;
+		}
+
+		private void rebuild(IAnnotationModel model, int modelStamp) {
+			List<Tuple> tuples= new ArrayList<>();
+			Iterator<Annotation> iter= model.getAnnotationIterator();
+			while (iter.hasNext()) {
+				Annotation annotation= iter.next();
+				Position position= model.getPosition(annotation);
+				if (position != null)
+					tuples.add(new Tuple(annotation, position, 0));
+			}
+			tuples.sort(new TupleComparator());
+
+			int size= tuples.size();
+			fAnnotations= new Annotation[size];
+			fPositions= new Position[size];
+			fMaxEnds= new int[size];
+			int maxEnd= Integer.MIN_VALUE;
+			for (int i= 0; i < size; i++) {
+				Tuple tuple= tuples.get(i);
+				fAnnotations[i]= tuple.annotation;
+				fPositions[i]= tuple.position;
+				maxEnd= Math.max(maxEnd, tuple.position.getOffset() + tuple.position.getLength());
+				fMaxEnds[i]= maxEnd;
+			}
+			fIndexedModel= model;
+			fIndexedModelStamp= modelStamp;
+		}
+
+		/**
+		 * Returns the annotations whose position touches the given range, including positions
+		 * which start or end right at its boundaries.
+		 *
+		 * @param offset the offset of the range
+		 * @param length the length of the range
+		 * @return the annotations, sorted by the offset of their position
+		 */
+		List<Annotation> getAnnotations(int offset, int length) {
+			// binary search for the first position which can reach the range
+			int low= 0;
+			int high= fMaxEnds.length;
+			while (low < high) {
+				int mid= (low + high) >>> 1;
+				if (fMaxEnds[mid] < offset)
+					low= mid + 1;
+				else
+					high= mid;
+			}
+
+			List<Annotation> annotations= new ArrayList<>();
+			int end= offset + length;
+			for (int i= low; i < fPositions.length && fPositions[i].getOffset() <= end; i++) {
+				Position position= fPositions[i];
+				if (position.getOffset() + position.getLength() >= offset)
+					annotations.add(fAnnotations[i]);
+			}
+			return annotations;
+		}
+
+		void dispose() {
+			fIndexedModel= null;
+			fAnnotations= new Annotation[0];
+			fPositions= new Position[0];
+			fMaxEnds= new int[0];
+		}
+	}
+
 	/** This column's parent ruler */
 	private CompositeRuler fParentRuler;
 	/** The cached text viewer */
@@ -175,17 +308,42 @@ public class AnnotationRulerColumn implements IVerticalRulerColumn, IVerticalRul
 	 * @since 3.0
 	 */
 	private MouseListener fMouseListener;
+	/**
+	 * The tracker of the parts of the buffer which are out of date.
+	 * @since 3.15
+	 */
+	private DirtyLinesTracker fDirtyLines;
+	/**
+	 * The index of the annotations if the model does not implement <code>IAnnotationModelExtension2</code>.
+	 * @since 3.15
+	 */
+	private final AnnotationIndex fAnnotationIndex= new AnnotationIndex();
+	/**
+	 * Incremented whenever the annotation model changes.
+	 * @since 3.15
+	 */
+	private volatile int fModelStamp;
 
-	private Consumer<StyledText> lineHeightChangeHandler= (t) -> postRedraw();
+	private Consumer<StyledText> lineHeightChangeHandler= (t) -> {
+		if (fDirtyLines != null && fCanvas != null && !fCanvas.isDisposed()) {
+			fDirtyLines.visibleLinesChanged();
+			fCanvas.redraw();
+		}
+	};
 
 	private ITextListener fLineListener = new ITextListener() {
 		private int previousLineCount = -1;
 
 		@Override
 		public void textChanged(TextEvent event) {
+			if (fDirtyLines == null || fCanvas == null || fCanvas.isDisposed())
+				return;
+
+			fDirtyLines.textChanged(event);
 			if (event.getViewerRedrawState() && fCachedTextWidget.getLineCount() != previousLineCount) {
 				previousLineCount= fCachedTextWidget.getLineCount();
-				postRedraw();
+				// only the lines from the change on have moved
+				fCanvas.redraw();
 			}
 		}
 	};
@@ -256,6 +414,7 @@ public class AnnotationRulerColumn implements IVerticalRulerColumn, IVerticalRul
 		fParentRuler= parentRuler;
 		fCachedTextViewer= parentRuler.getTextViewer();
 		fCachedTextWidget= fCachedTextViewer.getTextWidget();
+		fDirtyLines= new DirtyLinesTracker(fCachedTextWidget);
 
 		fHitDetectionCursor= parentControl.getDisplay().getSystemCursor(SWT.CURSOR_HAND);
 
@@ -459,6 +618,8 @@ public class AnnotationRulerColumn implements IVerticalRulerColumn, IVerticalRul
 		Iterator<Annotation> e;
 		if (fModel instanceof IAnnotationModelExtension2)
 			e= ((IAnnotationModelExtension2)fModel).getAnnotationIterator(lineStart, lineLength + 1, true, true);
+		else if (model == fModel)
+			e= getAnnotationIterator(lineStart, lineLength + 1);
 		else
 			e= model.getAnnotationIterator();
 
@@ -500,6 +661,7 @@ public class AnnotationRulerColumn implements IVerticalRulerColumn, IVerticalRul
 			fBuffer= null;
 		}
 
+		fAnnotationIndex.dispose();
 		fConfiguredAnnotationTypes.clear();
 		fAllowedAnnotationTypes.clear();
 		fAnnotationAccessExtension= null;
@@ -525,19 +687,28 @@ public class AnnotationRulerColumn implements IVerticalRulerColumn, IVerticalRul
 				fBuffer= null;
 			}
 		}
-		if (fBuffer == null)
+		boolean isNewBuffer= fBuffer == null;
+		if (isNewBuffer)
 			fBuffer= new Image(fCanvas.getDisplay(), size.x, size.y);
 
 		GC gc= new GC(fBuffer);
 		gc.setFont(fCachedTextWidget.getFont());
 		try {
-			gc.setBackground(fCanvas.getBackground());
-			gc.fillRectangle(0, 0, size.x, size.y);
-
-			if (fCachedTextViewer instanceof ITextViewerExtension5)
-				doPaint1(gc);
-			else
-				doPaint(gc);
+			boolean isExtension5= fCachedTextViewer instanceof ITextViewerExtension5;
+			int[] dirtyPixels= fDirtyLines.prepareBuffer(gc, size.x, size.y, isNewBuffer || !isExtension5);
+			if (dirtyPixels != null) {
+				gc.setBackground(fCanvas.getBackground());
+				gc.fillRectangle(0, dirtyPixels[0], size.x, dirtyPixels[1] - dirtyPixels[0]);
+
+				if (!isExtension5) {
+					doPaint(gc);
+				} else if (dirtyPixels[0] == 0 && dirtyPixels[1] == size.y) {
+					doPaint1(gc);
+				} else {
+					gc.setClipping(0, dirtyPixels[0], size.x, dirtyPixels[1] - dirtyPixels[0]);
+					paintPixelRows(gc, dirtyPixels[0], dirtyPixels[1]);
+				}
+			}
 		} finally {
 			gc.dispose();
 		}
@@ -633,7 +804,7 @@ public class AnnotationRulerColumn implements IVerticalRulerColumn, IVerticalRul
 			if (fModel instanceof IAnnotationModelExtension2)
 				iter= ((IAnnotationModelExtension2)fModel).getAnnotationIterator(topLeft, viewPort + 1, true, true);
 			else
-				iter= fModel.getAnnotationIterator();
+				iter= getAnnotationIterator(topLeft, viewPort + 1);
 
 			while (iter.hasNext()) {
 				Annotation annotation= iter.next();
@@ -713,25 +884,69 @@ public class AnnotationRulerColumn implements IVerticalRulerColumn, IVerticalRul
 		if (fModel == null || fCachedTextViewer == null)
 			return;
 
+		int vOffset= getInclusiveTopIndexStartOffset();
+		int vLength= getExclusiveBottomIndexEndOffset() - vOffset;
+		doPaint1(gc, vOffset, vLength);
+	}
+
+	/**
+	 * Draws the annotations of the lines which are painted into the given pixel rows of the ruler.
+	 *
+	 * @param gc the GC to draw into
+	 * @param from the first pixel row
+	 * @param to the exclusive last pixel row
+	 * @since 3.15
+	 */
+	private void paintPixelRows(GC gc, int from, int to) {
+
+		if (fModel == null || fCachedTextViewer == null)
+			return;
+
+		IDocument document= fCachedTextViewer.getDocument();
+		if (document == null)
+			return;
+
+		int firstLine= JFaceTextUtil.widgetLine2ModelLine(fCachedTextViewer, JFaceTextUtil.getLineIndex(fCachedTextWidget, from));
+		int lastLine= JFaceTextUtil.widgetLine2ModelLine(fCachedTextViewer, JFaceTextUtil.getLineIndex(fCachedTextWidget, to - 1));
+		if (firstLine == -1 || lastLine == -1)
+			return;
+
+		try {
+			// like getExclusiveBottomIndexEndOffset, the range includes the delimiter of the last line
+			int vOffset= document.getLineOffset(firstLine);
+			int vLength= document.getLineOffset(lastLine) + document.getLineLength(lastLine) - vOffset;
+			doPaint1(gc, vOffset, vLength);
+		} catch (BadLocationException x) {
+		}
+	}
+
+	/**
+	 * Draws the annotations which overlap with the given range of the document.
+	 *
+	 * @param gc the GC to draw into
+	 * @param vOffset the offset of the range
+	 * @param vLength the length of the range
+	 * @since 3.15
+	 */
+	private void doPaint1(GC gc, int vOffset, int vLength) {
+
 		ITextViewerExtension5 extension= (ITextViewerExtension5) fCachedTextViewer;
 
 		fScrollPos= fCachedTextWidget.getTopPixel();
 		Point dimension= fCanvas.getSize();
 
-		int vOffset= getInclusiveTopIndexStartOffset();
-		int vLength= getExclusiveBottomIndexEndOffset() - vOffset;
-
 		// draw Annotations
 		Rectangle r= new Rectangle(0, 0, 0, 0);
 		ReusableRegion range= new ReusableRegion();
 		boolean isWrapActive= fCachedTextWidget.getWordWrap();
 		int minLayer= Integer.MAX_VALUE, maxLayer= Integer.MIN_VALUE;
+		boolean isSorted= true;
 		fCachedAnnotations.clear();
 		Iterator<Annotation> iter;
 		if (fModel instanceof IAnnotationModelExtension2)
 			iter= ((IAnnotationModelExtension2)fModel).getAnnotationIterator(vOffset, vLength + 1, true, true);
 		else
-			iter= fModel.getAnnotationIterator();
+			iter= getAnnotationIterator(vOffset, vLength + 1);
 
 		while (iter.hasNext()) {
 			Annotation annotation= iter.next();
@@ -754,22 +969,24 @@ public class AnnotationRulerColumn implements IVerticalRulerColumn, IVerticalRul
 
 			minLayer= Math.min(minLayer, lay);
 			maxLayer= Math.max(maxLayer, lay);
-			fCachedAnnotations.add(new Tuple(annotation, position));
+			int size= fCachedAnnotations.size();
+			if (size > 0 && fCachedAnnotations.get(size - 1).position.getOffset() > position.getOffset())
+				isSorted= false;
+			fCachedAnnotations.add(new Tuple(annotation, position, lay));
 		}
-		Collections.sort(fCachedAnnotations, fTupleComparator);
+		// the region based iterators usually return the annotations in offset order already
+		if (!isSorted)
+			Collections.sort(fCachedAnnotations, fTupleComparator);
 
 		for (int layer= minLayer; layer <= maxLayer; layer++) {
 			for (int i= 0, n= fCachedAnnotations.size(); i < n; i++) {
 				Tuple tuple= fCachedAnnotations.get(i);
+				if (tuple.layer != layer)	// wrong layer: skip annotation
+					continue;
+
 				Annotation annotation= tuple.annotation;
 				Position position= tuple.position;
 
-				int lay= IAnnotationAccessExtension.DEFAULT_LAYER;
-				if (fAnnotationAccessExtension != null)
-					lay= fAnnotationAccessExtension.getLayer(annotation);
-				if (lay != layer)	// wrong layer: skip annotation
-					continue;
-
 				range.setOffset(position.getOffset());
 				range.setLength(position.getLength());
 				IRegion widgetRegion= extension.modelRange2WidgetRange(range);
@@ -818,6 +1035,25 @@ public class AnnotationRulerColumn implements IVerticalRulerColumn, IVerticalRul
 		fCachedAnnotations.clear();
 	}
 
+	/**
+	 * Returns an iterator over the annotations of a model which does not implement
+	 * <code>IAnnotationModelExtension2</code> that may overlap with the given range. Positions
+	 * which start or end at the boundaries of the range are included.
+	 *
+	 * @param offset the offset of the range
+	 * @param length the length of the range
+	 * @return the annotation iterator
+	 * @since 3.15
+	 */
+	private Iterator<Annotation> getAnnotationIterator(int offset, int length) {
+		IDocument document= fCachedTextViewer != null ? fCachedTextViewer.getDocument() : null;
+		if (document == null)
+			return fModel.getAnnotationIterator();
+
+		fAnnotationIndex.update(fModel, fModelStamp, document);
+		return fAnnotationIndex.getAnnotations(offset, length).iterator();
+	}
+
 
 	/**
 	 * Post a redraw request for this column into the UI thread.
@@ -833,6 +1069,9 @@ public class AnnotationRulerColumn implements IVerticalRulerColumn, IVerticalRul
 
 	@Override
 	public void redraw() {
+		if (fDirtyLines != null)
+			fDirtyLines.invalidate();
+
 		if (fCanvas != null && !fCanvas.isDisposed()) {
 			if (VerticalRuler.AVOID_NEW_GC) {
 				fCanvas.redraw();
@@ -855,6 +1094,7 @@ public class AnnotationRulerColumn implements IVerticalRulerColumn, IVerticalRul
 				fModel.removeAnnotationModelListener(fAnnotationListener);
 
 			fModel= model;
+			fModelStamp++;
 
 			if (fModel != null)
 				fModel.addAnnotationModelListener(fAnnotationListener);
@@ -892,6 +1132,8 @@ public class AnnotationRulerColumn implements IVerticalRulerColumn, IVerticalRul
 	public void addAnnotationType(Object annotationType) {
 		fConfiguredAnnotationTypes.add(annotationType);
 		fAllowedAnnotationTypes.clear();
+		if (fDirtyLines != null)
+			fDirtyLines.invalidate();
 	}
 
 	@Override
@@ -915,6 +1157,8 @@ public class AnnotationRulerColumn implements IVerticalRulerColumn, IVerticalRul
 	public void removeAnnotationType(Object annotationType) {
 		fConfiguredAnnotationTypes.remove(annotationType);
 		fAllowedAnnotationTypes.clear();
+		if (fDirtyLines != null)
+			fDirtyLines.invalidate();
 	}
 
 	/**
@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.text.source;
+
+import org.eclipse.swt.custom.StyledText;
+import org.eclipse.swt.graphics.GC;
+
+import org.eclipse.jface.text.TextEvent;
+
+/**
+ * Tracks which parts of the back buffer of a ruler column are out of date. The buffer is reused
+ * by the next paint only if the column asked for it, either because the text widget scrolled or
+ * because some lines changed. In all other cases, e.g. when the canvas is exposed or the column
+ * is redrawn explicitly, the whole buffer is repainted.
+ *
+ * @since 3.15
+ */
+final class DirtyLinesTracker {
+
+	/** The text widget of the viewer. */
+	private final StyledText fTextWidget;
+	/** The top pixel of the text widget when the buffer was last painted, <code>-1</code> if the buffer is invalid. */
+	private int fPaintedTopPixel= -1;
+	/** Tells whether the next paint may reuse the buffer. */
+	private boolean fIsBufferReusable= false;
+	/** The first dirty widget line, <code>Integer.MAX_VALUE</code> if there is none. */
+	private int fFirstDirtyLine= Integer.MAX_VALUE;
+	/** The last dirty widget line, <code>Integer.MAX_VALUE</code> if all lines up to the end are dirty. */
+	private int fLastDirtyLine= -1;
+
+	/**
+	 * Creates a new tracker.
+	 *
+	 * @param textWidget the text widget of the viewer
+	 */
+	DirtyLinesTracker(StyledText textWidget) {
+		fTextWidget= textWidget;
+	}
+
+	/**
+	 * Marks the whole buffer as out of date.
+	 */
+	void invalidate() {
+		fPaintedTopPixel= -1;
+		fIsBufferReusable= false;
+		fFirstDirtyLine= Integer.MAX_VALUE;
+		fLastDirtyLine= -1;
+	}
+
+	/**
+	 * Marks the widget lines affected by the given text event as dirty. Edits which add or remove
+	 * lines, as well as edits in wrapped text, make all following lines dirty.
+	 *
+	 * @param event the text event
+	 */
+	void textChanged(TextEvent event) {
+		if (!event.getViewerRedrawState() || event.getDocumentEvent() == null) {
+			invalidate();
+			return;
+		}
+
+		int charCount= fTextWidget.getCharCount();
+		int offset= Math.max(0, Math.min(event.getOffset(), charCount));
+		int firstLine= fTextWidget.getLineAtOffset(offset);
+		int lastLine;
+		String text= event.getText();
+		if (fTextWidget.getWordWrap() || containsLineDelimiter(text) || containsLineDelimiter(event.getReplacedText())) {
+			lastLine= Integer.MAX_VALUE;
+		} else {
+			int end= Math.min(offset + (text == null ? 0 : text.length()), charCount);
+			lastLine= fTextWidget.getLineAtOffset(end);
+		}
+
+		fFirstDirtyLine= Math.min(fFirstDirtyLine, firstLine);
+		fLastDirtyLine= Math.max(fLastDirtyLine, lastLine);
+		fIsBufferReusable= fPaintedTopPixel != -1;
+	}
+
+	/**
+	 * Tells the tracker that the visible lines of the text widget have changed. If the text widget
+	 * has scrolled, the next paint moves the buffer content instead of repainting it, otherwise
+	 * line heights have changed and the whole buffer is invalidated.
+	 */
+	void visibleLinesChanged() {
+		if (fTextWidget.getTopPixel() == fPaintedTopPixel)
+			invalidate();
+		else
+			fIsBufferReusable= fPaintedTopPixel != -1;
+	}
+
+	/**
+	 * Prepares the given buffer for painting and returns the pixel rows which need to be painted.
+	 * If the buffer can be reused, its content is moved by the distance the text widget scrolled
+	 * since the last paint.
+	 *
+	 * @param gc the GC of the buffer
+	 * @param width the width of the buffer
+	 * @param height the height of the buffer
+	 * @param isNewBuffer <code>true</code> if the buffer has just been created
+	 * @return the first and the exclusive last pixel row to paint, or <code>null</code> if nothing
+	 *         needs to be painted
+	 */
+	int[] prepareBuffer(GC gc, int width, int height, boolean isNewBuffer) {
+		int topPixel= fTextWidget.getTopPixel();
+		int from= 0;
+		int to= height;
+
+		int delta= topPixel - fPaintedTopPixel;
+		if (!isNewBuffer && fIsBufferReusable && fPaintedTopPixel != -1 && Math.abs(delta) < height) {
+			from= height;
+			to= 0;
+			if (delta > 0) {
+				gc.copyArea(0, delta, width, height - delta, 0, 0);
+				from= height - delta;
+				to= height;
+			} else if (delta < 0) {
+				gc.copyArea(0, 0, width, height + delta, 0, -delta);
+				from= 0;
+				to= -delta;
+			}
+
+			if (fFirstDirtyLine <= fLastDirtyLine) {
+				int lineCount= fTextWidget.getLineCount();
+				int firstPixel= fTextWidget.getLinePixel(Math.min(fFirstDirtyLine, lineCount));
+				// getLinePixel returns the bottom of the last line if line == lineCount
+				int lastPixel= fLastDirtyLine >= lineCount - 1 ? height : fTextWidget.getLinePixel(fLastDirtyLine + 1);
+				from= Math.min(from, Math.max(0, firstPixel));
+				to= Math.max(to, Math.min(height, lastPixel));
+			}
+		}
+
+		fPaintedTopPixel= topPixel;
+		fIsBufferReusable= false;
+		fFirstDirtyLine= Integer.MAX_VALUE;
+		fLastDirtyLine= -1;
+		return from < to ? new int[] { from, to } : null;
+	}
+
+	private static boolean containsLineDelimiter(String text) {
+		return text != null && (text.indexOf('\n') != -1 || text.indexOf('\r') != -1);
+	}
+}
@@ -182,6 +182,12 @@ public class LineNumberChangeRulerColumn extends LineNumberRulerColumn implement
 			super.doPaint(gc, visibleLines);
 	}
 
+	@Override
+	protected boolean canPaintLineRanges() {
+		// revision ranges are painted as a whole and cannot be clipped to single lines
+		return super.canPaintLineRanges() && !fRevisionPainter.hasInformation();
+	}
+
 	@Override
 	public IAnnotationHover getHover() {
 		int activeLine= getParentRuler().getLineOfLastMouseButtonActivity();
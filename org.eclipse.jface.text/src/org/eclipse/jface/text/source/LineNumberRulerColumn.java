@@ -88,9 +88,18 @@ public class LineNumberRulerColumn implements IVerticalRulerColumn {
 		 */
 		private boolean fCachedRedrawState= true;
 
+		/**
+		 * The line count of the text widget after the last text change
+		 * @since 3.15
+		 */
+		private int fPreviousLineCount= -1;
+
 		@Override
 		public void textChanged(TextEvent event) {
 
+			if (fDirtyLines != null)
+				fDirtyLines.textChanged(event);
+
 			fCachedRedrawState= event.getViewerRedrawState();
 			if (!fCachedRedrawState)
 				return;
@@ -100,6 +109,12 @@ public class LineNumberRulerColumn implements IVerticalRulerColumn {
 				layout(event.getViewerRedrawState());
 				return;
 			}
+
+			// the numbers of the lines from the change on have moved
+			if (!isDisposed() && fCachedTextWidget.getLineCount() != fPreviousLineCount) {
+				fPreviousLineCount= fCachedTextWidget.getLineCount();
+				fCanvas.redraw();
+			}
 		}
 	}
 
@@ -384,6 +399,17 @@ public class LineNumberRulerColumn implements IVerticalRulerColumn {
 	private Canvas fCanvas;
 	/** The drawable for double buffering */
 	private Image fBuffer;
+	/**
+	 * The tracker of the parts of the buffer which are out of date
+	 * @since 3.15
+	 */
+	private DirtyLinesTracker fDirtyLines;
+	/**
+	 * Tells whether a subclass re-implements {@link #paintLine(int, int, int, GC, Display)}, or
+	 * <code>null</code> if not yet known
+	 * @since 3.15
+	 */
+	private Boolean fIsPaintLineOverridden;
 	/** The internal listener */
 	private ITextListener fInternalListener= new InternalListener();
 	/** The font of this column */
@@ -433,7 +459,14 @@ public class LineNumberRulerColumn implements IVerticalRulerColumn {
 	 *
 	 * @since 3.13
 	 */
-	private Consumer<StyledText> lineHeightChangeHandler= (t) -> postRedraw();
+	private Consumer<StyledText> lineHeightChangeHandler= (t) -> {
+		if (fRelayoutRequired || fDirtyLines == null || isDisposed()) {
+			postRedraw();
+		} else {
+			fDirtyLines.visibleLinesChanged();
+			fCanvas.redraw();
+		}
+	};
 
 	/**
 	 * Constructs a new vertical ruler column.
@@ -448,6 +481,8 @@ public class LineNumberRulerColumn implements IVerticalRulerColumn {
 	 */
 	public void setForeground(Color foreground) {
 		fForeground= foreground;
+		if (fDirtyLines != null)
+			fDirtyLines.invalidate();
 	}
 
 	/**
@@ -467,6 +502,8 @@ public class LineNumberRulerColumn implements IVerticalRulerColumn {
 	 */
 	public void setBackground(Color background) {
 		fBackground= background;
+		if (fDirtyLines != null)
+			fDirtyLines.invalidate();
 		if (fCanvas != null && !fCanvas.isDisposed())
 			fCanvas.setBackground(getBackground(fCanvas.getDisplay()));
 	}
@@ -596,6 +633,7 @@ public class LineNumberRulerColumn implements IVerticalRulerColumn {
 		fParentRuler= parentRuler;
 		fCachedTextViewer= parentRuler.getTextViewer();
 		fCachedTextWidget= fCachedTextViewer.getTextWidget();
+		fDirtyLines= new DirtyLinesTracker(fCachedTextWidget);
 
 		// on word wrap toggle a "resized" ControlEvent is fired: suggest a redraw of the line ruler
 		fCachedTextWidget.addControlListener(new ControlAdapter() {
@@ -752,8 +790,11 @@ public class LineNumberRulerColumn implements IVerticalRulerColumn {
 				return imageData;
 			});
 
+			fDirtyLines.invalidate();
+
 		} else {
-			if (fBuffer == null)
+			boolean isNewBuffer= fBuffer == null;
+			if (isNewBuffer)
 				fBuffer= new Image(fCanvas.getDisplay(), size.x, size.y);
 
 			GC gc= new GC(fBuffer);
@@ -762,10 +803,20 @@ public class LineNumberRulerColumn implements IVerticalRulerColumn {
 				gc.setForeground(fForeground);
 
 			try {
-				gc.setBackground(getBackground(fCanvas.getDisplay()));
-				gc.fillRectangle(0, 0, size.x, size.y);
+				int[] dirtyPixels= fDirtyLines.prepareBuffer(gc, size.x, size.y, isNewBuffer || !canPaintLineRanges());
+				if (dirtyPixels != null) {
+					ILineRange lines= visibleLines;
+					if (dirtyPixels[0] > 0 || dirtyPixels[1] < size.y) {
+						gc.setClipping(0, dirtyPixels[0], size.x, dirtyPixels[1] - dirtyPixels[0]);
+						lines= computeModelLines(dirtyPixels[0], dirtyPixels[1], visibleLines);
+					}
 
-				doPaint(gc, visibleLines);
+					gc.setBackground(getBackground(fCanvas.getDisplay()));
+					gc.fillRectangle(0, dirtyPixels[0], size.x, dirtyPixels[1] - dirtyPixels[0]);
+
+					if (lines != null)
+						doPaint(gc, lines);
+				}
 			} finally {
 				gc.dispose();
 			}
@@ -774,6 +825,67 @@ public class LineNumberRulerColumn implements IVerticalRulerColumn {
 		dest.drawImage(fBuffer, 0, 0);
 	}
 
+	/**
+	 * Returns the model lines which are painted into the given pixel rows of the ruler.
+	 *
+	 * @param from the first pixel row
+	 * @param to the exclusive last pixel row
+	 * @param visibleLines the visible model lines
+	 * @return the model lines painted into the pixel rows, or <code>null</code> if there are none
+	 * @since 3.15
+	 */
+	private ILineRange computeModelLines(int from, int to, ILineRange visibleLines) {
+		int firstWidgetLine= JFaceTextUtil.getLineIndex(fCachedTextWidget, from);
+		int lastWidgetLine= JFaceTextUtil.getLineIndex(fCachedTextWidget, to - 1);
+		int firstLine= Math.max(JFaceTextUtil.widgetLine2ModelLine(fCachedTextViewer, firstWidgetLine), visibleLines.getStartLine());
+		int lastLine= JFaceTextUtil.widgetLine2ModelLine(fCachedTextViewer, lastWidgetLine);
+		if (lastLine == -1 || lastLine >= end(visibleLines))
+			lastLine= end(visibleLines) - 1;
+		if (lastLine < firstLine)
+			return null;
+		return new LineRange(firstLine, lastLine - firstLine + 1);
+	}
+
+	/**
+	 * Tells whether this column can paint any range of lines on its own, which allows to repaint
+	 * only the lines that have changed. Otherwise all visible lines are painted whenever the
+	 * ruler is painted.
+	 * <p>
+	 * The default implementation returns <code>true</code> unless a subclass re-implements
+	 * {@link #paintLine(int, int, int, GC, Display)}, since such an implementation may paint
+	 * beyond the box of its line. Subclasses whose <code>paintLine</code> only paints into the
+	 * box of the given line may re-implement this method and return <code>true</code>.
+	 * </p>
+	 *
+	 * @return <code>true</code> if line ranges can be painted separately
+	 * @since 3.15
+	 */
+	protected boolean canPaintLineRanges() {
+		if (fIsPaintLineOverridden == null)
+			fIsPaintLineOverridden= Boolean.valueOf(isPaintLineOverridden());
+		return !fIsPaintLineOverridden.booleanValue();
+	}
+
+	/**
+	 * Tells whether a subclass re-implements {@link #paintLine(int, int, int, GC, Display)}.
+	 *
+	 * @return <code>true</code> if <code>paintLine</code> is re-implemented
+	 * @since 3.15
+	 */
+	private boolean isPaintLineOverridden() {
+		for (Class<?> c= getClass(); c != LineNumberRulerColumn.class; c= c.getSuperclass()) {
+			try {
+				c.getDeclaredMethod("paintLine", int.class, int.class, int.class, GC.class, Display.class); //$NON-NLS-1$
+				return true;
+			} catch (NoSuchMethodException e) {
+				// look at the superclass
+			} catch (SecurityException e) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * This method is not API and it is expected to disappear in Eclipse 4.8.
 	 * Subclasses that want to take advantage of the unsupported workaround for bug 516258
@@ -839,7 +951,7 @@ public class LineNumberRulerColumn implements IVerticalRulerColumn {
 		Display display= fCachedTextWidget.getDisplay();
 
 		// draw diff info
-		int y= -JFaceTextUtil.getHiddenTopLinePixels(fCachedTextWidget);
+		int y= Integer.MIN_VALUE;
 
 		// add empty lines if line is wrapped
 		boolean isWrapActive= fCachedTextWidget.getWordWrap();
@@ -850,6 +962,9 @@ public class LineNumberRulerColumn implements IVerticalRulerColumn {
 			if (widgetLine == -1)
 				continue;
 
+			if (y == Integer.MIN_VALUE)
+				y= JFaceTextUtil.getLinePixel(fCachedTextWidget, widgetLine);
+
 			final int offsetAtLine= fCachedTextWidget.getOffsetAtLine(widgetLine);
 			int lineHeight = JFaceTextUtil.computeLineHeight(fCachedTextWidget, widgetLine, widgetLine + 1, 1);
 			paintLine(line, y, lineHeight, gc, display);
@@ -971,6 +1086,9 @@ public class LineNumberRulerColumn implements IVerticalRulerColumn {
 			return;
 		}
 
+		if (fDirtyLines != null)
+			fDirtyLines.invalidate();
+
 		if (!isDisposed()) {
 			if (VerticalRuler.AVOID_NEW_GC) {
 				fCanvas.redraw();
@@ -994,6 +1112,8 @@ public class LineNumberRulerColumn implements IVerticalRulerColumn {
 	@Override
 	public void setFont(Font font) {
 		fFont= font;
+		if (fDirtyLines != null)
+			fDirtyLines.invalidate();
 		if (fCanvas != null && !fCanvas.isDisposed()) {
 			fCanvas.setFont(fFont);
 			updateNumberOfDigits();
@@ -14,9 +14,12 @@
 package org.eclipse.jface.text.source;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -81,54 +84,131 @@ public class OverviewRuler implements IOverviewRulerExtension, IOverviewRuler {
 		 */
 		@Override
 		public void textChanged(TextEvent e) {
+			if (e.getDocumentEvent() == null || containsLineDelimiter(e.getText()) || containsLineDelimiter(e.getReplacedText())) {
+				// annotations may have moved to other lines
+				fRowBuckets= null;
+			}
+
 			if (fTextViewer != null && e.getDocumentEvent() == null && e.getViewerRedrawState()) {
 				// handle only changes of visible document
 				redraw();
 			}
 		}
 
+		private boolean containsLineDelimiter(String text) {
+			return text != null && (text.indexOf('\n') != -1 || text.indexOf('\r') != -1);
+		}
+
 		@Override
 		public void modelChanged(IAnnotationModel model) {
+			invalidateCachedAnnotations();
 			update();
 		}
 
 		@Override
 		public void modelChanged(AnnotationModelEvent event) {
-			if (!event.isValid())
-				return;
-
-			if (event.isWorldChange()) {
+			// the cached annotations are updated incrementally and must not miss the changes of an invalid event
+			if (!event.isValid() || event.isWorldChange()) {
+				invalidateCachedAnnotations();
 				update();
 				return;
 			}
 
-			Annotation[] annotations= event.getAddedAnnotations();
-			int length= annotations.length;
-			for (int i= 0; i < length; i++) {
-				if (!skip(annotations[i].getType())) {
-					update();
-					return;
-				}
+			boolean isRelevant= false;
+			synchronized (fRunnableLock) {
+				isRelevant |= addChangedAnnotations(event.getAddedAnnotations());
+				isRelevant |= addChangedAnnotations(event.getRemovedAnnotations());
+				isRelevant |= addChangedAnnotations(event.getChangedAnnotations());
 			}
 
-			annotations= event.getRemovedAnnotations();
-			length= annotations.length;
-			for (int i= 0; i < length; i++) {
-				if (!skip(annotations[i].getType())) {
-					update();
-					return;
+			if (isRelevant)
+				update();
+		}
+
+		/**
+		 * Remembers the given annotations for the next update of the annotation cache. Must be
+		 * called while holding {@link OverviewRuler#fRunnableLock}.
+		 *
+		 * @param annotations the added, removed or changed annotations
+		 * @return <code>true</code> if any of the annotations is shown in this ruler
+		 */
+		private boolean addChangedAnnotations(Annotation[] annotations) {
+			boolean isRelevant= false;
+			for (Annotation annotation : annotations) {
+				if (!skip(annotation.getType())) {
+					fChangedAnnotations.add(annotation);
+					isRelevant= true;
 				}
 			}
+			return isRelevant;
+		}
+	}
+
+	/**
+	 * An annotation shown in this ruler together with the rectangle it occupies.
+	 *
+	 * @since 3.15
+	 */
+	private static class CachedAnnotation {
+		/** The annotation */
+		final Annotation annotation;
+		/** The indices of the row buckets in which the annotation is drawn */
+		final int[] buckets;
+		/** The y location of the annotation's rectangle, or <code>-1</code> if it is not drawn */
+		int y= -1;
+		/** The height of the annotation's rectangle */
+		int height;
+
+		CachedAnnotation(Annotation annotation, int[] buckets) {
+			this.annotation= annotation;
+			this.buckets= buckets;
+		}
+	}
 
-			annotations= event.getChangedAnnotations();
-			length= annotations.length;
-			for (int i= 0; i < length; i++) {
-				if (!skip(annotations[i].getType())) {
-					update();
-					return;
+	/**
+	 * Counts the rectangles drawn for one annotation type and style per pixel row of the ruler.
+	 * Painting a bucket takes time proportional to the height of the ruler, independent of the
+	 * number of annotations.
+	 *
+	 * @since 3.15
+	 */
+	private static class RowBucket {
+		/** The number of rectangles of the default height starting at each row */
+		final int[] rows;
+		/** The number of taller rectangles keyed by their start row and height */
+		final Map<Long, int[]> tallRows= new HashMap<>();
+		/** The number of rectangles in this bucket */
+		int count;
+
+		RowBucket(int height) {
+			rows= new int[Math.max(height, 0)];
+		}
+
+		/**
+		 * Adds a rectangle to, or removes it from this bucket.
+		 *
+		 * @param y the y location of the rectangle
+		 * @param height the height of the rectangle
+		 * @param delta <code>1</code> to add the rectangle, <code>-1</code> to remove it
+		 */
+		void add(int y, int height, int delta) {
+			if (y < 0 || y >= rows.length)
+				return;
+
+			if (height == ANNOTATION_HEIGHT) {
+				rows[y]+= delta;
+			} else {
+				Long key= Long.valueOf(((long) y << 32) | height);
+				int[] counter= tallRows.get(key);
+				if (counter == null) {
+					counter= new int[1];
+					tallRows.put(key, counter);
 				}
+				counter[0]+= delta;
+				if (counter[0] <= 0)
+					tallRows.remove(key);
 			}
-
+			count+= delta;
 		}
 	}
 
@@ -203,11 +283,7 @@ public class OverviewRuler implements IOverviewRulerExtension, IOverviewRuler {
 		}
 
 		private boolean isSubtype(Object annotationType) {
-			if (fAnnotationAccess instanceof  IAnnotationAccessExtension) {
-				IAnnotationAccessExtension extension= (IAnnotationAccessExtension) fAnnotationAccess;
-				return extension.isSubtype(annotationType, fType);
-			}
-			return fType.equals(annotationType);
+			return OverviewRuler.this.isSubtype(annotationType, fType);
 		}
 
 		@Override
@@ -377,6 +453,25 @@ public class OverviewRuler implements IOverviewRulerExtension, IOverviewRuler {
 	        visibleLines= bottomIndex - topIndex;
 	        invisibleLines= maxLines - visibleLines;
 		}
+
+		/**
+		 * Tells whether the given infos map the text widget lines to the same ruler rows as these
+		 * infos.
+		 *
+		 * @param other the other infos, may be <code>null</code>
+		 * @return <code>true</code> if lines are mapped to the same rows
+		 * @since 3.15
+		 */
+		boolean hasSameMapping(WidgetInfos other) {
+			return other != null
+					&& maxLines == other.maxLines
+					&& thumbHeight == other.thumbHeight
+					&& visibleLines == other.visibleLines
+					&& invisibleLines == other.invisibleLines
+					&& bounds.y == other.bounds.y
+					&& bounds.height == other.bounds.height
+					&& writable == other.writable;
+		}
 	}
 
 	private static final boolean DEBUG_DRAW= false;
@@ -458,7 +553,36 @@ public class OverviewRuler implements IOverviewRulerExtension, IOverviewRuler {
 	 * The cached annotations.
 	 * @since 3.0
 	 */
-	private List<Annotation> fCachedAnnotations= new ArrayList<>();
+	private Map<Annotation, CachedAnnotation> fCachedAnnotations= new LinkedHashMap<>();
+	/**
+	 * Tells whether the cached annotations reflect the annotation model, apart from the
+	 * {@link #fChangedAnnotations}. Guarded by {@link #fRunnableLock}.
+	 * @since 3.15
+	 */
+	private boolean fIsAnnotationCacheValid= false;
+	/**
+	 * The annotations which have been added, removed or changed since the last update of the
+	 * cached annotations. Guarded by {@link #fRunnableLock}.
+	 * @since 3.15
+	 */
+	private Set<Annotation> fChangedAnnotations= new HashSet<>();
+	/**
+	 * The cached annotations whose rectangles have not yet been added to the row buckets.
+	 * @since 3.15
+	 */
+	private List<CachedAnnotation> fUnplacedAnnotations= new ArrayList<>();
+	/**
+	 * The row buckets, two per entry of {@link #fAnnotationsSortedByLayer}, the first for
+	 * persistent and the second for temporary annotations, or <code>null</code> if they have to be
+	 * recomputed.
+	 * @since 3.15
+	 */
+	private RowBucket[] fRowBuckets;
+	/**
+	 * The widget infos for which the row buckets have been computed.
+	 * @since 3.15
+	 */
+	private WidgetInfos fRowBucketInfos;
 
 	/**
 	 * Redraw runnable lock
@@ -552,6 +676,7 @@ public class OverviewRuler implements IOverviewRulerExtension, IOverviewRuler {
 			if (fModel != null)
 				fModel.addAnnotationModelListener(fInternalListener);
 
+			invalidateCachedAnnotations();
 			update();
 		}
 	}
@@ -648,6 +773,12 @@ public class OverviewRuler implements IOverviewRulerExtension, IOverviewRuler {
 		fAnnotationTypes2Colors.clear();
 		fAnnotationsSortedByLayer.clear();
 		fLayersSortedByLayer.clear();
+
+		invalidateCachedAnnotations();
+		fCachedAnnotations.clear();
+		fUnplacedAnnotations.clear();
+		fRowBuckets= null;
+		fRowBucketInfos= null;
 	}
 
 	/**
@@ -677,8 +808,6 @@ public class OverviewRuler implements IOverviewRulerExtension, IOverviewRuler {
 			gc.setBackground(fCanvas.getBackground());
 			gc.fillRectangle(0, 0, size.x, size.y);
 
-			cacheAnnotations();
-
 			doPaint(gc);
 
 		} finally {
@@ -688,136 +817,252 @@ public class OverviewRuler implements IOverviewRulerExtension, IOverviewRuler {
 		dest.drawImage(fBuffer, 0, 0);
 	}
 
-	private void cacheAnnotations() {
-		fCachedAnnotations.clear();
-		if (fModel != null) {
-			Iterator<Annotation> iter= fModel.getAnnotationIterator();
-			while (iter.hasNext()) {
-				Annotation annotation= iter.next();
+	/**
+	 * Marks the cached annotations as stale. The next update of the cache reads all annotations
+	 * from the model.
+	 *
+	 * @since 3.15
+	 */
+	private void invalidateCachedAnnotations() {
+		synchronized (fRunnableLock) {
+			fIsAnnotationCacheValid= false;
+			fChangedAnnotations.clear();
+		}
+	}
 
-				if (annotation.isMarkedDeleted())
-					continue;
+	/**
+	 * Brings the cached annotations up to date with the annotation model. If the cache is valid,
+	 * only the annotations reported by the model since the last update are looked at.
+	 *
+	 * @since 3.15
+	 */
+	private void updateCachedAnnotations() {
+		boolean isValid;
+		Set<Annotation> changed;
+		synchronized (fRunnableLock) {
+			isValid= fIsAnnotationCacheValid;
+			fIsAnnotationCacheValid= true;
+			changed= fChangedAnnotations;
+			fChangedAnnotations= new HashSet<>();
+		}
+
+		if (!isValid) {
+			fCachedAnnotations.clear();
+			fUnplacedAnnotations.clear();
+			fRowBuckets= null;
+			if (fModel != null) {
+				Iterator<Annotation> iter= fModel.getAnnotationIterator();
+				while (iter.hasNext())
+					cacheAnnotation(iter.next());
+			}
+			return;
+		}
+
+		for (Annotation annotation : changed) {
+			CachedAnnotation cached= fCachedAnnotations.remove(annotation);
+			if (cached != null)
+				addToRowBuckets(cached, -1);
+			if (fModel != null && fModel.getPosition(annotation) != null)
+				cacheAnnotation(annotation);
+		}
+	}
+
+	/**
+	 * Adds the given annotation to the cached annotations if it is shown in this ruler.
+	 *
+	 * @param annotation the annotation
+	 * @since 3.15
+	 */
+	private void cacheAnnotation(Annotation annotation) {
+		if (annotation.isMarkedDeleted())
+			return;
 
-				if (skip(annotation.getType()))
+		Object type= annotation.getType();
+		if (skip(type))
+			return;
+
+		int style= annotation.isPersistent() ? 0 : 1;
+		int[] buckets= new int[fAnnotationsSortedByLayer.size()];
+		int count= 0;
+		for (int i= 0; i < buckets.length; i++) {
+			Object annotationType= fAnnotationsSortedByLayer.get(i);
+			if (skip(annotationType))
+				continue;
+			if (annotationType.equals(type) || !fConfiguredAnnotationTypes.contains(type) && isSubtype(type, annotationType))
+				buckets[count++]= 2 * i + style;
+		}
+
+		CachedAnnotation cached= new CachedAnnotation(annotation, Arrays.copyOf(buckets, count));
+		fCachedAnnotations.put(annotation, cached);
+		if (fRowBuckets != null)
+			fUnplacedAnnotations.add(cached);
+	}
+
+	/**
+	 * Adds the rectangle of the given cached annotation to, or removes it from its row buckets.
+	 *
+	 * @param cached the cached annotation
+	 * @param delta <code>1</code> to add the rectangle, <code>-1</code> to remove it
+	 * @since 3.15
+	 */
+	private void addToRowBuckets(CachedAnnotation cached, int delta) {
+		if (fRowBuckets == null || cached.y == -1)
+			return;
+
+		for (int bucket : cached.buckets) {
+			if (fRowBuckets[bucket] != null)
+				fRowBuckets[bucket].add(cached.y, cached.height, delta);
+		}
+		if (delta < 0)
+			cached.y= -1;
+	}
+
+	/**
+	 * Brings the row buckets up to date. They are recomputed from the cached annotations if the
+	 * mapping of lines to rows has changed, otherwise only the rectangles of the annotations
+	 * cached since the last update are added.
+	 *
+	 * @param infos the current widget infos
+	 * @since 3.15
+	 */
+	private void updateRowBuckets(WidgetInfos infos) {
+		updateCachedAnnotations();
+
+		int bucketCount= 2 * fAnnotationsSortedByLayer.size();
+		Collection<CachedAnnotation> unplaced;
+		if (fRowBuckets == null || fRowBuckets.length != bucketCount || !infos.hasSameMapping(fRowBucketInfos)) {
+			fRowBuckets= new RowBucket[bucketCount];
+			for (int i= 0; i < bucketCount; i++) {
+				if (!skip(fAnnotationsSortedByLayer.get(i / 2)))
+					fRowBuckets[i]= new RowBucket(infos.bounds.height);
+			}
+			fRowBucketInfos= infos;
+			unplaced= fCachedAnnotations.values();
+		} else {
+			unplaced= fUnplacedAnnotations;
+		}
+
+		if (!unplaced.isEmpty()) {
+			IDocument document= fTextViewer.getDocument();
+			StyledText textWidget= fTextViewer.getTextWidget();
+			ITextViewerExtension5 extension= null;
+			IRegion visible= null;
+			if (fTextViewer instanceof ITextViewerExtension5)
+				extension= (ITextViewerExtension5) fTextViewer;
+			else
+				visible= fTextViewer.getVisibleRegion(); // legacy support
+
+			for (CachedAnnotation cached : unplaced) {
+				if (fCachedAnnotations.get(cached.annotation) != cached)
 					continue;
+				computeRectangle(cached, document, textWidget, extension, visible, infos);
+				addToRowBuckets(cached, 1);
+			}
+		}
+		fUnplacedAnnotations.clear();
+	}
+
+	/**
+	 * Computes the location and height of the rectangle of the given cached annotation.
+	 *
+	 * @param cached the cached annotation
+	 * @param document the document
+	 * @param textWidget the text widget
+	 * @param extension the viewer extension, or <code>null</code> to use the visible region
+	 * @param visible the visible region, or <code>null</code> to use the viewer extension
+	 * @param infos the widget infos
+	 * @since 3.15
+	 */
+	private void computeRectangle(CachedAnnotation cached, IDocument document, StyledText textWidget, ITextViewerExtension5 extension, IRegion visible, WidgetInfos infos) {
+		cached.y= -1;
+
+		Position p= fModel != null ? fModel.getPosition(cached.annotation) : null;
+		if (p == null)
+			return;
+		if (visible != null && !p.overlapsWith(visible.getOffset(), visible.getLength()))
+			return;
+
+		int annotationOffset= p.getOffset();
+		int annotationLength= p.getLength();
+		IRegion widgetRegion= null;
+		if (visible != null) {
+			annotationOffset= Math.max(p.getOffset(), visible.getOffset());
+			int annotationEnd= Math.min(p.getOffset() + p.getLength(), visible.getOffset() + visible.getLength());
+			annotationLength= annotationEnd - annotationOffset;
+		} else {
+			widgetRegion= extension.modelRange2WidgetRange(new Region(annotationOffset, annotationLength));
+			if (widgetRegion == null)
+				return;
+		}
 
-				fCachedAnnotations.add(annotation);
+		try {
+			int startOffset= visible != null ? annotationOffset - visible.getOffset() : widgetRegion.getOffset();
+			int startLine= textWidget.getLineAtOffset(startOffset);
+
+			int yy= computeY(startLine, infos);
+			int hh= ANNOTATION_HEIGHT;
+
+			if (ANNOTATION_HEIGHT_SCALABLE) {
+				int numberOfLines= document.getNumberOfLines(annotationOffset, annotationLength);
+				// don't count empty trailing line
+				IRegion lastLine= document.getLineInformationOfOffset(annotationOffset + annotationLength);
+				if (lastLine.getOffset() == annotationOffset + annotationLength) {
+					numberOfLines--;
+				}
+				if (numberOfLines > 1) {
+					int yy2= computeY(startLine + numberOfLines - 1, infos);
+					hh= Math.max(yy2 - yy, ANNOTATION_HEIGHT);
+				}
 			}
+
+			cached.y= yy;
+			cached.height= hh;
+		} catch (BadLocationException x) {
 		}
 	}
 
 	/**
 	 * Draws this overview ruler.
+	 * <p>
+	 * The rectangles of the annotations are kept in row buckets which are updated incrementally,
+	 * hence drawing takes time proportional to the height of the ruler rather than to the number
+	 * of annotations.
+	 * </p>
 	 *
 	 * @param gc the GC to draw into
 	 */
 	private void doPaint(GC gc) {
 
-		Rectangle r= new Rectangle(0, 0, 0, 0);
-		int yy, hh= ANNOTATION_HEIGHT;
-
-		IDocument document= fTextViewer.getDocument();
 		StyledText textWidget= fTextViewer.getTextWidget();
-		ITextViewerExtension5 extension= null;
-		IRegion visible= null;
-		if (fTextViewer instanceof ITextViewerExtension5)
-			extension= (ITextViewerExtension5) fTextViewer;
-		else
-			visible= fTextViewer.getVisibleRegion(); // legacy support
+		WidgetInfos infos= new WidgetInfos(textWidget, fCanvas);
+		updateRowBuckets(infos);
 
-		WidgetInfos infos= null;
+		Rectangle r= new Rectangle(INSET, 0, infos.bounds.width - (2 * INSET), 0);
+		int yy;
 
-		for (Object annotationType : fAnnotationsSortedByLayer) {
-			if (skip(annotationType))
+		for (int i= 0; i < fRowBuckets.length; i++) {
+			RowBucket bucket= fRowBuckets[i];
+			if (bucket == null || bucket.count <= 0)
 				continue;
 
-			int[] style= new int[] { FilterIterator.PERSISTENT, FilterIterator.TEMPORARY };
-			for (int element : style) {
-				boolean areColorsComputed= false;
-				Color fill= null;
-				Color stroke= null;
-
-				Iterator<Annotation> e= new FilterIterator(annotationType, element, fCachedAnnotations.iterator());
-				while (e.hasNext()) {
-					Annotation a= e.next();
-					Position p= fModel.getPosition(a);
-
-					if (p == null)
-						continue;
-					if (visible != null && !p.overlapsWith(visible.getOffset(), visible.getLength()))
-						continue;
-
-					int annotationOffset= p.getOffset();
-					int annotationLength= p.getLength();
-					IRegion widgetRegion= null;
-					if (visible != null) {
-						annotationOffset= Math.max(p.getOffset(), visible.getOffset());
-						int annotationEnd= Math.min(p.getOffset() + p.getLength(), visible.getOffset() + visible.getLength());
-						annotationLength= annotationEnd - annotationOffset;
-					} else {
-						widgetRegion= extension.modelRange2WidgetRange(new Region(annotationOffset, annotationLength));
-						if (widgetRegion == null)
-							continue;
-					}
-
-					if (infos == null) {
-						infos= new WidgetInfos(textWidget, fCanvas);
-						r.x= INSET;
-						r.width= infos.bounds.width - (2 * INSET);
-					}
+			Object annotationType= fAnnotationsSortedByLayer.get(i / 2);
+			boolean isTemporary= i % 2 == 1;
+			Color stroke= getStrokeColor(annotationType, isTemporary);
+			Color fill= fUseSaturatedColors ? stroke : getFillColor(annotationType, isTemporary);
 
-					try {
-						int startOffset= visible != null ? annotationOffset - visible.getOffset() : widgetRegion.getOffset();
-						int startLine= textWidget.getLineAtOffset(startOffset);
-
-						yy= computeY(startLine, infos);
-
-						if (ANNOTATION_HEIGHT_SCALABLE) {
-							int numberOfLines= document.getNumberOfLines(annotationOffset, annotationLength);
-							// don't count empty trailing line
-							IRegion lastLine= document.getLineInformationOfOffset(annotationOffset + annotationLength);
-							if (lastLine.getOffset() == annotationOffset + annotationLength) {
-								numberOfLines--;
-							}
-							if (numberOfLines > 1) {
-								int yy2= computeY(startLine + numberOfLines - 1, infos);
-								hh= Math.max(yy2 - yy, ANNOTATION_HEIGHT);
-							} else {
-								hh= ANNOTATION_HEIGHT;
-							}
-						}
-						fAnnotationHeight= hh;
-
-						if (!areColorsComputed) {
-							stroke= getStrokeColor(annotationType, element == FilterIterator.TEMPORARY);
-							fill= fUseSaturatedColors ? stroke : getFillColor(annotationType, element == FilterIterator.TEMPORARY);
-							areColorsComputed= true;
-						}
-
-						if (fill != null) {
-							gc.setBackground(fill);
-							gc.fillRectangle(INSET, yy, infos.bounds.width-(2*INSET), hh);
-						}
-
-						if (stroke != null) {
-							gc.setForeground(stroke);
-							r.y= yy;
-							if (yy + hh == infos.bounds.height)
-								r.y--;
-							r.height= hh;
-							gc.setLineWidth(0); // NOTE: 0 means width is 1 but with optimized performance
-							gc.drawRectangle(r);
-						}
-					} catch (BadLocationException x) {
-					}
-				}
+			int[] rows= bucket.rows;
+			for (yy= 0; yy < rows.length; yy++) {
+				if (rows[yy] > 0)
+					drawRectangle(gc, r, yy, ANNOTATION_HEIGHT, fill, stroke, infos);
+			}
+			for (Long key : bucket.tallRows.keySet()) {
+				long value= key.longValue();
+				drawRectangle(gc, r, (int) (value >>> 32), (int) value, fill, stroke, infos);
 			}
 		}
 
 		if (DEBUG_DRAW) {
 			// draw debugging guides (boundaries):
-			if (infos == null)
-				infos= new WidgetInfos(textWidget, fCanvas);
 			gc.setForeground(gc.getDevice().getSystemColor(SWT.COLOR_DARK_MAGENTA));
 			yy= infos.thumbHeight / 2;
 			gc.drawLine(0, yy, infos.bounds.x/2, yy);
@@ -832,6 +1077,37 @@ public class OverviewRuler implements IOverviewRulerExtension, IOverviewRuler {
 		}
 	}
 
+	/**
+	 * Draws the rectangle of one or more annotations.
+	 *
+	 * @param gc the GC to draw into
+	 * @param r the rectangle to reuse for drawing the stroke
+	 * @param yy the y location of the rectangle
+	 * @param hh the height of the rectangle
+	 * @param fill the fill color, or <code>null</code>
+	 * @param stroke the stroke color, or <code>null</code>
+	 * @param infos the widget infos
+	 * @since 3.15
+	 */
+	private void drawRectangle(GC gc, Rectangle r, int yy, int hh, Color fill, Color stroke, WidgetInfos infos) {
+		fAnnotationHeight= hh;
+
+		if (fill != null) {
+			gc.setBackground(fill);
+			gc.fillRectangle(INSET, yy, infos.bounds.width-(2*INSET), hh);
+		}
+
+		if (stroke != null) {
+			gc.setForeground(stroke);
+			r.y= yy;
+			if (yy + hh == infos.bounds.height)
+				r.y--;
+			r.height= hh;
+			gc.setLineWidth(0); // NOTE: 0 means width is 1 but with optimized performance
+			gc.drawRectangle(r);
+		}
+	}
+
 	/**
 	 * Computes and returns the y location of the given startLine.
 	 *
@@ -1150,6 +1426,7 @@ public class OverviewRuler implements IOverviewRulerExtension, IOverviewRuler {
 		synchronized (fRunnableLock){
 			fConfiguredAnnotationTypes.add(annotationType);
 			fAllowedAnnotationTypes.clear();
+			fIsAnnotationCacheValid= false;
 		}
 	}
 
@@ -1158,6 +1435,7 @@ public class OverviewRuler implements IOverviewRulerExtension, IOverviewRuler {
 		synchronized (fRunnableLock){
 			fConfiguredAnnotationTypes.remove(annotationType);
 			fAllowedAnnotationTypes.clear();
+			fIsAnnotationCacheValid= false;
 		}
 	}
 
@@ -1178,6 +1456,8 @@ public class OverviewRuler implements IOverviewRulerExtension, IOverviewRuler {
 			fLayersSortedByLayer.add(i, layerObj);
 			fAnnotationsSortedByLayer.add(i, annotationType);
 		}
+
+		invalidateCachedAnnotations();
 	}
 
 	@Override
@@ -1258,6 +1538,23 @@ public class OverviewRuler implements IOverviewRulerExtension, IOverviewRuler {
 		return configured.contains(annotationType);
 	}
 
+	/**
+	 * Tells whether the given annotation type is a subtype of the given super type.
+	 *
+	 * @param annotationType the annotation type
+	 * @param superType the super type
+	 * @return <code>true</code> if <code>annotationType</code> is a subtype of
+	 *         <code>superType</code>
+	 * @since 3.15
+	 */
+	private boolean isSubtype(Object annotationType, Object superType) {
+		if (fAnnotationAccess instanceof IAnnotationAccessExtension) {
+			IAnnotationAccessExtension extension= (IAnnotationAccessExtension) fAnnotationAccess;
+			return extension.isSubtype(annotationType, superType);
+		}
+		return superType.equals(annotationType);
+	}
+
 	/**
 	 * Returns a specification of a color that lies between the given
 	 * foreground and background color using the given scale factor.
@@ -1438,13 +1735,15 @@ public class OverviewRuler implements IOverviewRulerExtension, IOverviewRuler {
 
 		fHeader.setToolTipText(null);
 
+		updateCachedAnnotations();
+
 		Object colorType= null;
 		outer: for (int i= fAnnotationsSortedByLayer.size() -1; i >= 0; i--) {
 			Object annotationType= fAnnotationsSortedByLayer.get(i);
 			if (skipInHeader(annotationType) || skip(annotationType))
 				continue;
 
-			Iterator<Annotation> e= new FilterIterator(annotationType, FilterIterator.PERSISTENT | FilterIterator.TEMPORARY | FilterIterator.IGNORE_BAGS, fCachedAnnotations.iterator());
+			Iterator<Annotation> e= new FilterIterator(annotationType, FilterIterator.PERSISTENT | FilterIterator.TEMPORARY | FilterIterator.IGNORE_BAGS, fCachedAnnotations.keySet().iterator());
 			while (e.hasNext()) {
 				if (e.next() != null) {
 					colorType= annotationType;
@@ -1482,6 +1781,8 @@ public class OverviewRuler implements IOverviewRulerExtension, IOverviewRuler {
 		if (fHeader.getToolTipText() != null)
 			return;
 
+		updateCachedAnnotations();
+
 		StringBuilder overview = new StringBuilder();
 
 		for (int i= fAnnotationsSortedByLayer.size() -1; i >= 0; i--) {
@@ -1494,7 +1795,7 @@ public class OverviewRuler implements IOverviewRulerExtension, IOverviewRuler {
 			int count= 0;
 			String annotationTypeLabel= null;
 
-			Iterator<Annotation> e= new FilterIterator(annotationType, FilterIterator.PERSISTENT | FilterIterator.TEMPORARY | FilterIterator.IGNORE_BAGS, fCachedAnnotations.iterator());
+			Iterator<Annotation> e= new FilterIterator(annotationType, FilterIterator.PERSISTENT | FilterIterator.TEMPORARY | FilterIterator.IGNORE_BAGS, fCachedAnnotations.keySet().iterator());
 			while (e.hasNext()) {
 				Annotation annotation= e.next();
 				if (annotation != null) {
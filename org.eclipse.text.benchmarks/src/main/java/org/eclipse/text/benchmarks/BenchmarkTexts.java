@@ -0,0 +1,53 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.text.benchmarks;
+
+/**
+ * Creates the texts the benchmarks operate on.
+ */
+final class BenchmarkTexts {
+
+	private BenchmarkTexts() {
+	}
+
+	/**
+	 * Parses a text size such as <code>1KB</code>, <code>10MB</code> or <code>4711</code>.
+	 *
+	 * @param size the size
+	 * @return the number of characters
+	 */
+	static int parseSize(String size) {
+		if (size.endsWith("KB"))
+			return Integer.parseInt(size.substring(0, size.length() - 2)) * 1024;
+		if (size.endsWith("MB"))
+			return Integer.parseInt(size.substring(0, size.length() - 2)) * 1024 * 1024;
+		return Integer.parseInt(size);
+	}
+
+	/**
+	 * Creates a text which looks like source code and consists of lines with about 50
+	 * characters.
+	 *
+	 * @param size the size of the text, see {@link #parseSize(String)}
+	 * @return the text
+	 */
+	static String createText(String size) {
+		int length= parseSize(size);
+		StringBuilder text= new StringBuilder(length + 100);
+		for (int i= 0; text.length() < length; i++)
+			text.append("\tpublic static final int CONSTANT_").append(i).append("= ").append(i % 97).append(";\n");
+		text.setLength(length);
+		return text.toString();
+	}
+}
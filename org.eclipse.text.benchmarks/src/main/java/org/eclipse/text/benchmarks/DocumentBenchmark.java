@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.text.benchmarks;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.BadPositionCategoryException;
+import org.eclipse.jface.text.DefaultPositionUpdater;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.Position;
+
+/**
+ * Measures the modifications and line lookups of a {@link Document}, optionally with one position
+ * per line which has to be updated on every modification.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations= 5, time= 1)
+@Measurement(iterations= 5, time= 1)
+@Fork(value= 1, jvmArgsAppend= "-Xmx4g")
+public class DocumentBenchmark {
+
+	/** The position category of the positions added to the document. */
+	private static final String CATEGORY= "benchmark";
+
+	/** The number of characters typed at one location. */
+	private static final int TYPED_WORD_LENGTH= 16;
+
+	@Param({ "1KB", "1MB", "100MB", "500MB" })
+	public String size;
+
+	/**
+	 * Whether the document has <code>no</code> positions or one position per line in a category
+	 * which is backed by a <code>list</code> or an interval <code>tree</code>.
+	 */
+	@Param({ "none", "list", "tree" })
+	public String positions;
+
+	private String fText;
+	private Document fDocument;
+	private SplittableRandom fRandom;
+	/** The offset at which the next character is typed. */
+	private int fCaret;
+	/** The number of characters typed at the caret so far. */
+	private int fTyped;
+
+	@Setup
+	public void setUp() throws BadLocationException, BadPositionCategoryException {
+		fText= BenchmarkTexts.createText(size);
+		fDocument= new Document(fText);
+		if (!"none".equals(positions)) {
+			fDocument.addPositionUpdater(new DefaultPositionUpdater(CATEGORY));
+			addPositions();
+		}
+		fRandom= new SplittableRandom(4711);
+		fCaret= fRandom.nextInt(fText.length());
+	}
+
+	/**
+	 * Adds one position per line to the position category, replacing the ones it has.
+	 */
+	void addPositions() throws BadLocationException, BadPositionCategoryException {
+		if (fDocument.containsPositionCategory(CATEGORY))
+			fDocument.removePositionCategory(CATEGORY);
+		fDocument.addPositionCategory(CATEGORY, "tree".equals(positions));
+		for (int i= 0, lines= fDocument.getNumberOfLines(); i < lines; i++) {
+			IRegion line= fDocument.getLineInformation(i);
+			fDocument.addPosition(CATEGORY, new Position(line.getOffset(), line.getLength()));
+		}
+	}
+
+	/**
+	 * Setting the content collapses all positions at offset 0, so they are added again before
+	 * each call of {@link DocumentBenchmark#set(Positions)}.
+	 */
+	@State(Scope.Benchmark)
+	public static class Positions {
+
+		@Setup(Level.Invocation)
+		public void setUp(DocumentBenchmark benchmark) throws BadLocationException, BadPositionCategoryException {
+			if (!"none".equals(benchmark.positions))
+				benchmark.addPositions();
+		}
+	}
+
+	/**
+	 * Types a word at a random location, character by character, and removes it again before
+	 * moving on to the next location.
+	 */
+	@Benchmark
+	public void typing() throws BadLocationException {
+		if (fTyped == TYPED_WORD_LENGTH) {
+			fDocument.replace(fCaret - fTyped, fTyped, null);
+			fCaret= fRandom.nextInt(fText.length());
+			fTyped= 0;
+		}
+		fDocument.replace(fCaret++, 0, "x");
+		fTyped++;
+	}
+
+	/**
+	 * Replaces a few characters at a random location by a new line.
+	 */
+	@Benchmark
+	public void randomAccessEdit() throws BadLocationException {
+		fDocument.replace(fRandom.nextInt(fText.length() - 4), 4, "ab\n\t");
+	}
+
+	@Benchmark
+	public IRegion getLineInformationOfOffset() throws BadLocationException {
+		return fDocument.getLineInformationOfOffset(fRandom.nextInt(fText.length()));
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public void set(Positions state) {
+		fDocument.set(fText);
+	}
+}
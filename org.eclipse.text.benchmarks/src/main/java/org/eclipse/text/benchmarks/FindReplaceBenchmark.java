@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.text.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.eclipse.core.internal.filebuffers.SynchronizableDocument;
+
+import org.eclipse.jface.text.AbstractDocument;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.FindReplaceDocumentAdapter;
+import org.eclipse.jface.text.IRegion;
+
+/**
+ * Measures searching a {@link Document} with a {@link FindReplaceDocumentAdapter}. The searched
+ * string only occurs at the very end of the document, so that every search scans the whole
+ * document. The document has been modified in the middle, so that its gap text store holds the
+ * content in two segments.
+ * <p>
+ * The matcher reads the text store of a <code>document</code> directly, whereas it reads a
+ * <code>synchronizableDocument</code> with a lock object character by character through
+ * {@link AbstractDocument#getChar(int)}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations= 3, time= 2)
+@Measurement(iterations= 5, time= 2)
+@Fork(value= 1, jvmArgsAppend= "-Xmx4g")
+public class FindReplaceBenchmark {
+
+	@Param({ "1KB", "1MB", "100MB", "500MB" })
+	public String size;
+
+	@Param({ "document", "synchronizableDocument" })
+	public String document;
+
+	private FindReplaceDocumentAdapter fAdapter;
+
+	@Setup
+	public void setUp() throws BadLocationException {
+		AbstractDocument searched;
+		if ("document".equals(document)) {
+			searched= new Document();
+		} else {
+			SynchronizableDocument synchronizableDocument= new SynchronizableDocument();
+			synchronizableDocument.setLockObject(new Object());
+			searched= synchronizableDocument;
+		}
+		searched.set(BenchmarkTexts.createText(size) + "\n\tprivate int fNeedle;\n");
+		searched.replace(searched.getLength() / 2, 0, "\n");
+		fAdapter= new FindReplaceDocumentAdapter(searched);
+	}
+
+	@Benchmark
+	public IRegion findString() throws BadLocationException {
+		return fAdapter.find(0, "fneedle", true, false, false, false);
+	}
+
+	@Benchmark
+	public IRegion findWholeWord() throws BadLocationException {
+		return fAdapter.find(0, "fNeedle", true, true, true, false);
+	}
+
+	@Benchmark
+	public IRegion findRegularExpression() throws BadLocationException {
+		return fAdapter.find(0, "int\\s+f[A-Z]\\w*;", true, true, false, true);
+	}
+
+	@Benchmark
+	public int findAll() throws BadLocationException {
+		int count= 0;
+		int offset= 0;
+		IRegion region;
+		while ((region= fAdapter.find(offset, "CONSTANT_\\d+", true, true, false, true)) != null) {
+			count++;
+			offset= region.getOffset() + region.getLength();
+		}
+		return count;
+	}
+}
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.text.benchmarks;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DefaultLineTracker;
+import org.eclipse.jface.text.ILineTracker;
+
+/**
+ * Measures the line lookups of the line trackers.
+ * <p>
+ * A {@link DefaultLineTracker} is backed by a list of lines until it is modified for the first
+ * time, after which it is backed by a tree of lines. The <code>tracker</code> parameter selects
+ * either implementation.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations= 5, time= 1)
+@Measurement(iterations= 5, time= 1)
+@Fork(value= 1, jvmArgsAppend= "-Xmx4g")
+public class LineTrackerBenchmark {
+
+	@Param({ "1KB", "1MB", "100MB", "500MB" })
+	public String size;
+
+	@Param({ "list", "tree" })
+	public String tracker;
+
+	private String fText;
+	private ILineTracker fTracker;
+	private SplittableRandom fRandom;
+
+	@Setup
+	public void setUp() throws BadLocationException {
+		fText= BenchmarkTexts.createText(size);
+		fTracker= new DefaultLineTracker();
+		fTracker.set(fText);
+		if ("tree".equals(tracker)) {
+			// the first modification converts the list into a tree
+			fTracker.replace(0, 0, "");
+		}
+		fRandom= new SplittableRandom(4711);
+	}
+
+	@Benchmark
+	public int getLineOffset() throws BadLocationException {
+		return fTracker.getLineOffset(fRandom.nextInt(fTracker.getNumberOfLines()));
+	}
+
+	@Benchmark
+	public int getLineNumberOfOffset() throws BadLocationException {
+		return fTracker.getLineNumberOfOffset(fRandom.nextInt(fText.length()));
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public void set() {
+		fTracker.set(fText);
+	}
+}
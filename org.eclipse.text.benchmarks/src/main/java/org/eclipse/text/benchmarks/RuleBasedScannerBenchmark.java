@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.text.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.rules.EndOfLineRule;
+import org.eclipse.jface.text.rules.ICharacterScanner;
+import org.eclipse.jface.text.rules.IRule;
+import org.eclipse.jface.text.rules.IToken;
+import org.eclipse.jface.text.rules.IWhitespaceDetector;
+import org.eclipse.jface.text.rules.IWordDetector;
+import org.eclipse.jface.text.rules.MultiLineRule;
+import org.eclipse.jface.text.rules.NumberRule;
+import org.eclipse.jface.text.rules.RuleBasedScanner;
+import org.eclipse.jface.text.rules.SingleLineRule;
+import org.eclipse.jface.text.rules.Token;
+import org.eclipse.jface.text.rules.WhitespaceRule;
+import org.eclipse.jface.text.rules.WordRule;
+
+/**
+ * Measures scanning a Java source text with a {@link RuleBasedScanner} configured with rules
+ * like the ones of a Java code scanner. The <code>dispatched</code> scanner uses the standard
+ * rules, which it only evaluates at the characters where they can match, whereas the
+ * <code>sequential</code> scanner hides the classes of the rules and thus evaluates all of them
+ * at every token.
+ * <p>
+ * The <code>source</code> is either <code>generated</code> or the path of a Java file or of a
+ * directory whose Java files are concatenated.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations= 3, time= 2)
+@Measurement(iterations= 5, time= 2)
+@Fork(1)
+public class RuleBasedScannerBenchmark {
+
+	private static final String[] KEYWORDS= { "abstract", "boolean", "break", "byte", "case", "catch", "char", "class", "continue", "default", "do", "double", "else", "extends", "final", "finally", "float", "for", "if", "implements", "import", "instanceof", "int", "interface", "long", "new", "package", "private", "protected", "public", "return", "short", "static", "super", "switch", "this", "throw", "throws", "try", "void", "while" };
+
+	@Param({ "generated" })
+	public String source;
+
+	@Param({ "dispatched", "sequential" })
+	public String scanner;
+
+	private IDocument fDocument;
+
+	private RuleBasedScanner fScanner;
+
+	/** Hides the class of a rule from the scanner */
+	private static class SequentialRule implements IRule {
+		private final IRule fRule;
+
+		SequentialRule(IRule rule) {
+			fRule= rule;
+		}
+
+		@Override
+		public IToken evaluate(ICharacterScanner characterScanner) {
+			return fRule.evaluate(characterScanner);
+		}
+	}
+
+	@Setup
+	public void setUp() throws IOException {
+		fDocument= new Document(readSource());
+		IRule[] rules= createRules();
+		if ("sequential".equals(scanner)) {
+			for (int i= 0; i < rules.length; i++)
+				rules[i]= new SequentialRule(rules[i]);
+		}
+		fScanner= new RuleBasedScanner();
+		fScanner.setRules(rules);
+		fScanner.setDefaultReturnToken(new Token("default"));
+	}
+
+	@Benchmark
+	public int scan() {
+		fScanner.setRange(fDocument, 0, fDocument.getLength());
+		int count= 0;
+		while (!fScanner.nextToken().isEOF())
+			count++;
+		return count;
+	}
+
+	private String readSource() throws IOException {
+		if ("generated".equals(source))
+			return createSource();
+		File file= new File(source);
+		if (!file.isDirectory())
+			return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+		StringBuilder text= new StringBuilder();
+		File[] files= file.listFiles();
+		if (files != null) {
+			for (File child : files) {
+				if (child.isFile() && child.getName().endsWith(".java"))
+					text.append(new String(Files.readAllBytes(child.toPath()), StandardCharsets.UTF_8));
+			}
+		}
+		return text.toString();
+	}
+
+	private static String createSource() {
+		StringBuilder text= new StringBuilder();
+		text.append("package org.eclipse.text.benchmarks;\n\n");
+		for (int i= 0; i < 2000; i++) {
+			text.append("\t/**\n\t * Returns the value number ").append(i).append(".\n\t */\n");
+			text.append("\tpublic static int getValue").append(i).append("(int value) {\n");
+			text.append("\t\tif (value > ").append(i).append(") // compares the value\n");
+			text.append("\t\t\treturn value * 'x' + \"value\".length();\n");
+			text.append("\t\treturn ").append(i % 97).append(";\n\t}\n\n");
+		}
+		return text.toString();
+	}
+
+	private static IRule[] createRules() {
+		IToken keyword= new Token("keyword");
+		IToken string= new Token("string");
+		IToken comment= new Token("comment");
+		IWordDetector wordDetector= new IWordDetector() {
+			@Override
+			public boolean isWordStart(char c) {
+				return Character.isJavaIdentifierStart(c);
+			}
+
+			@Override
+			public boolean isWordPart(char c) {
+				return Character.isJavaIdentifierPart(c);
+			}
+		};
+		WordRule wordRule= new WordRule(wordDetector, new Token("word"));
+		for (String word : KEYWORDS)
+			wordRule.addWord(word, keyword);
+		return new IRule[] {
+				new EndOfLineRule("//", comment),
+				new MultiLineRule("/*", "*/", comment, (char) 0, true),
+				new SingleLineRule("\"", "\"", string, '\\'),
+				new SingleLineRule("'", "'", string, '\\'),
+				new WhitespaceRule(new IWhitespaceDetector() {
+					@Override
+					public boolean isWhitespace(char c) {
+						return Character.isWhitespace(c);
+					}
+				}),
+				new NumberRule(new Token("number")),
+				wordRule,
+		};
+	}
+}
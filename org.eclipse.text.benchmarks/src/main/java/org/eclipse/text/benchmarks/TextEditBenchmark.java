@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.text.benchmarks;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.eclipse.text.edits.MultiTextEdit;
+import org.eclipse.text.edits.ReplaceEdit;
+import org.eclipse.text.edits.TextEdit;
+import org.eclipse.text.edits.UndoEdit;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
+
+/**
+ * Measures the application of a text edit tree with one edit per line, like a rename of an
+ * identifier which occurs on every line.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations= 5, time= 1)
+@Measurement(iterations= 5, time= 1)
+@Fork(value= 1, jvmArgsAppend= "-Xmx4g")
+public class TextEditBenchmark {
+
+	private static final String IDENTIFIER= "CONSTANT_";
+
+	@Param({ "1MB", "10MB" })
+	public String size;
+
+	private String fText;
+	private int[] fOffsets;
+	private Document fDocument;
+
+	@Setup
+	public void setUp() {
+		fText= BenchmarkTexts.createText(size);
+		int count= 0;
+		int[] offsets= new int[1024];
+		for (int offset= fText.indexOf(IDENTIFIER); offset != -1; offset= fText.indexOf(IDENTIFIER, offset + 1)) {
+			if (count == offsets.length)
+				offsets= Arrays.copyOf(offsets, 2 * count);
+			offsets[count++]= offset;
+		}
+		fOffsets= Arrays.copyOf(offsets, count);
+		fDocument= new Document();
+	}
+
+	/**
+	 * Renames the identifier on every line and undoes the rename.
+	 */
+	@Benchmark
+	public void renameAndUndo() throws BadLocationException {
+		fDocument.set(fText);
+		TextEdit edit= new MultiTextEdit();
+		for (int offset : fOffsets)
+			edit.addChild(new ReplaceEdit(offset, IDENTIFIER.length(), "RENAMED_CONSTANT_"));
+		UndoEdit undo= edit.apply(fDocument);
+		undo.apply(fDocument);
+	}
+}
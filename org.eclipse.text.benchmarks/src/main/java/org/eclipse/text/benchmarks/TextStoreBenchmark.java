@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.text.benchmarks;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.eclipse.jface.text.GapTextStore;
+import org.eclipse.jface.text.ITextStore;
+import org.eclipse.jface.text.PieceTableTextStore;
+
+/**
+ * Measures the text stores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations= 5, time= 1)
+@Measurement(iterations= 5, time= 1)
+@Fork(value= 1, jvmArgsAppend= "-Xmx4g")
+public class TextStoreBenchmark {
+
+	/** The number of characters typed at one location. */
+	private static final int TYPED_WORD_LENGTH= 16;
+
+	@Param({ "1KB", "1MB", "100MB", "500MB" })
+	public String size;
+
+	@Param({ "gap", "pieceTable" })
+	public String store;
+
+	private String fText;
+	private ITextStore fStore;
+	private SplittableRandom fRandom;
+	/** The offset at which the next character is typed. */
+	private int fCaret;
+	/** The number of characters typed at the caret so far. */
+	private int fTyped;
+
+	@Setup
+	public void setUp() {
+		fText= BenchmarkTexts.createText(size);
+		fStore= "gap".equals(store) ? new GapTextStore() : new PieceTableTextStore();
+		fStore.set(fText);
+		fRandom= new SplittableRandom(4711);
+		fCaret= fRandom.nextInt(fText.length());
+	}
+
+	/**
+	 * Types a word at a random location, character by character, and removes it again before
+	 * moving on to the next location.
+	 */
+	@Benchmark
+	public void typing() {
+		if (fTyped == TYPED_WORD_LENGTH) {
+			fStore.replace(fCaret - fTyped, fTyped, null);
+			fCaret= fRandom.nextInt(fText.length());
+			fTyped= 0;
+		}
+		fStore.replace(fCaret++, 0, "x");
+		fTyped++;
+	}
+
+	/**
+	 * Replaces a few characters at a random location.
+	 */
+	@Benchmark
+	public void randomAccessEdit() {
+		fStore.replace(fRandom.nextInt(fText.length() - 4), 4, "edit");
+	}
+
+	/**
+	 * Reads a few characters at a random location.
+	 */
+	@Benchmark
+	public String randomAccessRead() {
+		return fStore.get(fRandom.nextInt(fText.length() - 80), 80);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public void set() {
+		fStore.set(fText);
+	}
+}
@@ -0,0 +1,213 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.text.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.Position;
+import org.eclipse.jface.text.source.Annotation;
+import org.eclipse.jface.text.source.AnnotationModel;
+import org.eclipse.jface.text.source.AnnotationModelEvent;
+import org.eclipse.jface.text.source.CoalescingAnnotationModelListener;
+import org.eclipse.jface.text.source.IAnnotationModel;
+import org.eclipse.jface.text.source.IAnnotationModelListener;
+import org.eclipse.jface.text.source.IAnnotationModelListenerExtension;
+
+/**
+ * Tests batched and coalesced annotation model events.
+ */
+public class AnnotationModelBatchTest {
+
+	private static class RecordingListener implements IAnnotationModelListener, IAnnotationModelListenerExtension {
+
+		final List<AnnotationModelEvent> fEvents= new ArrayList<>();
+
+		@Override
+		public void modelChanged(IAnnotationModel model) {
+		}
+
+		@Override
+		public synchronized void modelChanged(AnnotationModelEvent event) {
+			if (!event.isEmpty())
+				fEvents.add(event);
+		}
+
+		synchronized int getEventCount() {
+			return fEvents.size();
+		}
+	}
+
+	private Document fDocument;
+	private AnnotationModel fModel;
+	private RecordingListener fListener;
+
+	@Before
+	public void setUp() {
+		fDocument= new Document("How much wood\nwould a woodchuck chuck\nif a woodchuck\ncould chuck wood?\n42");
+		fModel= new AnnotationModel();
+		fModel.connect(fDocument);
+		fListener= new RecordingListener();
+		fModel.addAnnotationModelListener(fListener);
+		fListener.fEvents.clear();
+	}
+
+	@After
+	public void tearDown() {
+		fModel.removeAnnotationModelListener(fListener);
+		fModel.disconnect(fDocument);
+	}
+
+	@Test
+	public void testBatchFiresSingleEvent() {
+		Annotation a1= new Annotation(false);
+		Annotation a2= new Annotation(false);
+		Annotation a3= new Annotation(false);
+		fModel.addAnnotation(a1, new Position(0, 3));
+
+		fListener.fEvents.clear();
+		fModel.beginBatch();
+		fModel.addAnnotation(a2, new Position(5, 3));
+		fModel.addAnnotation(a3, new Position(10, 3));
+		fModel.removeAnnotation(a1);
+		fModel.modifyAnnotationPosition(a2, new Position(6, 3));
+		assertTrue(fListener.fEvents.isEmpty());
+		fModel.endBatch();
+
+		assertEquals(1, fListener.fEvents.size());
+		AnnotationModelEvent event= fListener.fEvents.get(0);
+		assertFalse(event.isWorldChange());
+		assertEquals(new HashSet<>(Arrays.asList(a2, a3)), new HashSet<>(Arrays.asList(event.getAddedAnnotations())));
+		assertEquals(Arrays.asList(a1), Arrays.asList(event.getRemovedAnnotations()));
+		assertEquals(Arrays.asList(a2), Arrays.asList(event.getChangedAnnotations()));
+		assertEquals(0, event.getPositionOfRemovedAnnotation(a1).getOffset());
+	}
+
+	@Test
+	public void testAnnotationAddedAndRemovedInBatch() {
+		Annotation a1= new Annotation(false);
+		Annotation a2= new Annotation(false);
+		Annotation a3= new Annotation(false);
+		fModel.addAnnotation(a1, new Position(0, 3));
+
+		fListener.fEvents.clear();
+		fModel.beginBatch();
+		fModel.modifyAnnotationPosition(a1, new Position(1, 3));
+		fModel.removeAnnotation(a1);
+		fModel.addAnnotation(a2, new Position(5, 3));
+		fModel.removeAnnotation(a2);
+		fModel.addAnnotation(a3, new Position(10, 3));
+		fModel.endBatch();
+
+		assertEquals(1, fListener.fEvents.size());
+		AnnotationModelEvent event= fListener.fEvents.get(0);
+		assertEquals(Arrays.asList(a3), Arrays.asList(event.getAddedAnnotations()));
+		assertEquals(Arrays.asList(a1), Arrays.asList(event.getRemovedAnnotations()));
+		assertEquals(0, event.getChangedAnnotations().length);
+	}
+
+	@Test
+	public void testNestedBatches() {
+		fModel.beginBatch();
+		fModel.addAnnotation(new Annotation(false), new Position(0, 3));
+		fModel.beginBatch();
+		fModel.addAnnotation(new Annotation(false), new Position(5, 3));
+		fModel.endBatch();
+		assertTrue(fListener.fEvents.isEmpty());
+		fModel.addAnnotation(new Annotation(false), new Position(10, 3));
+		fModel.endBatch();
+
+		assertEquals(1, fListener.fEvents.size());
+		assertEquals(3, fListener.fEvents.get(0).getAddedAnnotations().length);
+	}
+
+	@Test
+	public void testBatchIncludesAttachedModels() {
+		AnnotationModel attachment= new AnnotationModel();
+		fModel.addAnnotationModel("attachment", attachment);
+		fListener.fEvents.clear();
+
+		Annotation inner= new Annotation(false);
+		Annotation outer= new Annotation(false);
+		fModel.beginBatch();
+		attachment.addAnnotation(inner, new Position(0, 3));
+		fModel.addAnnotation(outer, new Position(5, 3));
+		fModel.endBatch();
+
+		assertEquals(1, fListener.fEvents.size());
+		AnnotationModelEvent event= fListener.fEvents.get(0);
+		assertSame(fModel, event.getAnnotationModel());
+		assertEquals(2, event.getAddedAnnotations().length);
+		fModel.removeAnnotationModel("attachment");
+	}
+
+	@Test
+	public void testCoalescingListener() throws Exception {
+		RecordingListener target= new RecordingListener();
+		CoalescingAnnotationModelListener listener= new CoalescingAnnotationModelListener(target, 60000);
+		fModel.addAnnotationModelListener(listener);
+
+		Annotation a1= new Annotation(false);
+		fModel.addAnnotation(a1, new Position(0, 3));
+		fModel.addAnnotation(new Annotation(false), new Position(5, 3));
+		fModel.removeAnnotation(a1);
+		assertTrue(target.fEvents.isEmpty());
+
+		listener.flush();
+		assertEquals(1, target.fEvents.size());
+		AnnotationModelEvent event= target.fEvents.get(0);
+		// a1 has been added and removed within the window
+		assertEquals(1, event.getAddedAnnotations().length);
+		assertFalse(Arrays.asList(event.getAddedAnnotations()).contains(a1));
+		assertEquals(0, event.getRemovedAnnotations().length);
+		assertEquals(1, listener.getDeliveredEventCount());
+		assertTrue(listener.getReceivedEventCount() >= 3);
+
+		listener.flush();
+		assertEquals(1, target.fEvents.size());
+		fModel.removeAnnotationModelListener(listener);
+		listener.dispose();
+	}
+
+	@Test
+	public void testCoalescingListenerDeliversAfterWindow() throws Exception {
+		RecordingListener target= new RecordingListener();
+		CoalescingAnnotationModelListener listener= new CoalescingAnnotationModelListener(target, 10);
+		fModel.addAnnotationModelListener(listener);
+
+		fModel.addAnnotation(new Annotation(false), new Position(0, 3));
+		fModel.addAnnotation(new Annotation(false), new Position(5, 3));
+
+		long timeout= System.currentTimeMillis() + 10000;
+		while (target.getEventCount() == 0 && System.currentTimeMillis() < timeout)
+			Thread.sleep(10);
+
+		assertTrue(target.getEventCount() > 0);
+		assertTrue(listener.getDeliveredEventCount() <= listener.getReceivedEventCount());
+		fModel.removeAnnotationModelListener(listener);
+		listener.dispose();
+	}
+}
@@ -0,0 +1,259 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.text.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.ConfigurableLineTracker;
+import org.eclipse.jface.text.DefaultLineTracker;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.GapTextStore;
+import org.eclipse.jface.text.IDocumentListener;
+import org.eclipse.jface.text.ILineTracker;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.ITextStore;
+
+/**
+ * Tests the line tracker used for large texts by comparing it with the tree based line tracker
+ * used for texts which have been modified.
+ */
+public class BlockLineTrackerTest {
+
+	/** A text length at which the block line tracker is used. */
+	private static final int LARGE= 1024 * 1024;
+
+	private static final String[] TEXTS= { "a", "bc", "\n", "\r", "\r\n", "de\nfg", "\n\n\n", "h\r\ni\rj\n", "k--l", "" };
+
+	private Random fRandom= new Random(4711);
+
+	@Test
+	public void testDefaultLineTracker() throws Exception {
+		checkRandomEdits(new DefaultLineTracker(), new DefaultLineTracker());
+	}
+
+	@Test
+	public void testConfigurableLineTracker() throws Exception {
+		String[] delimiters= { "\r\n", "\n", "--" };
+		checkRandomEdits(new ConfigurableLineTracker(delimiters), new ConfigurableLineTracker(delimiters));
+	}
+
+	@Test
+	public void testDelimitersAtChunkBoundaries() throws Exception {
+		// large texts are scanned for line delimiters in chunks of 64K characters
+		int chunk= 64 * 1024;
+		StringBuilder text= new StringBuilder(createText(2 * LARGE));
+		for (int i= 1; i < 32; i++) {
+			int boundary= i * chunk;
+			switch (i % 4) {
+				case 0:
+					text.replace(boundary - 1, boundary + 1, "\r\n");
+					break;
+				case 1:
+					text.replace(boundary - 1, boundary + 1, "\rx");
+					break;
+				case 2:
+					text.replace(boundary - 1, boundary + 1, "x\n");
+					break;
+				default:
+					text.replace(boundary - 2, boundary + 2, "\r\r\n\n");
+					break;
+			}
+		}
+		DefaultLineTracker actual= new DefaultLineTracker();
+		actual.set(text.toString());
+		DefaultLineTracker expected= new DefaultLineTracker();
+		expected.set("");
+		expected.replace(0, 0, text.toString());
+		checkEqual(expected, actual, text.length());
+	}
+
+	@Test
+	public void testSetTextStore() throws Exception {
+		// the line information is read from the text store in chunks of 64K characters
+		int chunk= 64 * 1024;
+		StringBuilder text= new StringBuilder(createText(2 * LARGE).replace("--", "\n"));
+		for (int i= 1; i < 28; i++)
+			text.replace(i * chunk - 1, i * chunk + 1, i % 2 == 0 ? "\r\n" : "\rx");
+		ITextStore store= new GapTextStore();
+		store.set(text.toString());
+
+		DocumentEvent[] changed= new DocumentEvent[1];
+		StoreDocument document= new StoreDocument();
+		document.addDocumentListener(new IDocumentListener() {
+			@Override
+			public void documentAboutToBeChanged(DocumentEvent event) {
+				// not interested
+			}
+
+			@Override
+			public void documentChanged(DocumentEvent event) {
+				changed[0]= event;
+			}
+		});
+		document.setTextStore(store, 42);
+
+		DefaultLineTracker expected= new DefaultLineTracker();
+		expected.set("");
+		expected.replace(0, 0, text.toString());
+		checkEqual(expected, document.getTracker(), text.length());
+		assertEquals(42, document.getModificationStamp());
+		DocumentEvent setEvent= changed[0];
+		assertEquals(text.length(), setEvent.getTextLength());
+		assertEquals(text.toString(), setEvent.fText);
+
+		document.replace(chunk, 0, "\n");
+		expected.replace(chunk, 0, "\n");
+		checkEqualAt(expected, document.getTracker(), chunk);
+		// the event keeps the inserted text after the store has been modified
+		assertEquals(text.toString(), setEvent.getText());
+	}
+
+	@Test
+	public void testSmallTextUsesListAgain() throws Exception {
+		DefaultLineTracker tracker= new DefaultLineTracker();
+		tracker.set(createText(LARGE));
+		tracker.set("a\nb\n");
+		assertEquals(3, tracker.getNumberOfLines());
+		tracker.replace(1, 0, "\n");
+		assertEquals(4, tracker.getNumberOfLines());
+		assertEquals(2, tracker.getLineOffset(1));
+	}
+
+	/**
+	 * A document which can be given a text store.
+	 */
+	private static class StoreDocument extends Document {
+
+		void setTextStore(ITextStore store, long modificationStamp) {
+			set(store, modificationStamp);
+		}
+
+		@Override
+		public ILineTracker getTracker() {
+			return super.getTracker();
+		}
+	}
+
+	private void checkRandomEdits(ILineTracker actual, ILineTracker expected) throws BadLocationException {
+		StringBuilder text= new StringBuilder(createText(LARGE));
+		actual.set(text.toString());
+		// the first modification turns the line tracker into a tree
+		expected.set("");
+		expected.replace(0, 0, text.toString());
+		checkEqual(expected, actual, text.length());
+
+		for (int i= 0; i < 1000; i++) {
+			int offset= fRandom.nextInt(text.length() + 1);
+			int length;
+			String inserted;
+			switch (fRandom.nextInt(20)) {
+				case 0:
+					// removes many lines at once
+					length= Math.min(fRandom.nextInt(200000), text.length() - offset);
+					inserted= "";
+					break;
+				case 1:
+					// inserts many lines at once
+					length= 0;
+					inserted= createText(fRandom.nextInt(100000));
+					break;
+				default:
+					length= Math.min(fRandom.nextInt(5), text.length() - offset);
+					inserted= TEXTS[fRandom.nextInt(TEXTS.length)];
+					break;
+			}
+			text.replace(offset, offset + length, inserted);
+			expected.replace(offset, length, inserted);
+			actual.replace(offset, length, inserted);
+
+			if (i % 100 == 0)
+				checkEqual(expected, actual, text.length());
+			else
+				checkEqualAt(expected, actual, offset);
+		}
+		checkEqual(expected, actual, text.length());
+
+		for (int i= 0; i < 100; i++) {
+			int offset= fRandom.nextInt(text.length() + 1);
+			int length= text.length() - offset;
+			expected.replace(offset, length, null);
+			actual.replace(offset, length, null);
+			text.setLength(offset);
+			checkEqualAt(expected, actual, offset);
+		}
+		checkEqual(expected, actual, text.length());
+	}
+
+	private String createText(int length) {
+		StringBuilder text= new StringBuilder(length + 20);
+		while (text.length() < length) {
+			text.append("line ").append(text.length());
+			int delimiter= fRandom.nextInt(20);
+			text.append(delimiter == 0 ? "\r\n" : delimiter == 1 ? "--" : "\n");
+		}
+		text.setLength(length);
+		return text.toString();
+	}
+
+	private static void checkEqual(ILineTracker expected, ILineTracker actual, int length) throws BadLocationException {
+		int lines= expected.getNumberOfLines();
+		assertEquals(lines, actual.getNumberOfLines());
+		for (int line= 0; line < lines; line++) {
+			assertEquals(expected.getLineOffset(line), actual.getLineOffset(line));
+			assertEquals(expected.getLineLength(line), actual.getLineLength(line));
+			assertEquals(expected.getLineDelimiter(line), actual.getLineDelimiter(line));
+		}
+		checkEqualAt(expected, actual, 0);
+		checkEqualAt(expected, actual, length);
+		try {
+			IRegion region= expected.getLineInformation(lines);
+			assertRegionEquals(region, actual.getLineInformation(lines));
+		} catch (BadLocationException e) {
+			try {
+				actual.getLineInformation(lines);
+				fail();
+			} catch (BadLocationException x) {
+				// expected
+			}
+		}
+		try {
+			actual.getLineOffset(lines);
+			fail();
+		} catch (BadLocationException e) {
+			// expected
+		}
+	}
+
+	private static void checkEqualAt(ILineTracker expected, ILineTracker actual, int offset) throws BadLocationException {
+		int line= expected.getLineNumberOfOffset(offset);
+		assertEquals(line, actual.getLineNumberOfOffset(offset));
+		assertRegionEquals(expected.getLineInformationOfOffset(offset), actual.getLineInformationOfOffset(offset));
+		assertRegionEquals(expected.getLineInformation(line), actual.getLineInformation(line));
+		assertEquals(expected.getLineOffset(line), actual.getLineOffset(line));
+		assertEquals(expected.getNumberOfLines(), actual.getNumberOfLines());
+		assertEquals(expected.getNumberOfLines(0, offset), actual.getNumberOfLines(0, offset));
+	}
+
+	private static void assertRegionEquals(IRegion expected, IRegion actual) {
+		assertEquals(expected.getOffset(), actual.getOffset());
+		assertEquals(expected.getLength(), actual.getLength());
+	}
+}
@@ -0,0 +1,431 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.text.tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.eclipse.text.edits.CopySourceEdit;
+import org.eclipse.text.edits.CopyTargetEdit;
+import org.eclipse.text.edits.CopyingRangeMarker;
+import org.eclipse.text.edits.DeleteEdit;
+import org.eclipse.text.edits.InsertEdit;
+import org.eclipse.text.edits.MalformedTreeException;
+import org.eclipse.text.edits.MoveSourceEdit;
+import org.eclipse.text.edits.MoveTargetEdit;
+import org.eclipse.text.edits.MultiTextEdit;
+import org.eclipse.text.edits.RangeMarker;
+import org.eclipse.text.edits.ReplaceEdit;
+import org.eclipse.text.edits.TextEdit;
+import org.eclipse.text.edits.UndoEdit;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
+import org.eclipse.jface.text.Position;
+
+/**
+ * Tests that applying a large text edit tree at once has the same result as applying its edits
+ * one by one.
+ */
+public class BulkTextEditTest {
+
+	private Random fRandom;
+	private String fOriginal;
+	private Document fActual;
+	private Document fExpected;
+	/** Only implements {@link IDocument}, so the edits are applied one by one. */
+	private IDocument fExpectedProxy;
+
+	@Before
+	public void setUp() throws Exception {
+		fRandom= new Random(4711);
+		StringBuilder text= new StringBuilder();
+		for (int i= 0; i < 2000; i++)
+			text.append("line ").append(i).append('\n');
+		fOriginal= text.toString();
+
+		fActual= new Document(fOriginal);
+		fExpected= new Document(fOriginal);
+		fExpectedProxy= (IDocument) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { IDocument.class }, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				try {
+					return method.invoke(fExpected, args);
+				} catch (InvocationTargetException e) {
+					throw e.getCause();
+				}
+			}
+		});
+
+		for (int i= 0; i < 1000; i++) {
+			int offset= fRandom.nextInt(fOriginal.length() + 1);
+			int length= fRandom.nextInt(Math.min(30, fOriginal.length() - offset) + 1);
+			fActual.addPosition(new Position(offset, length));
+			fExpected.addPosition(new Position(offset, length));
+		}
+	}
+
+	@Test
+	public void testRandomEdits() throws Exception {
+		for (int run= 0; run < 10; run++) {
+			String before= fActual.get();
+			TextEdit actualEdit= createEdit(false);
+			TextEdit expectedEdit= actualEdit.copy();
+			UndoEdit actualUndo= actualEdit.apply(fActual);
+			UndoEdit expectedUndo= expectedEdit.apply(fExpectedProxy);
+			check(expectedEdit, actualEdit);
+			assertEquals(expectedUndo.getOffset(), actualUndo.getOffset());
+			assertEquals(expectedUndo.getLength(), actualUndo.getLength());
+
+			String after= fActual.get();
+			UndoEdit actualRedo= actualUndo.apply(fActual);
+			UndoEdit expectedRedo= expectedUndo.apply(fExpectedProxy);
+			assertEquals(before, fActual.get());
+			check(expectedUndo, actualUndo);
+
+			// the redo may consist of other but equivalent edits
+			actualRedo.apply(fActual);
+			expectedRedo.apply(fExpectedProxy);
+			assertEquals(after, fActual.get());
+			assertArrayEquals(fExpected.getPositions(IDocument.DEFAULT_CATEGORY), fActual.getPositions(IDocument.DEFAULT_CATEGORY));
+		}
+	}
+
+	@Test
+	public void testMoveAndCopy() throws Exception {
+		TextEdit actualEdit= createEdit(true);
+		TextEdit expectedEdit= actualEdit.copy();
+		UndoEdit undo= actualEdit.apply(fActual);
+		expectedEdit.apply(fExpectedProxy);
+		check(expectedEdit, actualEdit);
+
+		undo.apply(fActual);
+		assertEquals(fOriginal, fActual.get());
+	}
+
+	@Test
+	public void testSingleDocumentEvent() throws Exception {
+		final int[] events= new int[1];
+		fActual.addDocumentListener(new IDocumentListener() {
+			@Override
+			public void documentAboutToBeChanged(DocumentEvent event) {
+			}
+
+			@Override
+			public void documentChanged(DocumentEvent event) {
+				events[0]++;
+			}
+		});
+		MultiTextEdit edit= new MultiTextEdit();
+		for (int i= 0; i < fActual.getNumberOfLines() - 1; i++)
+			edit.addChild(new ReplaceEdit(fActual.getLineOffset(i), 4, "LINE"));
+		edit.apply(fActual);
+		assertEquals(1, events[0]);
+		assertEquals(fOriginal.replace("line", "LINE"), fActual.get());
+	}
+
+	@Test
+	public void testDistantEditsGetSeparateEvents() throws Exception {
+		final List<DocumentEvent> events= new ArrayList<>();
+		fActual.addDocumentListener(new IDocumentListener() {
+			@Override
+			public void documentAboutToBeChanged(DocumentEvent event) {
+			}
+
+			@Override
+			public void documentChanged(DocumentEvent event) {
+				events.add(event);
+			}
+		});
+		int length= fActual.getLength();
+		MultiTextEdit edit= new MultiTextEdit();
+		for (int i= 0; i < 200; i++) {
+			// two groups of nearby edits at the start and at the end of the document
+			edit.addChild(new InsertEdit(i * 10, "a"));
+			edit.addChild(new InsertEdit(length - 2000 + i * 10, "b"));
+		}
+		edit.apply(fActual);
+
+		assertEquals(2, events.size());
+		for (DocumentEvent event : events)
+			assertTrue(event.getLength() < 2000);
+		assertEquals(length - 2000, events.get(0).getOffset());
+		assertEquals(0, events.get(1).getOffset());
+		assertEquals(length + 400, fActual.getLength());
+	}
+
+	@Test
+	public void testReplaceRanges() throws Exception {
+		Document document= new Document("abcdefgh");
+		Position position= new Position(3, 2);
+		document.addPosition(position);
+		document.replace(new int[] { 0, 2, 4, 8 }, new int[] { 1, 2, 0, 0 }, new String[] { "x", null, "yz", "!" });
+		assertEquals("xbyzefgh!", document.get());
+		assertEquals(new Position(2, 3), position);
+
+		try {
+			document.replace(new int[] { 2, 1 }, new int[] { 0, 0 }, new String[] { "a", "b" });
+			throw new AssertionError();
+		} catch (BadLocationException e) {
+			// expected
+		}
+		assertEquals("xbyzefgh!", document.get());
+	}
+
+	@Test
+	public void testAddChildren() throws Exception {
+		List<TextEdit> shuffled= createLeafEdits(fRandom, 50000, 200000);
+		Collections.shuffle(shuffled, fRandom);
+
+		// add some edits before the others
+		MultiTextEdit root= new MultiTextEdit();
+		for (int i= 0; i < 100; i++)
+			root.addChild(shuffled.get(i));
+		List<TextEdit> rest= shuffled.subList(100, shuffled.size());
+		root.addChildren(rest.toArray(new TextEdit[rest.size()]));
+
+		// the same edits added one by one
+		MultiTextEdit expectedRoot= new MultiTextEdit();
+		Map<TextEdit, TextEdit> copies= new IdentityHashMap<>();
+		for (TextEdit edit : shuffled) {
+			TextEdit copy= edit.copy();
+			copies.put(edit, copy);
+			expectedRoot.addChild(copy);
+		}
+
+		TextEdit[] children= root.getChildren();
+		TextEdit[] expectedChildren= expectedRoot.getChildren();
+		assertEquals(shuffled.size(), children.length);
+		for (int i= 0; i < children.length; i++) {
+			assertSame(root, children[i].getParent());
+			assertSame(expectedChildren[i], copies.get(children[i]));
+		}
+	}
+
+	@Test
+	public void testAddOverlappingChildren() throws Exception {
+		List<TextEdit> edits= createLeafEdits(fRandom, 50000, 200000);
+		for (TextEdit edit : edits) {
+			if (edit.getLength() > 0 && edit.getOffset() > 50000) {
+				edits.add(new DeleteEdit(edit.getOffset(), edit.getLength()));
+				break;
+			}
+		}
+		MultiTextEdit root= new MultiTextEdit();
+		try {
+			root.addChildren(edits.toArray(new TextEdit[edits.size()]));
+			throw new AssertionError();
+		} catch (MalformedTreeException e) {
+			// expected
+		}
+		assertEquals(0, root.getChildrenSize());
+		assertNull(edits.get(0).getParent());
+	}
+
+	@Test
+	public void testFailedAddChildrenDoesNotChangeEdits() throws Exception {
+		List<TextEdit> edits= createLeafEdits(fRandom, 50000, 200000);
+		MultiTextEdit multi= new MultiTextEdit();
+		edits.add(0, multi);
+		TextEdit last= edits.get(edits.size() - 1);
+		edits.add(new DeleteEdit(last.getOffset(), last.getLength() + 1));
+		MultiTextEdit root= new MultiTextEdit(100, 300000);
+		try {
+			root.addChildren(edits.toArray(new TextEdit[edits.size()]));
+			throw new AssertionError();
+		} catch (MalformedTreeException e) {
+			// expected
+		}
+		assertEquals(0, root.getChildrenSize());
+
+		// the region of the multi text edit has not been defined by the failed addition
+		MultiTextEdit other= new MultiTextEdit(5, 10);
+		other.addChild(multi);
+		assertEquals(5, multi.getOffset());
+	}
+
+	@Test
+	public void testAddUndefinedChildren() throws Exception {
+		List<TextEdit> edits= createLeafEdits(fRandom, 50000, 200000);
+		MultiTextEdit multi= new MultiTextEdit();
+		edits.add(multi);
+		MultiTextEdit root= new MultiTextEdit(0, 300000);
+		root.addChildren(edits.toArray(new TextEdit[edits.size()]));
+
+		assertEquals(0, multi.getOffset());
+		assertEquals(0, multi.getLength());
+		assertSame(root, multi.getParent());
+		assertEquals(edits.size(), root.getChildrenSize());
+	}
+
+	@Test
+	public void testUpdateRegionsOfManyChildren() throws Exception {
+		StringBuilder text= new StringBuilder();
+		while (text.length() < 200000)
+			text.append("line ").append(text.length()).append('\n');
+		Document document= new Document(text.toString());
+		List<TextEdit> edits= createLeafEdits(fRandom, 50000, text.length());
+		MultiTextEdit root= new MultiTextEdit();
+		root.addChildren(edits.toArray(new TextEdit[edits.size()]));
+		int[] offsets= new int[edits.size()];
+		int delta= 0;
+		for (int i= 0; i < offsets.length; i++) {
+			TextEdit edit= edits.get(i);
+			offsets[i]= edit.getOffset() + delta;
+			String replacement= edit instanceof ReplaceEdit ? ((ReplaceEdit) edit).getText() : ((InsertEdit) edit).getText();
+			delta+= replacement.length() - edit.getLength();
+		}
+
+		root.apply(document);
+
+		assertEquals(text.length() + delta, document.getLength());
+		for (int i= 0; i < offsets.length; i++) {
+			TextEdit edit= edits.get(i);
+			assertEquals(offsets[i], edit.getOffset());
+			assertEquals(document.get(offsets[i], edit.getLength()), edit instanceof ReplaceEdit ? ((ReplaceEdit) edit).getText() : ((InsertEdit) edit).getText());
+		}
+	}
+
+	/**
+	 * Creates ordered, non-overlapping inserts and replaces; several inserts may share an offset.
+	 */
+	private static List<TextEdit> createLeafEdits(Random random, int count, int length) {
+		List<TextEdit> edits= new ArrayList<>(count);
+		int offset= 0;
+		for (int i= 0; i < count; i++) {
+			if (random.nextInt(4) == 0) {
+				edits.add(new InsertEdit(offset, "i" + i));
+			} else {
+				int editLength= Math.min(random.nextInt(3) + 1, length - offset);
+				edits.add(new ReplaceEdit(offset, editLength, "r" + i));
+				offset+= editLength;
+			}
+			offset+= random.nextInt(2);
+			offset= Math.min(offset, length);
+		}
+		return edits;
+	}
+
+	private TextEdit createEdit(boolean moveAndCopy) {
+		MultiTextEdit root= new MultiTextEdit();
+		MultiTextEdit group= null;
+		MoveSourceEdit moveSource= null;
+		CopySourceEdit copySource= null;
+		int length= fActual.getLength();
+		int offset= 0;
+		while (true) {
+			offset += fRandom.nextInt(40);
+			int editLength= fRandom.nextInt(8);
+			if (offset + editLength > length)
+				break;
+
+			TextEdit edit;
+			switch (fRandom.nextInt(moveAndCopy ? 10 : 7)) {
+				case 0:
+					edit= new InsertEdit(offset, "xyz");
+					break;
+				case 1:
+					edit= new DeleteEdit(offset, editLength);
+					break;
+				case 2:
+					edit= new RangeMarker(offset, editLength);
+					if (editLength > 0)
+						edit.addChild(new ReplaceEdit(offset, 1, "r"));
+					break;
+				case 3:
+					edit= new CopyingRangeMarker(offset, editLength);
+					break;
+				case 4:
+					// children of a group are applied before the edits of the group's parent
+					if (group == null)
+						group= new MultiTextEdit();
+					group.addChild(new ReplaceEdit(offset, editLength, "g\n"));
+					offset += editLength;
+					continue;
+				case 7:
+					if (moveSource == null) {
+						moveSource= new MoveSourceEdit(offset, editLength);
+						edit= moveSource;
+					} else {
+						edit= new MoveTargetEdit(offset, moveSource);
+						moveSource= null;
+					}
+					break;
+				case 8:
+					if (copySource == null) {
+						copySource= new CopySourceEdit(offset, editLength);
+						edit= copySource;
+					} else {
+						edit= new CopyTargetEdit(offset, copySource);
+						copySource= null;
+					}
+					break;
+				default:
+					edit= new ReplaceEdit(offset, editLength, "abc\n");
+					break;
+			}
+			if (group != null) {
+				root.addChild(group);
+				group= null;
+			}
+			root.addChild(edit);
+			offset += editLength;
+		}
+		if (group != null)
+			root.addChild(group);
+		if (moveSource != null)
+			root.addChild(new MoveTargetEdit(length, moveSource));
+		if (copySource != null)
+			root.addChild(new CopyTargetEdit(length, copySource));
+		return root;
+	}
+
+	private void check(TextEdit expectedEdit, TextEdit actualEdit) throws Exception {
+		assertEquals(fExpected.get(), fActual.get());
+		assertArrayEquals(fExpected.getPositions(IDocument.DEFAULT_CATEGORY), fActual.getPositions(IDocument.DEFAULT_CATEGORY));
+		assertRegionsEqual(expectedEdit, actualEdit);
+	}
+
+	private static void assertRegionsEqual(TextEdit expected, TextEdit actual) {
+		assertNotNull(actual);
+		assertEquals(expected.getOffset(), actual.getOffset());
+		assertEquals(expected.getLength(), actual.getLength());
+		TextEdit[] expectedChildren= expected.getChildren();
+		TextEdit[] actualChildren= actual.getChildren();
+		assertEquals(expectedChildren.length, actualChildren.length);
+		for (int i= 0; i < expectedChildren.length; i++)
+			assertRegionsEqual(expectedChildren[i], actualChildren[i]);
+	}
+}
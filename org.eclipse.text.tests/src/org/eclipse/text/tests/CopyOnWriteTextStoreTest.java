@@ -82,6 +82,31 @@ public class CopyOnWriteTextStoreTest {
 
 	}
 	
+	@Test
+	public void testSetUnmodifiableTextStore() {
+		ITextStore unmodifiable= new CopyOnWriteTextStore(new GapTextStore());
+		unmodifiable.set("abc");
+		fText.replace(1, 1, "y");
+		fText.setUnmodifiableTextStore(unmodifiable);
+		assertSame(unmodifiable, fText.getStore());
+		assertEquals("abc", fText.get());
+
+		checkReplace(1, 1, "y");
+		assertEquals(GapTextStore.class, fText.getStore().getClass());
+		assertEquals("abc", unmodifiable.get(0, unmodifiable.getLength()));
+	}
+
+	@Test
+	public void testGetChars() {
+		char[] chars= new char[4];
+		fText.getChars(1, 3, chars, 1);
+		assertEquals("\0xxx", new String(chars));
+
+		fText.replace(2, 1, "y");
+		fText.getChars(1, 3, chars, 0);
+		assertEquals("xyx", new String(chars, 0, 3));
+	}
+
 	@Test
 	public void testSet() {
 
@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.text.tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.eclipse.text.edits.DeleteEdit;
+import org.eclipse.text.edits.InsertEdit;
+import org.eclipse.text.edits.MultiTextEdit;
+import org.eclipse.text.edits.ReplaceEdit;
+import org.eclipse.text.edits.TextEdit;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.BadPositionCategoryException;
+import org.eclipse.jface.text.DefaultPositionUpdater;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.DocumentRewriteSession;
+import org.eclipse.jface.text.DocumentRewriteSessionType;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.Position;
+import org.eclipse.jface.text.RewriteSessionEditProcessor;
+
+/**
+ * Tests that the position updates deferred during a rewrite session have the same result as
+ * updating the positions for each change.
+ */
+public class DeferredPositionUpdateTest {
+
+	private static final String TREE= "tree";
+
+	private Document fExpected;
+	private Document fActual;
+
+	@Before
+	public void setUp() throws Exception {
+		fExpected= createDocument();
+		fActual= createDocument();
+
+		Random random= new Random(4711);
+		for (int i= 0; i < 1000; i++) {
+			int length= fExpected.getLength();
+			int offset= random.nextInt(length + 1);
+			int positionLength= random.nextInt(Math.min(30, length - offset) + 1);
+			fExpected.addPosition(new Position(offset, positionLength));
+			fActual.addPosition(new Position(offset, positionLength));
+			fExpected.addPosition(TREE, new Position(offset, positionLength));
+			fActual.addPosition(TREE, new Position(offset, positionLength));
+		}
+	}
+
+	private static Document createDocument() {
+		StringBuilder text= new StringBuilder();
+		for (int i= 0; i < 1000; i++)
+			text.append("line ").append(i).append('\n');
+		Document document= new Document(text.toString());
+		document.addPositionCategory(TREE, true);
+		document.addPositionUpdater(new DefaultPositionUpdater(TREE));
+		return document;
+	}
+
+	@Test
+	public void testMultiTextEdit() throws Exception {
+		Random random= new Random(42);
+		for (int run= 0; run < 20; run++) {
+			long seed= random.nextLong();
+			TextEdit expectedEdit= createEdit(new Random(seed));
+			TextEdit actualEdit= createEdit(new Random(seed));
+			assertTrue(RewriteSessionEditProcessor.isLargeEdit(actualEdit));
+			expectedEdit.apply(fExpected);
+			new RewriteSessionEditProcessor(fActual, actualEdit, TextEdit.NONE).performEdits();
+			assertEquals(fExpected.get(), fActual.get());
+			checkPositions();
+		}
+	}
+
+	@Test
+	public void testUnorderedChanges() throws Exception {
+		Random random= new Random(42);
+		DocumentRewriteSession session= fActual.startRewriteSession(DocumentRewriteSessionType.UNRESTRICTED);
+		for (int i= 0; i < 300; i++) {
+			int length= fExpected.getLength();
+			int offset= random.nextInt(length + 1);
+			int replaced= Math.min(random.nextInt(10), length - offset);
+			String text= "abc".substring(random.nextInt(4) % 3);
+			fExpected.replace(offset, replaced, text);
+			fActual.replace(offset, replaced, text);
+		}
+		fActual.stopRewriteSession(session);
+		checkPositions();
+	}
+
+	@Test
+	public void testPositionsAreUpdatedOnAccess() throws Exception {
+		Position position= new Position(100, 10);
+		fActual.addPosition(position);
+
+		DocumentRewriteSession session= fActual.startRewriteSession(DocumentRewriteSessionType.UNRESTRICTED);
+		fActual.replace(50, 0, "abc");
+		fActual.replace(20, 5, "");
+		assertTrue(fActual.containsPosition(IDocument.DEFAULT_CATEGORY, 98, 10));
+		assertEquals(new Position(98, 10), position);
+		fActual.stopRewriteSession(session);
+
+		assertEquals(new Position(98, 10), position);
+	}
+
+	private TextEdit createEdit(Random random) {
+		MultiTextEdit root= new MultiTextEdit();
+		int offset= 0;
+		int length= fExpected.getLength();
+		while (true) {
+			offset += random.nextInt(20);
+			int editLength= random.nextInt(8);
+			if (offset + editLength > length)
+				break;
+			switch (random.nextInt(3)) {
+				case 0:
+					root.addChild(new InsertEdit(offset, "xyz"));
+					break;
+				case 1:
+					root.addChild(new DeleteEdit(offset, editLength));
+					break;
+				default:
+					root.addChild(new ReplaceEdit(offset, editLength, "abc\n"));
+					break;
+			}
+			offset += editLength;
+		}
+		return root;
+	}
+
+	private void checkPositions() throws BadPositionCategoryException, BadLocationException {
+		assertArrayEquals(fExpected.getPositions(IDocument.DEFAULT_CATEGORY), fActual.getPositions(IDocument.DEFAULT_CATEGORY));
+		assertArrayEquals(fExpected.getPositions(TREE), fActual.getPositions(TREE));
+	}
+}
@@ -0,0 +1,222 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.text.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.DocumentRewriteSessionType;
+import org.eclipse.jface.text.IDocumentExtension3;
+import org.eclipse.jface.text.IDocumentExtension4;
+import org.eclipse.jface.text.IDocumentExtension5;
+import org.eclipse.jface.text.ITextStore;
+import org.eclipse.jface.text.PieceTableTextStore;
+import org.eclipse.jface.text.Position;
+
+public class DocumentSnapshotTest {
+
+	private static final String TEXT= "first line\nsecond line\r\nthird line";
+
+	@Test
+	public void testSnapshotKeepsContent() throws Exception {
+		checkSnapshotKeepsContent(new Document());
+	}
+
+	@Test
+	public void testPieceTableSnapshotKeepsContent() throws Exception {
+		checkSnapshotKeepsContent(new Document(new PieceTableTextStore()));
+	}
+
+	private void checkSnapshotKeepsContent(Document document) throws BadLocationException {
+		document.set(TEXT);
+		long stamp= document.getModificationStamp();
+		IDocument snapshot= document.getSnapshot();
+
+		document.replace(0, 5, "1st");
+		document.replace(document.getLength(), 0, "\nfourth line");
+
+		assertEquals(TEXT, snapshot.get());
+		assertEquals(stamp, ((IDocumentExtension4) snapshot).getModificationStamp());
+		assertEquals(3, snapshot.getNumberOfLines());
+		assertEquals(11, snapshot.getLineOffset(1));
+		assertEquals("\r\n", snapshot.getLineDelimiter(1));
+		assertEquals('l', snapshot.getChar(TEXT.length() - 4));
+		assertEquals("third", snapshot.get(snapshot.getLineOffset(2), 5));
+		assertEquals("1st line", document.get(0, 8));
+		assertEquals(4, document.getNumberOfLines());
+	}
+
+	@Test
+	public void testModificationStamp() throws Exception {
+		Document document= new Document(TEXT);
+		IDocument snapshot= document.getSnapshot();
+		assertEquals(document.getModificationStamp(), ((IDocumentExtension4) snapshot).getModificationStamp());
+
+		document.replace(0, 0, "x");
+		assertEquals(document.getModificationStamp() - 1, ((IDocumentExtension4) snapshot).getModificationStamp());
+	}
+
+	@Test
+	public void testSnapshotIsReused() throws Exception {
+		Document document= new Document(TEXT);
+		IDocument snapshot= document.getSnapshot();
+		assertSame(snapshot, document.getSnapshot());
+
+		document.replace(0, 1, "F");
+		assertNotSame(snapshot, document.getSnapshot());
+		assertEquals("First", document.getSnapshot().get(0, 5));
+	}
+
+	@Test(expected= UnsupportedOperationException.class)
+	public void testSnapshotIsUnmodifiable() throws Exception {
+		new Document(TEXT).getSnapshot().replace(0, 0, "x");
+	}
+
+	@Test
+	public void testSnapshotCannotBeChanged() throws Exception {
+		IDocument snapshot= new Document(TEXT).getSnapshot();
+		Runnable[] changes= {
+				() -> snapshot.set("x"),
+				() -> replace(snapshot, 0, 0, "x"),
+				() -> replace((IDocumentExtension5) snapshot, 0, 0, "x"),
+				() -> addPosition(snapshot, new Position(0, 1)),
+				() -> snapshot.addPositionCategory("category"),
+				() -> snapshot.addPositionUpdater(null),
+				() -> snapshot.setDocumentPartitioner(null),
+				() -> ((IDocumentExtension3) snapshot).setDocumentPartitioner("partitioning", null),
+				() -> ((IDocumentExtension4) snapshot).startRewriteSession(DocumentRewriteSessionType.SEQUENTIAL) };
+		for (Runnable change : changes) {
+			try {
+				change.run();
+				fail();
+			} catch (UnsupportedOperationException e) {
+				// expected
+			}
+		}
+		assertEquals(TEXT, snapshot.get());
+		assertEquals(0, snapshot.getPositions(IDocument.DEFAULT_CATEGORY).length);
+		assertEquals(1, snapshot.getPositionCategories().length);
+	}
+
+	private static void replace(IDocument document, int offset, int length, String text) {
+		try {
+			document.replace(offset, length, text);
+		} catch (BadLocationException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	private static void replace(IDocumentExtension5 document, int offset, int length, String text) {
+		try {
+			document.replace(new int[] { offset }, new int[] { length }, new String[] { text });
+		} catch (BadLocationException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	private static void addPosition(IDocument document, Position position) {
+		try {
+			document.addPosition(position);
+		} catch (BadLocationException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	@Test
+	public void testTextStoreIsKept() throws Exception {
+		StoreDocument document= new StoreDocument();
+		document.set(TEXT);
+		document.replace(0, 1, "F");
+		ITextStore store= document.getStore();
+
+		// the snapshot copies the content of a store which cannot take snapshots
+		IDocument snapshot= document.getSnapshot();
+		assertSame(store, document.getStore());
+		document.replace(0, 1, "f");
+		IDocument next= document.getSnapshot();
+		assertEquals("F" + TEXT.substring(1), snapshot.get());
+		assertEquals(TEXT, next.get());
+		assertEquals(TEXT, document.get());
+	}
+
+	@Test
+	public void testUnmodifiedContentIsNotCopied() throws Exception {
+		StoreDocument document= new StoreDocument();
+		document.set(TEXT);
+		ITextStore store= document.getStore();
+		document.getSnapshot();
+		assertSame(store, document.getStore());
+	}
+
+	/**
+	 * A document which exposes its text store.
+	 */
+	private static class StoreDocument extends Document {
+		@Override
+		public ITextStore getStore() {
+			return super.getStore();
+		}
+	}
+
+	@Test
+	public void testConcurrentReaders() throws Exception {
+		StringBuilder text= new StringBuilder();
+		for (int i= 0; i < 10000; i++)
+			text.append("line ").append(i).append('\n');
+		Document document= new Document(new PieceTableTextStore());
+		document.set(text.toString());
+		final IDocument snapshot= document.getSnapshot();
+		final String expected= text.toString();
+
+		final Throwable[] failure= new Throwable[1];
+		Thread[] readers= new Thread[4];
+		for (int i= 0; i < readers.length; i++) {
+			readers[i]= new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int line= 0; line < snapshot.getNumberOfLines() - 1; line++) {
+							int offset= snapshot.getLineOffset(line);
+							assertEquals(expected.substring(offset, offset + 5), snapshot.get(offset, 5));
+							assertEquals(expected.charAt(offset + 5), snapshot.getChar(offset + 5));
+						}
+					} catch (Throwable e) {
+						synchronized (failure) {
+							failure[0]= e;
+						}
+					}
+				}
+			};
+			readers[i].start();
+		}
+
+		for (int i= 0; i < 1000; i++)
+			document.replace((i * 7919) % (document.getLength() - 3), 3, "edit");
+
+		for (Thread reader : readers)
+			reader.join();
+		synchronized (failure) {
+			if (failure[0] != null)
+				throw new AssertionError(failure[0]);
+		}
+		assertEquals(expected, snapshot.get());
+	}
+}
@@ -402,6 +402,76 @@ public class DocumentUndoManagerTest extends TestCase {
 
 	}
 
+	public void testLargeReplaceOnlyKeepsChangedRange() throws BadLocationException, ExecutionException {
+		final String original= createRandomString(10000);
+		final Document document= new Document(original);
+		createUndoManager(document);
+
+		// replaces the whole document, like formatting it
+		String formatted= original.substring(0, 5000) + "\n\t" + original.substring(5000);
+		document.replace(0, document.getLength(), formatted);
+		fUndoManager.commit();
+
+		DocumentUndoManager undoManager= (DocumentUndoManager) fUndoManager;
+		assertTrue(undoManager.getUndoMemoryUsage() < 1000);
+
+		fUndoManager.undo();
+		assertEquals(original, document.get());
+		fUndoManager.redo();
+		assertEquals(formatted, document.get());
+	}
+
+	public void testMaximalUndoMemoryUsage() throws BadLocationException, ExecutionException {
+		final Document document= new Document(INITIAL_DOCUMENT_CONTENT);
+		createUndoManager(document);
+		DocumentUndoManager undoManager= (DocumentUndoManager) fUndoManager;
+		undoManager.setMaximalUndoMemoryUsage(50000);
+
+		for (int i= 0; i < 10; i++) {
+			document.replace(0, 0, createRandomString(10000));
+			fUndoManager.commit();
+			assertTrue(undoManager.getUndoMemoryUsage() <= 50000);
+		}
+
+		// the oldest pastes have been removed from the history
+		int undone= 0;
+		while (fUndoManager.undoable()) {
+			fUndoManager.undo();
+			undone++;
+		}
+		assertTrue(undone > 0 && undone < 10);
+		assertEquals(INITIAL_DOCUMENT_CONTENT.length() + (10 - undone) * 10000, document.getLength());
+	}
+
+	public void testUndoJournal() throws BadLocationException, ExecutionException {
+		final Document document= new Document(INITIAL_DOCUMENT_CONTENT);
+		createUndoManager(document);
+		DocumentUndoManager undoManager= (DocumentUndoManager) fUndoManager;
+		undoManager.setUndoJournalThreshold(50000);
+
+		String[] contents= new String[11];
+		contents[0]= document.get();
+		for (int i= 1; i < contents.length; i++) {
+			document.replace(document.getLength() / 2, 0, createRandomString(10000));
+			fUndoManager.commit();
+			contents[i]= document.get();
+			assertTrue(undoManager.getUndoMemoryUsage() <= 50000 + 3 * 10000);
+		}
+
+		// the texts of the older pastes are read back from the journal
+		for (int i= contents.length - 1; i > 0; i--) {
+			assertEquals(contents[i], document.get());
+			fUndoManager.undo();
+		}
+		assertEquals(contents[0], document.get());
+		assertFalse(fUndoManager.undoable());
+
+		for (int i= 1; i < contents.length; i++) {
+			fUndoManager.redo();
+			assertEquals(contents[i], document.get());
+		}
+	}
+
 	private static String createRandomString(int length) {
 		final StringBuffer buffer= new StringBuffer();
 
@@ -37,8 +37,15 @@ import org.eclipse.text.tests.templates.TemplatesTestSuite;
 		PositionUpdatingCornerCasesTest.class,
 		ExclusivePositionUpdaterTest.class,
 		TextEditTests.class,
+		BulkTextEditTest.class,
 		GapTextTest.class,
 		GapTextStoreTest.class,
+		PieceTableTextStoreTest.class,
+		IntervalTreePositionCategoryTest.class,
+		IntervalTreeAnnotationModelTest.class,
+		DeferredPositionUpdateTest.class,
+		DocumentSnapshotTest.class,
+		BlockLineTrackerTest.class,
 		ChildDocumentTest.class,
 		ProjectionTestSuite.class,
 		LinkTestSuite.class,
@@ -46,6 +53,7 @@ import org.eclipse.text.tests.templates.TemplatesTestSuite;
 		TextUtilitiesTest.class,
 		AnnotationModelStressTest.class,
 		AnnotationModelExtension2Test.class,
+		AnnotationModelBatchTest.class,
 		TemplatesTestSuite.class
 })
 public class EclipseTextTestSuite {
@@ -170,6 +170,22 @@ public class FindReplaceDocumentAdapterTest {
 		}
 	}
 	
+	@Test
+	public void testFindInModifiedDocument() throws Exception {
+		FindReplaceDocumentAdapter adapter= new FindReplaceDocumentAdapter(fDocument);
+		int offset= fDocument.get().indexOf("method1");
+		fDocument.replace(offset, 7, "run");
+
+		IRegion r= adapter.find(0, "void\\s+ru\\w*\\(", true, true, false, true); //$NON-NLS-1$
+		assertEquals(new Region(offset - 5, 9), r);
+		r= adapter.replace("void go(", true); //$NON-NLS-1$
+		assertEquals(new Region(offset - 5, 8), r);
+
+		r= adapter.find(0, "go(", true, true, false, false); //$NON-NLS-1$
+		assertEquals(new Region(offset, 3), r);
+		assertNull(adapter.find(0, "run(", true, true, false, false)); //$NON-NLS-1$
+	}
+
 	@Test
 	public void testUTF8Pattern() {
 		FindReplaceDocumentAdapter findReplaceDocumentAdapter= new FindReplaceDocumentAdapter(fDocument);
@@ -13,6 +13,10 @@
  *******************************************************************************/
 package org.eclipse.text.tests;
 
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
 import org.eclipse.jface.text.GapTextStore;
 import org.eclipse.jface.text.ITextStore;
 
@@ -23,4 +27,21 @@ public class GapTextStoreTest extends TextStoreTest {
 		return new GapTextStore(256, 4096, 0.1f);
 	}
 
+	@Test
+	public void testCharSequence() {
+		GapTextStore store= new GapTextStore(256, 4096, 0.1f);
+		store.set("0123456789");
+		// leaves the gap behind the inserted text
+		store.replace(5, 0, "abc");
+
+		CharSequence sequence= store.getCharSequence();
+		assertEquals(13, sequence.length());
+		assertEquals("01234abc56789", sequence.toString());
+		assertEquals('c', sequence.charAt(7));
+		assertEquals('5', sequence.charAt(8));
+		assertEquals("012", sequence.subSequence(0, 3).toString());
+		assertEquals("bc56", sequence.subSequence(6, 10).toString());
+		assertEquals("789", sequence.subSequence(10, 13).toString());
+	}
+
 }
@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.text.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.Position;
+import org.eclipse.jface.text.source.Annotation;
+import org.eclipse.jface.text.source.AnnotationModel;
+
+/**
+ * Tests annotation models which manage their positions in an interval tree.
+ */
+public class IntervalTreeAnnotationModelTest {
+
+	private Document fDocument;
+	private AnnotationModel fTreeModel;
+	private AnnotationModel fListModel;
+
+	@Before
+	public void setUp() {
+		StringBuilder text= new StringBuilder();
+		for (int i= 0; i < 200; i++)
+			text.append("line ").append(i).append('\n');
+		fDocument= new Document(text.toString());
+
+		fTreeModel= new AnnotationModel(true);
+		fTreeModel.connect(fDocument);
+		fListModel= new AnnotationModel();
+		fListModel.connect(fDocument);
+	}
+
+	@After
+	public void tearDown() {
+		fTreeModel.disconnect(fDocument);
+		fListModel.disconnect(fDocument);
+	}
+
+	private static Set<Annotation> collect(Iterator<Annotation> iterator) {
+		Set<Annotation> result= new HashSet<>();
+		while (iterator.hasNext())
+			result.add(iterator.next());
+		return result;
+	}
+
+	private Set<Annotation> getAnnotations(AnnotationModel model, int offset, int length, boolean canStartBefore, boolean canEndAfter) {
+		return collect(model.getAnnotationIterator(offset, length, canStartBefore, canEndAfter));
+	}
+
+	@Test
+	public void testPositionsAreNotInDefaultCategory() throws Exception {
+		Position position= new Position(5, 3);
+		fTreeModel.addAnnotation(new Annotation(false), position);
+
+		for (Position p : fDocument.getPositions(IDocument.DEFAULT_CATEGORY))
+			assertFalse(p == position);
+	}
+
+	@Test
+	public void testRegionQueriesMatchListModel() throws Exception {
+		Random random= new Random(4711);
+		int length= fDocument.getLength();
+		for (int i= 0; i < 500; i++) {
+			int offset= random.nextInt(length);
+			int l= random.nextInt(Math.min(40, length - offset) + 1);
+			Annotation treeAnnotation= new Annotation(false);
+			Annotation listAnnotation= new Annotation(false);
+			treeAnnotation.setText(Integer.toString(i));
+			listAnnotation.setText(Integer.toString(i));
+			fTreeModel.addAnnotation(treeAnnotation, new Position(offset, l));
+			fListModel.addAnnotation(listAnnotation, new Position(offset, l));
+		}
+
+		for (int i= 0; i < 50; i++) {
+			int offset= random.nextInt(length);
+			int l= random.nextInt(length - offset + 1);
+			for (int flags= 0; flags < 4; flags++) {
+				boolean canStartBefore= (flags & 1) != 0;
+				boolean canEndAfter= (flags & 2) != 0;
+				assertEquals(texts(getAnnotations(fListModel, offset, l, canStartBefore, canEndAfter)), texts(getAnnotations(fTreeModel, offset, l, canStartBefore, canEndAfter)));
+			}
+		}
+	}
+
+	private static Set<String> texts(Set<Annotation> annotations) {
+		Set<String> texts= new HashSet<>();
+		for (Annotation annotation : annotations)
+			texts.add(annotation.getText());
+		return texts;
+	}
+
+	@Test
+	public void testPositionsAreUpdated() throws Exception {
+		Annotation annotation= new Annotation(false);
+		Position position= new Position(20, 4);
+		fTreeModel.addAnnotation(annotation, position);
+
+		fDocument.replace(0, 0, "abc");
+		assertEquals(23, position.getOffset());
+		assertTrue(getAnnotations(fTreeModel, 23, 4, false, false).contains(annotation));
+		assertFalse(getAnnotations(fTreeModel, 0, 23, false, false).contains(annotation));
+	}
+
+	@Test
+	public void testDeletedAnnotationsAreRemoved() throws Exception {
+		Annotation deleted= new Annotation(false);
+		Annotation kept= new Annotation(false);
+		fTreeModel.addAnnotation(deleted, new Position(20, 4));
+		fTreeModel.addAnnotation(kept, new Position(40, 4));
+
+		fDocument.replace(10, 20, "");
+
+		Set<Annotation> all= collect(fTreeModel.getAnnotationIterator());
+		assertFalse(all.contains(deleted));
+		assertTrue(all.contains(kept));
+		assertNull(fTreeModel.getPosition(deleted));
+		assertEquals(20, fTreeModel.getPosition(kept).getOffset());
+	}
+
+	@Test
+	public void testPositionsDeletedByClientsAreRemoved() throws Exception {
+		Annotation deleted= new Annotation(false);
+		Position position= new Position(20, 4);
+		fTreeModel.addAnnotation(deleted, position);
+
+		// like the list based model, the model removes annotations whose positions are deleted
+		position.delete();
+		fDocument.replace(100, 0, "x");
+
+		assertFalse(collect(fTreeModel.getAnnotationIterator()).contains(deleted));
+		assertNull(fTreeModel.getPosition(deleted));
+	}
+
+	@Test
+	public void testModifyAnnotationPosition() throws Exception {
+		Annotation annotation= new Annotation(false);
+		Position position= new Position(20, 4);
+		fTreeModel.addAnnotation(annotation, position);
+
+		fTreeModel.modifyAnnotationPosition(annotation, new Position(100, 2));
+		assertSame(position, fTreeModel.getPosition(annotation));
+		assertTrue(getAnnotations(fTreeModel, 100, 2, false, false).contains(annotation));
+		assertFalse(getAnnotations(fTreeModel, 20, 4, true, true).contains(annotation));
+	}
+
+	@Test
+	public void testDisconnectRemovesCategory() throws Exception {
+		AnnotationModel model= new AnnotationModel(true);
+		int categories= fDocument.getPositionCategories().length;
+		model.connect(fDocument);
+		model.addAnnotation(new Annotation(false), new Position(5, 3));
+		assertEquals(categories + 1, fDocument.getPositionCategories().length);
+
+		model.disconnect(fDocument);
+		assertEquals(categories, fDocument.getPositionCategories().length);
+
+		model.connect(fDocument);
+		assertEquals(1, getAnnotations(model, 0, 10, true, true).size());
+		model.disconnect(fDocument);
+	}
+}
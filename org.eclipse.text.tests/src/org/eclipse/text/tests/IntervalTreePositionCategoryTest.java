@@ -0,0 +1,224 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.text.tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.BadPositionCategoryException;
+import org.eclipse.jface.text.DefaultPositionUpdater;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IPositionUpdater;
+import org.eclipse.jface.text.Position;
+
+/**
+ * Tests position categories which use an interval tree.
+ */
+public class IntervalTreePositionCategoryTest {
+
+	private static final String LIST= "list";
+	private static final String TREE= "tree";
+
+	private static final Comparator<Position> BY_OFFSET_AND_LENGTH= new Comparator<Position>() {
+		@Override
+		public int compare(Position p1, Position p2) {
+			if (p1.offset != p2.offset)
+				return p1.offset - p2.offset;
+			return p1.length - p2.length;
+		}
+	};
+
+	private Document fDocument;
+	private Random fRandom;
+
+	@Before
+	public void setUp() {
+		fDocument= new Document();
+		fDocument.addPositionCategory(LIST);
+		fDocument.addPositionUpdater(new DefaultPositionUpdater(LIST));
+		fDocument.addPositionCategory(TREE, true);
+		fDocument.addPositionUpdater(new DefaultPositionUpdater(TREE));
+		fRandom= new Random(4711);
+
+		StringBuilder text= new StringBuilder();
+		for (int i= 0; i < 100; i++)
+			text.append("line ").append(i).append('\n');
+		fDocument.set(text.toString());
+	}
+
+	@Test
+	public void testAddAndRemove() throws Exception {
+		Position p1= new Position(10, 5);
+		Position p2= new Position(3, 0);
+		Position p3= new Position(10, 2);
+		fDocument.addPosition(TREE, p1);
+		fDocument.addPosition(TREE, p2);
+		fDocument.addPosition(TREE, p3);
+
+		assertArrayEquals(new Position[] { p2, p3, p1 }, fDocument.getPositions(TREE));
+		assertTrue(fDocument.containsPosition(TREE, 10, 5));
+		assertEquals(1, fDocument.computeIndexInCategory(TREE, 10));
+		assertEquals(3, fDocument.computeIndexInCategory(TREE, 11));
+
+		fDocument.removePosition(TREE, p3);
+		assertArrayEquals(new Position[] { p2, p1 }, fDocument.getPositions(TREE));
+		assertFalse(fDocument.containsPosition(TREE, 10, 2));
+	}
+
+	@Test(expected= BadPositionCategoryException.class)
+	public void testRemoveCategory() throws Exception {
+		fDocument.addPosition(TREE, new Position(1, 1));
+		fDocument.removePositionCategory(TREE);
+		fDocument.getPositions(TREE);
+	}
+
+	@Test
+	public void testUpdateOnlyVisitsAffectedPositions() throws Exception {
+		Position before= new Position(10, 5);
+		Position spanning= new Position(0, 100);
+		Position after= new Position(200, 5);
+		fDocument.addPosition(TREE, before);
+		fDocument.addPosition(TREE, spanning);
+		fDocument.addPosition(TREE, after);
+
+		fDocument.replace(50, 0, "abc");
+
+		assertEquals(new Position(10, 5), before);
+		assertEquals(new Position(0, 103), spanning);
+		assertEquals(new Position(203, 5), after);
+		assertArrayEquals(new Position[] { spanning, before }, fDocument.getPositions(TREE, 0, 20, true, true));
+		assertArrayEquals(new Position[] { spanning, after }, fDocument.getPositions(TREE, 102, 150, true, true));
+	}
+
+	@Test
+	public void testRandomEdits() throws Exception {
+		addRandomPositions(500);
+
+		for (int i= 0; i < 500; i++) {
+			int length= fDocument.getLength();
+			int offset= fRandom.nextInt(length + 1);
+			int deleted= Math.min(fRandom.nextInt(20), length - offset);
+			String inserted= fRandom.nextBoolean() ? "" : "xyz\n".substring(fRandom.nextInt(4));
+			fDocument.replace(offset, deleted, inserted);
+
+			if (i % 10 == 0)
+				addRandomPositions(10);
+			checkCategories();
+		}
+	}
+
+	@Test
+	public void testForeignPositionUpdater() throws Exception {
+		fDocument.addPositionUpdater(new IPositionUpdater() {
+			@Override
+			public void update(DocumentEvent event) {
+				try {
+					// moves every position to the end of the document
+					for (Position position : event.getDocument().getPositions(TREE))
+						position.offset= event.getDocument().getLength() - position.length;
+				} catch (BadPositionCategoryException e) {
+				}
+			}
+		});
+		Position position= new Position(100, 10);
+		fDocument.addPosition(TREE, position);
+
+		fDocument.replace(500, 0, "abc");
+
+		int length= fDocument.getLength();
+		assertEquals(length - 10, position.offset);
+		assertArrayEquals(new Position[] { position }, fDocument.getPositions(TREE, length - 5, 5, true, true));
+	}
+
+	private void addRandomPositions(int count) throws BadLocationException, BadPositionCategoryException {
+		for (int i= 0; i < count; i++) {
+			int length= fDocument.getLength();
+			int offset= fRandom.nextInt(length + 1);
+			int positionLength= fRandom.nextInt(Math.min(50, length - offset) + 1);
+			fDocument.addPosition(LIST, new Position(offset, positionLength));
+			fDocument.addPosition(TREE, new Position(offset, positionLength));
+		}
+	}
+
+	private void checkCategories() throws BadPositionCategoryException, BadLocationException {
+		Position[] positions= fDocument.getPositions(TREE);
+		assertSameUnordered(fDocument.getPositions(LIST), positions);
+
+		// like for a list, region queries are only well defined while the positions are sorted
+		for (int i= 1; i < positions.length; i++) {
+			if (positions[i].offset < positions[i - 1].offset)
+				return;
+		}
+
+		int length= fDocument.getLength();
+		int offset= fRandom.nextInt(length + 1);
+		int regionLength= fRandom.nextInt(length - offset + 1);
+		for (int i= 0; i < 4; i++) {
+			boolean canStartBefore= (i & 1) != 0;
+			boolean canEndAfter= (i & 2) != 0;
+			assertSameUnordered(getPositions(offset, regionLength, canStartBefore, canEndAfter), fDocument.getPositions(TREE, offset, regionLength, canStartBefore, canEndAfter));
+		}
+
+		int index= fDocument.computeIndexInCategory(TREE, offset);
+		assertTrue(index == 0 || positions[index - 1].offset < offset);
+		assertTrue(index == positions.length || positions[index].offset >= offset);
+	}
+
+	/**
+	 * Computes the result of {@link Document#getPositions(String, int, int, boolean, boolean)} by
+	 * checking every position. The sorted list of the end offsets that a list category maintains
+	 * is not kept sorted by all updates, so it cannot serve as reference.
+	 */
+	private Position[] getPositions(int offset, int length, boolean canStartBefore, boolean canEndAfter) throws BadPositionCategoryException {
+		Position region= new Position(offset, length);
+		List<Position> result= new ArrayList<>();
+		for (Position position : fDocument.getPositions(TREE)) {
+			int start= position.offset;
+			int end= position.length == 0 ? start : start + position.length - 1;
+			boolean included;
+			if (canStartBefore && canEndAfter)
+				included= region.overlapsWith(start, position.length);
+			else if (canStartBefore)
+				included= region.includes(end);
+			else if (canEndAfter)
+				included= region.includes(start);
+			else
+				included= region.includes(start) && region.includes(start + position.length - 1);
+			if (included)
+				result.add(position);
+		}
+		return result.toArray(new Position[result.size()]);
+	}
+
+	private static void assertSameUnordered(Position[] expected, Position[] actual) {
+		expected= expected.clone();
+		actual= actual.clone();
+		Arrays.sort(expected, BY_OFFSET_AND_LENGTH);
+		Arrays.sort(actual, BY_OFFSET_AND_LENGTH);
+		assertArrayEquals(expected, actual);
+	}
+}
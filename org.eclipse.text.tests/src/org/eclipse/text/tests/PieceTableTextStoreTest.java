@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.text.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import org.eclipse.jface.text.ITextStore;
+import org.eclipse.jface.text.PieceTableTextStore;
+
+public class PieceTableTextStoreTest extends TextStoreTest {
+
+	@Override
+	protected ITextStore createTextStore() {
+		return new PieceTableTextStore();
+	}
+
+	@Test
+	public void testTyping() {
+		PieceTableTextStore store= new PieceTableTextStore();
+		store.set("abcdefgh");
+		for (int i= 0; i < 100; i++)
+			store.replace(4 + i, 0, "x");
+		assertEquals(108, store.getLength());
+		assertEquals("dxx", store.get(3, 3));
+		assertEquals("xxe", store.get(102, 3));
+
+		// the typed text is shared with the snapshot, typing on must not change the snapshot
+		ITextStore snapshot= store.getSnapshot();
+		for (int i= 0; i < 10; i++)
+			store.replace(104 + i, 0, "y");
+		store.replace(113, 1, "");
+		assertEquals("xxyyyyyyyyye", store.get(102, 12));
+		assertEquals(108, snapshot.getLength());
+		assertEquals("xxefgh", snapshot.get(102, 6));
+	}
+
+	@Test
+	public void testRandomEdits() {
+		Random random= new Random(4711);
+		StringBuilder expected= new StringBuilder("The quick brown fox jumps over the lazy dog.\n");
+		PieceTableTextStore store= new PieceTableTextStore();
+		store.set(expected.toString());
+
+		for (int i= 0; i < 2000; i++) {
+			int offset= random.nextInt(expected.length() + 1);
+			int length= random.nextInt(Math.min(10, expected.length() - offset) + 1);
+			String text= random.nextInt(4) == 0 ? "" : Integer.toString(i);
+			store.replace(offset, length, text);
+			expected.replace(offset, offset + length, text);
+
+			assertEquals(expected.length(), store.getLength());
+			if (expected.length() == 0)
+				continue;
+			int probe= random.nextInt(expected.length());
+			assertEquals(expected.charAt(probe), store.get(probe));
+			int end= probe + random.nextInt(expected.length() - probe + 1);
+			assertEquals(expected.substring(probe, end), store.get(probe, end - probe));
+		}
+		assertEquals(expected.toString(), store.get(0, store.getLength()));
+		for (int i= 0; i < expected.length(); i++)
+			assertEquals(expected.charAt(i), store.get(i));
+	}
+
+	@Test
+	public void testSnapshots() {
+		Random random= new Random(4711);
+		StringBuilder expected= new StringBuilder("The quick brown fox jumps over the lazy dog.\n");
+		PieceTableTextStore store= new PieceTableTextStore();
+		store.set(expected.toString());
+
+		List<ITextStore> snapshots= new ArrayList<>();
+		List<String> contents= new ArrayList<>();
+		for (int i= 0; i < 500; i++) {
+			int offset= random.nextInt(expected.length() + 1);
+			int length= random.nextInt(Math.min(10, expected.length() - offset) + 1);
+			String text= random.nextInt(4) == 0 ? "" : Integer.toString(i);
+			store.replace(offset, length, text);
+			expected.replace(offset, offset + length, text);
+
+			if (i % 10 == 0) {
+				snapshots.add(store.getSnapshot());
+				contents.add(expected.toString());
+			}
+		}
+
+		assertEquals(expected.toString(), store.get(0, store.getLength()));
+		for (int i= 0; i < snapshots.size(); i++) {
+			ITextStore snapshot= snapshots.get(i);
+			String content= contents.get(i);
+			assertEquals(content, snapshot.get(0, snapshot.getLength()));
+			for (int j= 0; j < content.length(); j++)
+				assertEquals(content.charAt(j), snapshot.get(j));
+		}
+	}
+
+	@Test
+	public void testLargeInsertion() {
+		StringBuilder text= new StringBuilder();
+		while (text.length() < 200 * 1024)
+			text.append("line ").append(text.length()).append('\n');
+
+		PieceTableTextStore store= new PieceTableTextStore();
+		store.set("<>");
+		store.replace(1, 0, text.toString());
+		store.replace(0, 0, "x");
+		assertEquals(text.length() + 3, store.getLength());
+		assertEquals("x<" + text + ">", store.get(0, store.getLength()));
+		assertTrue(store.get(2, 5).startsWith("line"));
+	}
+}
@@ -26,6 +26,7 @@ import org.eclipse.jface.text.ConfigurableLineTracker;
 import org.eclipse.jface.text.ILineTracker;
 import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.ITextStore;
+import org.eclipse.jface.text.ITextStoreExtension3;
 
 /**
  * Correctness tests for {@link ITextStore} implementations.
@@ -382,6 +383,26 @@ public abstract class TextStoreTest {
 		}
 	}
 
+	@Test
+	public void testGetChars() throws Exception {
+		if (!(fTextStore instanceof ITextStoreExtension3))
+			return;
+
+		set("0123456789");
+		replace(5, 0, "abc");
+		replace(2, 1, "");
+		String expected= "0134abc56789";
+		for (int offset= 0; offset <= expected.length(); offset++) {
+			for (int length= 0; offset + length <= expected.length(); length++) {
+				char[] chars= new char[length + 2];
+				((ITextStoreExtension3) fTextStore).getChars(offset, length, chars, 1);
+				char[] expectedChars= new char[length + 2];
+				expected.getChars(offset, offset + length, expectedChars, 1);
+				assertEquals(new String(expectedChars), new String(chars));
+			}
+		}
+	}
+
 	@Test
 	public void testFunnyLastLineCompatibility() throws Exception {
 		/* empty last line */
@@ -58,7 +58,7 @@ import org.eclipse.core.runtime.SafeRunner;
  * @see org.eclipse.jface.text.ITextStore
  * @see org.eclipse.jface.text.ILineTracker
  */
-public abstract class AbstractDocument implements IDocument, IDocumentExtension, IDocumentExtension2, IDocumentExtension3, IDocumentExtension4, IRepairableDocument, IRepairableDocumentExtension {
+public abstract class AbstractDocument implements IDocument, IDocumentExtension, IDocumentExtension2, IDocumentExtension3, IDocumentExtension4, IDocumentExtension5, IRepairableDocument, IRepairableDocumentExtension {
 
 	/**
 	 * Tells whether this class is in debug mode.
@@ -66,6 +66,13 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 	 */
 	private static final boolean DEBUG= false;
 
+	/**
+	 * The maximum number of unchanged characters between two ranges which are replaced with a
+	 * single document event by {@link #replaceInOnePass(int[], int[], String[])}.
+	 * @since 3.8
+	 */
+	private static final int MAX_CLUSTER_GAP= 1024;
+
 
 	/**
 	 * Inner class to bundle a registered post notification replace operation together with its
@@ -180,6 +187,36 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 	 * @since 3.1
 	 */
 	private String fInitialLineDelimiter;
+	/**
+	 * The registered position updaters as array, <code>null</code> if it has to be recomputed.
+	 * @since 3.8
+	 */
+	private IPositionUpdater[] fPositionUpdaterArray;
+	/**
+	 * The offset, length and replace length of the changes whose position updates have been
+	 * deferred during the active rewrite session, in the order of the changes.
+	 * @since 3.8
+	 */
+	private int[] fDeferredPositionChanges;
+	/**
+	 * The number of deferred changes in {@link #fDeferredPositionChanges}.
+	 * @since 3.8
+	 */
+	private int fDeferredPositionChangeCount= 0;
+	/**
+	 * The offset, length and replace length of the changes combined in the document event being
+	 * sent out, in the order in which they would have been performed one by one, or
+	 * <code>null</code> if the event describes a single change.
+	 * @since 3.8
+	 */
+	private int[] fCombinedPositionChanges;
+	/**
+	 * The snapshot of the current content, <code>null</code> if none has been taken yet. It is
+	 * only accessed by the thread which modifies this document, see
+	 * {@link IDocumentExtension5#getSnapshot()}.
+	 * @since 3.8
+	 */
+	private IDocument fSnapshot;
 
 
 	/**
@@ -247,6 +284,7 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 	 * @return the document's positions
      */
 	protected Map<String, List<Position>> getDocumentManagedPositions() {
+		flushDeferredPositionUpdates();
 		return fPositions;
 	}
 
@@ -351,10 +389,14 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 		if (category == null)
 			throw new BadPositionCategoryException();
 
+		flushDeferredPositionUpdates();
+
 		List<Position> list= fPositions.get(category);
 		if (list == null)
 			throw new BadPositionCategoryException();
 		list.add(computeIndexInPositionList(list, position.offset), position);
+		if (list instanceof PositionTree)
+			return;
 
 		List<Position> endPositions= fEndPositions.get(category);
 		if (endPositions == null)
@@ -372,13 +414,43 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 
 	@Override
 	public void addPositionCategory(String category) {
+		addPositionCategory(category, false);
+	}
+
+	/**
+	 * Adds a new position category to this document. If the position category already exists
+	 * nothing happens.
+	 * <p>
+	 * The positions of a category that uses an interval tree are added, removed and looked up in
+	 * <i>O(log n)</i>, and {@link #getPositions(String, int, int, boolean, boolean)} performs in
+	 * <i>O(log n + k)</i> where <var>k</var> is the number of positions in the region. When the
+	 * document changes, a {@link DefaultPositionUpdater} for such a category only visits the
+	 * positions which end at or after the offset of the change. This makes an interval tree the
+	 * better choice for categories with many positions, e.g. search matches or markers.
+	 * </p>
+	 * <p>
+	 * Subclasses of <code>DefaultPositionUpdater</code> must not modify positions which end before
+	 * the offset of the change. Position updaters of other types are supported as well, but after
+	 * each of them has run, the interval trees of all categories are revalidated in <i>O(n)</i>.
+	 * </p>
+	 *
+	 * @param category the category to be added
+	 * @param useIntervalTree <code>true</code> to manage the positions of the category in an
+	 *            interval tree, <code>false</code> to use a sorted list
+	 * @since 3.8
+	 */
+	public void addPositionCategory(String category, boolean useIntervalTree) {
 
 		if (category == null)
 			return;
 
 		if (!containsPositionCategory(category)) {
-			fPositions.put(category, new ArrayList<>());
-			fEndPositions.put(category, new ArrayList<>());
+			if (useIntervalTree) {
+				fPositions.put(category, new PositionTree());
+			} else {
+				fPositions.put(category, new ArrayList<>());
+				fEndPositions.put(category, new ArrayList<>());
+			}
 		}
 	}
 
@@ -393,6 +465,8 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 		if (category == null)
 			return false;
 
+		flushDeferredPositionUpdates();
+
 		List<Position> list= fPositions.get(category);
 		if (list == null)
 			return false;
@@ -452,6 +526,9 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 	 * @since 3.4
 	 */
 	protected int computeIndexInPositionList(List<? extends Position> positions, int offset, boolean orderedByOffset) {
+		if (orderedByOffset && positions instanceof PositionTree)
+			return ((PositionTree) positions).computeIndex(offset);
+
 		if (positions.size() == 0)
 			return 0;
 
@@ -520,6 +597,8 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 		if (0 > offset || offset > getLength())
 			throw new BadLocationException();
 
+		flushDeferredPositionUpdates();
+
 		List<Position> c= fPositions.get(category);
 		if (c == null)
 			throw new BadPositionCategoryException();
@@ -931,6 +1010,8 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 		if (category == null)
 			throw new BadPositionCategoryException();
 
+		flushDeferredPositionUpdates();
+
 		List<Position> c= fPositions.get(category);
 		if (c == null)
 			throw new BadPositionCategoryException();
@@ -969,6 +1050,35 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 		return getStore().get(pos, length);
 	}
 
+	/**
+	 * Copies the characters of the given range of this document into the given array. If the
+	 * text store is an {@link ITextStoreExtension3}, the characters are copied without creating
+	 * intermediate strings.
+	 * <p>
+	 * Documents which have a lock object read their text store through {@link #get(int, int)}.
+	 * </p>
+	 *
+	 * @param pos the offset of the first character to copy
+	 * @param length the number of characters to copy
+	 * @param destination the array to copy the characters into
+	 * @param destinationOffset the index in <code>destination</code> at which the first
+	 *            character is stored
+	 * @throws BadLocationException if the range is invalid in this document
+	 * @since 3.8
+	 */
+	public void getChars(int pos, int length, char[] destination, int destinationOffset) throws BadLocationException {
+		ITextStore store= getStore();
+		boolean locked= this instanceof ISynchronizable && ((ISynchronizable) this).getLockObject() != null;
+		if (locked || !(store instanceof ITextStoreExtension3)) {
+			get(pos, length).getChars(0, length, destination, destinationOffset);
+			return;
+		}
+		int myLength= getLength();
+		if ((0 > pos) || (0 > length) || (pos + length > myLength))
+			throw new BadLocationException();
+		((ITextStoreExtension3) store).getChars(pos, length, destination, destinationOffset);
+	}
+
 	@Override
 	public void insertPositionUpdater(IPositionUpdater updater, int index) {
 
@@ -977,10 +1087,13 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 				return;
 		}
 
+		flushDeferredPositionUpdates();
+
 		if (index == fPositionUpdaters.size())
 			fPositionUpdaters.add(updater);
 		else
 			fPositionUpdaters.add(index, updater);
+		fPositionUpdaterArray= null;
 	}
 
 	@Override
@@ -992,10 +1105,14 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 		if (category == null)
 			throw new BadPositionCategoryException();
 
+		flushDeferredPositionUpdates();
+
 		List<Position> c= fPositions.get(category);
 		if (c == null)
 			throw new BadPositionCategoryException();
 		removeFromPositionsList(c, position, true);
+		if (c instanceof PositionTree)
+			return;
 
 		List<Position> endPositions= fEndPositions.get(category);
 		if (endPositions == null)
@@ -1059,6 +1176,8 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 		if ( !containsPositionCategory(category))
 			throw new BadPositionCategoryException();
 
+		flushDeferredPositionUpdates();
+
 		fPositions.remove(category);
 		fEndPositions.remove(category);
 	}
@@ -1067,7 +1186,9 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 	public void removePositionUpdater(IPositionUpdater updater) {
 		for (int i= fPositionUpdaters.size() - 1; i >= 0; i--) {
 			if (fPositionUpdaters.get(i) == updater) {
+				flushDeferredPositionUpdates();
 				fPositionUpdaters.remove(i);
+				fPositionUpdaterArray= null;
 				return;
 			}
 		}
@@ -1097,6 +1218,7 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 
 		getStore().replace(pos, length, text);
 		getTracker().replace(pos, length, text);
+		fSnapshot= null;
 
 		fModificationStamp= modificationStamp;
 		fNextModificationStamp= Math.max(fModificationStamp, fNextModificationStamp);
@@ -1137,6 +1259,7 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 
 		getStore().set(text);
 		getTracker().set(text);
+		fSnapshot= null;
 
 		fModificationStamp= modificationStamp;
 		fNextModificationStamp= Math.max(fModificationStamp, fNextModificationStamp);
@@ -1145,21 +1268,340 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 		fireDocumentChanged(e);
 	}
 
+	/**
+	 * Sets the content of this document to the content of the given text store, which becomes
+	 * this document's text store. Unlike {@link #set(String, long)}, the content is not copied into
+	 * this document's text store, and the line information is computed from the text store chunk
+	 * by chunk. The content is only read into a single string for the fired {@link DocumentEvent},
+	 * which listeners may keep after the text store has been modified.
+	 *
+	 * @param textStore the text store holding the new content
+	 * @param modificationStamp the new modification stamp or
+	 *            {@link IDocumentExtension4#UNKNOWN_MODIFICATION_STAMP} to use the next one
+	 * @since 3.8
+	 */
+	protected void set(ITextStore textStore, long modificationStamp) {
+		if (modificationStamp == IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP)
+			modificationStamp= getNextModificationStamp();
+
+		DocumentEvent e= new DocumentEvent(this, 0, getStore().getLength(), textStore.get(0, textStore.getLength()));
+		fireDocumentAboutToBeChanged(e);
+
+		setTextStore(textStore);
+		ILineTracker tracker= getTracker();
+		if (tracker instanceof AbstractLineTracker)
+			((AbstractLineTracker) tracker).set(textStore);
+		else
+			tracker.set(textStore.get(0, textStore.getLength()));
+		fSnapshot= null;
+
+		fModificationStamp= modificationStamp;
+		fNextModificationStamp= Math.max(fModificationStamp, fNextModificationStamp);
+		e.fModificationStamp= fModificationStamp;
+
+		fireDocumentChanged(e);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * This implementation replaces the ranges one after another, starting with the last one.
+	 * </p>
+	 *
+	 * @since 3.8
+	 */
+	@Override
+	public void replace(int[] offsets, int[] lengths, String[] texts) throws BadLocationException {
+		checkRanges(offsets, lengths, texts);
+		for (int i= offsets.length - 1; i >= 0; i--)
+			replace(offsets[i], lengths[i], texts[i]);
+	}
+
+	/**
+	 * Checks that the given ranges are valid in this document and in ascending order.
+	 *
+	 * @param offsets the offsets of the ranges
+	 * @param lengths the lengths of the ranges
+	 * @param texts the texts which replace the ranges
+	 * @throws BadLocationException if the ranges are invalid or not in ascending order
+	 * @since 3.8
+	 */
+	private void checkRanges(int[] offsets, int[] lengths, String[] texts) throws BadLocationException {
+		Assert.isLegal(offsets.length == lengths.length && offsets.length == texts.length);
+		int end= 0;
+		for (int i= 0; i < offsets.length; i++) {
+			if (offsets[i] < end || lengths[i] < 0)
+				throw new BadLocationException();
+			end= offsets[i] + lengths[i];
+		}
+		if (end > getLength())
+			throw new BadLocationException();
+	}
+
+	/**
+	 * Replaces the given ranges in one pass over the text store. Ranges which are separated by at
+	 * most {@link #MAX_CLUSTER_GAP} unchanged characters form a cluster. The document listeners
+	 * receive a single event per cluster, so that an event never covers much more text than its
+	 * cluster replaces. The positions are updated as if the ranges had been replaced one after
+	 * another. If there are position updaters which cannot process the changes in one sweep, the
+	 * ranges are replaced one after another.
+	 *
+	 * @param offsets the offsets of the ranges to replace, in ascending order
+	 * @param lengths the lengths of the ranges to replace
+	 * @param texts the texts which replace the ranges
+	 * @throws BadLocationException if the ranges are invalid or not in ascending order
+	 * @since 3.8
+	 */
+	void replaceInOnePass(int[] offsets, int[] lengths, String[] texts) throws BadLocationException {
+		checkRanges(offsets, lengths, texts);
+		int count= offsets.length;
+		if (count == 0)
+			return;
+
+		for (IPositionUpdater u : getPositionUpdaterArray()) {
+			if (!isDeferrable(u)) {
+				for (int i= count - 1; i >= 0; i--)
+					replace(offsets[i], lengths[i], texts[i]);
+				return;
+			}
+		}
+
+		// the clusters are replaced starting with the last one, such that the offsets of the
+		// others stay valid
+		int last= count - 1;
+		for (int i= count - 1; i >= 0; i--) {
+			if (i == 0 || offsets[i] - (offsets[i - 1] + lengths[i - 1]) > MAX_CLUSTER_GAP) {
+				if (i == last)
+					replace(offsets[i], lengths[i], texts[i]);
+				else
+					replaceCluster(offsets, lengths, texts, i, last);
+				last= i - 1;
+			}
+		}
+	}
+
+	/**
+	 * Replaces the given ranges with a single document event which covers the text from the start
+	 * of the first range to the end of the last range.
+	 *
+	 * @param offsets the offsets of the ranges to replace, in ascending order
+	 * @param lengths the lengths of the ranges to replace
+	 * @param texts the texts which replace the ranges
+	 * @param first the index of the first range to replace
+	 * @param last the index of the last range to replace
+	 * @throws BadLocationException if the ranges are invalid
+	 * @since 3.8
+	 */
+	private void replaceCluster(int[] offsets, int[] lengths, String[] texts, int first, int last) throws BadLocationException {
+		int count= last - first + 1;
+		int start= offsets[first];
+		int end= offsets[last] + lengths[last];
+		ITextStore store= getStore();
+		CharSequence content= store instanceof ITextStoreExtension2 ? ((ITextStoreExtension2) store).getCharSequence() : null;
+
+		// the changes are recorded in the order in which they would be performed one by one
+		int[] changes= new int[3 * count];
+		int length= end - start;
+		for (int i= first; i <= last; i++) {
+			int replaceLength= texts[i] == null ? 0 : texts[i].length();
+			length += replaceLength - lengths[i];
+			int index= 3 * (last - i);
+			changes[index]= offsets[i];
+			changes[index + 1]= lengths[i];
+			changes[index + 2]= replaceLength;
+		}
+
+		StringBuilder buffer= new StringBuilder(length);
+		int offset= start;
+		for (int i= first; i <= last; i++) {
+			if (content != null)
+				buffer.append(content, offset, offsets[i]);
+			else
+				buffer.append(store.get(offset, offsets[i] - offset));
+			if (texts[i] != null)
+				buffer.append(texts[i]);
+			offset= offsets[i] + lengths[i];
+		}
+		String text= buffer.toString();
+
+		DocumentEvent e= new DocumentEvent(this, start, end - start, text);
+		fireDocumentAboutToBeChanged(e);
+
+		store.replace(start, end - start, text);
+		getTracker().replace(start, end - start, text);
+		fSnapshot= null;
+
+		fModificationStamp= getNextModificationStamp();
+		e.fModificationStamp= fModificationStamp;
+
+		fCombinedPositionChanges= changes;
+		try {
+			fireDocumentChanged(e);
+		} finally {
+			fCombinedPositionChanges= null;
+		}
+	}
+
 	/**
 	 * Updates all positions of all categories to the change described by the
 	 * document event. All registered document updaters are called in the
 	 * sequence they have been arranged. Uses a robust iterator.
+	 * <p>
+	 * While a rewrite session other than {@link DocumentRewriteSessionType#UNRESTRICTED_SMALL}
+	 * is active, the updates of {@link DefaultPositionUpdater}s are deferred as long as each change
+	 * ends at or before the offset of the previous change, as it is the case when a
+	 * {@link org.eclipse.text.edits.TextEdit} tree is applied. The deferred changes are applied in
+	 * one sweep over the positions when the session is stopped or the positions are accessed
+	 * through this document, whichever comes first.
+	 * </p>
 	 *
 	 * @param event the document event describing the change to which to adapt
 	 *            the positions
 	 */
 	protected void updatePositions(DocumentEvent event) {
-		List<IPositionUpdater> list= new ArrayList<>(fPositionUpdaters);
-		Iterator<IPositionUpdater> e= list.iterator();
-		while (e.hasNext()) {
-			IPositionUpdater u= e.next();
-			u.update(event);
+		boolean defer= fDocumentRewriteSession != null && fDocumentRewriteSession.getSessionType() != DocumentRewriteSessionType.UNRESTRICTED_SMALL;
+		if (fCombinedPositionChanges != null) {
+			// all position updaters can process the combined changes in one sweep
+			int[] changes= fCombinedPositionChanges;
+			fCombinedPositionChanges= null;
+			if (fDeferredPositionChangeCount > 0 && changes[0] + changes[1] > fDeferredPositionChanges[3 * (fDeferredPositionChangeCount - 1)])
+				flushDeferredPositionUpdates();
+			for (int i= 0; i < changes.length; i += 3)
+				deferPositionUpdate(changes[i], changes[i + 1], changes[i + 2]);
+			if (!defer)
+				flushDeferredPositionUpdates();
+			return;
+		}
+		if (defer && fDeferredPositionChangeCount > 0 && event.getOffset() + event.getLength() > fDeferredPositionChanges[3 * (fDeferredPositionChangeCount - 1)])
+			flushDeferredPositionUpdates();
+
+		boolean deferred= false;
+		for (IPositionUpdater u : getPositionUpdaterArray()) {
+			if (defer && isDeferrable(u)) {
+				deferred= true;
+			} else {
+				u.update(event);
+				revalidatePositionTrees(u, event.getOffset());
+			}
 		}
+
+		if (deferred)
+			deferPositionUpdate(event.getOffset(), event.getLength(), event.getTextLength());
+	}
+
+	/**
+	 * Returns the registered position updaters. The returned array must not be modified.
+	 *
+	 * @return the registered position updaters
+	 * @since 3.8
+	 */
+	private IPositionUpdater[] getPositionUpdaterArray() {
+		if (fPositionUpdaterArray == null)
+			fPositionUpdaterArray= fPositionUpdaters.toArray(new IPositionUpdater[fPositionUpdaters.size()]);
+		return fPositionUpdaterArray;
+	}
+
+	/**
+	 * Tells whether the updates of the given position updater can be deferred during a rewrite
+	 * session. Subclasses of <code>DefaultPositionUpdater</code> may adapt positions in ways a
+	 * single sweep cannot reproduce.
+	 *
+	 * @param updater the position updater
+	 * @return <code>true</code> if the updates of <code>updater</code> can be deferred
+	 * @since 3.8
+	 */
+	private static boolean isDeferrable(IPositionUpdater updater) {
+		return updater.getClass() == DefaultPositionUpdater.class;
+	}
+
+	/**
+	 * Remembers the given change for the deferred position update.
+	 *
+	 * @param offset the offset of the change
+	 * @param length the length of the replaced text
+	 * @param replaceLength the length of the inserted text
+	 * @since 3.8
+	 */
+	private void deferPositionUpdate(int offset, int length, int replaceLength) {
+		int index= 3 * fDeferredPositionChangeCount;
+		if (fDeferredPositionChanges == null)
+			fDeferredPositionChanges= new int[3 * 16];
+		else if (index == fDeferredPositionChanges.length)
+			fDeferredPositionChanges= Arrays.copyOf(fDeferredPositionChanges, 2 * index);
+
+		fDeferredPositionChanges[index]= offset;
+		fDeferredPositionChanges[index + 1]= length;
+		fDeferredPositionChanges[index + 2]= replaceLength;
+		fDeferredPositionChangeCount++;
+	}
+
+	/**
+	 * Applies the deferred changes to the positions of all categories which are updated by a
+	 * {@link DefaultPositionUpdater}.
+	 *
+	 * @since 3.8
+	 */
+	private void flushDeferredPositionUpdates() {
+		int count= fDeferredPositionChangeCount;
+		if (count == 0)
+			return;
+
+		fDeferredPositionChangeCount= 0;
+		int[] changes= fDeferredPositionChanges;
+		int lowestOffset= changes[3 * (count - 1)];
+		for (IPositionUpdater u : getPositionUpdaterArray()) {
+			if (isDeferrable(u)) {
+				((DefaultPositionUpdater) u).update(this, changes, count);
+				revalidatePositionTrees(u, lowestOffset);
+			}
+		}
+
+		if (fDeferredPositionChanges.length > 3 * 1024)
+			fDeferredPositionChanges= null;
+	}
+
+	/**
+	 * Revalidates the interval trees of the categories which might have been modified by the
+	 * given position updater.
+	 *
+	 * @param updater the position updater that has been run
+	 * @param offset the offset of the change
+	 * @since 3.8
+	 */
+	private void revalidatePositionTrees(IPositionUpdater updater, int offset) {
+		if (updater instanceof DefaultPositionUpdater) {
+			List<Position> positions= fPositions.get(((DefaultPositionUpdater) updater).getCategory());
+			if (positions instanceof PositionTree)
+				((PositionTree) positions).revalidate(offset);
+		} else {
+			for (List<Position> positions : fPositions.values()) {
+				if (positions instanceof PositionTree)
+					((PositionTree) positions).revalidate(0);
+			}
+		}
+	}
+
+	/**
+	 * Returns the positions of the given category which a {@link DefaultPositionUpdater} has to
+	 * adapt to a change at the given offset. For categories which use an interval tree these are
+	 * only the positions which end at or after the offset, otherwise all positions.
+	 *
+	 * @param category the position category
+	 * @param offset the offset of the change
+	 * @return the positions to update
+	 * @throws BadPositionCategoryException if category is undefined in this document
+	 * @since 3.8
+	 */
+	Position[] getPositionsToUpdate(String category, int offset) throws BadPositionCategoryException {
+		flushDeferredPositionUpdates();
+
+		List<Position> positions= category != null ? fPositions.get(category) : null;
+		if (!(positions instanceof PositionTree))
+			return getPositions(category);
+
+		List<Position> list= new ArrayList<>();
+		((PositionTree) positions).collect(offset, Integer.MAX_VALUE, list);
+		return list.toArray(new Position[list.size()]);
 	}
 
 	/**
@@ -1193,6 +1635,26 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 		return fFindReplaceDocumentAdapter;
 	}
 
+	/**
+	 * Returns a character sequence view of this document's text store. The view is only valid
+	 * until this document is modified the next time.
+	 * <p>
+	 * Documents which have a lock object are read from several threads; their text store is not
+	 * read directly.
+	 * </p>
+	 *
+	 * @return the view or <code>null</code> if the text store does not provide one
+	 * @since 3.8
+	 */
+	CharSequence getCharSequence() {
+		if (this instanceof ISynchronizable && ((ISynchronizable) this).getLockObject() != null)
+			return null;
+		ITextStore store= getStore();
+		if (store instanceof ITextStoreExtension2)
+			return ((ITextStoreExtension2) store).getCharSequence();
+		return null;
+	}
+
 	/**
 	 * Flushes all registered post notification changes.
 	 *
@@ -1505,6 +1967,8 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 			if (DEBUG)
 				System.out.println("AbstractDocument: Stopping rewrite session: " + session); //$NON-NLS-1$
 
+			flushDeferredPositionUpdates();
+
 			DocumentRewriteSessionType sessionType= session.getSessionType();
 			if (DocumentRewriteSessionType.SEQUENTIAL == sessionType || DocumentRewriteSessionType.STRICTLY_SEQUENTIAL == sessionType)
 				stopSequentialRewrite();
@@ -1584,6 +2048,41 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Taking a snapshot performs in <i>O(1)</i> if the text store is an
+	 * {@link ITextStoreExtension}, e.g. a {@link PieceTableTextStore}. The content of other text
+	 * stores, like the {@link GapTextStore} which is used by default, is copied for each snapshot
+	 * which is taken after a modification. Subclasses which take snapshots of large documents
+	 * frequently should therefore use a text store which supports snapshots. The text store of
+	 * this document is never replaced.
+	 * </p>
+	 * <p>
+	 * The line information of the snapshot is computed from its content by the first thread which
+	 * needs it.
+	 * </p>
+	 *
+	 * @since 3.8
+	 */
+	@Override
+	public IDocument getSnapshot() {
+		IDocument snapshot= fSnapshot;
+		if (snapshot == null) {
+			ITextStore store= getStore();
+			ITextStore storeSnapshot;
+			if (store instanceof ITextStoreExtension) {
+				storeSnapshot= ((ITextStoreExtension) store).getSnapshot();
+			} else {
+				storeSnapshot= new PieceTableTextStore();
+				storeSnapshot.set(store.get(0, store.getLength()));
+			}
+			snapshot= new DocumentSnapshot(storeSnapshot, getLegalLineDelimiters(), getDefaultLineDelimiter(), getModificationStamp());
+			fSnapshot= snapshot;
+		}
+		return snapshot;
+	}
+
 	/**
 	 * Returns all positions of the given category that are inside the given region.
 	 *
@@ -1599,6 +2098,25 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 	 * @since 3.4
 	 */
 	public Position[] getPositions(String category, int offset, int length, boolean canStartBefore, boolean canEndAfter) throws BadPositionCategoryException {
+		flushDeferredPositionUpdates();
+
+		List<Position> categoryPositions= category != null ? fPositions.get(category) : null;
+		if (canStartBefore && categoryPositions instanceof PositionTree) {
+			List<Position> candidates= new ArrayList<>();
+			((PositionTree) categoryPositions).collect(offset, offset + length, candidates);
+
+			Position region= new Position(offset, length);
+			List<Position> list= new ArrayList<>(candidates.size());
+			for (Position position : candidates) {
+				if (canEndAfter ? isWithinRegion(region, position, true, true) : region.includes(getOffset(false, position)))
+					list.add(position);
+			}
+
+			Position[] positions= new Position[list.size()];
+			list.toArray(positions);
+			return positions;
+		}
+
 		if (canStartBefore && canEndAfter || (!canStartBefore && !canEndAfter)) {
 			List<Position> documentPositions;
 			if (canStartBefore && canEndAfter) {
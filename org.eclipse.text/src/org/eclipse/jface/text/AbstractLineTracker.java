@@ -42,6 +42,14 @@ public abstract class AbstractLineTracker implements ILineTracker, ILineTrackerE
 	 */
 	private static final boolean DEBUG= false;
 
+	/**
+	 * The text length from which on the text is tracked by a {@link BlockLineTracker}, which
+	 * needs far less memory per line than a {@link TreeLineTracker}.
+	 *
+	 * @since 3.8
+	 */
+	private static final int BLOCK_LINE_TRACKER_THRESHOLD= 1024 * 1024;
+
 	/**
 	 * Combines the information of the occurrence of a line delimiter. <code>delimiterIndex</code>
 	 * is the index where a line delimiter starts, whereas <code>delimiterLength</code>,
@@ -97,17 +105,7 @@ public abstract class AbstractLineTracker implements ILineTracker, ILineTrackerE
 	 *
 	 * @since 3.2
 	 */
-	private ILineTracker fDelegate= new ListLineTracker() {
-		@Override
-		public String[] getLegalLineDelimiters() {
-			return AbstractLineTracker.this.getLegalLineDelimiters();
-		}
-
-		@Override
-		protected DelimiterInfo nextDelimiterInfo(String text, int offset) {
-			return AbstractLineTracker.this.nextDelimiterInfo(text, offset);
-		}
-	};
+	private ILineTracker fDelegate= createListLineTracker();
 	/**
 	 * Whether the delegate needs conversion when the line structure is modified.
 	 */
@@ -184,9 +182,40 @@ public abstract class AbstractLineTracker implements ILineTracker, ILineTrackerE
 			return;
 		}
 
+		if (text != null && text.length() >= BLOCK_LINE_TRACKER_THRESHOLD) {
+			if (!(fDelegate instanceof BlockLineTracker)) {
+				fDelegate= createBlockLineTracker();
+				fNeedsConversion= false;
+			}
+		} else if (fDelegate instanceof BlockLineTracker) {
+			fDelegate= createListLineTracker();
+			fNeedsConversion= true;
+		}
+
 		fDelegate.set(text);
 	}
 
+	/**
+	 * Sets the tracked text to the content of the given text store. Large contents are read in
+	 * chunks, so that they are never held in a single string.
+	 *
+	 * @param textStore the text store
+	 * @since 3.8
+	 */
+	void set(ITextStore textStore) {
+		int length= textStore.getLength();
+		if (hasActiveRewriteSession() || length < BLOCK_LINE_TRACKER_THRESHOLD || !hasDefaultLineDelimiters()) {
+			set(textStore.get(0, length));
+			return;
+		}
+
+		if (!(fDelegate instanceof BlockLineTracker)) {
+			fDelegate= createBlockLineTracker();
+			fNeedsConversion= false;
+		}
+		((BlockLineTracker) fDelegate).set(textStore);
+	}
+
 	@Override
 	public void replace(int offset, int length, String text) throws BadLocationException {
 		if (hasActiveRewriteSession()) {
@@ -199,6 +228,58 @@ public abstract class AbstractLineTracker implements ILineTracker, ILineTrackerE
 		fDelegate.replace(offset, length, text);
 	}
 
+	/**
+	 * Creates the list line tracker this tracker delegates to until its line structure is
+	 * modified.
+	 *
+	 * @return a new list line tracker
+	 * @since 3.8
+	 */
+	private ListLineTracker createListLineTracker() {
+		return new ListLineTracker() {
+			@Override
+			public String[] getLegalLineDelimiters() {
+				return AbstractLineTracker.this.getLegalLineDelimiters();
+			}
+
+			@Override
+			protected DelimiterInfo nextDelimiterInfo(String text, int offset) {
+				return AbstractLineTracker.this.nextDelimiterInfo(text, offset);
+			}
+		};
+	}
+
+	/**
+	 * Creates the block line tracker this tracker delegates to for large texts.
+	 *
+	 * @return a new block line tracker
+	 * @since 3.8
+	 */
+	private BlockLineTracker createBlockLineTracker() {
+		return new BlockLineTracker(hasDefaultLineDelimiters()) {
+			@Override
+			public String[] getLegalLineDelimiters() {
+				return AbstractLineTracker.this.getLegalLineDelimiters();
+			}
+
+			@Override
+			protected DelimiterInfo nextDelimiterInfo(String text, int offset) {
+				return AbstractLineTracker.this.nextDelimiterInfo(text, offset);
+			}
+		};
+	}
+
+	/**
+	 * Tells whether {@link #nextDelimiterInfo(String, int)} finds exactly the delimiters of
+	 * {@link DefaultLineTracker}, which can then be searched for without calling it.
+	 *
+	 * @return <code>true</code> if the delimiters are those of {@link DefaultLineTracker}
+	 * @since 3.8
+	 */
+	boolean hasDefaultLineDelimiters() {
+		return false;
+	}
+
 	/**
 	 * Converts the implementation to be a {@link TreeLineTracker} if it isn't yet.
 	 *
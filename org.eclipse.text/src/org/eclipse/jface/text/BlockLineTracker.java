@@ -0,0 +1,653 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.text;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import org.eclipse.jface.text.AbstractLineTracker.DelimiterInfo;
+
+/**
+ * Abstract implementation of <code>ILineTracker</code> which keeps the line structure in blocks of
+ * primitive arrays rather than in one object per line. It defines the same line scheme as
+ * {@link TreeLineTracker}; assuming that '\n' is the only line delimiter:
+ * <ul>
+ * <li> "" -> [0,0]
+ * <li> "a" -> [0,1]
+ * <li> "\n" -> [0,1], [1,0]
+ * <li> "a\n" -> [0,2], [2,0]
+ * <li> "a\nb" -> [0,2], [2,1]
+ * <li> "a\nbc\n" -> [0,2], [2,3], [5,0]
+ * </ul>
+ * <p>
+ * Each block holds up to {@value #BLOCK_CAPACITY} lines: the start offsets of its lines relative
+ * to the block and an index into a table of the line delimiters. Two Fenwick trees (binary indexed
+ * trees) over the blocks sum up the lengths and the line counts of the blocks, so that a line or
+ * offset is found in <i>O(log n)</i>. A modification inside a block moves at most the lines of
+ * that block and updates the sums in <i>O(log n)</i>; the sums are only rebuilt when blocks are
+ * split or merged.
+ * </p>
+ * <p>
+ * If the line delimiters are those of {@link DefaultLineTracker}, {@link #set(String)} scans
+ * chunks of the text in parallel and builds the blocks from the found delimiters afterwards.
+ * </p>
+ * <p>
+ * This class must be subclassed.
+ * </p>
+ *
+ * @since 3.8
+ */
+abstract class BlockLineTracker implements ILineTracker {
+
+	/** The maximal number of lines of a block. */
+	private static final int BLOCK_CAPACITY= 1024;
+	/** The number of lines below which a block is merged with its neighbors. */
+	private static final int MIN_BLOCK_SIZE= BLOCK_CAPACITY / 4;
+	/** The number of lines of newly created blocks. */
+	private static final int INITIAL_BLOCK_SIZE= BLOCK_CAPACITY * 3 / 4;
+	/** The number of characters scanned for line delimiters by one task. */
+	private static final int SCAN_CHUNK_SIZE= 64 * 1024;
+
+	/**
+	 * A block of consecutive lines.
+	 */
+	private static final class Block {
+		/** The start offsets of the lines, relative to the block. */
+		final int[] fStarts= new int[BLOCK_CAPACITY];
+		/** The indices of the line delimiters in the delimiter table. */
+		final byte[] fDelimiters= new byte[BLOCK_CAPACITY];
+		/** The number of lines of this block. */
+		int fLineCount;
+		/** The number of characters of this block. */
+		int fLength;
+
+		int getLineLength(int index) {
+			return (index + 1 < fLineCount ? fStarts[index + 1] : fLength) - fStarts[index];
+		}
+
+		/**
+		 * Returns the index of the last line which starts at or before the given offset.
+		 *
+		 * @param offset the block relative offset
+		 * @return the index of the line containing <code>offset</code>
+		 */
+		int indexOf(int offset) {
+			int low= 0;
+			int high= fLineCount - 1;
+			while (low < high) {
+				int mid= (low + high + 1) >>> 1;
+				if (fStarts[mid] <= offset)
+					low= mid;
+				else
+					high= mid - 1;
+			}
+			return low;
+		}
+
+		void append(int length, byte delimiter) {
+			fStarts[fLineCount]= fLength;
+			fDelimiters[fLineCount]= delimiter;
+			fLineCount++;
+			fLength += length;
+		}
+	}
+
+	/**
+	 * Finds the line delimiters of {@link DefaultLineTracker} in a chunk of a text. The chunk
+	 * must not end between the characters of a "\r\n" delimiter.
+	 */
+	private static final class ScanTask extends RecursiveAction {
+		private static final long serialVersionUID= 1L;
+
+		/** The scanned text. */
+		final String fText;
+		/** The offset of the chunk. */
+		final int fFrom;
+		/** The end offset of the chunk. */
+		final int fTo;
+		/** The end offsets of the found delimiters. */
+		int[] fEnds;
+		/** The indices of the found delimiters in {@link DefaultLineTracker#DELIMITERS}. */
+		byte[] fDelimiters;
+		/** The number of found delimiters. */
+		int fCount;
+
+		ScanTask(String text, int from, int to) {
+			fText= text;
+			fFrom= from;
+			fTo= to;
+		}
+
+		@Override
+		protected void compute() {
+			String text= fText;
+			int to= fTo;
+			fEnds= new int[(to - fFrom) / 32 + 16];
+			fDelimiters= new byte[fEnds.length];
+			for (int i= fFrom; i < to; i++) {
+				char ch= text.charAt(i);
+				if (ch > '\r')
+					continue;
+				if (ch == '\n') {
+					add(i + 1, 1);
+				} else if (ch == '\r') {
+					if (i + 1 < to && text.charAt(i + 1) == '\n')
+						add(++i + 1, 2);
+					else
+						add(i + 1, 0);
+				}
+			}
+		}
+
+		private void add(int end, int delimiter) {
+			if (fCount == fEnds.length) {
+				fEnds= Arrays.copyOf(fEnds, 2 * fCount);
+				fDelimiters= Arrays.copyOf(fDelimiters, 2 * fCount);
+			}
+			fEnds[fCount]= end;
+			fDelimiters[fCount]= (byte) delimiter;
+			fCount++;
+		}
+	}
+
+	/** The blocks. */
+	private final List<Block> fBlocks= new ArrayList<>();
+	/** The Fenwick tree of the block lengths. */
+	private int[] fLengthSums;
+	/** The Fenwick tree of the block line counts. */
+	private int[] fLineCountSums;
+	/** The number of lines. */
+	private int fLineCount;
+	/** The length of the tracked text. */
+	private int fTextLength;
+	/**
+	 * The line delimiters referenced by the blocks. Index 0 stands for the last line, which has
+	 * no delimiter.
+	 */
+	private String[] fDelimiterTable= { null };
+	/** Whether the line delimiters are those of {@link DefaultLineTracker}. */
+	private final boolean fDefaultDelimiters;
+
+	/**
+	 * Creates a new line tracker.
+	 *
+	 * @param defaultDelimiters <code>true</code> if {@link #nextDelimiterInfo(String, int)}
+	 *            finds the delimiters of {@link DefaultLineTracker}, which allows to scan texts in
+	 *            parallel
+	 */
+	protected BlockLineTracker(boolean defaultDelimiters) {
+		fDefaultDelimiters= defaultDelimiters;
+		set((String) null);
+	}
+
+	/**
+	 * Returns the information about the first delimiter found in the given text starting at the
+	 * given offset.
+	 *
+	 * @param text the text to be searched
+	 * @param offset the offset in the given text
+	 * @return the information of the first found delimiter or <code>null</code>
+	 */
+	protected abstract DelimiterInfo nextDelimiterInfo(String text, int offset);
+
+	@Override
+	public final String getLineDelimiter(int line) throws BadLocationException {
+		int block= blockByLine(line);
+		Block b= fBlocks.get(block);
+		return fDelimiterTable[b.fDelimiters[line - prefixSum(fLineCountSums, block)]];
+	}
+
+	@Override
+	public final int computeNumberOfLines(String text) {
+		int count= 0;
+		int start= 0;
+		DelimiterInfo delimiterInfo= nextDelimiterInfo(text, start);
+		while (delimiterInfo != null && delimiterInfo.delimiterIndex > -1) {
+			++count;
+			start= delimiterInfo.delimiterIndex + delimiterInfo.delimiterLength;
+			delimiterInfo= nextDelimiterInfo(text, start);
+		}
+		return count;
+	}
+
+	@Override
+	public final int getNumberOfLines() {
+		return fLineCount;
+	}
+
+	@Override
+	public final int getNumberOfLines(int offset, int length) throws BadLocationException {
+		if (length == 0)
+			return 1;
+
+		int startLine= getLineNumberOfOffset(offset);
+		int endLine= getLineNumberOfOffset(offset + length);
+
+		return endLine - startLine + 1;
+	}
+
+	@Override
+	public final int getLineOffset(int line) throws BadLocationException {
+		int block= blockByLine(line);
+		Block b= fBlocks.get(block);
+		return prefixSum(fLengthSums, block) + b.fStarts[line - prefixSum(fLineCountSums, block)];
+	}
+
+	@Override
+	public final int getLineLength(int line) throws BadLocationException {
+		int block= blockByLine(line);
+		return fBlocks.get(block).getLineLength(line - prefixSum(fLineCountSums, block));
+	}
+
+	@Override
+	public final int getLineNumberOfOffset(int offset) throws BadLocationException {
+		int block= blockByOffset(offset);
+		Block b= fBlocks.get(block);
+		return prefixSum(fLineCountSums, block) + b.indexOf(offset - prefixSum(fLengthSums, block));
+	}
+
+	@Override
+	public final IRegion getLineInformationOfOffset(int offset) throws BadLocationException {
+		int block= blockByOffset(offset);
+		Block b= fBlocks.get(block);
+		int blockOffset= prefixSum(fLengthSums, block);
+		int index= b.indexOf(offset - blockOffset);
+		return new Region(blockOffset + b.fStarts[index], getPureLength(b, index));
+	}
+
+	@Override
+	public final IRegion getLineInformation(int line) throws BadLocationException {
+		if (line < 0 || line >= fLineCount) {
+			/*
+			 * Mandated by the previous line tracker implementation, see
+			 * TreeLineTracker#getLineInformation(int).
+			 */
+			if (line > 0 && line == fLineCount) {
+				int length= getLineLength(line - 1);
+				if (length > 0)
+					return new Region(getLineOffset(line - 1) + length, 0);
+			}
+			throw new BadLocationException();
+		}
+
+		int block= blockByLine(line);
+		Block b= fBlocks.get(block);
+		int index= line - prefixSum(fLineCountSums, block);
+		return new Region(prefixSum(fLengthSums, block) + b.fStarts[index], getPureLength(b, index));
+	}
+
+	@Override
+	public final void set(String text) {
+		fBlocks.clear();
+		Block block= new Block();
+		fBlocks.add(block);
+
+		int consumed= 0;
+		if (text != null && fDefaultDelimiters && text.length() >= 2 * SCAN_CHUNK_SIZE && ForkJoinPool.getCommonPoolParallelism() > 1) {
+			byte[] delimiters= new byte[DefaultLineTracker.DELIMITERS.length];
+			for (int i= 0; i < delimiters.length; i++)
+				delimiters[i]= getDelimiterIndex(DefaultLineTracker.DELIMITERS[i]);
+			for (ScanTask task : scan(text)) {
+				for (int i= 0; i < task.fCount; i++) {
+					int end= task.fEnds[i];
+					block= append(fBlocks, block, INITIAL_BLOCK_SIZE, end - consumed, delimiters[task.fDelimiters[i]]);
+					consumed= end;
+				}
+			}
+		} else if (text != null) {
+			DelimiterInfo info= nextDelimiterInfo(text, 0);
+			while (info != null) {
+				int end= info.delimiterIndex + info.delimiterLength;
+				block= append(fBlocks, block, INITIAL_BLOCK_SIZE, end - consumed, getDelimiterIndex(info.delimiter));
+				consumed= end;
+				info= nextDelimiterInfo(text, consumed);
+			}
+		}
+		block= append(fBlocks, block, INITIAL_BLOCK_SIZE, (text != null ? text.length() : 0) - consumed, (byte) 0);
+
+		fTextLength= text != null ? text.length() : 0;
+		rebuildSums();
+	}
+
+	/**
+	 * Sets the tracked text to the content of the given text store, which is read in chunks of
+	 * {@value #SCAN_CHUNK_SIZE} characters. The line delimiters must be those of
+	 * {@link DefaultLineTracker}, so that a delimiter is only split if it is a "\r\n".
+	 *
+	 * @param textStore the text store
+	 */
+	final void set(ITextStore textStore) {
+		fBlocks.clear();
+		Block block= new Block();
+		fBlocks.add(block);
+
+		int length= textStore.getLength();
+		int consumed= 0;
+		int from= 0;
+		while (from < length) {
+			int to= Math.min(from + SCAN_CHUNK_SIZE, length);
+			// do not split a "\r\n" delimiter
+			if (to < length && textStore.get(to - 1) == '\r' && textStore.get(to) == '\n')
+				to++;
+			String chunk= textStore.get(from, to - from);
+			DelimiterInfo info= nextDelimiterInfo(chunk, 0);
+			while (info != null) {
+				int end= from + info.delimiterIndex + info.delimiterLength;
+				block= append(fBlocks, block, INITIAL_BLOCK_SIZE, end - consumed, getDelimiterIndex(info.delimiter));
+				consumed= end;
+				info= nextDelimiterInfo(chunk, end - from);
+			}
+			from= to;
+		}
+		block= append(fBlocks, block, INITIAL_BLOCK_SIZE, length - consumed, (byte) 0);
+
+		fTextLength= length;
+		rebuildSums();
+	}
+
+	/**
+	 * Scans the given text for the delimiters of {@link DefaultLineTracker} in parallel.
+	 *
+	 * @param text the text
+	 * @return the tasks which scanned the chunks of the text, in the order of the chunks
+	 */
+	private static List<ScanTask> scan(String text) {
+		int length= text.length();
+		List<ScanTask> tasks= new ArrayList<>(length / SCAN_CHUNK_SIZE + 1);
+		int from= 0;
+		while (from < length) {
+			int to= Math.min(from + SCAN_CHUNK_SIZE, length);
+			// do not split a "\r\n" delimiter
+			if (to < length && text.charAt(to - 1) == '\r' && text.charAt(to) == '\n')
+				to++;
+			tasks.add(new ScanTask(text, from, to));
+			from= to;
+		}
+		ForkJoinTask.invokeAll(tasks);
+		return tasks;
+	}
+
+	@Override
+	public final void replace(int offset, int length, String text) throws BadLocationException {
+		if (offset < 0 || length < 0 || offset + length > fTextLength)
+			throw new BadLocationException();
+
+		int firstBlock= blockByOffset(offset);
+		Block b= fBlocks.get(firstBlock);
+		int blockOffset= prefixSum(fLengthSums, firstBlock);
+		int firstIndex= b.indexOf(offset - blockOffset);
+		int firstStart= blockOffset + b.fStarts[firstIndex];
+
+		int lastBlock= firstBlock;
+		int lastIndex= firstIndex;
+		int lastEnd= firstStart + b.getLineLength(firstIndex);
+		if (offset + length >= lastEnd) {
+			lastBlock= blockByOffset(offset + length);
+			b= fBlocks.get(lastBlock);
+			blockOffset= prefixSum(fLengthSums, lastBlock);
+			lastIndex= b.indexOf(offset + length - blockOffset);
+			lastEnd= blockOffset + b.fStarts[lastIndex] + b.getLineLength(lastIndex);
+		}
+		byte lastDelimiter= b.fDelimiters[lastIndex];
+
+		// the lines replacing the lines from first to last: the part of the first line before the
+		// change joins the first line of the text, the last line of the text joins the part of
+		// the last line after the change
+		int[] lengths= new int[4];
+		byte[] delimiters= new byte[4];
+		int count= 0;
+		int consumed= 0;
+		int textLength= text != null ? text.length() : 0;
+		if (text != null) {
+			DelimiterInfo info= nextDelimiterInfo(text, 0);
+			while (info != null) {
+				if (count + 1 == lengths.length) {
+					lengths= Arrays.copyOf(lengths, 2 * count);
+					delimiters= Arrays.copyOf(delimiters, 2 * count);
+				}
+				int end= info.delimiterIndex + info.delimiterLength;
+				lengths[count]= end - consumed;
+				delimiters[count]= getDelimiterIndex(info.delimiter);
+				count++;
+				consumed= end;
+				info= nextDelimiterInfo(text, consumed);
+			}
+		}
+		lengths[count]= textLength - consumed + lastEnd - offset - length;
+		delimiters[count]= lastDelimiter;
+		lengths[0] += offset - firstStart;
+		// an empty line only remains if it is the last line
+		if (lengths[count] > 0 || lastDelimiter == 0)
+			count++;
+
+		splice(firstBlock, firstIndex, lastBlock, lastIndex, lengths, delimiters, count, textLength - length);
+	}
+
+	/**
+	 * Replaces the lines from the first to the last given line by the given lines.
+	 *
+	 * @param firstBlock the block of the first replaced line
+	 * @param firstIndex the index of the first replaced line in its block
+	 * @param lastBlock the block of the last replaced line
+	 * @param lastIndex the index of the last replaced line in its block
+	 * @param lengths the lengths of the new lines
+	 * @param delimiters the delimiter indices of the new lines
+	 * @param count the number of new lines
+	 * @param delta the length difference of the new and the replaced lines
+	 */
+	private void splice(int firstBlock, int firstIndex, int lastBlock, int lastIndex, int[] lengths, byte[] delimiters, int count, int delta) {
+		int removed= prefixSum(fLineCountSums, lastBlock) + lastIndex - prefixSum(fLineCountSums, firstBlock) - firstIndex + 1;
+		fTextLength += delta;
+		fLineCount += count - removed;
+
+		Block b= fBlocks.get(firstBlock);
+		int lineCount= b.fLineCount + count - removed;
+		if (firstBlock == lastBlock && lineCount <= BLOCK_CAPACITY && (lineCount >= MIN_BLOCK_SIZE || fBlocks.size() == 1)) {
+			// the common case: the modification stays inside a block
+			int tail= b.fLineCount - lastIndex - 1;
+			System.arraycopy(b.fStarts, lastIndex + 1, b.fStarts, firstIndex + count, tail);
+			System.arraycopy(b.fDelimiters, lastIndex + 1, b.fDelimiters, firstIndex + count, tail);
+			for (int i= firstIndex + count; i < lineCount; i++)
+				b.fStarts[i] += delta;
+
+			int start= b.fStarts[firstIndex];
+			for (int i= 0; i < count; i++) {
+				b.fStarts[firstIndex + i]= start;
+				b.fDelimiters[firstIndex + i]= delimiters[i];
+				start += lengths[i];
+			}
+			b.fLineCount= lineCount;
+			b.fLength += delta;
+
+			add(fLengthSums, firstBlock, delta);
+			add(fLineCountSums, firstBlock, count - removed);
+			return;
+		}
+
+		// rebuild the affected blocks, merging them with a neighbor if they become too small
+		int from= firstBlock;
+		int to= lastBlock;
+		int total= prefixSum(fLineCountSums, to + 1) - prefixSum(fLineCountSums, from) + count - removed;
+		if (total < MIN_BLOCK_SIZE && fBlocks.size() > to - from + 1) {
+			if (to + 1 < fBlocks.size())
+				to++;
+			else
+				from--;
+			total= prefixSum(fLineCountSums, to + 1) - prefixSum(fLineCountSums, from) + count - removed;
+		}
+
+		List<Block> blocks= new ArrayList<>();
+		int blockCount= (total + INITIAL_BLOCK_SIZE - 1) / INITIAL_BLOCK_SIZE;
+		int blockSize= (total + blockCount - 1) / blockCount;
+		Block target= new Block();
+		blocks.add(target);
+		for (int i= from; i <= to; i++) {
+			Block source= fBlocks.get(i);
+			int begin= 0;
+			if (i >= firstBlock && i <= lastBlock) {
+				if (i == firstBlock) {
+					for (int j= 0; j < firstIndex; j++)
+						target= append(blocks, target, blockSize, source.getLineLength(j), source.fDelimiters[j]);
+					for (int j= 0; j < count; j++)
+						target= append(blocks, target, blockSize, lengths[j], delimiters[j]);
+				}
+				if (i != lastBlock)
+					continue;
+				begin= lastIndex + 1;
+			}
+			for (int j= begin; j < source.fLineCount; j++)
+				target= append(blocks, target, blockSize, source.getLineLength(j), source.fDelimiters[j]);
+		}
+
+		List<Block> range= fBlocks.subList(from, to + 1);
+		range.clear();
+		range.addAll(blocks);
+		rebuildSums();
+	}
+
+	/**
+	 * Appends a line to the last of the given blocks, adding a new block if it is full.
+	 *
+	 * @param blocks the blocks
+	 * @param block the last block
+	 * @param blockSize the number of lines after which a block is full
+	 * @param length the length of the line
+	 * @param delimiter the delimiter index of the line
+	 * @return the block to which the next line is to be appended
+	 */
+	private static Block append(List<Block> blocks, Block block, int blockSize, int length, byte delimiter) {
+		if (block.fLineCount == blockSize) {
+			block= new Block();
+			blocks.add(block);
+		}
+		block.append(length, delimiter);
+		return block;
+	}
+
+	/**
+	 * Returns the index of the block containing the given offset. If the offset is between two
+	 * blocks, the block starting at <code>offset</code> is returned. The last block is returned
+	 * if <code>offset</code> is equal to the text length.
+	 *
+	 * @param offset the offset
+	 * @return the index of the block starting at or containing <code>offset</code>
+	 * @throws BadLocationException if the offset is invalid
+	 */
+	private int blockByOffset(int offset) throws BadLocationException {
+		if (offset < 0 || offset > fTextLength)
+			throw new BadLocationException();
+		return Math.min(search(fLengthSums, offset), fBlocks.size() - 1);
+	}
+
+	/**
+	 * Returns the index of the block containing the given line.
+	 *
+	 * @param line the line
+	 * @return the index of the block containing <code>line</code>
+	 * @throws BadLocationException if the line is invalid
+	 */
+	private int blockByLine(int line) throws BadLocationException {
+		if (line < 0 || line >= fLineCount)
+			throw new BadLocationException();
+		return search(fLineCountSums, line);
+	}
+
+	private int getPureLength(Block block, int index) {
+		String delimiter= fDelimiterTable[block.fDelimiters[index]];
+		return block.getLineLength(index) - (delimiter != null ? delimiter.length() : 0);
+	}
+
+	private byte getDelimiterIndex(String delimiter) {
+		for (int i= 1; i < fDelimiterTable.length; i++) {
+			if (fDelimiterTable[i].equals(delimiter))
+				return (byte) i;
+		}
+		fDelimiterTable= Arrays.copyOf(fDelimiterTable, fDelimiterTable.length + 1);
+		fDelimiterTable[fDelimiterTable.length - 1]= delimiter;
+		return (byte) (fDelimiterTable.length - 1);
+	}
+
+	private void rebuildSums() {
+		int size= fBlocks.size();
+		int[] lengthSums= new int[size + 1];
+		int[] lineCountSums= new int[size + 1];
+		int lineCount= 0;
+		for (int i= 0; i < size; i++) {
+			Block block= fBlocks.get(i);
+			lengthSums[i + 1]= block.fLength;
+			lineCountSums[i + 1]= block.fLineCount;
+			lineCount += block.fLineCount;
+		}
+		for (int i= 1; i <= size; i++) {
+			int parent= i + (i & -i);
+			if (parent <= size) {
+				lengthSums[parent] += lengthSums[i];
+				lineCountSums[parent] += lineCountSums[i];
+			}
+		}
+		fLengthSums= lengthSums;
+		fLineCountSums= lineCountSums;
+		fLineCount= lineCount;
+	}
+
+	/**
+	 * Returns the sum of the first <code>count</code> values of the given Fenwick tree.
+	 *
+	 * @param tree the Fenwick tree
+	 * @param count the number of values
+	 * @return the sum
+	 */
+	private static int prefixSum(int[] tree, int count) {
+		int sum= 0;
+		for (int i= count; i > 0; i-= i & -i)
+			sum += tree[i];
+		return sum;
+	}
+
+	/**
+	 * Adds the given delta to a value of the given Fenwick tree.
+	 *
+	 * @param tree the Fenwick tree
+	 * @param index the index of the value
+	 * @param delta the delta
+	 */
+	private static void add(int[] tree, int index, int delta) {
+		for (int i= index + 1; i < tree.length; i+= i & -i)
+			tree[i] += delta;
+	}
+
+	/**
+	 * Returns the largest number of leading values of the given Fenwick tree whose sum is not
+	 * greater than the given value. All values must be non-negative.
+	 *
+	 * @param tree the Fenwick tree
+	 * @param value the value
+	 * @return the number of leading values summing up to at most <code>value</code>
+	 */
+	private static int search(int[] tree, int value) {
+		int count= 0;
+		for (int step= Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1) {
+			int next= count + step;
+			if (next < tree.length && tree[next] <= value) {
+				count= next;
+				value -= tree[next];
+			}
+		}
+		return count;
+	}
+}
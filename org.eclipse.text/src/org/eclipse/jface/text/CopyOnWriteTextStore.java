@@ -24,13 +24,17 @@ import org.eclipse.core.runtime.Assert;
  * supplied in the constructor.
  * </p>
  * <p>
+ * Snapshots of the unmodifiable content are free. Snapshots of the modifiable store are delegated
+ * to it if it is an {@link ITextStoreExtension}, otherwise its content is copied.
+ * </p>
+ * <p>
  * This class is not intended to be subclassed.
  * </p>
  *
  * @since 3.2
  * @noextend This class is not intended to be subclassed by clients.
  */
-public class CopyOnWriteTextStore implements ITextStore {
+public class CopyOnWriteTextStore implements ITextStore, ITextStoreExtension, ITextStoreExtension2, ITextStoreExtension3 {
 
 	/**
 	 * An unmodifiable String based text store. It is not possible to modify the initial content.
@@ -99,6 +103,41 @@ public class CopyOnWriteTextStore implements ITextStore {
 
 	}
 
+	/**
+	 * A character sequence view of a text store which does not provide one itself.
+	 *
+	 * @since 3.8
+	 */
+	private static class TextStoreSequence implements CharSequence {
+
+		/** The viewed text store. */
+		private final ITextStore fStore;
+
+		private TextStoreSequence(ITextStore store) {
+			fStore= store;
+		}
+
+		@Override
+		public int length() {
+			return fStore.getLength();
+		}
+
+		@Override
+		public char charAt(int index) {
+			return fStore.get(index);
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			return fStore.get(start, end - start);
+		}
+
+		@Override
+		public String toString() {
+			return fStore.get(0, fStore.getLength());
+		}
+	}
+
 	/** The underlying "real" text store */
 	protected ITextStore fTextStore= new StringTextStore();
 
@@ -128,6 +167,21 @@ public class CopyOnWriteTextStore implements ITextStore {
 		return fTextStore.get(offset, length);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @since 3.8
+	 */
+	@Override
+	public void getChars(int offset, int length, char[] destination, int destinationOffset) {
+		if (fTextStore instanceof StringTextStore)
+			((StringTextStore) fTextStore).fText.getChars(offset, offset + length, destination, destinationOffset);
+		else if (fTextStore instanceof ITextStoreExtension3)
+			((ITextStoreExtension3) fTextStore).getChars(offset, length, destination, destinationOffset);
+		else
+			fTextStore.get(offset, length).getChars(0, length, destination, destinationOffset);
+	}
+
 	@Override
 	public int getLength() {
 		return fTextStore.getLength();
@@ -149,4 +203,55 @@ public class CopyOnWriteTextStore implements ITextStore {
 		fModifiableTextStore.set(""); //$NON-NLS-1$
 	}
 
+	/**
+	 * Replaces the content of this text store with the content of the given unmodifiable text
+	 * store. The given text store is only read from. Upon first modification attempt, its content
+	 * is copied into the modifiable text store.
+	 * <p>
+	 * This allows to back the initial content by something else than a <code>String</code>, e.g.
+	 * a lazily decoded file.
+	 * </p>
+	 *
+	 * @param unmodifiableTextStore the text store providing the new content, may not be
+	 *            <code>null</code>
+	 * @since 3.8
+	 */
+	public void setUnmodifiableTextStore(ITextStore unmodifiableTextStore) {
+		Assert.isNotNull(unmodifiableTextStore);
+		fTextStore= unmodifiableTextStore;
+		fModifiableTextStore.set(""); //$NON-NLS-1$
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @since 3.8
+	 */
+	@Override
+	public ITextStore getSnapshot() {
+		if (fTextStore != fModifiableTextStore)
+			return fTextStore;
+		if (fTextStore instanceof ITextStoreExtension)
+			return ((ITextStoreExtension) fTextStore).getSnapshot();
+		return new StringTextStore(fTextStore.get(0, fTextStore.getLength()));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * As long as this text store has not been modified, the initial <code>String</code> is
+	 * returned.
+	 * </p>
+	 *
+	 * @since 3.8
+	 */
+	@Override
+	public CharSequence getCharSequence() {
+		if (fTextStore instanceof StringTextStore)
+			return ((StringTextStore) fTextStore).fText;
+		if (fTextStore instanceof ITextStoreExtension2)
+			return ((ITextStoreExtension2) fTextStore).getCharSequence();
+		return new TextStoreSequence(fTextStore);
+	}
+
 }
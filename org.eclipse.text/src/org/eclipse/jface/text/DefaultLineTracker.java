@@ -78,4 +78,10 @@ public class DefaultLineTracker extends AbstractLineTracker {
 
 		return null;
 	}
+
+	@Override
+	boolean hasDefaultLineDelimiters() {
+		// subclasses may find the delimiters differently
+		return getClass() == DefaultLineTracker.class;
+	}
 }
@@ -41,6 +41,11 @@ package org.eclipse.jface.text;
  * This class can be used as is or be adapted by subclasses. Fields are protected to allow
  * subclasses direct access. Because of the frequency with which position updaters are used this is
  * a performance decision.
+ * <p>
+ * For position categories which {@link AbstractDocument#addPositionCategory(String, boolean) use
+ * an interval tree}, only the positions which end at or after the offset of the change are
+ * investigated.
+ * </p>
  */
 public class DefaultPositionUpdater implements IPositionUpdater {
 
@@ -209,10 +214,14 @@ public class DefaultPositionUpdater implements IPositionUpdater {
 
 			fOffset= event.getOffset();
 			fLength= event.getLength();
-			fReplaceLength= (event.getText() == null ? 0 : event.getText().length());
+			fReplaceLength= event.getTextLength();
 			fDocument= event.getDocument();
 
-			Position[] category= fDocument.getPositions(fCategory);
+			Position[] category;
+			if (fDocument instanceof AbstractDocument)
+				category= ((AbstractDocument) fDocument).getPositionsToUpdate(fCategory, fOffset);
+			else
+				category= fDocument.getPositions(fCategory);
 			for (Position element : category) {
 
 				fPosition= element;
@@ -229,4 +238,78 @@ public class DefaultPositionUpdater implements IPositionUpdater {
 			fDocument= null;
 		}
 	}
+
+	/**
+	 * Adapts the positions to a sequence of changes in one sweep. Each change must end at or
+	 * before the offset of the previous change, hence all changes are given in the coordinates of
+	 * the document before the first change. The result is the same as if {@link #update(DocumentEvent)}
+	 * had been called for each change.
+	 * <p>
+	 * A position is only investigated for the changes which overlap it; the changes which end
+	 * before the position shift it by their accumulated length difference.
+	 * </p>
+	 *
+	 * @param document the document
+	 * @param changes the offset, length and replace length of each change, in the order of the
+	 *            changes
+	 * @param count the number of changes
+	 * @since 3.8
+	 */
+	void update(AbstractDocument document, int[] changes, int count) {
+
+		try {
+
+			fDocument= document;
+
+			// shifts[i] is the length difference of the changes i to count - 1
+			int[] shifts= new int[count + 1];
+			for (int i= count - 1; i >= 0; i--)
+				shifts[i]= shifts[i + 1] + changes[3 * i + 2] - changes[3 * i + 1];
+
+			Position[] category= document.getPositionsToUpdate(fCategory, changes[3 * (count - 1)]);
+			for (Position element : category) {
+
+				fPosition= element;
+
+				// skip the changes behind the position, they are ordered by descending offset
+				int myEnd= Math.max(fPosition.offset, fPosition.offset + fPosition.length - 1);
+				int low= 0;
+				int high= count;
+				while (low < high) {
+					int mid= (low + high) >>> 1;
+					if (changes[3 * mid] > myEnd)
+						low= mid + 1;
+					else
+						high= mid;
+				}
+
+				boolean deleted= false;
+				int i= low;
+				for (; i < count; i++) {
+					fOffset= changes[3 * i];
+					fLength= changes[3 * i + 1];
+					fReplaceLength= changes[3 * i + 2];
+					if (fOffset + fLength <= fPosition.offset)
+						break;
+
+					fOriginalPosition.offset= fPosition.offset;
+					fOriginalPosition.length= fPosition.length;
+
+					if (!notDeleted()) {
+						deleted= true;
+						break;
+					}
+					adaptToReplace();
+				}
+
+				if (!deleted)
+					fPosition.offset += shifts[i];
+			}
+
+		} catch (BadPositionCategoryException x) {
+			// do nothing
+		} finally {
+			fDocument= null;
+		}
+	}
 }
@@ -13,6 +13,8 @@
  *******************************************************************************/
 package org.eclipse.jface.text;
 
+import org.eclipse.core.runtime.Assert;
+
 
 /**
  * Default document implementation. Uses a {@link org.eclipse.jface.text.GapTextStore} wrapped
@@ -42,6 +44,7 @@ package org.eclipse.jface.text;
  *
  * @see org.eclipse.jface.text.GapTextStore
  * @see org.eclipse.jface.text.CopyOnWriteTextStore
+ * @see org.eclipse.jface.text.PieceTableTextStore
  */
 public class Document extends AbstractDocument {
 	/**
@@ -54,6 +57,22 @@ public class Document extends AbstractDocument {
 		completeInitialization();
 	}
 
+	/**
+	 * Creates a new empty document which uses the given text store. This allows to pick a text
+	 * store that suits the expected document size better than the default one, e.g. a
+	 * {@link PieceTableTextStore} for very large documents.
+	 *
+	 * @param textStore the text store to use, must not be <code>null</code>
+	 * @since 3.8
+	 */
+	public Document(ITextStore textStore) {
+		super();
+		Assert.isNotNull(textStore);
+		setTextStore(textStore);
+		setLineTracker(new DefaultLineTracker());
+		completeInitialization();
+	}
+
 	/**
 	 * Creates a new document with the given initial content.
 	 *
@@ -68,6 +87,20 @@ public class Document extends AbstractDocument {
 		completeInitialization();
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * This implementation builds the new text of the affected range in one pass and replaces it
+	 * in the text store at once. The document listeners receive a single event.
+	 * </p>
+	 *
+	 * @since 3.8
+	 */
+	@Override
+	public void replace(int[] offsets, int[] lengths, String[] texts) throws BadLocationException {
+		replaceInOnePass(offsets, lengths, texts);
+	}
+
 	@Override
 	public boolean isLineInformationRepairNeeded(int offset, int length, String text) throws BadLocationException {
 		if ((0 > offset) || (0 > length) || (offset + length > getLength()))
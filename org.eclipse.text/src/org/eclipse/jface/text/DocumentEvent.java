@@ -120,6 +120,18 @@ public class DocumentEvent {
 		return fText;
 	}
 
+	/**
+	 * Returns the length of the text that has been inserted. Clients which are only interested in
+	 * the length should call this method, since subclasses may compute the text on demand.
+	 *
+	 * @return the length of the inserted text, <code>0</code> if no text has been inserted
+	 * @since 3.8
+	 */
+	public int getTextLength() {
+		String text= getText();
+		return text == null ? 0 : text.length();
+	}
+
 	/**
 	 * Returns the document's modification stamp at the
 	 * time when this event was sent.
@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.text;
+
+import java.util.Arrays;
+
+
+/**
+ * An immutable snapshot of a document, see {@link IDocumentExtension5#getSnapshot()}.
+ * <p>
+ * The snapshot shares the text store snapshot it is created with. Its line information is
+ * computed from its content on first access, i.e. in the thread which reads the snapshot and not
+ * in the one which takes it.
+ * </p>
+ * <p>
+ * The snapshot is shared by all clients which ask the document for one until the document changes.
+ * Everything which would modify it, including adding positions, position categories or updaters
+ * and setting document partitioners, throws an <code>UnsupportedOperationException</code>.
+ * </p>
+ *
+ * @since 3.8
+ */
+final class DocumentSnapshot extends AbstractDocument {
+
+	/** The legal line delimiters of the document. */
+	private final String[] fLegalLineDelimiters;
+	/** The modification stamp of the document. */
+	private final long fModificationStamp;
+	/** The snapshot of the document's text store. */
+	private final ITextStore fTextStore;
+	/** The line tracker, <code>null</code> until first accessed. */
+	private volatile ILineTracker fLineTracker;
+	/** Tells whether the snapshot is initialized and must not be modified any longer. */
+	private final boolean fIsInitialized;
+
+	/**
+	 * Creates a new document snapshot.
+	 *
+	 * @param store the snapshot of the document's text store, must not be modified
+	 * @param legalLineDelimiters the legal line delimiters of the document
+	 * @param defaultLineDelimiter the default line delimiter of the document
+	 * @param modificationStamp the modification stamp of the document
+	 */
+	DocumentSnapshot(ITextStore store, String[] legalLineDelimiters, String defaultLineDelimiter, long modificationStamp) {
+		super();
+		fLegalLineDelimiters= legalLineDelimiters;
+		fModificationStamp= modificationStamp;
+		fTextStore= store;
+		setTextStore(store);
+		completeInitialization();
+		setInitialLineDelimiter(defaultLineDelimiter);
+		fIsInitialized= true;
+	}
+
+	@Override
+	protected ITextStore getStore() {
+		return fTextStore;
+	}
+
+	@Override
+	protected ILineTracker getTracker() {
+		ILineTracker tracker= fLineTracker;
+		if (tracker == null) {
+			synchronized (this) {
+				tracker= fLineTracker;
+				if (tracker == null) {
+					if (Arrays.equals(fLegalLineDelimiters, DefaultLineTracker.DELIMITERS))
+						tracker= new DefaultLineTracker();
+					else
+						tracker= new ConfigurableLineTracker(fLegalLineDelimiters);
+					if (tracker instanceof AbstractLineTracker)
+						((AbstractLineTracker) tracker).set(fTextStore);
+					else
+						tracker.set(fTextStore.get(0, fTextStore.getLength()));
+					fLineTracker= tracker;
+				}
+			}
+		}
+		return tracker;
+	}
+
+	@Override
+	public String[] getLegalLineDelimiters() {
+		return TextUtilities.copy(fLegalLineDelimiters);
+	}
+
+	@Override
+	public long getModificationStamp() {
+		return fModificationStamp;
+	}
+
+	@Override
+	public IDocument getSnapshot() {
+		return this;
+	}
+
+	@Override
+	public void replace(int pos, int length, String text, long modificationStamp) throws BadLocationException {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void replace(int[] offsets, int[] lengths, String[] texts) throws BadLocationException {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void set(String text, long modificationStamp) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	protected void set(ITextStore textStore, long modificationStamp) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void repairLineInformation() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void setInitialLineDelimiter(String lineDelimiter) {
+		checkNotInitialized();
+		super.setInitialLineDelimiter(lineDelimiter);
+	}
+
+	@Override
+	public void addPosition(String category, Position position) throws BadLocationException, BadPositionCategoryException {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void addPositionCategory(String category, boolean useIntervalTree) {
+		checkNotInitialized();
+		super.addPositionCategory(category, useIntervalTree);
+	}
+
+	@Override
+	public void removePositionCategory(String category) throws BadPositionCategoryException {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void insertPositionUpdater(IPositionUpdater updater, int index) {
+		checkNotInitialized();
+		super.insertPositionUpdater(updater, index);
+	}
+
+	@Override
+	public void removePositionUpdater(IPositionUpdater updater) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void setDocumentPartitioner(String partitioning, IDocumentPartitioner partitioner) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public DocumentRewriteSession startRewriteSession(DocumentRewriteSessionType sessionType) {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Throws an <code>UnsupportedOperationException</code> once the snapshot is initialized.
+	 */
+	private void checkNotInitialized() {
+		if (fIsInitialized)
+			throw new UnsupportedOperationException();
+	}
+}
@@ -80,6 +80,13 @@ public class FindReplaceDocumentAdapter implements CharSequence {
 	 */
 	private int fRetainCaseMode;
 
+	/**
+	 * The view of the document's content read by the matcher while it searches, or
+	 * <code>null</code> if the document is read character by character.
+	 * @since 3.8
+	 */
+	private CharSequence fContent;
+
 	/**
 	 * Constructs a new find replace document adapter.
 	 *
@@ -221,6 +228,9 @@ public class FindReplaceDocumentAdapter implements CharSequence {
 		}
 
 		if (operationCode != REPLACE) {
+			// the document is not modified while searching, let the matcher read its text store directly
+			if (fDocument instanceof AbstractDocument)
+				fContent= ((AbstractDocument) fDocument).getCharSequence();
 			try {
 				if (forwardSearch) {
 
@@ -256,6 +266,8 @@ public class FindReplaceDocumentAdapter implements CharSequence {
 			} catch (StackOverflowError e) {
 				String message= TextMessages.getString("FindReplaceDocumentAdapter.patternTooComplex"); //$NON-NLS-1$
 				throw new PatternSyntaxException(message, findString, -1);
+			} finally {
+				fContent= null;
 			}
 		}
 
@@ -611,11 +623,17 @@ public class FindReplaceDocumentAdapter implements CharSequence {
 
 	@Override
 	public int length() {
+		CharSequence content= fContent;
+		if (content != null)
+			return content.length();
 		return fDocument.getLength();
 	}
 
 	@Override
 	public char charAt(int index) {
+		CharSequence content= fContent;
+		if (content != null)
+			return content.charAt(index);
 		try {
 			return fDocument.getChar(index);
 		} catch (BadLocationException e) {
@@ -625,6 +643,9 @@ public class FindReplaceDocumentAdapter implements CharSequence {
 
 	@Override
 	public CharSequence subSequence(int start, int end) {
+		CharSequence content= fContent;
+		if (content != null)
+			return content.subSequence(start, end);
 		try {
 			return fDocument.get(start, end - start);
 		} catch (BadLocationException e) {
@@ -39,7 +39,59 @@ import org.eclipse.core.runtime.Assert;
  * @see CopyOnWriteTextStore for a copy-on-write text store wrapper
  * @noextend This class is not intended to be subclassed by clients.
  */
-public class GapTextStore implements ITextStore {
+public class GapTextStore implements ITextStore, ITextStoreExtension2, ITextStoreExtension3 {
+	/**
+	 * A character sequence view of the content, reading the characters before and after the gap
+	 * directly from the content array.
+	 *
+	 * @since 3.8
+	 */
+	private static final class ContentSequence implements CharSequence {
+		/** The content array at the time the view was created. */
+		private final char[] fChars;
+		/** The start index of the gap. */
+		private final int fStart;
+		/** The size of the gap. */
+		private final int fSize;
+
+		ContentSequence(char[] chars, int gapStart, int gapEnd) {
+			fChars= chars;
+			fStart= gapStart;
+			fSize= gapEnd - gapStart;
+		}
+
+		@Override
+		public int length() {
+			return fChars.length - fSize;
+		}
+
+		@Override
+		public char charAt(int index) {
+			if (index < fStart)
+				return fChars[index];
+			return fChars[index + fSize];
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			if (start < 0 || start > end || end > length())
+				throw new IndexOutOfBoundsException();
+			if (end <= fStart)
+				return new String(fChars, start, end - start);
+			if (fStart <= start)
+				return new String(fChars, start + fSize, end - start);
+			StringBuilder buf= new StringBuilder(end - start);
+			buf.append(fChars, start, fStart - start);
+			buf.append(fChars, fStart + fSize, end - fStart);
+			return buf.toString();
+		}
+
+		@Override
+		public String toString() {
+			return subSequence(0, length()).toString();
+		}
+	}
+
 	/**
 	 * The minimum gap size allocated when re-allocation occurs.
 	 * @since 3.3
@@ -165,6 +217,28 @@ public class GapTextStore implements ITextStore {
 		return buf.toString();
 	}
 
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @since 3.8
+	 */
+	@Override
+	public final void getChars(int offset, int length, char[] destination, int destinationOffset) {
+		if (offset < 0 || length < 0 || offset + length > getLength())
+			throw new IndexOutOfBoundsException();
+
+		int end= offset + length;
+		if (end <= fGapStart) {
+			System.arraycopy(fContent, offset, destination, destinationOffset, length);
+		} else if (fGapStart <= offset) {
+			System.arraycopy(fContent, offset + gapSize(), destination, destinationOffset, length);
+		} else {
+			int before= fGapStart - offset;
+			System.arraycopy(fContent, offset, destination, destinationOffset, before);
+			System.arraycopy(fContent, fGapEnd, destination, destinationOffset + before, length - before);
+		}
+	}
+
 	@Override
 	public final int getLength() {
 		return fContent.length - gapSize();
@@ -353,6 +427,19 @@ public class GapTextStore implements ITextStore {
 		return fGapEnd - fGapStart;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The returned sequence reads the characters before and after the gap directly.
+	 * </p>
+	 *
+	 * @since 3.8
+	 */
+	@Override
+	public CharSequence getCharSequence() {
+		return new ContentSequence(fContent, fGapStart, fGapEnd);
+	}
+
 	/**
 	 * Returns a copy of the content of this text store.
 	 * For internal use only.
@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.text;
+
+/**
+ * Extension interface for {@link org.eclipse.jface.text.IDocument}. It adds the
+ * concept of document snapshots and allows to replace several ranges of the
+ * document at once.
+ * <p>
+ * A snapshot is an immutable view of the document content at the time it has been
+ * taken. Background jobs can read a snapshot without holding any lock while the
+ * document keeps changing, and detect that their results are stale by comparing
+ * the snapshot's modification stamp with the document's.
+ * </p>
+ *
+ * @see IDocumentExtension4#getModificationStamp()
+ * @since 3.8
+ */
+public interface IDocumentExtension5 {
+
+	/**
+	 * Returns a snapshot of this document. The snapshot has the content, the legal
+	 * line delimiters, the default line delimiter and the modification stamp this
+	 * document has at the time of the call. Later changes of this document do not
+	 * affect the snapshot.
+	 * <p>
+	 * This method must be called by the thread which modifies this document, or,
+	 * if this document is an {@link ISynchronizable} with a lock object, while
+	 * holding that lock. The returned snapshot can then be read from any thread
+	 * without synchronization.
+	 * </p>
+	 * <p>
+	 * The snapshot is shared by all callers until this document changes, so it
+	 * cannot be modified: all methods which would change its content, its line
+	 * information, its positions, its position categories or updaters, or its
+	 * document partitioners throw an <code>UnsupportedOperationException</code>.
+	 * In particular, no document partitioner can be connected to a snapshot.
+	 * </p>
+	 *
+	 * @return a snapshot of this document
+	 */
+	IDocument getSnapshot();
+
+	/**
+	 * Replaces several non-overlapping ranges of this document. The ranges are
+	 * given in ascending order and in the coordinates of the document before the
+	 * replace, i.e. each range must start at or after the end of the previous one.
+	 * <p>
+	 * The result is the same as replacing the ranges one after another, starting
+	 * with the last one. Positions are updated accordingly. Implementations may
+	 * however perform the replaces in one pass and inform the document listeners
+	 * with a single event for a group of ranges which are close to each other.
+	 * Such an event covers the text from the start of the first range of the group
+	 * to the end of its last range.
+	 * </p>
+	 *
+	 * @param offsets the offsets of the ranges to replace
+	 * @param lengths the lengths of the ranges to replace
+	 * @param texts the texts which replace the ranges, <code>null</code> stands
+	 *            for the empty text
+	 * @throws BadLocationException if the ranges are invalid in this document or
+	 *             not given in ascending order
+	 */
+	void replace(int[] offsets, int[] lengths, String[] texts) throws BadLocationException;
+}
@@ -0,0 +1,36 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.text;
+
+/**
+ * Extension interface for {@link org.eclipse.jface.text.ITextStore}. Adds the
+ * concept of snapshots.
+ *
+ * @since 3.8
+ */
+public interface ITextStoreExtension {
+
+	/**
+	 * Returns a text store with the current content of this text store. Later
+	 * modifications of this text store do not affect the returned text store.
+	 * <p>
+	 * The returned text store must not be modified. It can be read from any
+	 * thread without synchronization, also while this text store is being
+	 * modified.
+	 * </p>
+	 *
+	 * @return a snapshot of this text store
+	 */
+	ITextStore getSnapshot();
+}
@@ -0,0 +1,36 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.text;
+
+/**
+ * Extension interface for {@link org.eclipse.jface.text.ITextStore}. Adds a
+ * character sequence view of the content.
+ *
+ * @since 3.8
+ */
+public interface ITextStoreExtension2 {
+
+	/**
+	 * Returns a character sequence which reads the content of this text store
+	 * without copying it, e.g. to run a regular expression on it.
+	 * <p>
+	 * The returned sequence is only valid until this text store is modified
+	 * the next time. It does not check whether it is still valid and must not
+	 * be used afterwards.
+	 * </p>
+	 *
+	 * @return a character sequence view of the content of this text store
+	 */
+	CharSequence getCharSequence();
+}
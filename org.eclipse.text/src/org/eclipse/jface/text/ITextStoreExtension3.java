@@ -0,0 +1,35 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.text;
+
+/**
+ * Extension interface for {@link org.eclipse.jface.text.ITextStore}. Adds a
+ * way to copy a range of the content into a character array.
+ *
+ * @since 3.8
+ */
+public interface ITextStoreExtension3 {
+
+	/**
+	 * Copies the characters of the given range into the given array without
+	 * creating intermediate strings.
+	 *
+	 * @param offset the offset of the first character to copy
+	 * @param length the number of characters to copy
+	 * @param destination the array to copy the characters into
+	 * @param destinationOffset the index in <code>destination</code> at which
+	 *            the first character is stored
+	 */
+	void getChars(int offset, int length, char[] destination, int destinationOffset);
+}
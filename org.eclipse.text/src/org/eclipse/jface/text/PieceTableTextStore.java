@@ -0,0 +1,420 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.text;
+
+
+/**
+ * A piece table text store intended for very large documents. The content passed to
+ * {@link #set(String)} is kept as read-only <em>original buffer</em> and is never copied; all
+ * inserted text is appended to an append-only <em>add buffer</em> which is allocated in blocks.
+ * The document content is described by a sequence of pieces, each of which references a range of
+ * either buffer. The pieces are held in a balanced binary tree (a treap) whose nodes know the
+ * length of their subtree.
+ * <p>
+ * <strong>Performance:</strong> Let <var>p</var> be the number of pieces, which grows by at most
+ * two with every change. {@link #replace(int, int, String)} performs in <i>O(log p)</i> plus the
+ * cost of appending the new text to the add buffer, {@link #get(int)} in <i>O(log p)</i> (and in
+ * <i>O(1)</i> for consecutive accesses inside the same piece), and
+ * {@linkplain #get(int, int) get(int, <var>length</var>)} in <i>O(log p + length)</i>. Neither
+ * {@link #set(String)} nor any change ever re-allocates or moves existing content, so there are
+ * no heap spikes proportional to the document size.
+ * </p>
+ * <p>
+ * Compared to {@link GapTextStore}, this store trades some constant overhead for typing-style
+ * changes for independence from the distance between consecutive changes and from the document
+ * size.
+ * </p>
+ * <p>
+ * The piece tree is persistent: pieces which are shared with a {@linkplain #getSnapshot()
+ * snapshot} are copied instead of being modified. Taking a snapshot therefore performs in
+ * <i>O(1)</i>.
+ * </p>
+ * <p>
+ * This class is not intended to be subclassed.
+ * </p>
+ *
+ * @see GapTextStore
+ * @since 3.8
+ * @noextend This class is not intended to be subclassed by clients.
+ */
+public class PieceTableTextStore implements ITextStore, ITextStoreExtension, ITextStoreExtension3 {
+
+	/**
+	 * A piece of the document, i.e. a node of the treap.
+	 */
+	private static final class Piece {
+		/** The add buffer block this piece references, <code>null</code> for the original buffer. */
+		final char[] fBlock;
+		/** The start index of this piece inside its buffer. */
+		final int fStart;
+		/** The number of characters of this piece. */
+		int fLength;
+		/** The number of characters of the subtree rooted at this piece. */
+		int fSubtreeLength;
+		/** The treap heap priority. */
+		final int fPriority;
+		/** The generation of the store which may modify this piece. */
+		final int fGeneration;
+		/** The left child. */
+		Piece fLeft;
+		/** The right child. */
+		Piece fRight;
+
+		Piece(char[] block, int start, int length, int priority, int generation) {
+			fBlock= block;
+			fStart= start;
+			fLength= length;
+			fSubtreeLength= length;
+			fPriority= priority;
+			fGeneration= generation;
+		}
+
+		void update() {
+			fSubtreeLength= length(fLeft) + fLength + length(fRight);
+		}
+	}
+
+	/**
+	 * A piece together with its document offset.
+	 */
+	private static final class Cursor {
+		/** The piece. */
+		final Piece fPiece;
+		/** The document offset of the piece. */
+		final int fOffset;
+
+		Cursor(Piece piece, int offset) {
+			fPiece= piece;
+			fOffset= offset;
+		}
+	}
+
+	/** The minimum size of an add buffer block. */
+	private static final int ADD_BLOCK_SIZE= 64 * 1024;
+
+	/** The read-only original buffer. */
+	private String fOriginal= ""; //$NON-NLS-1$
+	/** The add buffer block that is currently being filled. */
+	private char[] fAddBlock;
+	/** The number of used characters in {@link #fAddBlock}. */
+	private int fAddBlockLength;
+	/** The root of the piece tree. */
+	private Piece fRoot;
+	/** The state of the priority generator. */
+	private int fSeed= 0x2545F491;
+	/** The generation of the pieces this store may modify, incremented with every snapshot. */
+	private int fGeneration;
+	/**
+	 * The piece that was last accessed by {@link #get(int)}. Both values are held by one object
+	 * such that snapshots can be read by concurrent threads.
+	 */
+	private Cursor fCursor;
+
+	/**
+	 * Creates a new empty piece table text store.
+	 */
+	public PieceTableTextStore() {
+	}
+
+	@Override
+	public char get(int offset) {
+		Cursor cursor= fCursor;
+		Piece piece= cursor != null ? cursor.fPiece : null;
+		int start= cursor != null ? cursor.fOffset : 0;
+		if (piece == null || offset < start || offset >= start + piece.fLength) {
+			if (offset < 0 || offset >= getLength())
+				throw new IndexOutOfBoundsException();
+			piece= fRoot;
+			start= 0;
+			while (true) {
+				int leftLength= length(piece.fLeft);
+				int relative= offset - start;
+				if (relative < leftLength) {
+					piece= piece.fLeft;
+				} else if (relative < leftLength + piece.fLength) {
+					start += leftLength;
+					break;
+				} else {
+					start += leftLength + piece.fLength;
+					piece= piece.fRight;
+				}
+			}
+			fCursor= new Cursor(piece, start);
+		}
+		return charAt(piece, offset - start);
+	}
+
+	@Override
+	public String get(int offset, int length) {
+		if (length == 0)
+			return ""; //$NON-NLS-1$
+
+		char[] chars= new char[length];
+		copy(fRoot, offset, offset + length, chars, -offset);
+		return new String(chars);
+	}
+
+	@Override
+	public void getChars(int offset, int length, char[] destination, int destinationOffset) {
+		if (offset < 0 || length < 0 || offset + length > getLength())
+			throw new IndexOutOfBoundsException();
+
+		copy(fRoot, offset, offset + length, destination, destinationOffset - offset);
+	}
+
+	@Override
+	public int getLength() {
+		return length(fRoot);
+	}
+
+	@Override
+	public void set(String text) {
+		fOriginal= text != null ? text : ""; //$NON-NLS-1$
+		fAddBlock= null;
+		fAddBlockLength= 0;
+		fRoot= fOriginal.length() > 0 ? new Piece(null, 0, fOriginal.length(), nextPriority(), fGeneration) : null;
+		fCursor= null;
+	}
+
+	@Override
+	public void replace(int offset, int length, String text) {
+		fCursor= null;
+
+		Piece[] split= split(fRoot, offset);
+		Piece left= split[0];
+		Piece right= split[1];
+		if (length > 0)
+			right= split(right, length)[1];
+
+		int textLength= text != null ? text.length() : 0;
+		if (textLength > 0) {
+			Piece last= rightmost(left);
+			if (last != null && fAddBlock != null && last.fBlock == fAddBlock && last.fStart + last.fLength == fAddBlockLength && fAddBlock.length - fAddBlockLength >= textLength) {
+				// typing: the new text directly continues the last piece in the add buffer
+				append(text);
+				left= extendRightmost(left, textLength);
+			} else {
+				int start= append(text);
+				left= merge(left, new Piece(fAddBlock, start, textLength, nextPriority(), fGeneration));
+			}
+		}
+
+		fRoot= merge(left, right);
+	}
+
+	@Override
+	public ITextStore getSnapshot() {
+		// from now on, the current pieces are shared and must not be modified any longer
+		fGeneration++;
+
+		PieceTableTextStore snapshot= new PieceTableTextStore();
+		snapshot.fOriginal= fOriginal;
+		snapshot.fRoot= fRoot;
+		snapshot.fGeneration= fGeneration;
+		return snapshot;
+	}
+
+	/**
+	 * Appends the given text to the add buffer, starting a new block if the current block cannot
+	 * hold it.
+	 *
+	 * @param text the text to append
+	 * @return the start index of the text inside {@link #fAddBlock}
+	 */
+	private int append(String text) {
+		int textLength= text.length();
+		if (fAddBlock == null || fAddBlock.length - fAddBlockLength < textLength) {
+			fAddBlock= new char[Math.max(ADD_BLOCK_SIZE, textLength)];
+			fAddBlockLength= 0;
+		}
+		int start= fAddBlockLength;
+		text.getChars(0, textLength, fAddBlock, start);
+		fAddBlockLength += textLength;
+		return start;
+	}
+
+	private char charAt(Piece piece, int index) {
+		if (piece.fBlock == null)
+			return fOriginal.charAt(piece.fStart + index);
+		return piece.fBlock[piece.fStart + index];
+	}
+
+	/**
+	 * Copies the characters in <code>[from, to)</code> of the given subtree into
+	 * <code>dest</code>.
+	 *
+	 * @param piece the root of the subtree
+	 * @param from the subtree relative start offset
+	 * @param to the subtree relative end offset
+	 * @param dest the destination array
+	 * @param destOffset the index in <code>dest</code> that corresponds to the subtree start
+	 */
+	private void copy(Piece piece, int from, int to, char[] dest, int destOffset) {
+		while (piece != null && from < to) {
+			int leftLength= length(piece.fLeft);
+			if (from < leftLength)
+				copy(piece.fLeft, from, Math.min(to, leftLength), dest, destOffset);
+
+			int pieceFrom= Math.max(from - leftLength, 0);
+			int pieceTo= Math.min(to - leftLength, piece.fLength);
+			if (pieceFrom < pieceTo) {
+				int destPos= destOffset + leftLength + pieceFrom;
+				if (piece.fBlock == null)
+					fOriginal.getChars(piece.fStart + pieceFrom, piece.fStart + pieceTo, dest, destPos);
+				else
+					System.arraycopy(piece.fBlock, piece.fStart + pieceFrom, dest, destPos, pieceTo - pieceFrom);
+			}
+
+			// continue iteratively with the right subtree
+			int skip= leftLength + piece.fLength;
+			from= Math.max(from - skip, 0);
+			to -= skip;
+			destOffset += skip;
+			piece= piece.fRight;
+		}
+	}
+
+	/**
+	 * Splits the given subtree at the given offset, splitting a piece if necessary.
+	 *
+	 * @param piece the root of the subtree
+	 * @param offset the subtree relative offset
+	 * @return the subtrees holding the content before and after <code>offset</code>
+	 */
+	private Piece[] split(Piece piece, int offset) {
+		if (piece == null)
+			return new Piece[] { null, null };
+
+		int leftLength= length(piece.fLeft);
+		if (offset <= leftLength) {
+			Piece[] result= split(piece.fLeft, offset);
+			piece= modifiable(piece);
+			piece.fLeft= result[1];
+			piece.update();
+			result[1]= piece;
+			return result;
+		}
+
+		int pieceEnd= leftLength + piece.fLength;
+		if (offset >= pieceEnd) {
+			Piece[] result= split(piece.fRight, offset - pieceEnd);
+			piece= modifiable(piece);
+			piece.fRight= result[0];
+			piece.update();
+			result[0]= piece;
+			return result;
+		}
+
+		// the offset is inside this piece; the tail takes the place of the piece in the
+		// ancestors' subtree, so its priority must not exceed the one of the piece
+		int head= offset - leftLength;
+		Piece tail= new Piece(piece.fBlock, piece.fStart + head, piece.fLength - head, nextPriority(piece.fPriority), fGeneration);
+		tail.update();
+		tail= merge(tail, piece.fRight);
+		piece= modifiable(piece);
+		piece.fLength= head;
+		piece.fRight= null;
+		piece.update();
+		return new Piece[] { piece, tail };
+	}
+
+	/**
+	 * Concatenates the given subtrees.
+	 *
+	 * @param left the subtree holding the leading content, may be <code>null</code>
+	 * @param right the subtree holding the trailing content, may be <code>null</code>
+	 * @return the root of the concatenation
+	 */
+	private Piece merge(Piece left, Piece right) {
+		if (left == null)
+			return right;
+		if (right == null)
+			return left;
+
+		if (left.fPriority > right.fPriority) {
+			left= modifiable(left);
+			left.fRight= merge(left.fRight, right);
+			left.update();
+			return left;
+		}
+		right= modifiable(right);
+		right.fLeft= merge(left, right.fLeft);
+		right.update();
+		return right;
+	}
+
+	/**
+	 * Returns the given piece if this store may modify it, otherwise a copy of it.
+	 *
+	 * @param piece the piece
+	 * @return a piece that can be modified in place of the given one
+	 */
+	private Piece modifiable(Piece piece) {
+		if (piece.fGeneration == fGeneration)
+			return piece;
+
+		Piece copy= new Piece(piece.fBlock, piece.fStart, piece.fLength, piece.fPriority, fGeneration);
+		copy.fLeft= piece.fLeft;
+		copy.fRight= piece.fRight;
+		copy.fSubtreeLength= piece.fSubtreeLength;
+		return copy;
+	}
+
+	private static Piece rightmost(Piece piece) {
+		if (piece == null)
+			return null;
+		while (piece.fRight != null)
+			piece= piece.fRight;
+		return piece;
+	}
+
+	private Piece extendRightmost(Piece piece, int delta) {
+		piece= modifiable(piece);
+		piece.fSubtreeLength += delta;
+		if (piece.fRight == null)
+			piece.fLength += delta;
+		else
+			piece.fRight= extendRightmost(piece.fRight, delta);
+		return piece;
+	}
+
+	private static int length(Piece piece) {
+		return piece == null ? 0 : piece.fSubtreeLength;
+	}
+
+	/**
+	 * Returns the next pseudo random treap priority (xorshift).
+	 *
+	 * @return the next priority
+	 */
+	private int nextPriority() {
+		int x= fSeed;
+		x ^= x << 13;
+		x ^= x >>> 17;
+		x ^= x << 5;
+		fSeed= x;
+		return x;
+	}
+
+	/**
+	 * Returns the next pseudo random treap priority that is not greater than the given bound.
+	 *
+	 * @param bound the maximal priority
+	 * @return the next priority
+	 */
+	private int nextPriority(int bound) {
+		long range= (long) bound - Integer.MIN_VALUE + 1;
+		return (int) (bound - Math.floorMod((long) nextPriority(), range));
+	}
+}
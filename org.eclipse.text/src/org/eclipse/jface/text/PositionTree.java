@@ -0,0 +1,298 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.text;
+
+import java.lang.reflect.Array;
+import java.util.AbstractList;
+import java.util.List;
+
+
+/**
+ * The positions of a position category held in an augmented interval tree. The tree is a treap
+ * whose in-order sequence is the sequence of positions ordered by offset; every node knows the
+ * size of its subtree and the maximal end offset of the positions in its subtree.
+ * <p>
+ * As a {@link List} the tree can be used wherever {@link AbstractDocument} expects a sorted
+ * position list. Access by index, insertion and removal perform in <i>O(log n)</i>, the queries
+ * for positions ending at or after a given offset in <i>O(log n + k)</i> where <var>k</var> is the
+ * number of reported positions.
+ * </p>
+ * <p>
+ * Positions are modified in place by position updaters. The maximal end offsets of a subtree are
+ * cached and must be {@linkplain #revalidate(int) revalidated} after the positions have been
+ * modified. The offsets themselves are always read from the positions.
+ * </p>
+ *
+ * @since 3.8
+ */
+final class PositionTree extends AbstractList<Position> {
+
+	/**
+	 * A node of the treap.
+	 */
+	private static final class Node {
+		/** The position of this node. */
+		final Position fPosition;
+		/** The treap heap priority. */
+		final int fPriority;
+		/** The number of positions of the subtree rooted at this node. */
+		int fSize;
+		/** The maximal end offset of the positions of the subtree rooted at this node. */
+		int fMaxEnd;
+		/** The left child. */
+		Node fLeft;
+		/** The right child. */
+		Node fRight;
+
+		Node(Position position, int priority) {
+			fPosition= position;
+			fPriority= priority;
+			update();
+		}
+
+		void update() {
+			fSize= size(fLeft) + 1 + size(fRight);
+			int maxEnd= fPosition.offset + fPosition.length;
+			if (fLeft != null && fLeft.fMaxEnd > maxEnd)
+				maxEnd= fLeft.fMaxEnd;
+			if (fRight != null && fRight.fMaxEnd > maxEnd)
+				maxEnd= fRight.fMaxEnd;
+			fMaxEnd= maxEnd;
+		}
+	}
+
+	/** The root of the treap. */
+	private Node fRoot;
+	/** The state of the priority generator. */
+	private int fSeed= 0x2545F491;
+
+
+	@Override
+	public Position get(int index) {
+		checkIndex(index, size());
+
+		Node node= fRoot;
+		while (true) {
+			int leftSize= size(node.fLeft);
+			if (index < leftSize) {
+				node= node.fLeft;
+			} else if (index == leftSize) {
+				return node.fPosition;
+			} else {
+				index -= leftSize + 1;
+				node= node.fRight;
+			}
+		}
+	}
+
+	@Override
+	public int size() {
+		return size(fRoot);
+	}
+
+	@Override
+	public void add(int index, Position position) {
+		checkIndex(index, size() + 1);
+
+		Node[] split= split(fRoot, index);
+		fRoot= merge(merge(split[0], new Node(position, nextPriority())), split[1]);
+		modCount++;
+	}
+
+	@Override
+	public Position remove(int index) {
+		checkIndex(index, size());
+
+		Node[] split= split(fRoot, index);
+		Node[] tail= split(split[1], 1);
+		fRoot= merge(split[0], tail[1]);
+		modCount++;
+		return tail[0].fPosition;
+	}
+
+	@Override
+	public void clear() {
+		fRoot= null;
+		modCount++;
+	}
+
+	@Override
+	public Object[] toArray() {
+		Object[] result= new Object[size()];
+		fill(fRoot, result, 0);
+		return result;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T[] toArray(T[] a) {
+		int size= size();
+		if (a.length < size)
+			a= (T[]) Array.newInstance(a.getClass().getComponentType(), size);
+		fill(fRoot, a, 0);
+		if (a.length > size)
+			a[size]= null;
+		return a;
+	}
+
+	/**
+	 * Returns the index at which a position with the given offset would be inserted, i.e. the
+	 * index of the first position whose offset is not smaller than the given offset.
+	 *
+	 * @param offset the offset
+	 * @return the index of the first position at or after <code>offset</code>
+	 */
+	public int computeIndex(int offset) {
+		int index= 0;
+		Node node= fRoot;
+		while (node != null) {
+			if (node.fPosition.offset < offset) {
+				index += size(node.fLeft) + 1;
+				node= node.fRight;
+			} else {
+				node= node.fLeft;
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Adds all positions whose end offset is not smaller than <code>minEnd</code> and whose
+	 * offset is not greater than <code>maxOffset</code> to the given list, ordered by offset.
+	 *
+	 * @param minEnd the minimal end offset
+	 * @param maxOffset the maximal offset
+	 * @param result the list to which the positions are added
+	 */
+	public void collect(int minEnd, int maxOffset, List<Position> result) {
+		collect(fRoot, minEnd, maxOffset, result);
+	}
+
+	private static void collect(Node node, int minEnd, int maxOffset, List<Position> result) {
+		while (node != null && node.fMaxEnd >= minEnd) {
+			collect(node.fLeft, minEnd, maxOffset, result);
+
+			Position position= node.fPosition;
+			if (position.offset > maxOffset)
+				return;
+			if (position.offset + position.length >= minEnd)
+				result.add(position);
+
+			node= node.fRight;
+		}
+	}
+
+	/**
+	 * Recomputes the cached end offsets after positions have been modified. Only positions
+	 * whose end offset was not smaller than the given offset before and after the modification
+	 * are assumed to have been modified.
+	 *
+	 * @param offset the smallest end offset of the modified positions, <code>0</code> if any
+	 *            position might have been modified
+	 */
+	public void revalidate(int offset) {
+		revalidate(fRoot, offset);
+	}
+
+	private static void revalidate(Node node, int offset) {
+		if (node == null || node.fMaxEnd < offset)
+			return;
+		revalidate(node.fLeft, offset);
+		revalidate(node.fRight, offset);
+		node.update();
+	}
+
+	/**
+	 * Splits the given subtree such that the first subtree contains the first <code>index</code>
+	 * positions.
+	 *
+	 * @param node the root of the subtree
+	 * @param index the subtree relative index
+	 * @return the subtrees holding the positions before and at or after <code>index</code>
+	 */
+	private static Node[] split(Node node, int index) {
+		if (node == null)
+			return new Node[] { null, null };
+
+		int leftSize= size(node.fLeft);
+		if (index <= leftSize) {
+			Node[] result= split(node.fLeft, index);
+			node.fLeft= result[1];
+			node.update();
+			result[1]= node;
+			return result;
+		}
+
+		Node[] result= split(node.fRight, index - leftSize - 1);
+		node.fRight= result[0];
+		node.update();
+		result[0]= node;
+		return result;
+	}
+
+	/**
+	 * Concatenates the given subtrees.
+	 *
+	 * @param left the subtree holding the leading positions, may be <code>null</code>
+	 * @param right the subtree holding the trailing positions, may be <code>null</code>
+	 * @return the root of the concatenation
+	 */
+	private static Node merge(Node left, Node right) {
+		if (left == null)
+			return right;
+		if (right == null)
+			return left;
+
+		if (left.fPriority > right.fPriority) {
+			left.fRight= merge(left.fRight, right);
+			left.update();
+			return left;
+		}
+		right.fLeft= merge(left, right.fLeft);
+		right.update();
+		return right;
+	}
+
+	private static int fill(Node node, Object[] dest, int index) {
+		while (node != null) {
+			index= fill(node.fLeft, dest, index);
+			dest[index++]= node.fPosition;
+			node= node.fRight;
+		}
+		return index;
+	}
+
+	private static int size(Node node) {
+		return node == null ? 0 : node.fSize;
+	}
+
+	private static void checkIndex(int index, int bound) {
+		if (index < 0 || index >= bound)
+			throw new IndexOutOfBoundsException();
+	}
+
+	/**
+	 * Returns the next pseudo random treap priority (xorshift).
+	 *
+	 * @return the next priority
+	 */
+	private int nextPriority() {
+		int x= fSeed;
+		x ^= x << 13;
+		x ^= x >>> 17;
+		x ^= x << 5;
+		fSeed= x;
+		return x;
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -23,15 +23,18 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.core.runtime.Assert;
 
 import org.eclipse.jface.text.AbstractDocument;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.BadPositionCategoryException;
+import org.eclipse.jface.text.DefaultPositionUpdater;
 import org.eclipse.jface.text.DocumentEvent;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.IDocumentListener;
+import org.eclipse.jface.text.IPositionUpdater;
 import org.eclipse.jface.text.ISynchronizable;
 import org.eclipse.jface.text.Position;
 
@@ -43,6 +46,18 @@ import org.eclipse.jface.text.Position;
  * also implements {@link org.eclipse.jface.text.ISynchronizable}. All
  * modifications of the model's internal annotation map are synchronized using
  * the model's lock object.
+ * <p>
+ * By default the positions of the annotations are added to the default position
+ * category of the connected document. An annotation model created with
+ * {@link #AnnotationModel(boolean)} can instead keep them in a position category
+ * of its own which is backed by an interval tree, see
+ * {@link AbstractDocument#addPositionCategory(String, boolean)}. Region queries
+ * via {@link #getAnnotationIterator(int, int, boolean, boolean)} then perform in
+ * <i>O(log n + k)</i> where <var>k</var> is the number of annotations in the region,
+ * no matter how many other positions the document manages. This is the better
+ * choice for models with many annotations, e.g. problems, occurrences or search
+ * matches.
+ * </p>
  */
 public class AnnotationModel implements IAnnotationModel, IAnnotationModelExtension, IAnnotationModelExtension2, ISynchronizable {
 
@@ -247,15 +262,32 @@ public class AnnotationModel implements IAnnotationModel, IAnnotationModelExtens
 
 		@Override
 		public void modelChanged(IAnnotationModel model) {
-			AnnotationModel.this.fireModelChanged(new AnnotationModelEvent(model, true));
+			modelChanged(new AnnotationModelEvent(model, true));
 		}
 
 		@Override
 		public void modelChanged(AnnotationModelEvent event) {
+			synchronized (getLockObject()) {
+				if (fBatchDepth > 0) {
+					getAnnotationModelEvent().merge(event);
+					return;
+				}
+			}
 			AnnotationModel.this.fireModelChanged(event);
 		}
 	}
 
+	/**
+	 * The prefix of the position categories of annotation models which use an interval tree.
+	 * @since 3.8
+	 */
+	private static final String POSITION_CATEGORY_PREFIX= "__annotation_model_positions_"; //$NON-NLS-1$
+	/**
+	 * The counter used to make the position categories of annotation models unique.
+	 * @since 3.8
+	 */
+	private static final AtomicInteger fgPositionCategoryCounter= new AtomicInteger();
+
 	/**
 	 * The list of managed annotations
 	 * @deprecated since 3.0 use <code>getAnnotationMap</code> instead
@@ -297,12 +329,54 @@ public class AnnotationModel implements IAnnotationModel, IAnnotationModelExtens
 	 * @since 3.0
 	 */
 	private Object fModificationStamp= new Object();
+	/**
+	 * Tells whether the positions are managed in a position category of this model that is backed
+	 * by an interval tree.
+	 * @since 3.8
+	 */
+	private final boolean fUseIntervalTree;
+	/**
+	 * The position category of this model in the connected document, or <code>null</code> if the
+	 * positions are added to the default position category.
+	 * @since 3.8
+	 */
+	private String fPositionCategory;
+	/**
+	 * The position updater of {@link #fPositionCategory}.
+	 * @since 3.8
+	 */
+	private IPositionUpdater fPositionUpdater;
+	/**
+	 * The number of open batches.
+	 * @since 3.8
+	 */
+	private int fBatchDepth;
 
 	/**
 	 * Creates a new annotation model. The annotation is empty, i.e. does not
 	 * manage any annotations and is not connected to any document.
 	 */
 	public AnnotationModel() {
+		this(false);
+	}
+
+	/**
+	 * Creates a new annotation model. The annotation is empty, i.e. does not
+	 * manage any annotations and is not connected to any document.
+	 * <p>
+	 * If <code>useIntervalTree</code> is <code>true</code> and the model gets
+	 * connected to an {@link AbstractDocument}, the positions of the annotations
+	 * are not added to the default position category of the document but to a
+	 * position category of this model which is backed by an interval tree.
+	 * </p>
+	 *
+	 * @param useIntervalTree <code>true</code> to manage the positions in an
+	 *            interval tree of this model, <code>false</code> to add them to
+	 *            the default position category of the document
+	 * @since 3.8
+	 */
+	public AnnotationModel(boolean useIntervalTree) {
+		fUseIntervalTree= useIntervalTree;
 		fAnnotations= new AnnotationMap(10);
 		fPositions= new IdentityHashMap<>(10);
 		fAnnotationModelListeners= new ArrayList<>(2);
@@ -358,6 +432,39 @@ public class AnnotationModel implements IAnnotationModel, IAnnotationModelExtens
     	}
     }
 
+	/**
+	 * Starts a batch of changes. Until the matching call of {@link #endBatch()}, the changes of
+	 * this model and of its attached models are collected in a single annotation model event
+	 * instead of being sent out one by one. This is the preferred way to add, remove, or modify
+	 * many annotations, e.g. all markers produced by a build.
+	 * <p>
+	 * Batches can be nested; the event is sent out when the outermost batch ends.
+	 * </p>
+	 *
+	 * @since 3.8
+	 */
+	public void beginBatch() {
+		synchronized (getLockObject()) {
+			++fBatchDepth;
+		}
+	}
+
+	/**
+	 * Ends a batch of changes started with {@link #beginBatch()}. If this ends the outermost
+	 * batch, all annotation model listeners are informed about the changes of the batch with a
+	 * single annotation model event.
+	 *
+	 * @since 3.8
+	 */
+	public void endBatch() {
+		synchronized (getLockObject()) {
+			Assert.isTrue(fBatchDepth > 0);
+			if (--fBatchDepth > 0)
+				return;
+		}
+		fireModelChanged();
+	}
+
 	@Override
 	public void addAnnotation(Annotation annotation, Position position) {
 		try {
@@ -457,7 +564,16 @@ public class AnnotationModel implements IAnnotationModel, IAnnotationModelExtens
 	 * @throws BadLocationException if the position is not a valid document position
 	 */
 	protected void addPosition(IDocument document, Position position) throws BadLocationException {
-		if (document != null)
+		if (document == null)
+			return;
+
+		if (fPositionCategory != null && document == fDocument) {
+			try {
+				document.addPosition(fPositionCategory, position);
+			} catch (BadPositionCategoryException e) {
+				// can happen if the category has been removed by a client
+			}
+		} else
 			document.addPosition(position);
 	}
 
@@ -471,7 +587,16 @@ public class AnnotationModel implements IAnnotationModel, IAnnotationModelExtens
 	 * @since 3.0
 	 */
 	protected void removePosition(IDocument document, Position position) {
-		if (document != null)
+		if (document == null)
+			return;
+
+		if (fPositionCategory != null && document == fDocument) {
+			try {
+				document.removePosition(fPositionCategory, position);
+			} catch (BadPositionCategoryException e) {
+				// can happen if the category has been removed by a client
+			}
+		} else
 			document.removePosition(position);
 	}
 
@@ -481,6 +606,12 @@ public class AnnotationModel implements IAnnotationModel, IAnnotationModelExtens
 
 		if (fDocument == null) {
 			fDocument= document;
+			if (fUseIntervalTree && document instanceof AbstractDocument) {
+				fPositionCategory= POSITION_CATEGORY_PREFIX + fgPositionCategoryCounter.incrementAndGet();
+				fPositionUpdater= new DefaultPositionUpdater(fPositionCategory);
+				((AbstractDocument) document).addPositionCategory(fPositionCategory, true);
+				document.addPositionUpdater(fPositionUpdater);
+			}
 			Iterator<Position> e= getAnnotationMap().valuesIterator();
 			while (e.hasNext())
 				try {
@@ -535,17 +666,30 @@ public class AnnotationModel implements IAnnotationModel, IAnnotationModelExtens
 				Position p= e.next();
 				removePosition(document, p);
 			}
+			if (fPositionCategory != null) {
+				document.removePositionUpdater(fPositionUpdater);
+				try {
+					document.removePositionCategory(fPositionCategory);
+				} catch (BadPositionCategoryException x) {
+					// has already been removed
+				}
+				fPositionCategory= null;
+				fPositionUpdater= null;
+			}
 			fDocument= null;
 		}
 	}
 
 	/**
-	 * Informs all annotation model listeners that this model has been changed.
+	 * Informs all annotation model listeners that this model has been changed. While a batch is
+	 * open, see {@link #beginBatch()}, the listeners are informed when the batch ends.
 	 */
 	protected void fireModelChanged() {
 		AnnotationModelEvent modelEvent= null;
 
 		synchronized(getLockObject()) {
+			if (fBatchDepth > 0)
+				return;
 			if (fModelEvent != null) {
 				modelEvent= fModelEvent;
 				fModelEvent= null;
@@ -637,6 +781,7 @@ public class AnnotationModel implements IAnnotationModel, IAnnotationModelExtens
 		if (fDocumentChanged) {
 			fDocumentChanged= false;
 
+			// positions may also have been deleted by clients or other position updaters
 			ArrayList<Annotation> deleted= new ArrayList<>();
 			Iterator<Annotation> e= getAnnotationMap().keySetIterator();
 			while (e.hasNext()) {
@@ -712,7 +857,8 @@ public class AnnotationModel implements IAnnotationModel, IAnnotationModelExtens
 		cleanup(true);
 
 		try {
-			Position[] positions= document.getPositions(IDocument.DEFAULT_CATEGORY, offset, length, canStartBefore, canEndAfter);
+			String category= fPositionCategory != null ? fPositionCategory : IDocument.DEFAULT_CATEGORY;
+			Position[] positions= document.getPositions(category, offset, length, canStartBefore, canEndAfter);
 			return new AnnotationsInterator(positions, fPositions);
 		} catch (BadPositionCategoryException e) {
 			// can happen if e.g. the document doesn't contain such a category, or when removed in a different thread
@@ -867,11 +1013,17 @@ public class AnnotationModel implements IAnnotationModel, IAnnotationModelExtens
 			if (p != null) {
 
 				if (position.getOffset() != p.getOffset() || position.getLength() != p.getLength()) {
-					fDocument.removePosition(p);
+					if (fPositionCategory != null)
+						removePosition(fDocument, p);
+					else
+						fDocument.removePosition(p);
 					p.setOffset(position.getOffset());
 					p.setLength(position.getLength());
 					try {
-						fDocument.addPosition(p);
+						if (fPositionCategory != null)
+							addPosition(fDocument, p);
+						else
+							fDocument.addPosition(p);
 					} catch (BadLocationException e) {
 						// ignore invalid position
 					}
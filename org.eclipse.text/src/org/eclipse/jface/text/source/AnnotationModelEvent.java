@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2018 IBM Corporation and others.
  *
  * This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License 2.0
@@ -136,13 +136,19 @@ public class AnnotationModelEvent {
 	 * Adds the given annotation to the set of annotations that are reported as
 	 * being removed from the model. If this event is considered a world
 	 * change, it is no longer so after this method has successfully finished.
+	 * <p>
+	 * The annotation is no longer reported as changed. If it has been added to the model
+	 * after this event has been created, it is neither reported as added nor as removed.
+	 * </p>
 	 *
 	 * @param annotation the removed annotation
 	 * @param position the position of the removed annotation
 	 * @since 3.0
 	 */
 	public void annotationRemoved(Annotation annotation, Position position) {
-		fRemovedAnnotations.put(annotation, position);
+		fChangedAnnotations.remove(annotation);
+		if (!fAddedAnnotations.remove(annotation) && !fRemovedAnnotations.containsKey(annotation))
+			fRemovedAnnotations.put(annotation, position);
 		fIsWorldChange= false;
 	}
 
@@ -233,6 +239,24 @@ public class AnnotationModelEvent {
 		fIsWorldChange= isWorldChange;
 	}
 
+	/**
+	 * Adds the changes of the given event, which have been applied after the changes of this
+	 * event, to this event. An annotation which has been added in this event and removed in the
+	 * given event is neither reported as added nor as removed. If the given event is a world
+	 * change, so is this event afterwards.
+	 *
+	 * @param event the event to merge into this event
+	 * @since 3.8
+	 */
+	void merge(AnnotationModelEvent event) {
+		boolean isWorldChange= fIsWorldChange || event.fIsWorldChange;
+		for (Map.Entry<Annotation, Position> entry : event.fRemovedAnnotations.entrySet())
+			annotationRemoved(entry.getKey(), entry.getValue());
+		fAddedAnnotations.addAll(event.fAddedAnnotations);
+		fChangedAnnotations.addAll(event.fChangedAnnotations);
+		fIsWorldChange= isWorldChange;
+	}
+
 	/**
 	 * Returns whether this annotation model event is still valid.
 	 *
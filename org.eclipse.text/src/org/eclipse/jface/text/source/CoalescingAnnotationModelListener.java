@@ -0,0 +1,185 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.text.source;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.eclipse.core.runtime.Assert;
+
+
+/**
+ * An annotation model listener which coalesces the events it receives within a time window and
+ * forwards them to another listener. All events of the same annotation model which arrive within
+ * the window are merged into a single event. This protects expensive listeners, e.g. rulers and
+ * painters, from the bursts of events a model sends out while it is filled, e.g. by a build
+ * which reports its markers one by one.
+ * <p>
+ * The window starts with the first event after a delivery. The merged events are delivered in a
+ * background thread, hence the target listener must be able to handle events from any thread, as
+ * is already required from annotation model listeners.
+ * </p>
+ * <p>
+ * This class may be instantiated; it is not intended to be subclassed.
+ * </p>
+ *
+ * @since 3.8
+ * @noextend This class is not intended to be subclassed by clients.
+ */
+public class CoalescingAnnotationModelListener implements IAnnotationModelListener, IAnnotationModelListenerExtension {
+
+	/** The timer that delivers the coalesced events of all listeners. */
+	private static final Timer fgTimer= new Timer("Annotation Model Event Coalescer", true); //$NON-NLS-1$
+
+	/** The listener the coalesced events are forwarded to. */
+	private final IAnnotationModelListener fListener;
+	/** The time window in milliseconds. */
+	private final long fWindow;
+	/** The lock guarding the pending events and the counters. */
+	private final Object fLock= new Object();
+	/** The pending event of each annotation model. */
+	private Map<IAnnotationModel, AnnotationModelEvent> fPendingEvents= new LinkedHashMap<>();
+	/** The task which delivers the pending events, or <code>null</code> if none is scheduled. */
+	private TimerTask fDeliveryTask;
+	/** The number of events received by this listener. */
+	private long fReceivedEvents;
+	/** The number of events forwarded to the target listener. */
+	private long fDeliveredEvents;
+	/** Tells whether this listener has been disposed. */
+	private boolean fIsDisposed;
+
+
+	/**
+	 * Creates a new coalescing listener.
+	 *
+	 * @param listener the listener to forward the coalesced events to
+	 * @param window the time window in milliseconds during which events are coalesced
+	 */
+	public CoalescingAnnotationModelListener(IAnnotationModelListener listener, long window) {
+		Assert.isNotNull(listener);
+		Assert.isLegal(window >= 0);
+		fListener= listener;
+		fWindow= window;
+	}
+
+	@Override
+	public void modelChanged(IAnnotationModel model) {
+		modelChanged(new AnnotationModelEvent(model, true));
+	}
+
+	@Override
+	public void modelChanged(AnnotationModelEvent event) {
+		synchronized (fLock) {
+			if (fIsDisposed)
+				return;
+
+			++fReceivedEvents;
+			IAnnotationModel model= event.getAnnotationModel();
+			AnnotationModelEvent pending= fPendingEvents.get(model);
+			if (pending == null) {
+				pending= new AnnotationModelEvent(model, false);
+				fPendingEvents.put(model, pending);
+			}
+			pending.merge(event);
+
+			if (fDeliveryTask == null) {
+				fDeliveryTask= new TimerTask() {
+					@Override
+					public void run() {
+						flush();
+					}
+				};
+				fgTimer.schedule(fDeliveryTask, fWindow);
+			}
+		}
+	}
+
+	/**
+	 * Delivers the pending events to the target listener right away, in the calling thread.
+	 */
+	public void flush() {
+		List<AnnotationModelEvent> events;
+		synchronized (fLock) {
+			if (fDeliveryTask != null) {
+				fDeliveryTask.cancel();
+				fDeliveryTask= null;
+			}
+			if (fPendingEvents.isEmpty())
+				return;
+
+			events= new ArrayList<>(fPendingEvents.values());
+			fPendingEvents= new LinkedHashMap<>();
+			fDeliveredEvents += events.size();
+		}
+
+		for (AnnotationModelEvent event : events) {
+			event.markSealed();
+			if (fListener instanceof IAnnotationModelListenerExtension)
+				((IAnnotationModelListenerExtension) fListener).modelChanged(event);
+			else
+				fListener.modelChanged(event.getAnnotationModel());
+		}
+	}
+
+	/**
+	 * Disposes this listener. Pending events are discarded and events received afterwards are
+	 * ignored.
+	 */
+	public void dispose() {
+		synchronized (fLock) {
+			fIsDisposed= true;
+			if (fDeliveryTask != null) {
+				fDeliveryTask.cancel();
+				fDeliveryTask= null;
+			}
+			fPendingEvents.clear();
+		}
+	}
+
+	/**
+	 * Returns the listener the coalesced events are forwarded to.
+	 *
+	 * @return the target listener
+	 */
+	public IAnnotationModelListener getListener() {
+		return fListener;
+	}
+
+	/**
+	 * Returns the number of events this listener has received so far.
+	 *
+	 * @return the number of received events
+	 */
+	public long getReceivedEventCount() {
+		synchronized (fLock) {
+			return fReceivedEvents;
+		}
+	}
+
+	/**
+	 * Returns the number of events this listener has forwarded to the target listener so far.
+	 * Together with {@link #getReceivedEventCount()} this tells how effective the coalescing is.
+	 *
+	 * @return the number of delivered events
+	 */
+	public long getDeliveredEventCount() {
+		synchronized (fLock) {
+			return fDeliveredEvents;
+		}
+	}
+}
@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.text.edits;
+
+import java.util.Arrays;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension5;
+
+/**
+ * A document which collects the replaces of a text edit tree and performs them on the actual
+ * document at once, see {@link IDocumentExtension5#replace(int[], int[], String[])}.
+ * <p>
+ * The edits of a tree replace their ranges from the last to the first one, so the collected
+ * ranges are in the coordinates of the actual document as long as each range ends at or before
+ * the start of the previous one. A replace which violates this order and any read access first
+ * perform the collected replaces.
+ * </p>
+ *
+ * @since 3.8
+ */
+class BulkEditDocument extends EditDocument {
+
+	private final IDocument fDocument;
+	private final UndoCollector fCollector;
+
+	/* the collected replaces are stored at the end of the arrays in ascending order */
+	private int[] fOffsets;
+	private int[] fLengths;
+	private String[] fTexts;
+	private int fCount;
+
+	/**
+	 * Creates a new bulk edit document.
+	 *
+	 * @param document the actual document, must implement {@link IDocumentExtension5}
+	 * @param capacity the expected number of replaces
+	 * @param collector the collector of the undo edits, or <code>null</code> if no undo is
+	 *            created
+	 */
+	public BulkEditDocument(IDocument document, int capacity, UndoCollector collector) {
+		super(""); //$NON-NLS-1$
+		fDocument= document;
+		fCollector= collector;
+		fOffsets= new int[capacity];
+		fLengths= new int[capacity];
+		fTexts= new String[capacity];
+	}
+
+	@Override
+	public String get() {
+		flushAndCheck();
+		return fDocument.get();
+	}
+
+	@Override
+	public String get(int offset, int length) throws BadLocationException {
+		flush();
+		return fDocument.get(offset, length);
+	}
+
+	@Override
+	public int getLength() {
+		flushAndCheck();
+		return fDocument.getLength();
+	}
+
+	@Override
+	public void replace(int offset, int length, String text) throws BadLocationException {
+		int capacity= fOffsets.length;
+		if (fCount > 0 && offset + length > fOffsets[capacity - fCount] || fCount == capacity)
+			flush();
+		if (fCollector != null)
+			fCollector.replace(fDocument, offset, length, text);
+
+		int index= capacity - 1 - fCount++;
+		fOffsets[index]= offset;
+		fLengths[index]= length;
+		fTexts[index]= text;
+	}
+
+	/**
+	 * Performs the collected replaces on the actual document.
+	 *
+	 * @throws BadLocationException if the collected ranges are invalid
+	 */
+	public void flush() throws BadLocationException {
+		if (fCount == 0)
+			return;
+
+		int capacity= fOffsets.length;
+		int from= capacity - fCount;
+		fCount= 0;
+		IDocumentExtension5 extension= (IDocumentExtension5) fDocument;
+		if (from == 0)
+			extension.replace(fOffsets, fLengths, fTexts);
+		else
+			extension.replace(Arrays.copyOfRange(fOffsets, from, capacity), Arrays.copyOfRange(fLengths, from, capacity), Arrays.copyOfRange(fTexts, from, capacity));
+		Arrays.fill(fTexts, from, capacity, null);
+	}
+
+	private void flushAndCheck() {
+		try {
+			flush();
+		} catch (BadLocationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -14,6 +14,7 @@
 package org.eclipse.text.edits;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
@@ -128,6 +129,21 @@ public abstract class TextEdit {
 	private static final TextEdit[] EMPTY_ARRAY= new TextEdit[0];
 	private static final InsertionComparator INSERTION_COMPARATOR= new InsertionComparator();
 
+	/**
+	 * Orders edits by offset, edits of length zero come before the other edits at the same offset.
+	 * @since 3.8
+	 */
+	private static final Comparator<TextEdit> OFFSET_COMPARATOR= new Comparator<TextEdit>() {
+		@Override
+		public int compare(TextEdit edit1, TextEdit edit2) {
+			int offset1= edit1.getOffset();
+			int offset2= edit2.getOffset();
+			if (offset1 != offset2)
+				return offset1 < offset2 ? -1 : 1;
+			return Boolean.compare(edit1.getLength() > 0, edit2.getLength() > 0);
+		}
+	};
+
 	private static final int DELETED_VALUE= -1;
 
 	private int fOffset;
@@ -338,6 +354,10 @@ public abstract class TextEdit {
 
 	/**
 	 * Adds all edits in <code>edits</code> to this edit.
+	 * <p>
+	 * A large number of edits is checked and sorted at once rather than edit by edit. In this
+	 * case none of the edits is added if one of them can't be added.
+	 * </p>
 	 *
 	 * @param edits the text edits to add
 	 * @exception MalformedTreeException is thrown if one of
@@ -346,6 +366,10 @@ public abstract class TextEdit {
 	 * @see #addChild(TextEdit)
 	 */
 	public final void addChildren(TextEdit[] edits) throws MalformedTreeException {
+		if (TextEditSlices.isLarge(edits.length)) {
+			internalAddAll(edits);
+			return;
+		}
 		for (TextEdit edit : edits) {
 			internalAdd(edit);
 		}
@@ -458,6 +482,8 @@ public abstract class TextEdit {
 	 */
 	public static IRegion getCoverage(TextEdit[] edits) {
 		Assert.isTrue(edits != null && edits.length > 0);
+		if (TextEditSlices.isLarge(edits.length))
+			return TextEditSlices.getCoverage(edits);
 
 		int offset= Integer.MAX_VALUE;
 		int end= Integer.MIN_VALUE;
@@ -782,6 +808,80 @@ public abstract class TextEdit {
 		child.internalSetParent(this);
 	}
 
+	/**
+	 * Adds the given edits to the children of this edit. The new and the existing children are
+	 * sorted at once, the result is the same as adding the edits one by one.
+	 *
+	 * @param edits the edits to add
+	 * @throws MalformedTreeException if one of the edits can't be added
+	 * @since 3.8
+	 */
+	private void internalAddAll(TextEdit[] edits) throws MalformedTreeException {
+		// all edits are checked before any of them is notified, so that none of them is changed
+		// if one of them can't be added
+		int invalid= TextEditSlices.findInvalidChild(this, edits);
+		if (invalid != -1) {
+			TextEdit child= edits[invalid];
+			if (child instanceof UndoEdit)
+				throw new MalformedTreeException(this, child, TextEditMessages.getString("UndoEdit.can_not_be_added")); //$NON-NLS-1$
+			if (child.isDeleted())
+				throw new MalformedTreeException(this, child, TextEditMessages.getString("TextEdit.deleted_edit")); //$NON-NLS-1$
+			if (!covers(child))
+				throw new MalformedTreeException(this, child, TextEditMessages.getString("TextEdit.range_outside")); //$NON-NLS-1$
+			Assert.isTrue(child.fParent == null);
+		}
+
+		TextEdit[] children= appendToChildren(edits);
+		if (TextEditSlices.findUnordered(children) != -1) {
+			// a stable sort keeps insertion points at the same offset in the order of addition
+			Arrays.parallelSort(children, OFFSET_COMPARATOR);
+			int unordered= TextEditSlices.findUnordered(children);
+			if (unordered != -1)
+				throw new MalformedTreeException(this, children[unordered], TextEditMessages.getString("TextEdit.overlapping")); //$NON-NLS-1$
+		}
+
+		// an edit without a region gets an empty region at the offset of this edit when it is
+		// added, which must not be inside a sibling
+		boolean hasUndefinedEdits= false;
+		for (TextEdit edit : edits) {
+			if (!edit.isDefined())
+				hasUndefinedEdits= true;
+		}
+		if (hasUndefinedEdits) {
+			int offset= getOffset();
+			for (TextEdit child : children) {
+				if (child.isDefined() && child.getOffset() < offset && offset < child.getExclusiveEnd())
+					throw new MalformedTreeException(this, child, TextEditMessages.getString("TextEdit.overlapping")); //$NON-NLS-1$
+			}
+		}
+
+		for (TextEdit edit : edits)
+			edit.aboutToBeAdded(this);
+		if (hasUndefinedEdits) {
+			children= appendToChildren(edits);
+			Arrays.parallelSort(children, OFFSET_COMPARATOR);
+		}
+
+		for (TextEdit edit : edits)
+			edit.internalSetParent(this);
+		fChildren= new ArrayList<>(Arrays.asList(children));
+	}
+
+	/**
+	 * Returns the children of this edit followed by the given edits.
+	 *
+	 * @param edits the edits to append
+	 * @return a new array with the children and the given edits
+	 */
+	private TextEdit[] appendToChildren(TextEdit[] edits) {
+		if (fChildren == null || fChildren.isEmpty())
+			return edits.clone();
+		TextEdit[] children= new TextEdit[fChildren.size() + edits.length];
+		fChildren.toArray(children);
+		System.arraycopy(edits, 0, children, fChildren.size(), edits.length);
+		return children;
+	}
+
 	private int computeInsertionIndex(TextEdit edit) throws MalformedTreeException {
 		int size= fChildren.size();
 		if (size == 0)
@@ -940,6 +1040,10 @@ public abstract class TextEdit {
 		performRegionUpdating(accumulatedDelta, delete);
 		if (fChildren != null) {
 			boolean childDelete= delete || deleteChildren();
+			if (getClass() == MultiTextEdit.class && TextEditSlices.isLarge(fChildren.size())) {
+				// childRegionUpdated() does nothing, the slices of the children can be updated in parallel
+				return TextEditSlices.updateRegions(processor, document, fChildren, accumulatedDelta, childDelete) + fDelta;
+			}
 			for (TextEdit child : fChildren) {
 				accumulatedDelta= child.traverseRegionUpdating(processor, document, accumulatedDelta, childDelete);
 				childRegionUpdated();
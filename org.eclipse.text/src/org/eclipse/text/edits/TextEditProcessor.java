@@ -20,6 +20,7 @@ import org.eclipse.core.runtime.Assert;
 
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension5;
 
 
 /**
@@ -35,6 +36,59 @@ import org.eclipse.jface.text.IDocument;
  */
 public class TextEditProcessor {
 
+	/**
+	 * The number of changing edits from which on the edits are applied at once if the document
+	 * supports it.
+	 *
+	 * @since 3.8
+	 */
+	private static final int BULK_THRESHOLD= 100;
+
+	/**
+	 * Counts the edits which change the document.
+	 *
+	 * @since 3.8
+	 */
+	private static final class ChangeCounter extends TextEditVisitor {
+		int fCount= 0;
+
+		@Override
+		public boolean visit(CopyTargetEdit edit) {
+			fCount++;
+			return super.visit(edit);
+		}
+
+		@Override
+		public boolean visit(DeleteEdit edit) {
+			fCount++;
+			return super.visit(edit);
+		}
+
+		@Override
+		public boolean visit(InsertEdit edit) {
+			fCount++;
+			return super.visit(edit);
+		}
+
+		@Override
+		public boolean visit(MoveSourceEdit edit) {
+			fCount++;
+			return super.visit(edit);
+		}
+
+		@Override
+		public boolean visit(MoveTargetEdit edit) {
+			fCount++;
+			return super.visit(edit);
+		}
+
+		@Override
+		public boolean visit(ReplaceEdit edit) {
+			fCount++;
+			return super.visit(edit);
+		}
+	}
+
 	private IDocument fDocument;
 	private TextEdit fRoot;
 	private int fStyle;
@@ -139,6 +193,12 @@ public class TextEditProcessor {
 
 	/**
 	 * Executes the text edits.
+	 * <p>
+	 * If the document implements {@link IDocumentExtension5}, the replaces of a large edit tree
+	 * are collected and performed at once, see
+	 * {@link IDocumentExtension5#replace(int[], int[], String[])}. Document listeners may then
+	 * receive a single event for a group of nearby edits instead of one event per edit.
+	 * </p>
 	 *
 	 * @return an object representing the undo of the executed edits
 	 * @exception MalformedTreeException is thrown if the edit tree isn't
@@ -190,10 +250,22 @@ public class TextEditProcessor {
 	UndoEdit executeDo() throws BadLocationException {
 		UndoCollector collector= new UndoCollector(fRoot);
 		try {
-			if (createUndo())
-				collector.connect(fDocument);
-			computeSources();
-			fRoot.traverseDocumentUpdating(this, fDocument);
+			int changes= fDocument instanceof IDocumentExtension5 ? countChanges() : 0;
+			if (changes >= BULK_THRESHOLD) {
+				// the edits replace their ranges from the last to the first one, collect them and
+				// rebuild the document in one pass
+				if (createUndo())
+					collector.start();
+				computeSources();
+				BulkEditDocument document= new BulkEditDocument(fDocument, changes, createUndo() ? collector : null);
+				fRoot.traverseDocumentUpdating(this, document);
+				document.flush();
+			} else {
+				if (createUndo())
+					collector.connect(fDocument);
+				computeSources();
+				fRoot.traverseDocumentUpdating(this, fDocument);
+			}
 			if (updateRegions()) {
 				fRoot.traverseRegionUpdating(this, fDocument, 0, false);
 			}
@@ -203,6 +275,18 @@ public class TextEditProcessor {
 		return collector.undo;
 	}
 
+	/**
+	 * Returns the number of edits which change the document.
+	 *
+	 * @return the number of changing edits
+	 * @since 3.8
+	 */
+	private int countChanges() {
+		ChangeCounter counter= new ChangeCounter();
+		fRoot.accept(counter);
+		return counter.fCount;
+	}
+
 	private void computeSources() {
 		for (List<TextEdit> list : fSourceEdits) {
 			if (list != null) {
@@ -216,11 +300,25 @@ public class TextEditProcessor {
 	UndoEdit executeUndo() throws BadLocationException {
 		UndoCollector collector= new UndoCollector(fRoot);
 		try {
-			if (createUndo())
-				collector.connect(fDocument);
 			TextEdit[] edits= fRoot.getChildren();
-			for (int i= edits.length - 1; i >= 0; i--) {
-				edits[i].performDocumentUpdating(fDocument);
+			int[] offsets= null;
+			if (fDocument instanceof IDocumentExtension5 && edits.length >= BULK_THRESHOLD)
+				offsets= computeUndoOffsets(edits);
+			if (offsets != null) {
+				if (createUndo())
+					collector.start();
+				BulkEditDocument document= new BulkEditDocument(fDocument, edits.length, createUndo() ? collector : null);
+				for (int i= 0; i < edits.length; i++) {
+					ReplaceEdit edit= (ReplaceEdit) edits[i];
+					document.replace(offsets[i], edit.getLength(), edit.getText());
+				}
+				document.flush();
+			} else {
+				if (createUndo())
+					collector.connect(fDocument);
+				for (int i= edits.length - 1; i >= 0; i--) {
+					edits[i].performDocumentUpdating(fDocument);
+				}
 			}
 		} finally {
 			collector.disconnect(fDocument);
@@ -228,6 +326,34 @@ public class TextEditProcessor {
 		return collector.undo;
 	}
 
+	/**
+	 * Computes the offsets of the given undo edits in the document before any of them is
+	 * performed. The edits are performed from the last to the first one, each in the coordinates
+	 * of the document after the previous ones.
+	 *
+	 * @param edits the replace edits of an undo edit
+	 * @return the offsets of the edits, or <code>null</code> if the edits are not ordered such
+	 *         that they can be performed at once
+	 * @since 3.8
+	 */
+	private static int[] computeUndoOffsets(TextEdit[] edits) {
+		int[] offsets= new int[edits.length];
+		int delta= 0;
+		int end= 0;
+		for (int i= edits.length - 1; i >= 0; i--) {
+			if (!(edits[i] instanceof ReplaceEdit))
+				return null;
+			ReplaceEdit edit= (ReplaceEdit) edits[i];
+			int offset= edit.getOffset() - delta;
+			if (offset < end)
+				return null;
+			offsets[i]= offset;
+			end= offset + edit.getLength();
+			delta+= edit.getText().length() - edit.getLength();
+		}
+		return offsets;
+	}
+
 	private boolean createUndo() {
 		return (fStyle & TextEdit.CREATE_UNDO) != 0;
 	}
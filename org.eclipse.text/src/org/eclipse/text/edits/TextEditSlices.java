@@ -0,0 +1,290 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.text.edits;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.Region;
+
+/**
+ * Operations on large arrays of sibling edits which process slices of the array in parallel
+ * when the common fork-join pool has more than one thread.
+ *
+ * @since 3.8
+ */
+final class TextEditSlices {
+
+	/** The number of edits processed by one task. */
+	private static final int SLICE_SIZE= 16 * 1024;
+
+	/**
+	 * Finds the first edit which cannot be added to a parent or which is out of order.
+	 */
+	private static final class CheckTask extends RecursiveAction {
+		private static final long serialVersionUID= 1L;
+
+		private final TextEdit fParent;
+		private final TextEdit[] fEdits;
+		private final int fFrom;
+		private final int fTo;
+		/** The index of the first offending edit in the slice, or -1. */
+		int fIndex= -1;
+
+		CheckTask(TextEdit parent, TextEdit[] edits, int from, int to) {
+			fParent= parent;
+			fEdits= edits;
+			fFrom= from;
+			fTo= to;
+		}
+
+		@Override
+		protected void compute() {
+			for (int i= fFrom; i < fTo; i++) {
+				TextEdit edit= fEdits[i];
+				boolean valid;
+				if (fParent != null) {
+					valid= edit.getParent() == null && !(edit instanceof UndoEdit) && !edit.isDeleted() && fParent.covers(edit);
+				} else if (i > 0) {
+					TextEdit previous= fEdits[i - 1];
+					valid= previous != edit && previous.getExclusiveEnd() <= edit.getOffset();
+				} else {
+					valid= true;
+				}
+				if (!valid) {
+					fIndex= i;
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Computes the region covered by the edits which have not been deleted.
+	 */
+	private static final class CoverageTask extends RecursiveAction {
+		private static final long serialVersionUID= 1L;
+
+		private final TextEdit[] fEdits;
+		private final int fFrom;
+		private final int fTo;
+		int fOffset= Integer.MAX_VALUE;
+		int fEnd= Integer.MIN_VALUE;
+
+		CoverageTask(TextEdit[] edits, int from, int to) {
+			fEdits= edits;
+			fFrom= from;
+			fTo= to;
+		}
+
+		@Override
+		protected void compute() {
+			for (int i= fFrom; i < fTo; i++) {
+				TextEdit edit= fEdits[i];
+				if (!edit.isDeleted()) {
+					fOffset= Math.min(fOffset, edit.getOffset());
+					fEnd= Math.max(fEnd, edit.getExclusiveEnd());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sums up the document deltas of edits without children, or updates their regions once the
+	 * accumulated delta at the start of the slice is known.
+	 */
+	private static final class RegionTask extends RecursiveAction {
+		private static final long serialVersionUID= 1L;
+
+		private final List<TextEdit> fEdits;
+		private final int fFrom;
+		private final int fTo;
+		/** Whether the regions are updated, otherwise the deltas are summed up. */
+		private boolean fUpdate;
+		private TextEditProcessor fProcessor;
+		private IDocument fDocument;
+		private boolean fDelete;
+		/** The accumulated delta at the start of the slice. */
+		int fStartDelta;
+		/** The sum of the deltas of the edits in the slice. */
+		int fDelta;
+		/** Whether none of the edits in the slice has children. */
+		boolean fLeaves;
+
+		RegionTask(List<TextEdit> edits, int from, int to) {
+			fEdits= edits;
+			fFrom= from;
+			fTo= to;
+		}
+
+		@Override
+		protected void compute() {
+			if (fUpdate) {
+				int delta= fStartDelta;
+				for (int i= fFrom; i < fTo; i++)
+					delta= fEdits.get(i).traverseRegionUpdating(fProcessor, fDocument, delta, fDelete);
+			} else {
+				fLeaves= true;
+				int delta= 0;
+				for (int i= fFrom; i < fTo; i++) {
+					TextEdit edit= fEdits.get(i);
+					if (edit.hasChildren()) {
+						fLeaves= false;
+						return;
+					}
+					delta+= edit.fDelta;
+				}
+				fDelta= delta;
+			}
+		}
+	}
+
+	private TextEditSlices() {
+	}
+
+	/**
+	 * Tells whether an array of the given number of edits is processed in slices.
+	 *
+	 * @param count the number of edits
+	 * @return <code>true</code> if the edits are processed in slices
+	 */
+	static boolean isLarge(int count) {
+		return count >= 2 * SLICE_SIZE;
+	}
+
+	/**
+	 * Returns the index of the first edit which cannot be added to the given parent because it
+	 * is an undo edit, is deleted, has a parent or is not covered by the parent.
+	 *
+	 * @param parent the parent
+	 * @param edits the edits to add
+	 * @return the index of the first edit which cannot be added, or -1
+	 */
+	static int findInvalidChild(TextEdit parent, TextEdit[] edits) {
+		return findFirst(createCheckTasks(parent, edits));
+	}
+
+	/**
+	 * Returns the index of the first edit which starts before the end of its predecessor or which
+	 * is the same as its predecessor.
+	 *
+	 * @param edits the edits
+	 * @return the index of the first edit which is out of order, or -1
+	 */
+	static int findUnordered(TextEdit[] edits) {
+		return findFirst(createCheckTasks(null, edits));
+	}
+
+	/**
+	 * Returns the region covered by the given edits, see {@link TextEdit#getCoverage(TextEdit[])}.
+	 *
+	 * @param edits the edits
+	 * @return the covered region, or <code>null</code> if all edits are deleted
+	 */
+	static IRegion getCoverage(TextEdit[] edits) {
+		int count= getSliceCount(edits.length);
+		List<CoverageTask> tasks= new ArrayList<>(count);
+		for (int i= 0; i < count; i++)
+			tasks.add(new CoverageTask(edits, getSliceStart(edits.length, count, i), getSliceStart(edits.length, count, i + 1)));
+		invoke(tasks);
+
+		int offset= Integer.MAX_VALUE;
+		int end= Integer.MIN_VALUE;
+		for (CoverageTask task : tasks) {
+			offset= Math.min(offset, task.fOffset);
+			end= Math.max(end, task.fEnd);
+		}
+		if (end == Integer.MIN_VALUE)
+			return null;
+		return new Region(offset, end - offset);
+	}
+
+	/**
+	 * Updates the regions of the given sibling edits, see
+	 * {@link TextEdit#traverseRegionUpdating(TextEditProcessor, IDocument, int, boolean)}. The
+	 * slices are processed in parallel if none of the edits has children.
+	 *
+	 * @param processor the text edit processor
+	 * @param document the document
+	 * @param edits the sibling edits
+	 * @param accumulatedDelta the accumulated delta before the first edit
+	 * @param delete whether the edits are deleted
+	 * @return the accumulated delta after the last edit
+	 */
+	static int updateRegions(TextEditProcessor processor, IDocument document, List<TextEdit> edits, int accumulatedDelta, boolean delete) {
+		int size= edits.size();
+		int count= getSliceCount(size);
+		List<RegionTask> tasks= new ArrayList<>(count);
+		for (int i= 0; i < count; i++)
+			tasks.add(new RegionTask(edits, getSliceStart(size, count, i), getSliceStart(size, count, i + 1)));
+		invoke(tasks);
+
+		int delta= accumulatedDelta;
+		for (RegionTask task : tasks) {
+			if (!task.fLeaves) {
+				for (TextEdit edit : edits)
+					accumulatedDelta= edit.traverseRegionUpdating(processor, document, accumulatedDelta, delete);
+				return accumulatedDelta;
+			}
+			task.fUpdate= true;
+			task.fProcessor= processor;
+			task.fDocument= document;
+			task.fDelete= delete;
+			task.fStartDelta= delta;
+			task.reinitialize();
+			delta+= task.fDelta;
+		}
+		invoke(tasks);
+		return delta;
+	}
+
+	private static List<CheckTask> createCheckTasks(TextEdit parent, TextEdit[] edits) {
+		int count= getSliceCount(edits.length);
+		List<CheckTask> tasks= new ArrayList<>(count);
+		for (int i= 0; i < count; i++)
+			tasks.add(new CheckTask(parent, edits, getSliceStart(edits.length, count, i), getSliceStart(edits.length, count, i + 1)));
+		return tasks;
+	}
+
+	private static int findFirst(List<CheckTask> tasks) {
+		invoke(tasks);
+		for (CheckTask task : tasks) {
+			if (task.fIndex != -1)
+				return task.fIndex;
+		}
+		return -1;
+	}
+
+	private static int getSliceCount(int length) {
+		if (!isLarge(length) || ForkJoinPool.getCommonPoolParallelism() <= 1)
+			return 1;
+		return (length + SLICE_SIZE - 1) / SLICE_SIZE;
+	}
+
+	private static int getSliceStart(int length, int count, int slice) {
+		return (int) ((long) length * slice / count);
+	}
+
+	private static void invoke(List<? extends RecursiveAction> tasks) {
+		if (tasks.size() == 1)
+			tasks.get(0).invoke();
+		else
+			ForkJoinTask.invokeAll(tasks);
+	}
+}
@@ -39,6 +39,16 @@ class UndoCollector implements IDocumentListener {
 
 	public void connect(IDocument document) {
 		document.addDocumentListener(this);
+		start();
+	}
+
+	/**
+	 * Starts collecting the undo edits for the replaces which are reported by
+	 * {@link #replace(IDocument, int, int, String)} rather than by document events.
+	 *
+	 * @since 3.8
+	 */
+	public void start() {
 		undo= new UndoEdit();
 	}
 
@@ -61,11 +71,28 @@ class UndoCollector implements IDocumentListener {
 
 	@Override
 	public void documentAboutToBeChanged(DocumentEvent event) {
-		int offset= event.getOffset();
-		int currentLength= event.getLength();
+		addUndo(event.getDocument(), event.getOffset(), event.getLength(), event.getText());
+	}
+
+	/**
+	 * Collects the undo edit for the given replace, which is about to be performed on the given
+	 * document.
+	 *
+	 * @param document the document
+	 * @param offset the offset of the replaced range
+	 * @param length the length of the replaced range
+	 * @param text the text which replaces the range
+	 * @since 3.8
+	 */
+	public void replace(IDocument document, int offset, int length, String text) {
+		addUndo(document, offset, length, text);
+		fLength+= text == null ? -length : (text.length() - length);
+	}
+
+	private void addUndo(IDocument document, int offset, int currentLength, String newText) {
 		String currentText= null;
 		try {
-			currentText= event.getDocument().get(offset, currentLength);
+			currentText= document.get(offset, currentLength);
 		} catch (BadLocationException cannotHappen) {
 			Assert.isTrue(false, "Can't happen"); //$NON-NLS-1$
 		}
@@ -82,7 +109,6 @@ class UndoCollector implements IDocumentListener {
 		else
 			fLastCurrentText= currentText;
 
-		String newText= event.getText();
 		undo.add(new ReplaceEdit(offset, newText != null ? newText.length() : 0, currentText));
 	}
 }
@@ -13,6 +13,7 @@
  *******************************************************************************/
 package org.eclipse.text.undo;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -29,9 +30,11 @@ import org.eclipse.core.commands.operations.OperationHistoryFactory;
 
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.IAdaptable;
+import org.eclipse.core.runtime.ILog;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.ListenerList;
+import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.Status;
 
 import org.eclipse.jface.text.BadLocationException;
@@ -66,6 +69,35 @@ import org.eclipse.jface.text.TextUtilities;
  */
 public class DocumentUndoManager implements IDocumentUndoManager {
 
+	/**
+	 * The length from which on the unchanged start and end of a replaced text are not kept
+	 * in the undo history.
+	 *
+	 * @since 3.8
+	 */
+	private static final int TRIM_LENGTH= 1024;
+
+	/**
+	 * The capacity of the text buffers up to which they are reused for the next change.
+	 *
+	 * @since 3.8
+	 */
+	private static final int MAX_BUFFER_CAPACITY= 64 * 1024;
+
+	/**
+	 * The approximate number of bytes of a text change without its texts.
+	 *
+	 * @since 3.8
+	 */
+	private static final int CHANGE_SIZE= 128;
+
+	/**
+	 * The number of characters from which on the texts of a change are written to the undo
+	 * journal.
+	 *
+	 * @since 3.8
+	 */
+	private static final int MIN_JOURNAL_LENGTH= 4096;
 
 	/**
 	 * Represents an undo-able text change, described as the
@@ -97,6 +129,25 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 		/** The undo manager that generated the change. */
 		protected DocumentUndoManager fDocumentUndoManager;
 
+		/**
+		 * The entry of the texts in the undo journal, or <code>null</code> if the texts are held
+		 * in memory.
+		 * @since 3.8
+		 */
+		protected UndoJournal.Entry fJournalEntry;
+
+		/**
+		 * The length of the text written to the undo journal.
+		 * @since 3.8
+		 */
+		protected int fJournalTextLength;
+
+		/**
+		 * The length of the preserved text written to the undo journal.
+		 * @since 3.8
+		 */
+		protected int fJournalPreservedTextLength;
+
 		/**
 		 * Creates a new text change.
 		 *
@@ -112,6 +163,7 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 		 * Re-initializes this text change.
 		 */
 		protected void reinitialize() {
+			releaseJournal();
 			fStart= fEnd= -1;
 			fText= fPreservedText= null;
 			fUndoModificationStamp= IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
@@ -136,6 +188,59 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 			reinitialize();
 		}
 
+		/**
+		 * Writes the texts of this change to the undo journal of its undo manager unless they
+		 * are short or already written.
+		 *
+		 * @throws IOException if writing the journal fails
+		 * @since 3.8
+		 */
+		protected void writeToJournal() throws IOException {
+			if (fJournalEntry != null || fText == null || fPreservedText == null || fText.length() + fPreservedText.length() < MIN_JOURNAL_LENGTH)
+				return;
+			fJournalEntry= fDocumentUndoManager.getJournal().write(fText, fPreservedText);
+			fJournalTextLength= fText.length();
+			fJournalPreservedTextLength= fPreservedText.length();
+			fText= null;
+			fPreservedText= null;
+		}
+
+		/**
+		 * Reads the texts of this change back from the undo journal if they have been written
+		 * to it.
+		 *
+		 * @return <code>true</code> if the texts are in memory, <code>false</code> if reading
+		 *         them failed
+		 * @since 3.8
+		 */
+		protected boolean readFromJournal() {
+			if (fJournalEntry == null)
+				return true;
+			try {
+				UndoJournal journal= fDocumentUndoManager.getJournal();
+				fText= journal.read(fJournalEntry, 0, fJournalTextLength);
+				fPreservedText= journal.read(fJournalEntry, fJournalTextLength, fJournalPreservedTextLength);
+			} catch (IOException x) {
+				fDocumentUndoManager.handleJournalException(x);
+				return false;
+			}
+			releaseJournal();
+			return true;
+		}
+
+		/**
+		 * Releases the texts of this change in the undo journal.
+		 *
+		 * @since 3.8
+		 */
+		private void releaseJournal() {
+			if (fJournalEntry != null) {
+				if (fDocumentUndoManager.fJournal != null)
+					fDocumentUndoManager.fJournal.release(fJournalEntry);
+				fJournalEntry= null;
+			}
+		}
+
 		/**
 		 * Undo the change described by this change.
 		 */
@@ -253,7 +358,7 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 		 */
 		@Override
 		public IStatus undo(IProgressMonitor monitor, IAdaptable uiInfo) {
-			if (isValid()) {
+			if (isValid() && readFromJournal()) {
 				fDocumentUndoManager.fireDocumentUndo(fStart, fPreservedText, fText, uiInfo, DocumentUndoEvent.ABOUT_TO_UNDO, false);
 				undoTextChange();
 				fDocumentUndoManager.resetProcessChangeState();
@@ -286,7 +391,7 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 		 */
 		@Override
 		public IStatus redo(IProgressMonitor monitor, IAdaptable uiInfo) {
-			if (isValid()) {
+			if (isValid() && readFromJournal()) {
 				fDocumentUndoManager.fireDocumentUndo(fStart, fText, fPreservedText, uiInfo, DocumentUndoEvent.ABOUT_TO_REDO, false);
 				redoTextChange();
 				fDocumentUndoManager.resetProcessChangeState();
@@ -301,10 +406,38 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 		 */
 
 		protected void updateTextChange() {
-			fText= fDocumentUndoManager.fTextBuffer.toString();
-			fDocumentUndoManager.fTextBuffer.setLength(0);
-			fPreservedText= fDocumentUndoManager.fPreservedTextBuffer.toString();
-			fDocumentUndoManager.fPreservedTextBuffer.setLength(0);
+			pretendCommit();
+			fDocumentUndoManager.clearTextBuffers();
+			trimUnchangedText();
+		}
+
+		/**
+		 * Removes the start and the end which the text and the preserved text have in common
+		 * if both are large, e.g. when the whole document has been formatted. Only the changed
+		 * range is kept in the undo history then.
+		 *
+		 * @since 3.8
+		 */
+		private void trimUnchangedText() {
+			int textLength= fText.length();
+			int preservedLength= fPreservedText.length();
+			int length= Math.min(textLength, preservedLength);
+			if (length < TRIM_LENGTH || fEnd - fStart != preservedLength)
+				return;
+
+			int prefix= 0;
+			while (prefix < length && fText.charAt(prefix) == fPreservedText.charAt(prefix))
+				++prefix;
+			int suffix= 0;
+			while (suffix < length - prefix && fText.charAt(textLength - suffix - 1) == fPreservedText.charAt(preservedLength - suffix - 1))
+				++suffix;
+
+			if (prefix + suffix > 0) {
+				fStart += prefix;
+				fEnd -= suffix;
+				fText= fText.substring(prefix, textLength - suffix);
+				fPreservedText= fPreservedText.substring(prefix, preservedLength - suffix);
+			}
 		}
 
 		/**
@@ -342,8 +475,13 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 		 */
 		protected void pretendCommit() {
 			if (fStart > -1) {
-				fText= fDocumentUndoManager.fTextBuffer.toString();
-				fPreservedText= fDocumentUndoManager.fPreservedTextBuffer.toString();
+				// the buffers only grow until they are cleared, the texts are only copied if they did
+				StringBuilder textBuffer= fDocumentUndoManager.fTextBuffer;
+				if (fText == null || fText.length() != textBuffer.length())
+					fText= textBuffer.toString();
+				StringBuilder preservedTextBuffer= fDocumentUndoManager.fPreservedTextBuffer;
+				if (fPreservedText == null || fPreservedText.length() != preservedTextBuffer.length())
+					fPreservedText= preservedTextBuffer.toString();
 			}
 		}
 
@@ -369,7 +507,7 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 		 * @return <code>true</code> if the change is valid for undo or redo
 		 */
 		protected boolean isValid() {
-			return fStart > -1 && fEnd > -1 && fText != null;
+			return fStart > -1 && fEnd > -1 && (fText != null || fJournalEntry != null);
 		}
 
 		@Override
@@ -398,6 +536,21 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 			return text.toString();
 		}
 
+		/**
+		 * Returns the approximate number of bytes held by this change.
+		 *
+		 * @return the approximate memory usage of this change
+		 * @since 3.8
+		 */
+		protected long getMemoryUsage() {
+			long usage= CHANGE_SIZE;
+			if (fText != null)
+				usage += 2L * fText.length();
+			if (fPreservedText != null)
+				usage += 2L * fPreservedText.length();
+			return usage;
+		}
+
 		/**
 		 * Return the undo modification stamp
 		 *
@@ -447,6 +600,8 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 
 		@Override
 		public IStatus undo(IProgressMonitor monitor, IAdaptable uiInfo) {
+			if (!readFromJournal())
+				return IOperationHistory.OPERATION_INVALID_STATUS;
 
 			int size= fChanges.size();
 			if (size > 0) {
@@ -468,6 +623,8 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 
 		@Override
 		public IStatus redo(IProgressMonitor monitor, IAdaptable uiInfo) {
+			if (!readFromJournal())
+				return IOperationHistory.OPERATION_INVALID_STATUS;
 
 			int size= fChanges.size();
 			if (size > 0) {
@@ -530,6 +687,36 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 			return fStart > -1 || fChanges.size() > 0;
 		}
 
+		@Override
+		protected long getMemoryUsage() {
+			long usage= super.getMemoryUsage();
+			for (UndoableTextChange change : fChanges)
+				usage += change.getMemoryUsage();
+			return usage;
+		}
+
+		@Override
+		public void dispose() {
+			super.dispose();
+			for (UndoableTextChange change : fChanges)
+				change.dispose();
+		}
+
+		@Override
+		protected void writeToJournal() throws IOException {
+			for (UndoableTextChange change : fChanges)
+				change.writeToJournal();
+		}
+
+		@Override
+		protected boolean readFromJournal() {
+			for (UndoableTextChange change : fChanges) {
+				if (!change.readFromJournal())
+					return false;
+			}
+			return true;
+		}
+
 		@Override
 		protected long getUndoModificationStamp() {
 			if (fStart > -1)
@@ -743,6 +930,30 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 	/** The list of clients connected. */
 	private List<Object> fConnected;
 
+	/**
+	 * The approximate number of bytes the undo history may hold, or a negative value if there is
+	 * no such limit.
+	 *
+	 * @since 3.8
+	 */
+	private long fMaximalUndoMemoryUsage= -1;
+
+	/**
+	 * The approximate number of bytes the most recent changes may hold before the texts of older
+	 * changes are written to the undo journal, or a negative value if there is no journal.
+	 *
+	 * @since 3.8
+	 */
+	private long fJournalThreshold= -1;
+
+	/**
+	 * The journal to which the texts of older changes are written, <code>null</code> if none
+	 * has been written yet.
+	 *
+	 * @since 3.8
+	 */
+	private UndoJournal fJournal;
+
 	/**
 	 *
 	 * Create a DocumentUndoManager for the given document.
@@ -861,6 +1072,67 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 		fHistory.setLimit(fUndoContext, undoLimit);
 	}
 
+	/**
+	 * Sets the approximate number of bytes the texts of the undo history may hold. Whenever a
+	 * change is added to the history and the limit is exceeded, the oldest changes are removed
+	 * from the history until the limit is met again, in addition to the limit set by
+	 * {@link #setMaximalUndoLevel(int)}. The most recent change is always kept.
+	 * <p>
+	 * Only the changes recorded by this undo manager are taken into account and removed.
+	 * </p>
+	 *
+	 * @param limit the maximal number of bytes, or a negative value for no limit
+	 * @since 3.8
+	 */
+	public void setMaximalUndoMemoryUsage(long limit) {
+		fMaximalUndoMemoryUsage= limit;
+		if (isConnected())
+			limitUndoMemoryUsage();
+	}
+
+	/**
+	 * Enables writing the texts of older changes to a temporary journal file. The texts of the
+	 * most recent changes are kept in memory up to the given number of bytes, the texts of older
+	 * changes are written to the journal and read back from it when the changes are undone or
+	 * redone. Writing large texts to the journal allows for a deep undo history of large
+	 * documents without holding it in memory.
+	 * <p>
+	 * Journaling is disabled by default. The journal file is deleted when the last client
+	 * disconnects from this undo manager. If the journal cannot be written or read, the failure
+	 * is logged and the texts are kept in memory from then on.
+	 * </p>
+	 *
+	 * @param threshold the number of bytes the texts of the most recent changes may hold in
+	 *            memory, or a negative value to keep all texts in memory
+	 * @since 3.8
+	 */
+	public void setUndoJournalThreshold(long threshold) {
+		fJournalThreshold= threshold;
+		if (isConnected())
+			writeUndoJournal();
+	}
+
+	/**
+	 * Returns the approximate number of bytes held by the undo and the redo history of this undo
+	 * manager's document. Only the changes recorded by this undo manager are taken into account.
+	 * Texts which have been written to the undo journal are not counted.
+	 *
+	 * @return the approximate number of bytes held by the undo and the redo history
+	 * @since 3.8
+	 */
+	public long getUndoMemoryUsage() {
+		long usage= 0;
+		for (IUndoableOperation operation : fHistory.getUndoHistory(fUndoContext)) {
+			if (operation instanceof UndoableTextChange)
+				usage += ((UndoableTextChange) operation).getMemoryUsage();
+		}
+		for (IUndoableOperation operation : fHistory.getRedoHistory(fUndoContext)) {
+			if (operation instanceof UndoableTextChange)
+				usage += ((UndoableTextChange) operation).getMemoryUsage();
+		}
+		return usage;
+	}
+
 	/**
 	 * Fires a document undo event to all registered document undo listeners.
 	 * Uses a robust iterator.
@@ -910,9 +1182,111 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 				|| edit instanceof UndoableCompoundTextChange) {
 			fHistory.add(edit);
 			fLastAddedTextEdit= edit;
+			writeUndoJournal();
+			limitUndoMemoryUsage();
 		}
 	}
 
+	/**
+	 * Removes the oldest changes from the undo history while it exceeds the maximal memory
+	 * usage. Changes which also belong to other undo contexts and the changes following an
+	 * operation which has not been recorded by this undo manager are kept.
+	 *
+	 * @since 3.8
+	 */
+	private void limitUndoMemoryUsage() {
+		if (fMaximalUndoMemoryUsage < 0)
+			return;
+
+		long usage= getUndoMemoryUsage();
+		if (usage <= fMaximalUndoMemoryUsage)
+			return;
+
+		// the oldest operation comes first
+		IUndoableOperation[] operations= fHistory.getUndoHistory(fUndoContext);
+		for (int i= 0; i < operations.length - 1 && usage > fMaximalUndoMemoryUsage; i++) {
+			IUndoableOperation operation= operations[i];
+			if (!(operation instanceof UndoableTextChange) || operation.getContexts().length != 1)
+				break;
+			usage -= ((UndoableTextChange) operation).getMemoryUsage();
+			fHistory.replaceOperation(operation, new IUndoableOperation[0]);
+			operation.dispose();
+		}
+	}
+
+	/**
+	 * Writes the texts of the changes which exceed the journal threshold to the undo journal,
+	 * starting with the most recent changes of the undo history that are kept in memory.
+	 *
+	 * @since 3.8
+	 */
+	private void writeUndoJournal() {
+		if (fJournalThreshold < 0)
+			return;
+
+		long usage= 0;
+		IUndoableOperation[] operations= fHistory.getUndoHistory(fUndoContext);
+		for (int i= operations.length - 1; i >= 0; i--) {
+			IUndoableOperation operation= operations[i];
+			if (!(operation instanceof UndoableTextChange) || operation == fCurrent)
+				continue;
+			UndoableTextChange change= (UndoableTextChange) operation;
+			usage += change.getMemoryUsage();
+			if (usage > fJournalThreshold) {
+				try {
+					change.writeToJournal();
+				} catch (IOException x) {
+					handleJournalException(x);
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the undo journal, creating it if necessary.
+	 *
+	 * @return the undo journal
+	 * @throws IOException if the journal file cannot be created
+	 * @since 3.8
+	 */
+	private UndoJournal getJournal() throws IOException {
+		if (fJournal == null)
+			fJournal= new UndoJournal();
+		return fJournal;
+	}
+
+	/**
+	 * Logs the given failure to write or read the undo journal. The texts of the changes are
+	 * kept in memory from now on.
+	 *
+	 * @param exception the exception
+	 * @since 3.8
+	 */
+	private void handleJournalException(IOException exception) {
+		fJournalThreshold= -1;
+		String PLUGIN_ID= "org.eclipse.text"; //$NON-NLS-1$
+		ILog log= Platform.getLog(Platform.getBundle(PLUGIN_ID));
+		log.log(new Status(IStatus.ERROR, PLUGIN_ID, IStatus.OK, UndoMessages.getString("DocumentUndoManager.journalError"), exception)); //$NON-NLS-1$
+	}
+
+	/**
+	 * Empties the text buffers. A buffer which has grown large, e.g. by pasting a large text,
+	 * is replaced so that it does not keep its capacity.
+	 *
+	 * @since 3.8
+	 */
+	private void clearTextBuffers() {
+		if (fTextBuffer.capacity() > MAX_BUFFER_CAPACITY)
+			fTextBuffer= new StringBuilder();
+		else
+			fTextBuffer.setLength(0);
+		if (fPreservedTextBuffer.capacity() > MAX_BUFFER_CAPACITY)
+			fPreservedTextBuffer= new StringBuilder();
+		else
+			fPreservedTextBuffer.setLength(0);
+	}
+
 	/**
 	 * Disposes the undo history.
 	 */
@@ -1174,6 +1548,11 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 		fPreservedTextBuffer= null;
 
 		disposeUndoHistory();
+
+		if (fJournal != null) {
+			fJournal.close();
+			fJournal= null;
+		}
 	}
 
 	/**
@@ -1204,6 +1583,8 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 			}
 			// Now update the manager that owns the text edit.
 			if (op instanceof UndoableTextChange) {
+				// the journal belongs to the old manager
+				((UndoableTextChange)op).readFromJournal();
 				((UndoableTextChange)op).fDocumentUndoManager= this;
 			}
 		}
@@ -0,0 +1,250 @@
+/*******************************************************************************
+ * Copyright (c) 2018 IBM Corporation and others.
+ *
+ * This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.text.undo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+
+/**
+ * A temporary file to which the texts of older undoable changes are written, so that they do
+ * not need to be held in memory. The texts are appended as UTF-16 characters and read back by
+ * their character offset.
+ * <p>
+ * The file can only be read and written by its owner, since the texts may be confidential. It is
+ * truncated as soon as no written text is needed any longer, compacted when most of it is no
+ * longer needed, and deleted when the journal is closed.
+ * </p>
+ *
+ * @since 3.8
+ */
+final class UndoJournal {
+
+	/**
+	 * Texts which have been written to the journal together.
+	 */
+	static final class Entry {
+
+		/** The character offset of the texts in the journal. */
+		private long fOffset;
+		/** The number of characters of the texts. */
+		private final long fLength;
+
+		/**
+		 * Creates a new entry.
+		 *
+		 * @param offset the character offset of the texts in the journal
+		 * @param length the number of characters of the texts
+		 */
+		private Entry(long offset, long length) {
+			fOffset= offset;
+			fLength= length;
+		}
+	}
+
+	/** The number of characters transferred from or to the file at once. */
+	private static final int BLOCK_SIZE= 64 * 1024;
+	/** The minimal number of characters which are no longer needed before the file is compacted. */
+	private static final long MIN_COMPACTION_LENGTH= 1024 * 1024;
+
+	/** The journal file. */
+	private final Path fFile;
+	/** The channel to the journal file. */
+	private final FileChannel fChannel;
+	/** The buffer used to transfer characters. */
+	private final ByteBuffer fBuffer= ByteBuffer.allocate(2 * BLOCK_SIZE);
+	/** The number of characters in the file. */
+	private long fLength;
+	/** The number of characters in the file which are still needed. */
+	private long fLiveLength;
+	/** The entries which are still needed, in the order of their offsets. */
+	private final Set<Entry> fEntries= new LinkedHashSet<>();
+	/** Tells whether compacting the file has failed, in which case the entries cannot be read. */
+	private boolean fIsCorrupt;
+
+
+	/**
+	 * Creates a new journal in the directory for temporary files.
+	 *
+	 * @throws IOException if the journal file cannot be created
+	 */
+	UndoJournal() throws IOException {
+		fFile= createFile();
+		try {
+			fChannel= FileChannel.open(fFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		} catch (IOException x) {
+			Files.deleteIfExists(fFile);
+			throw x;
+		}
+	}
+
+	/**
+	 * Creates a temporary file which only its owner can read and write.
+	 *
+	 * @return the created file
+	 * @throws IOException if the file cannot be created
+	 */
+	private static Path createFile() throws IOException {
+		try {
+			return Files.createTempFile("undo", ".journal", PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------"))); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		} catch (UnsupportedOperationException x) {
+			// no POSIX file system, e.g. on Windows, where the temporary directory is private to the user
+			return Files.createTempFile("undo", ".journal"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
+	/**
+	 * Appends the given texts to the journal.
+	 *
+	 * @param text the first text
+	 * @param other the second text, which directly follows the first text
+	 * @return the entry of the texts in the journal
+	 * @throws IOException if writing fails
+	 */
+	Entry write(String text, String other) throws IOException {
+		Entry entry= new Entry(fLength, (long) text.length() + other.length());
+		write(text);
+		write(other);
+		fEntries.add(entry);
+		fLiveLength += entry.fLength;
+		return entry;
+	}
+
+	private void write(String text) throws IOException {
+		int length= text.length();
+		for (int start= 0; start < length; start += BLOCK_SIZE) {
+			int end= Math.min(start + BLOCK_SIZE, length);
+			fBuffer.clear();
+			CharBuffer chars= fBuffer.asCharBuffer();
+			chars.put(text, start, end);
+			fBuffer.limit(2 * chars.position());
+			while (fBuffer.hasRemaining())
+				fChannel.write(fBuffer, 2 * fLength + 2 * start + fBuffer.position());
+		}
+		fLength += length;
+	}
+
+	/**
+	 * Reads a text from the journal.
+	 *
+	 * @param entry the entry of the texts in the journal
+	 * @param offset the character offset of the text relative to the entry
+	 * @param length the length of the text
+	 * @return the text
+	 * @throws IOException if reading fails
+	 */
+	String read(Entry entry, long offset, int length) throws IOException {
+		if (fIsCorrupt || !fEntries.contains(entry))
+			throw new IOException("The text is not available in the undo journal"); //$NON-NLS-1$
+
+		char[] text= new char[length];
+		long position= entry.fOffset + offset;
+		for (int start= 0; start < length; start += BLOCK_SIZE) {
+			int end= Math.min(start + BLOCK_SIZE, length);
+			readBlock(position + start, end - start);
+			fBuffer.asCharBuffer().get(text, start, end - start);
+		}
+		return new String(text);
+	}
+
+	/**
+	 * Reads the given characters into the transfer buffer, which is flipped afterwards.
+	 *
+	 * @param offset the character offset in the file
+	 * @param length the number of characters, at most {@link #BLOCK_SIZE}
+	 * @throws IOException if reading fails
+	 */
+	private void readBlock(long offset, int length) throws IOException {
+		fBuffer.clear();
+		fBuffer.limit(2 * length);
+		while (fBuffer.hasRemaining()) {
+			if (fChannel.read(fBuffer, 2 * offset + fBuffer.position()) < 0)
+				throw new IOException("Unexpected end of the undo journal"); //$NON-NLS-1$
+		}
+		fBuffer.flip();
+	}
+
+	/**
+	 * Tells the journal that the texts of the given entry are no longer needed.
+	 *
+	 * @param entry the entry which is no longer needed
+	 */
+	void release(Entry entry) {
+		if (!fEntries.remove(entry))
+			return;
+
+		fLiveLength -= entry.fLength;
+		if (fLiveLength == 0) {
+			try {
+				fChannel.truncate(0);
+				fLength= 0;
+				fIsCorrupt= false;
+			} catch (IOException x) {
+				// keep appending to the file
+			}
+		} else if (!fIsCorrupt && fLength - fLiveLength >= MIN_COMPACTION_LENGTH && fLength - fLiveLength > fLiveLength) {
+			compact();
+		}
+	}
+
+	/**
+	 * Moves the texts which are still needed to the start of the file and truncates it. The
+	 * texts are only moved towards the start of the file, so no disk space is allocated.
+	 */
+	private void compact() {
+		try {
+			long offset= 0;
+			for (Entry entry : fEntries) {
+				for (long start= 0; start < entry.fLength && entry.fOffset != offset; start += BLOCK_SIZE) {
+					int length= (int) Math.min(BLOCK_SIZE, entry.fLength - start);
+					readBlock(entry.fOffset + start, length);
+					while (fBuffer.hasRemaining())
+						fChannel.write(fBuffer, 2 * (offset + start) + fBuffer.position());
+				}
+				entry.fOffset= offset;
+				offset += entry.fLength;
+			}
+			fChannel.truncate(2 * offset);
+			fLength= offset;
+		} catch (IOException x) {
+			// the texts may have been partially overwritten
+			fIsCorrupt= true;
+		}
+	}
+
+	/**
+	 * Closes and deletes the journal file.
+	 */
+	void close() {
+		fEntries.clear();
+		try {
+			fChannel.close();
+		} catch (IOException x) {
+			// the file is deleted anyway
+		}
+		try {
+			Files.deleteIfExists(fFile);
+		} catch (IOException x) {
+			// the file is in the directory for temporary files
+		}
+	}
+}
@@ -131,6 +131,19 @@ public abstract class AbstractMarkerAnnotationModel extends AnnotationModel impl
 	protected AbstractMarkerAnnotationModel() {
 	}
 
+	/**
+	 * Creates a new annotation model. The annotation model does not manage any
+	 * annotations and is not connected to any document.
+	 *
+	 * @param useIntervalTree <code>true</code> to manage the positions of the
+	 *            annotations in an interval tree of this model, see
+	 *            {@link org.eclipse.jface.text.source.AnnotationModel#AnnotationModel(boolean)}
+	 * @since 3.12
+	 */
+	protected AbstractMarkerAnnotationModel(boolean useIntervalTree) {
+		super(useIntervalTree);
+	}
+
 	/**
 	 * Adds the given marker updater to this annotation model.
 	 * It is the client's responsibility to ensure the consistency